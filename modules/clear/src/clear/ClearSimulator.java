@@ -37,6 +37,7 @@ public class ClearSimulator extends StandardSimulator {
     private static final String REPAIR_RATE_KEY = "clear.repair.rate";
 	private static final String REPAIR_RAD_KEY = "clear.repair.rad";
     private static final String REPAIR_DISTANCE_KEY = "clear.repair.distance";
+    private static final String ID_LEASE_KEY = "clear.id-lease.size";
 
     private static final double REPAIR_COST_FACTOR = 0.000001; // Converts square mm to square m.
 
@@ -45,6 +46,11 @@ public class ClearSimulator extends StandardSimulator {
         return SIMULATOR_NAME;
     }
 
+    @Override
+    protected int getEntityIDLeaseSize() {
+        return config.getIntValue(ID_LEASE_KEY, 0);
+    }
+
     @Override
 
     protected void processCommands(KSCommands c, ChangeSet changes) {
@@ -143,7 +149,7 @@ public class ClearSimulator extends StandardSimulator {
 		Area agentPosition = (Area) agent
 				.getPosition(model);
 
-		Map<Blockade, java.awt.geom.Area> blockades = new HashMap<Blockade, java.awt.geom.Area>();
+		Map<Blockade, double[]> blockades = new HashMap<Blockade, double[]>();
 		for (StandardEntity entity : model.getObjectsInRange(agent.getX(), agent.getY(), length)) {
 			if(entity instanceof Area) {
 				Area area = (Area) entity;
@@ -152,9 +158,11 @@ public class ClearSimulator extends StandardSimulator {
 						Blockade blockade = (Blockade) model.getEntity(blockadeID);
 						if (blockade == null)
 							continue;
-						if (blockade.getShape() == null)
+						if (!blockade.isApexesDefined()) {
 							System.err.println("Blockade Shape is null");
-						blockades.put(blockade, new java.awt.geom.Area(blockade.getShape()));
+							continue;
+						}
+						blockades.put(blockade, PolygonClipper.toDoubles(blockade.getApexes()));
 					}
 				}
 			}
@@ -165,14 +173,10 @@ public class ClearSimulator extends StandardSimulator {
 		while (true) {
 			counter++;
 			length = (min + max) / 2;
-			java.awt.geom.Area area = Geometry.getClearArea(agent, targetX, targetY, length,
-					clearRad);
-
-			double firstSurface = Geometry.surface(area);
-			for (java.awt.geom.Area blockade : blockades.values())
-				area.subtract(blockade);
-			double surface = Geometry.surface(area);
-			double clearedSurface = firstSurface - surface;
+			double[] clearPolygon = PolygonClipper.toDoubles(Geometry
+					.getClearApexes(agent, targetX, targetY, length, clearRad));
+			double clearedSurface = PolygonClipper.coveredArea(clearPolygon,
+					blockades.values());
 
 			if (clearedSurface * REPAIR_COST_FACTOR > rate) {
 				max = length;
@@ -188,79 +192,103 @@ public class ClearSimulator extends StandardSimulator {
 			break;
 		}
 
-		java.awt.geom.Area area = Geometry.getClearArea(agent, targetX, targetY, length,
-				clearRad);
-		for (Map.Entry<Blockade, java.awt.geom.Area> entry : blockades.entrySet()) {
+		double[] clearPolygon = PolygonClipper.toDoubles(Geometry
+				.getClearApexes(agent, targetX, targetY, length, clearRad));
+		double[] clearBounds = PolygonClipper.getBounds(clearPolygon);
+		java.awt.geom.Area area = null;
+		for (Map.Entry<Blockade, double[]> entry : blockades.entrySet()) {
 			Blockade blockade = entry.getKey();
-			java.awt.geom.Area blockadeArea = entry.getValue();
+			double[] blockadePolygon = entry.getValue();
+			if (!PolygonClipper.boundsIntersect(clearBounds,
+					PolygonClipper.getBounds(blockadePolygon))) {
+				continue;
+			}
+			double clipped = PolygonClipper.area(PolygonClipper.clip(
+					blockadePolygon, clearPolygon));
+			if (clipped == 0) {
+				continue;
+			}
 			Road road = (Road) model.getEntity(blockade.getPosition());
-			double firstSurface = Geometry.surface(blockadeArea);
-			blockadeArea.subtract(area);
-			double surface = Geometry.surface(blockadeArea);
-			if (surface < firstSurface) {
-				changes.addChange(blockade, blockade.getApexesProperty());
-				List<int[]> areas = Geometry.getAreas(blockadeArea);
-				if (areas.size() == 1) {
-					Blockade backupBlockade = blockade;
-					blockade = updateBlockadeApexes(blockade, areas.get(0));
-					if (blockade == null) {
-						blockade = backupBlockade;
-						areas.clear();
-					}
-					else {
-						changes.addChange(blockade,
-								blockade.getApexesProperty());
-						changes.addChange(blockade, blockade.getXProperty());
-						changes.addChange(blockade, blockade.getYProperty());
-						changes.addChange(blockade,
-								blockade.getRepairCostProperty());
-					}
+			List<int[]> areas;
+			if (PolygonClipper.covers(clipped,
+					PolygonClipper.area(blockadePolygon))) {
+				// Entirely cleared
+				areas = new ArrayList<int[]>();
+			}
+			else {
+				if (area == null) {
+					area = PolygonClipper.toArea(clearPolygon);
 				}
-				if (areas.size() != 1) {
-					try {
-						List<EntityID> newIDs = requestNewEntityIDs(areas
-								.size());
-						Iterator<EntityID> it = newIDs.iterator();
-						List<Blockade> newBlockades = new ArrayList<Blockade>();
-						if (areas.size() > 0)
-							Logger.debug("Creating new blockade objects for " + blockade.getID().getValue()
-									+ " " + areas.size());
-						for (int[] apexes : areas) {
-							EntityID id = it.next();
-							Blockade b = makeBlockade(id, apexes, road.getID());
-							if (b != null)
-								newBlockades.add(b);
-						}
-						List<EntityID> existing = road.getBlockades();
-						List<EntityID> ids = new ArrayList<EntityID>();
-						if (existing != null)
-							ids.addAll(existing);
-						for (Blockade blocakde : newBlockades)
-							ids.add(blocakde.getID());
-						ids.remove(blockade.getID());
-						road.setBlockades(ids);
-						changes.addAll(newBlockades);
-
-						model.removeEntity(blockade.getID());
-						changes.addChange(road, road.getBlockadesProperty());
-						changes.entityDeleted(blockade.getID());
-					} catch (InterruptedException e) {
-						Logger.error("Interrupted while requesting IDs");
+				java.awt.geom.Area blockadeArea = PolygonClipper
+						.toArea(blockadePolygon);
+				double firstSurface = Geometry.surface(blockadeArea);
+				blockadeArea.subtract(area);
+				double surface = Geometry.surface(blockadeArea);
+				if (surface >= firstSurface) {
+					continue;
+				}
+				areas = Geometry.getAreas(blockadeArea);
+			}
+			changes.addChange(blockade, blockade.getApexesProperty());
+			if (areas.size() == 1) {
+				Blockade backupBlockade = blockade;
+				blockade = updateBlockadeApexes(blockade, areas.get(0));
+				if (blockade == null) {
+					blockade = backupBlockade;
+					areas.clear();
+				}
+				else {
+					changes.addChange(blockade,
+							blockade.getApexesProperty());
+					changes.addChange(blockade, blockade.getXProperty());
+					changes.addChange(blockade, blockade.getYProperty());
+					changes.addChange(blockade,
+							blockade.getRepairCostProperty());
+				}
+			}
+			if (areas.size() != 1) {
+				try {
+					List<EntityID> newIDs = requestNewEntityIDs(areas
+							.size());
+					Iterator<EntityID> it = newIDs.iterator();
+					List<Blockade> newBlockades = new ArrayList<Blockade>();
+					if (areas.size() > 0)
+						Logger.debug("Creating new blockade objects for " + blockade.getID().getValue()
+								+ " " + areas.size());
+					for (int[] apexes : areas) {
+						EntityID id = it.next();
+						Blockade b = makeBlockade(id, apexes, road.getID());
+						if (b != null)
+							newBlockades.add(b);
 					}
+					List<EntityID> existing = road.getBlockades();
+					List<EntityID> ids = new ArrayList<EntityID>();
+					if (existing != null)
+						ids.addAll(existing);
+					for (Blockade blocakde : newBlockades)
+						ids.add(blocakde.getID());
+					ids.remove(blockade.getID());
+					road.setBlockades(ids);
+					changes.addAll(newBlockades);
+
+					model.removeEntity(blockade.getID());
+					changes.addChange(road, road.getBlockadesProperty());
+					changes.entityDeleted(blockade.getID());
+				} catch (InterruptedException e) {
+					Logger.error("Interrupted while requesting IDs");
 				}
 			}
 		}
 	}
 
 	private Blockade updateBlockadeApexes(Blockade blockade, int[] apexes) {
-		List<Point2D> points = GeometryTools2D.vertexArrayToPoints(apexes);
-		if (points.size() < 2)
+		if (apexes.length < 4)
 			return null;
-		Point2D centroid = GeometryTools2D.computeCentroid(points);
+		Point2D centroid = PolygonClipper.centroid(apexes);
 		blockade.setApexes(apexes);
 		blockade.setX((int) centroid.getX());
 		blockade.setY((int) centroid.getY());
-		int cost = (int) (GeometryTools2D.computeArea(points) * REPAIR_COST_FACTOR);
+		int cost = (int) (PolygonClipper.area(apexes) * REPAIR_COST_FACTOR);
 		if (cost == 0)
 			return null;
 		blockade.setRepairCost(cost);
@@ -13,6 +13,20 @@ import rescuecore2.standard.entities.Human;
 public class Geometry {
 	public static Area getClearArea(Human agent, int targetX, int targetY,
 			int clearLength, int clearRad) {
+		int[] apexes = getClearApexes(agent, targetX, targetY, clearLength,
+				clearRad);
+		int count = apexes.length / 2;
+		int[] xPoints = new int[count];
+		int[] yPoints = new int[count];
+		for (int i = 0; i < count; i++) {
+			xPoints[i] = apexes[i * 2];
+			yPoints[i] = apexes[i * 2 + 1];
+		}
+		return new Area(new Polygon(xPoints, yPoints, count));
+	}
+
+	public static int[] getClearApexes(Human agent, int targetX, int targetY,
+			int clearLength, int clearRad) {
 		Vector2D agentToTarget = new Vector2D(targetX - agent.getX(), targetY
 				- agent.getY());
 
@@ -34,13 +48,12 @@ public class Geometry {
 				line.getEndPoint().plus(perpend1),
 				line.getEndPoint().plus(perpend2),
 				line.getOrigin().plus(perpend2) };
-		int[] xPoints = new int[points.length];
-		int[] yPoints = new int[points.length];
+		int[] apexes = new int[points.length * 2];
 		for (int i = 0; i < points.length; i++) {
-			xPoints[i] = (int) points[i].getX();
-			yPoints[i] = (int) points[i].getY();
+			apexes[i * 2] = (int) points[i].getX();
+			apexes[i * 2 + 1] = (int) points[i].getY();
 		}
-		return new Area(new Polygon(xPoints, yPoints, points.length));
+		return apexes;
 	}
 
 	public static double surface(Area area) {
@@ -0,0 +1,326 @@
+package clear;
+
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import rescuecore2.misc.geometry.Point2D;
+
+/**
+ * Polygon clipping over flat apex arrays. Polygons are stored as
+ * {x0, y0, x1, y1, ...} with an implicit closing edge, the same layout used
+ * by blockade apexes. Clipping against a convex window uses the
+ * Sutherland-Hodgman algorithm, which is exact for the area of the result
+ * even when the subject polygon is concave.
+ */
+public final class PolygonClipper {
+	/** Relative tolerance used when comparing areas. */
+	private static final double AREA_TOLERANCE = 1e-9;
+
+	private PolygonClipper() {
+	}
+
+	/**
+	 * Convert an int apex array to a double apex array.
+	 *
+	 * @param apexes
+	 *            The apexes.
+	 * @return A new double array with the same coordinates.
+	 */
+	public static double[] toDoubles(int[] apexes) {
+		double[] result = new double[apexes.length];
+		for (int i = 0; i < apexes.length; ++i) {
+			result[i] = apexes[i];
+		}
+		return result;
+	}
+
+	/**
+	 * Compute the axis aligned bounds of a polygon.
+	 *
+	 * @param polygon
+	 *            The polygon.
+	 * @return {minX, minY, maxX, maxY}.
+	 */
+	public static double[] getBounds(double[] polygon) {
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i + 1 < polygon.length; i += 2) {
+			minX = Math.min(minX, polygon[i]);
+			minY = Math.min(minY, polygon[i + 1]);
+			maxX = Math.max(maxX, polygon[i]);
+			maxY = Math.max(maxY, polygon[i + 1]);
+		}
+		return new double[] { minX, minY, maxX, maxY };
+	}
+
+	/**
+	 * Find out if two bounding boxes overlap.
+	 *
+	 * @param a
+	 *            The first bounds as returned by {@link #getBounds(double[])}.
+	 * @param b
+	 *            The second bounds.
+	 * @return True if the boxes share any interior area.
+	 */
+	public static boolean boundsIntersect(double[] a, double[] b) {
+		return a[0] < b[2] && b[0] < a[2] && a[1] < b[3] && b[1] < a[3];
+	}
+
+	/**
+	 * Compute the signed area of a polygon. Counter-clockwise polygons (in a
+	 * y-up frame) have positive area.
+	 *
+	 * @param polygon
+	 *            The polygon.
+	 * @return The signed area.
+	 */
+	public static double signedArea(double[] polygon) {
+		int n = polygon.length / 2;
+		if (n < 3) {
+			return 0;
+		}
+		double sum = 0;
+		double lastX = polygon[(n - 1) * 2];
+		double lastY = polygon[(n - 1) * 2 + 1];
+		for (int i = 0; i < n; ++i) {
+			double x = polygon[i * 2];
+			double y = polygon[i * 2 + 1];
+			sum += lastX * y - x * lastY;
+			lastX = x;
+			lastY = y;
+		}
+		return sum / 2;
+	}
+
+	/**
+	 * Compute the area of a polygon.
+	 *
+	 * @param polygon
+	 *            The polygon.
+	 * @return The area.
+	 */
+	public static double area(double[] polygon) {
+		return Math.abs(signedArea(polygon));
+	}
+
+	/**
+	 * Compute the area of a polygon given as int apexes.
+	 *
+	 * @param apexes
+	 *            The apexes.
+	 * @return The area.
+	 */
+	public static double area(int[] apexes) {
+		return Math.abs(signedArea(apexes));
+	}
+
+	/**
+	 * Compute the signed area of a polygon given as int apexes.
+	 *
+	 * @param apexes
+	 *            The apexes.
+	 * @return The signed area.
+	 */
+	public static double signedArea(int[] apexes) {
+		int n = apexes.length / 2;
+		if (n < 3) {
+			return 0;
+		}
+		double sum = 0;
+		double lastX = apexes[(n - 1) * 2];
+		double lastY = apexes[(n - 1) * 2 + 1];
+		for (int i = 0; i < n; ++i) {
+			double x = apexes[i * 2];
+			double y = apexes[i * 2 + 1];
+			sum += lastX * y - x * lastY;
+			lastX = x;
+			lastY = y;
+		}
+		return sum / 2;
+	}
+
+	/**
+	 * Compute the centroid of a simple polygon given as int apexes. This gives
+	 * the same result as
+	 * {@link rescuecore2.misc.geometry.GeometryTools2D#computeCentroid(List)}
+	 * without building a list of points.
+	 *
+	 * @param apexes
+	 *            The apexes.
+	 * @return The centroid.
+	 */
+	public static Point2D centroid(int[] apexes) {
+		int n = apexes.length / 2;
+		double area = signedArea(apexes);
+		double xSum = 0;
+		double ySum = 0;
+		double lastX = apexes[(n - 1) * 2];
+		double lastY = apexes[(n - 1) * 2 + 1];
+		for (int i = 0; i < n; ++i) {
+			double x = apexes[i * 2];
+			double y = apexes[i * 2 + 1];
+			double cross = lastX * y - x * lastY;
+			xSum += (lastX + x) * cross;
+			ySum += (lastY + y) * cross;
+			lastX = x;
+			lastY = y;
+		}
+		// CHECKSTYLE:OFF:MagicNumber
+		return new Point2D(xSum / (6.0 * area), ySum / (6.0 * area));
+		// CHECKSTYLE:ON:MagicNumber
+	}
+
+	/**
+	 * Clip a polygon against a convex window. The window may be wound in
+	 * either direction.
+	 *
+	 * @param subject
+	 *            The polygon to clip. This may be concave.
+	 * @param window
+	 *            The convex clipping window.
+	 * @return The part of the subject inside the window. This will be empty if
+	 *         they do not overlap.
+	 */
+	public static double[] clip(double[] subject, double[] window) {
+		int windowSize = window.length / 2;
+		double orientation = signedArea(window) < 0 ? -1 : 1;
+		double[] input = subject;
+		int inputSize = subject.length / 2;
+		for (int e = 0; e < windowSize && inputSize > 0; ++e) {
+			double ax = window[e * 2];
+			double ay = window[e * 2 + 1];
+			int next = (e + 1) % windowSize;
+			double dx = window[next * 2] - ax;
+			double dy = window[next * 2 + 1] - ay;
+			// Each input vertex emits at most two output vertices
+			double[] output = new double[inputSize * 4];
+			int outputSize = 0;
+			double px = input[(inputSize - 1) * 2];
+			double py = input[(inputSize - 1) * 2 + 1];
+			double pSide = orientation * (dx * (py - ay) - dy * (px - ax));
+			for (int i = 0; i < inputSize; ++i) {
+				double cx = input[i * 2];
+				double cy = input[i * 2 + 1];
+				double cSide = orientation * (dx * (cy - ay) - dy * (cx - ax));
+				if (cSide >= 0) {
+					if (pSide < 0) {
+						double t = pSide / (pSide - cSide);
+						output[outputSize * 2] = px + t * (cx - px);
+						output[outputSize * 2 + 1] = py + t * (cy - py);
+						++outputSize;
+					}
+					output[outputSize * 2] = cx;
+					output[outputSize * 2 + 1] = cy;
+					++outputSize;
+				} else if (pSide >= 0) {
+					double t = pSide / (pSide - cSide);
+					output[outputSize * 2] = px + t * (cx - px);
+					output[outputSize * 2 + 1] = py + t * (cy - py);
+					++outputSize;
+				}
+				px = cx;
+				py = cy;
+				pSide = cSide;
+			}
+			input = output;
+			inputSize = outputSize;
+		}
+		return Arrays.copyOf(input, inputSize * 2);
+	}
+
+	/**
+	 * Compute the area of the window covered by a set of polygons. Polygons
+	 * whose bounds do not touch the window are rejected without any clipping.
+	 * If the clipped pieces cannot overlap each other and none of the polygons
+	 * lies wholly inside the window the result is the sum of the clipped
+	 * areas; otherwise the answer is computed with {@link java.awt.geom.Area}
+	 * exactly as {@link Geometry#surface(java.awt.geom.Area)} would see it.
+	 *
+	 * @param window
+	 *            The convex window.
+	 * @param polygons
+	 *            The polygons covering the window.
+	 * @return The covered area.
+	 */
+	public static double coveredArea(double[] window,
+			Collection<double[]> polygons) {
+		double[] windowBounds = getBounds(window);
+		List<double[]> touching = new ArrayList<double[]>();
+		List<double[]> pieceBounds = new ArrayList<double[]>();
+		double sum = 0;
+		boolean simple = true;
+		for (double[] next : polygons) {
+			if (!boundsIntersect(windowBounds, getBounds(next))) {
+				continue;
+			}
+			double[] piece = clip(next, window);
+			double pieceArea = area(piece);
+			if (pieceArea == 0) {
+				continue;
+			}
+			touching.add(next);
+			if (!simple) {
+				continue;
+			}
+			if (covers(pieceArea, area(next))) {
+				// A polygon entirely inside the window leaves a hole in the
+				// uncovered region
+				simple = false;
+				continue;
+			}
+			double[] bounds = getBounds(piece);
+			for (double[] other : pieceBounds) {
+				if (boundsIntersect(bounds, other)) {
+					simple = false;
+					break;
+				}
+			}
+			pieceBounds.add(bounds);
+			sum += pieceArea;
+		}
+		if (simple) {
+			return sum;
+		}
+		java.awt.geom.Area uncovered = toArea(window);
+		double total = Geometry.surface(uncovered);
+		for (double[] next : touching) {
+			uncovered.subtract(toArea(next));
+		}
+		return total - Geometry.surface(uncovered);
+	}
+
+	/**
+	 * Find out if a clipped area covers the whole of the original polygon.
+	 *
+	 * @param clippedArea
+	 *            The area of the clipped polygon.
+	 * @param polygonArea
+	 *            The area of the original polygon.
+	 * @return True if the areas are equal within tolerance.
+	 */
+	public static boolean covers(double clippedArea, double polygonArea) {
+		return clippedArea >= polygonArea * (1 - AREA_TOLERANCE);
+	}
+
+	/**
+	 * Convert a polygon to an AWT area.
+	 *
+	 * @param polygon
+	 *            The polygon.
+	 * @return A new Area.
+	 */
+	public static java.awt.geom.Area toArea(double[] polygon) {
+		Path2D path = new Path2D.Double();
+		path.moveTo(polygon[0], polygon[1]);
+		for (int i = 2; i + 1 < polygon.length; i += 2) {
+			path.lineTo(polygon[i], polygon[i + 1]);
+		}
+		path.closePath();
+		return new java.awt.geom.Area(path);
+	}
+}
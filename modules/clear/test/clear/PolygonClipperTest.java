@@ -0,0 +1,140 @@
+package clear;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import rescuecore2.misc.geometry.GeometryTools2D;
+import rescuecore2.misc.geometry.Point2D;
+
+public class PolygonClipperTest {
+    private static final int ITERATIONS = 500;
+    private static final double TOLERANCE = 1e-6;
+    private static final long SEED = 42;
+
+    @Test
+    public void testSquareClip() {
+        double[] subject = {0, 0, 10, 0, 10, 10, 0, 10};
+        double[] window = {5, 5, 15, 5, 15, 15, 5, 15};
+        assertEquals(25, PolygonClipper.area(PolygonClipper.clip(subject, window)), TOLERANCE);
+        // Same window wound the other way
+        double[] reversed = {5, 15, 15, 15, 15, 5, 5, 5};
+        assertEquals(25, PolygonClipper.area(PolygonClipper.clip(subject, reversed)), TOLERANCE);
+    }
+
+    @Test
+    public void testDisjoint() {
+        double[] subject = {0, 0, 10, 0, 10, 10, 0, 10};
+        double[] window = {20, 20, 30, 20, 30, 30, 20, 30};
+        assertFalse(PolygonClipper.boundsIntersect(PolygonClipper.getBounds(subject), PolygonClipper.getBounds(window)));
+        assertEquals(0, PolygonClipper.clip(subject, window).length);
+        List<double[]> polygons = new ArrayList<double[]>();
+        polygons.add(subject);
+        assertEquals(0, PolygonClipper.coveredArea(window, polygons), TOLERANCE);
+    }
+
+    @Test
+    public void testClipMatchesAWT() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < ITERATIONS; ++i) {
+            double[] subject = randomStarPolygon(random);
+            double[] window = randomRectangle(random);
+            java.awt.geom.Area expected = PolygonClipper.toArea(subject);
+            expected.intersect(PolygonClipper.toArea(window));
+            double expectedArea = Geometry.surface(expected);
+            double actual = PolygonClipper.area(PolygonClipper.clip(subject, window));
+            assertEquals(expectedArea, actual, Math.max(1, expectedArea) * TOLERANCE);
+        }
+    }
+
+    @Test
+    public void testCoveredAreaMatchesAWT() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < ITERATIONS; ++i) {
+            double[] window = randomRectangle(random);
+            List<double[]> polygons = new ArrayList<double[]>();
+            int count = 1 + random.nextInt(5);
+            for (int j = 0; j < count; ++j) {
+                polygons.add(randomStarPolygon(random));
+            }
+            // This is how ClearSimulator computed the cleared surface before
+            java.awt.geom.Area area = PolygonClipper.toArea(window);
+            double firstSurface = Geometry.surface(area);
+            for (double[] next : polygons) {
+                area.subtract(PolygonClipper.toArea(next));
+            }
+            double expected = firstSurface - Geometry.surface(area);
+            double actual = PolygonClipper.coveredArea(window, polygons);
+            assertEquals(expected, actual, Math.max(1, firstSurface) * TOLERANCE);
+        }
+    }
+
+    @Test
+    public void testFullyCovered() {
+        double[] subject = {2, 2, 4, 2, 4, 4, 2, 4};
+        double[] window = {0, 0, 10, 0, 10, 10, 0, 10};
+        double clipped = PolygonClipper.area(PolygonClipper.clip(subject, window));
+        assertTrue(PolygonClipper.covers(clipped, PolygonClipper.area(subject)));
+    }
+
+    @Test
+    public void testAreaAndCentroidMatchGeometryTools() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < ITERATIONS; ++i) {
+            double[] polygon = randomStarPolygon(random);
+            int[] apexes = new int[polygon.length];
+            for (int j = 0; j < polygon.length; ++j) {
+                apexes[j] = (int)polygon[j];
+            }
+            List<Point2D> points = GeometryTools2D.vertexArrayToPoints(apexes);
+            Point2D expected = GeometryTools2D.computeCentroid(points);
+            Point2D actual = PolygonClipper.centroid(apexes);
+            assertEquals(GeometryTools2D.computeArea(points), PolygonClipper.area(apexes), TOLERANCE);
+            assertEquals(expected.getX(), actual.getX(), TOLERANCE);
+            assertEquals(expected.getY(), actual.getY(), TOLERANCE);
+        }
+    }
+
+    /**
+       A random simple polygon, usually concave, made by walking round a centre at random radii.
+    */
+    private double[] randomStarPolygon(Random random) {
+        int n = 3 + random.nextInt(8);
+        double cx = random.nextDouble() * 10000;
+        double cy = random.nextDouble() * 10000;
+        double[] result = new double[n * 2];
+        for (int i = 0; i < n; ++i) {
+            double angle = (2 * Math.PI * i) / n;
+            double radius = 500 + random.nextDouble() * 3000;
+            result[i * 2] = Math.floor(cx + radius * Math.cos(angle));
+            result[i * 2 + 1] = Math.floor(cy + radius * Math.sin(angle));
+        }
+        return result;
+    }
+
+    /**
+       A random rotated rectangle like the one produced by Geometry.getClearApexes.
+    */
+    private double[] randomRectangle(Random random) {
+        double x = random.nextDouble() * 10000;
+        double y = random.nextDouble() * 10000;
+        double angle = random.nextDouble() * 2 * Math.PI;
+        double length = 1000 + random.nextDouble() * 8000;
+        double width = 500 + random.nextDouble() * 2000;
+        double dx = Math.cos(angle);
+        double dy = Math.sin(angle);
+        double px = -dy * width;
+        double py = dx * width;
+        return new double[] {
+            Math.floor(x + px), Math.floor(y + py),
+            Math.floor(x + dx * length + px), Math.floor(y + dy * length + py),
+            Math.floor(x + dx * length - px), Math.floor(y + dy * length - py),
+            Math.floor(x - px), Math.floor(y - py)
+        };
+    }
+}
@@ -13,6 +13,7 @@ import rescuecore2.misc.geometry.Line2D;
 import rescuecore2.misc.geometry.Vector2D;
 import rescuecore2.misc.geometry.GeometryTools2D;
 import rescuecore2.misc.collections.LazyMap;
+import rescuecore2.misc.EntityTools;
 import rescuecore2.log.Logger;
 import rescuecore2.GUIComponent;
 
@@ -32,13 +33,19 @@ import org.uncommons.maths.number.NumberGenerator;
 import org.uncommons.maths.Maths;
 
 import java.util.Map;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.EnumMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import java.awt.geom.Path2D;
 import java.awt.geom.Ellipse2D;
@@ -68,6 +75,8 @@ public class CollapseSimulator extends StandardSimulator implements
 	private static final String SLIGHT_SD_SUFFIX = "slight.sd";
 
 	private static final String BLOCK_KEY = "collapse.create-road-blockages";
+	private static final String BLOCK_THREADS_KEY = "collapse.block.threads";
+	private static final String ID_LEASE_KEY = "collapse.id-lease.size";
 
 	private static final String FLOOR_HEIGHT_KEY = "collapse.floor-height";
 	private static final String WALL_COLLAPSE_EXTENT_MIN_KEY = "collapse.wall-extent.min";
@@ -116,6 +125,7 @@ public class CollapseSimulator extends StandardSimulator implements
 	private NumberGenerator<Double> slight;
 
 	private boolean block;
+	private ExecutorService blockExecutor;
 
 	private double floorHeight;
 	private NumberGenerator<Double> extent;
@@ -155,6 +165,11 @@ public class CollapseSimulator extends StandardSimulator implements
 		return NAME;
 	}
 
+	@Override
+	protected int getEntityIDLeaseSize() {
+		return config.getIntValue(ID_LEASE_KEY, 0);
+	}
+
 	@Override
 	protected void postConnect() {
 		super.postConnect();
@@ -177,6 +192,19 @@ public class CollapseSimulator extends StandardSimulator implements
 				+ DESTROYED_MEAN_SUFFIX), config.getFloatValue(CONFIG_PREFIX
 				+ DESTROYED_SD_SUFFIX), config.getRandom());
 		block = config.getBooleanValue(BLOCK_KEY);
+		int threads = config.getIntValue(BLOCK_THREADS_KEY, 1);
+		if (block && threads > 1) {
+			Logger.info("Computing road blockages with " + threads + " threads");
+			blockExecutor = Executors.newFixedThreadPool(threads,
+					new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread t = new Thread(r, "Collapse blockage worker");
+							t.setDaemon(true);
+							return t;
+						}
+					});
+		}
 		floorHeight = config.getFloatValue(FLOOR_HEIGHT_KEY) * 1000;
 		extent = new ContinuousUniformGenerator(
 				config.getFloatValue(WALL_COLLAPSE_EXTENT_MIN_KEY),
@@ -217,6 +245,14 @@ public class CollapseSimulator extends StandardSimulator implements
 		});
 	}
 
+	@Override
+	public void shutdown() {
+		super.shutdown();
+		if (blockExecutor != null) {
+			blockExecutor.shutdownNow();
+		}
+	}
+
 	@Override
 	protected void processCommands(KSCommands c, ChangeSet changes) {
 		long start = System.currentTimeMillis();
@@ -281,13 +317,18 @@ public class CollapseSimulator extends StandardSimulator implements
 		return result;
 	}
 
-	static long t1;
-	static long t2;
-	static long t3;
-
+	/**
+	 * Create blockages for all collapsed buildings. Buildings are processed in
+	 * ID order: the random extent and collapse ratio of each building are
+	 * computed serially, then the wall projections and road intersections
+	 * (which are pure geometry) are computed either inline or on the blockage
+	 * worker pool, and finally the per-road results are merged in building
+	 * order. The output is therefore identical whatever the number of threads.
+	 */
 	private Map<Road, Collection<java.awt.geom.Area>> doBlock(
 			Collection<Building> collapsed, int time) {
-		Map<Road, Collection<java.awt.geom.Area>> result = new LazyMap<Road, Collection<java.awt.geom.Area>>() {
+		Map<Road, Collection<java.awt.geom.Area>> result = new LazyMap<Road, Collection<java.awt.geom.Area>>(
+				new LinkedHashMap<Road, Collection<java.awt.geom.Area>>()) {
 			@Override
 			public Collection<java.awt.geom.Area> createValue() {
 				return new ArrayList<java.awt.geom.Area>();
@@ -299,10 +340,23 @@ public class CollapseSimulator extends StandardSimulator implements
 		if (gui != null) {
 			gui.startBlock(collapsed.size());
 		}
-		for (Building b : collapsed) {
-			createBlockages(b, result, time);
-			if (gui != null) {
-				gui.bumpBlock();
+		List<Building> ordered = EntityTools.sortedList(new ArrayList<Building>(
+				collapsed));
+		double[] extents = new double[ordered.size()];
+		for (int i = 0; i < extents.length; ++i) {
+			extents[i] = computeCollapseExtent(ordered.get(i), time);
+		}
+		java.awt.geom.Area existing = findExistingBlockades();
+		// Make sure the spatial index is built before any worker queries it
+		model.index();
+		List<Map<Road, Collection<java.awt.geom.Area>>> perBuilding = blockExecutor == null ? createBlockagesSerial(
+				ordered, extents, existing) : createBlockagesParallel(ordered,
+				extents, existing);
+		// Merge in building order so blockade order (and hence IDs) is stable
+		for (Map<Road, Collection<java.awt.geom.Area>> next : perBuilding) {
+			for (Map.Entry<Road, Collection<java.awt.geom.Area>> entry : next
+					.entrySet()) {
+				result.get(entry.getKey()).addAll(entry.getValue());
 			}
 		}
 		if (gui != null) {
@@ -311,6 +365,58 @@ public class CollapseSimulator extends StandardSimulator implements
 		return result;
 	}
 
+	private List<Map<Road, Collection<java.awt.geom.Area>>> createBlockagesSerial(
+			List<Building> buildings, double[] extents,
+			java.awt.geom.Area existing) {
+		List<Map<Road, Collection<java.awt.geom.Area>>> result = new ArrayList<Map<Road, Collection<java.awt.geom.Area>>>(
+				buildings.size());
+		for (int i = 0; i < extents.length; ++i) {
+			result.add(createBlockages(buildings.get(i), extents[i], existing));
+			if (gui != null) {
+				gui.bumpBlock();
+			}
+		}
+		return result;
+	}
+
+	private List<Map<Road, Collection<java.awt.geom.Area>>> createBlockagesParallel(
+			List<Building> buildings, double[] extents,
+			final java.awt.geom.Area existing) {
+		List<Future<Map<Road, Collection<java.awt.geom.Area>>>> futures = new ArrayList<Future<Map<Road, Collection<java.awt.geom.Area>>>>(
+				buildings.size());
+		for (int i = 0; i < extents.length; ++i) {
+			final Building b = buildings.get(i);
+			final double d = extents[i];
+			futures.add(blockExecutor
+					.submit(new Callable<Map<Road, Collection<java.awt.geom.Area>>>() {
+						@Override
+						public Map<Road, Collection<java.awt.geom.Area>> call() {
+							return createBlockages(b, d, existing);
+						}
+					}));
+		}
+		List<Map<Road, Collection<java.awt.geom.Area>>> result = new ArrayList<Map<Road, Collection<java.awt.geom.Area>>>(
+				buildings.size());
+		try {
+			for (Future<Map<Road, Collection<java.awt.geom.Area>>> next : futures) {
+				result.add(next.get());
+				if (gui != null) {
+					gui.bumpBlock();
+				}
+			}
+		} catch (InterruptedException e) {
+			Logger.error("Interrupted while creating blockages");
+			for (Future<Map<Road, Collection<java.awt.geom.Area>>> next : futures) {
+				next.cancel(true);
+			}
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Error creating blockages",
+					e.getCause());
+		}
+		return result;
+	}
+
 	private Collection<Building> doEarthquakeCollapse(ChangeSet changes) {
 		Map<StandardEntityConstants.BuildingCode, Map<CollapseDegree, Integer>> count = new EnumMap<StandardEntityConstants.BuildingCode, Map<CollapseDegree, Integer>>(
 				StandardEntityConstants.BuildingCode.class);
@@ -461,10 +567,12 @@ public class CollapseSimulator extends StandardSimulator implements
 		return result;
 	}
 
-	private void createBlockages(Building b,
-			Map<Road, Collection<java.awt.geom.Area>> roadBlockages, int time) {
-		long t = System.currentTimeMillis();
-		Logger.debug("Creating blockages for " + b);
+	/**
+	 * Work out how far the walls of a collapsed building extend. This draws
+	 * from the random extent generator and updates the collapse ratio of the
+	 * building so it must be called serially and in a fixed order.
+	 */
+	private double computeCollapseExtent(Building b, int time) {
 		/*
 		 * Aftershock's Requirement@2103: this checks the ratio of the
 		 * building's floors that is possible to collapsed
@@ -487,12 +595,37 @@ public class CollapseSimulator extends StandardSimulator implements
 		/* Aftershock's Requirement: 2013 */
 		double d = remainingfloors * (damage / (double) MAX_COLLAPSE)
 				* currentExtent;
-		t1 += System.currentTimeMillis() - t;
-		t = System.currentTimeMillis();
 		/* Aftershock's Requirement: 2013 */
 		model().getCSBuiding(b).increaseCollapseRatio(
 				(float) (d / model().getCSBuiding(b).getTotalCollapse(
 						floorHeight)));
+		return d;
+	}
+
+	/**
+	 * Find the area covered by existing blockades that new blockades must not
+	 * overlap.
+	 */
+	private java.awt.geom.Area findExistingBlockades() {
+		java.awt.geom.Area existing = new java.awt.geom.Area();
+		if (policy.equals(CollapsePolicy.MERGE_BLOCKADES)) {
+			for (StandardEntity e : model
+					.getEntitiesOfType(StandardEntityURN.BLOCKADE)) {
+				Blockade blockade = (Blockade) e;
+				existing.add(blockadeToArea(blockade));
+			}
+		}
+		return existing;
+	}
+
+	/**
+	 * Compute the blockages a collapsed building places on surrounding roads.
+	 * This only reads the world model and may be called concurrently for
+	 * different buildings.
+	 */
+	private Map<Road, Collection<java.awt.geom.Area>> createBlockages(
+			Building b, double d, java.awt.geom.Area existingBlockades) {
+		Logger.debug("Creating blockages for " + b);
 		// Place some blockages on surrounding roads
 		List<java.awt.geom.Area> wallAreas = new ArrayList<java.awt.geom.Area>();
 		// Project each wall out and build a list of wall areas
@@ -510,28 +643,10 @@ public class CollapseSimulator extends StandardSimulator implements
 		 * Color.RED, true), new ShapeDebugFrame.AWTShapeInfo(fullArea,
 		 * "Expanded building area (d = " + d + ")", Color.BLACK, false) );
 		 */
-		// Find existing blockade areas
-		java.awt.geom.Area existing = new java.awt.geom.Area();
-		if (policy.equals(CollapsePolicy.MERGE_BLOCKADES)) {
-			for (StandardEntity e : model
-					.getEntitiesOfType(StandardEntityURN.BLOCKADE)) {
-				Blockade blockade = (Blockade) e;
-				existing.add(blockadeToArea(blockade));
-			}
-		}
-		t2 += System.currentTimeMillis() - t;
+		// Each building accumulates into its own copy of the existing area
+		java.awt.geom.Area existing = new java.awt.geom.Area(existingBlockades);
 		// Intersect wall areas with roads
-		t = System.currentTimeMillis();
-		Map<Road, Collection<java.awt.geom.Area>> blockadesForRoads = createRoadBlockades(
-				fullArea, existing);
-		t3 += System.currentTimeMillis() - t;
-		// Add to roadBlockages
-		for (Map.Entry<Road, Collection<java.awt.geom.Area>> entry : blockadesForRoads
-				.entrySet()) {
-			Road r = entry.getKey();
-			Collection<java.awt.geom.Area> c = entry.getValue();
-			roadBlockages.get(r).addAll(c);
-		}
+		return createRoadBlockades(fullArea, existing);
 	}
 
 	private void projectWall(Edge edge,
@@ -585,11 +700,16 @@ public class CollapseSimulator extends StandardSimulator implements
 
 	private Map<Road, Collection<java.awt.geom.Area>> createRoadBlockades(
 			java.awt.geom.Area buildingArea, java.awt.geom.Area existing) {
-		Map<Road, Collection<java.awt.geom.Area>> result = new HashMap<Road, Collection<java.awt.geom.Area>>();
+		Map<Road, Collection<java.awt.geom.Area>> result = new LinkedHashMap<Road, Collection<java.awt.geom.Area>>();
 		java.awt.Rectangle rectangle = buildingArea.getBounds();
-		Collection<StandardEntity> roads = model.getObjectsInRectangle(
-				(int) rectangle.getMinX(), (int) rectangle.getMinY(),
-				(int) rectangle.getMaxX(), (int) rectangle.getMaxY());
+		List<StandardEntity> roads;
+		// The RTree is not safe for concurrent queries
+		synchronized (model) {
+			roads = EntityTools.sortedList(new ArrayList<StandardEntity>(model
+					.getObjectsInRectangle((int) rectangle.getMinX(),
+							(int) rectangle.getMinY(), (int) rectangle.getMaxX(),
+							(int) rectangle.getMaxY())));
+		}
 		for (StandardEntity e : roads) {
 			if (!(e instanceof Road)) {
 				continue;
@@ -0,0 +1,414 @@
+package gis2;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import maps.CoordinateConversion;
+import maps.MapException;
+import maps.MapReader;
+import maps.ScaleConversion;
+import maps.gml.GMLBuilding;
+import maps.gml.GMLCoordinates;
+import maps.gml.GMLDirectedEdge;
+import maps.gml.GMLMap;
+import maps.gml.GMLRoad;
+import maps.gml.GMLShape;
+
+import rescuecore2.log.Logger;
+import rescuecore2.misc.geometry.GeometryTools2D;
+import rescuecore2.misc.geometry.Point2D;
+import rescuecore2.standard.entities.Edge;
+import rescuecore2.worldmodel.EntityID;
+
+/**
+   The buildings and roads of a GML map after conversion to world coordinates. Compiled maps can be saved next to the GML file in a compact binary form so that later runs on the same map do not have to parse and convert the GML again. A saved map records a hash of the GML file it was compiled from and is ignored if the GML file changes.
+ */
+public final class CompiledMap {
+    /** The suffix added to the GML file name to get the name of the compiled map. */
+    public static final String SUFFIX = ".compiled";
+
+    private static final int MAGIC = 0x52434D43;
+    private static final int VERSION = 1;
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 65536;
+    private static final double SQ_MM_TO_SQ_M = 0.000001;
+    private static final int MM_PER_M = 1000;
+
+    private final List<AreaData> buildings;
+    private final List<AreaData> roads;
+
+    private CompiledMap(List<AreaData> buildings, List<AreaData> roads) {
+        this.buildings = Collections.unmodifiableList(buildings);
+        this.roads = Collections.unmodifiableList(roads);
+    }
+
+    /**
+       Get the buildings in this map. Floors and building codes are the values from the GML file.
+       @return The buildings.
+    */
+    public List<AreaData> getBuildings() {
+        return buildings;
+    }
+
+    /**
+       Get the roads in this map.
+       @return The roads.
+    */
+    public List<AreaData> getRoads() {
+        return roads;
+    }
+
+    /**
+       Convert a GML map.
+       @param map The map to convert.
+       @return A new CompiledMap.
+    */
+    public static CompiledMap compile(GMLMap map) {
+        CoordinateConversion conversion = new ScaleConversion(map.getMinX(), map.getMinY(), MM_PER_M, MM_PER_M);
+        List<AreaData> buildings = new ArrayList<AreaData>();
+        List<AreaData> roads = new ArrayList<AreaData>();
+        for (GMLBuilding next : map.getBuildings()) {
+            List<Point2D> vertices = convertShapeToPoints(next, conversion);
+            double area = GeometryTools2D.computeArea(vertices) * SQ_MM_TO_SQ_M;
+            Point2D centroid = GeometryTools2D.computeCentroid(vertices);
+            buildings.add(new AreaData(next.getID(), (int)centroid.getX(), (int)centroid.getY(), createEdges(next, conversion),
+                                       next.getFloors(), next.getCode(), next.getImportance(), (int)Math.abs(area)));
+        }
+        for (GMLRoad next : map.getRoads()) {
+            List<Point2D> vertices = convertShapeToPoints(next, conversion);
+            Point2D centroid = GeometryTools2D.computeCentroid(vertices);
+            roads.add(new AreaData(next.getID(), (int)centroid.getX(), (int)centroid.getY(), createEdges(next, conversion), 0, 0, 0, 0));
+        }
+        return new CompiledMap(buildings, roads);
+    }
+
+    /**
+       Read a GML map file, using the compiled map saved next to it if there is an up to date one. If there is not then the GML file is read and compiled and the result is saved for next time.
+       @param mapFile The GML file.
+       @return The compiled map.
+       @throws MapException If the map cannot be read.
+    */
+    public static CompiledMap read(File mapFile) throws MapException {
+        byte[] hash;
+        try {
+            hash = hash(mapFile);
+        }
+        catch (IOException e) {
+            throw new MapException(e);
+        }
+        File compiledFile = new File(mapFile.getPath() + SUFFIX);
+        if (compiledFile.exists()) {
+            try {
+                CompiledMap result = read(compiledFile, hash);
+                if (result != null) {
+                    Logger.debug("Read compiled map " + compiledFile.getPath());
+                    return result;
+                }
+                Logger.info("Compiled map " + compiledFile.getPath() + " is out of date");
+            }
+            catch (IOException e) {
+                Logger.warn("Couldn't read compiled map " + compiledFile.getPath(), e);
+            }
+        }
+        CompiledMap result = compile((GMLMap)MapReader.readMap(mapFile));
+        try {
+            result.write(compiledFile, hash);
+            Logger.info("Wrote compiled map " + compiledFile.getPath());
+        }
+        catch (IOException e) {
+            Logger.warn("Couldn't write compiled map " + compiledFile.getPath(), e);
+        }
+        return result;
+    }
+
+    /**
+       Save this map in binary form.
+       @param file The file to write to.
+       @param hash The hash of the GML file this map was compiled from.
+       @throws IOException If there is a problem writing the file.
+    */
+    public void write(File file, byte[] hash) throws IOException {
+        // Write to a temporary file first so that other processes never see a partial file
+        File parent = file.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile(file.getName(), ".tmp", parent);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), BUFFER_SIZE));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(hash.length);
+                out.write(hash);
+                out.writeInt(buildings.size());
+                for (AreaData next : buildings) {
+                    writeArea(next, out);
+                    out.writeInt(next.floors);
+                    out.writeInt(next.code);
+                    out.writeInt(next.importance);
+                    out.writeInt(next.groundArea);
+                }
+                out.writeInt(roads.size());
+                for (AreaData next : roads) {
+                    writeArea(next, out);
+                }
+            }
+            finally {
+                out.close();
+            }
+            if (!temp.renameTo(file)) {
+                // Some platforms will not rename over an existing file
+                if (!file.delete() || !temp.renameTo(file)) {
+                    throw new IOException("Couldn't rename " + temp.getPath() + " to " + file.getPath());
+                }
+            }
+        }
+        finally {
+            if (temp.exists() && !temp.delete()) {
+                Logger.warn("Couldn't delete " + temp.getPath());
+            }
+        }
+    }
+
+    /**
+       Read a map saved by {@link #write(File, byte[])}. The whole file is read in one go.
+       @param file The file to read.
+       @param hash The hash of the GML file the map should have been compiled from.
+       @return The compiled map, or null if the file was written by a different version or compiled from a different GML file.
+       @throws IOException If there is a problem reading the file.
+    */
+    public static CompiledMap read(File file, byte[] hash) throws IOException {
+        long length = file.length();
+        if (length > Integer.MAX_VALUE) {
+            return null;
+        }
+        byte[] bytes = new byte[(int)length];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(bytes);
+        }
+        finally {
+            in.close();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            byte[] storedHash = new byte[buffer.getInt()];
+            buffer.get(storedHash);
+            if (!Arrays.equals(hash, storedHash)) {
+                return null;
+            }
+            int count = buffer.getInt();
+            List<AreaData> buildings = new ArrayList<AreaData>(count);
+            for (int i = 0; i < count; ++i) {
+                int id = buffer.getInt();
+                int x = buffer.getInt();
+                int y = buffer.getInt();
+                List<Edge> edges = readEdges(buffer);
+                buildings.add(new AreaData(id, x, y, edges, buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt()));
+            }
+            count = buffer.getInt();
+            List<AreaData> roads = new ArrayList<AreaData>(count);
+            for (int i = 0; i < count; ++i) {
+                int id = buffer.getInt();
+                int x = buffer.getInt();
+                int y = buffer.getInt();
+                roads.add(new AreaData(id, x, y, readEdges(buffer), 0, 0, 0, 0));
+            }
+            if (buffer.hasRemaining()) {
+                throw new IOException("Unexpected data at end of compiled map");
+            }
+            return new CompiledMap(buildings, roads);
+        }
+        catch (BufferUnderflowException e) {
+            throw new IOException("Compiled map is truncated", e);
+        }
+    }
+
+    /**
+       Compute the hash of a GML file that is recorded in compiled maps.
+       @param file The GML file.
+       @return The hash of the file contents.
+       @throws IOException If there is a problem reading the file.
+    */
+    public static byte[] hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        finally {
+            in.close();
+        }
+        return digest.digest();
+    }
+
+    private static void writeArea(AreaData area, DataOutputStream out) throws IOException {
+        out.writeInt(area.id);
+        out.writeInt(area.x);
+        out.writeInt(area.y);
+        out.writeInt(area.edges.size());
+        for (Edge next : area.edges) {
+            out.writeInt(next.getStartX());
+            out.writeInt(next.getStartY());
+            out.writeInt(next.getEndX());
+            out.writeInt(next.getEndY());
+            EntityID neighbour = next.getNeighbour();
+            out.writeBoolean(neighbour != null);
+            if (neighbour != null) {
+                out.writeInt(neighbour.getValue());
+            }
+        }
+    }
+
+    private static List<Edge> readEdges(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        List<Edge> result = new ArrayList<Edge>(count);
+        for (int i = 0; i < count; ++i) {
+            int sx = buffer.getInt();
+            int sy = buffer.getInt();
+            int ex = buffer.getInt();
+            int ey = buffer.getInt();
+            EntityID neighbour = buffer.get() != 0 ? new EntityID(buffer.getInt()) : null;
+            result.add(new Edge(sx, sy, ex, ey, neighbour));
+        }
+        return result;
+    }
+
+    private static List<Edge> createEdges(GMLShape s, CoordinateConversion conversion) {
+        List<Edge> result = new ArrayList<Edge>();
+        for (GMLDirectedEdge edge : s.getEdges()) {
+            GMLCoordinates start = edge.getStartCoordinates();
+            GMLCoordinates end = edge.getEndCoordinates();
+            Integer neighbourID = s.getNeighbour(edge);
+            EntityID id = neighbourID == null ? null : new EntityID(neighbourID);
+            double sx = conversion.convertX(start.getX());
+            double sy = conversion.convertY(start.getY());
+            double ex = conversion.convertX(end.getX());
+            double ey = conversion.convertY(end.getY());
+            result.add(new Edge((int)sx, (int)sy, (int)ex, (int)ey, id));
+        }
+        return result;
+    }
+
+    private static List<Point2D> convertShapeToPoints(GMLShape shape, CoordinateConversion conversion) {
+        List<Point2D> points = new ArrayList<Point2D>();
+        for (GMLCoordinates next : shape.getCoordinates()) {
+            points.add(new Point2D(conversion.convertX(next.getX()), conversion.convertY(next.getY())));
+        }
+        return points;
+    }
+
+    /**
+       The converted geometry and attributes of a building or road.
+    */
+    public static final class AreaData {
+        private final int id;
+        private final int x;
+        private final int y;
+        private final List<Edge> edges;
+        private final int floors;
+        private final int code;
+        private final int importance;
+        private final int groundArea;
+
+        AreaData(int id, int x, int y, List<Edge> edges, int floors, int code, int importance, int groundArea) {
+            this.id = id;
+            this.x = x;
+            this.y = y;
+            this.edges = Collections.unmodifiableList(edges);
+            this.floors = floors;
+            this.code = code;
+            this.importance = importance;
+            this.groundArea = groundArea;
+        }
+
+        /**
+           Get the ID of the area.
+           @return The ID.
+        */
+        public EntityID getID() {
+            return new EntityID(id);
+        }
+
+        /**
+           Get the x coordinate of the centroid.
+           @return The x coordinate.
+        */
+        public int getX() {
+            return x;
+        }
+
+        /**
+           Get the y coordinate of the centroid.
+           @return The y coordinate.
+        */
+        public int getY() {
+            return y;
+        }
+
+        /**
+           Get the edges of the area.
+           @return The edges.
+        */
+        public List<Edge> getEdges() {
+            return edges;
+        }
+
+        /**
+           Get the number of floors given in the GML file. Only meaningful for buildings.
+           @return The number of floors.
+        */
+        public int getFloors() {
+            return floors;
+        }
+
+        /**
+           Get the building code given in the GML file. Only meaningful for buildings.
+           @return The building code.
+        */
+        public int getCode() {
+            return code;
+        }
+
+        /**
+           Get the importance of the building. Only meaningful for buildings.
+           @return The importance.
+        */
+        public int getImportance() {
+            return importance;
+        }
+
+        /**
+           Get the ground area of the building in square metres. Only meaningful for buildings.
+           @return The ground area.
+        */
+        public int getGroundArea() {
+            return groundArea;
+        }
+    }
+}
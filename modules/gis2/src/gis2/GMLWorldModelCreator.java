@@ -7,8 +7,6 @@ import rescuecore2.config.Config;
 import rescuecore2.worldmodel.WorldModel;
 import rescuecore2.worldmodel.Entity;
 import rescuecore2.worldmodel.EntityID;
-import rescuecore2.misc.geometry.Point2D;
-import rescuecore2.misc.geometry.GeometryTools2D;
 import rescuecore2.log.Logger;
 
 import rescuecore2.scenario.Scenario;
@@ -21,15 +19,7 @@ import rescuecore2.standard.entities.Edge;
 import maps.MapReader;
 import maps.MapException;
 import maps.gml.GMLMap;
-import maps.gml.GMLDirectedEdge;
-import maps.gml.GMLBuilding;
-import maps.gml.GMLRoad;
-import maps.gml.GMLShape;
-import maps.gml.GMLCoordinates;
-import maps.CoordinateConversion;
-import maps.ScaleConversion;
 
-import java.util.List;
 import java.util.ArrayList;
 
 import org.dom4j.Document;
@@ -55,8 +45,8 @@ public class GMLWorldModelCreator implements WorldModelCreator {
 	private static final String BUILDING_CODE_PLACEMENT_TYPE = "gis.map.building-code-placement.random";
 	private static final String RANDOM_BUILDING_CODE_RATE = "gis.map.building-code-placement.random.code-rate.";
 	private static final String MAX_BUILDING_CODE = "gis.map.max-building-code";
-	
-	private static final double SQ_MM_TO_SQ_M = 0.000001;
+	// Whether to keep a precompiled copy of the map next to the GML file
+	private static final String COMPILED_CACHE_KEY = "gis.map.compiled-cache";
 
 	private GisScenario scenario;
 	// CHECKSTYLE:OFF:MagicNumber
@@ -134,24 +124,19 @@ public class GMLWorldModelCreator implements WorldModelCreator {
 			}
 		}
 
-		
-		GMLMap map = (GMLMap) MapReader.readMap(mapFile);
-		CoordinateConversion conversion = getCoordinateConversion(map);
+		CompiledMap map;
+		if (config.getBooleanValue(COMPILED_CACHE_KEY, true)) {
+			map = CompiledMap.read(mapFile);
+		} else {
+			map = CompiledMap.compile((GMLMap) MapReader.readMap(mapFile));
+		}
 		Logger.debug("Creating entities");
 		Logger.debug(map.getBuildings().size() + " buildings");
 		Logger.debug(map.getRoads().size() + " roads");
 		
-		for (GMLBuilding next : map.getBuildings()) {
+		for (CompiledMap.AreaData next : map.getBuildings()) {
 			// Create a new Building entity
-			EntityID id = new EntityID(next.getID());
-			Building b = new Building(id);
-			List<Point2D> vertices = convertShapeToPoints(next, conversion);
-			double area = GeometryTools2D.computeArea(vertices) * SQ_MM_TO_SQ_M;
-			Point2D centroid = GeometryTools2D.computeCentroid(vertices);
-
-			// Logger.debug("Building vertices: " + vertices);
-			// Logger.debug("Area: " + area);
-			// Logger.debug("Centroid: " + centroid);
+			Building b = new Building(next.getID());
 
 			// Building properties
 			int floors = Math.min(maxFloor, next.getFloors());
@@ -181,33 +166,24 @@ public class GMLWorldModelCreator implements WorldModelCreator {
 			b.setBrokenness(0);
 			b.setBuildingCode(code);
 			b.setBuildingAttributes(0);
-			b.setGroundArea((int) Math.abs(area));
-			b.setTotalArea(((int) Math.abs(area)) * b.getFloors());
+			b.setGroundArea(next.getGroundArea());
+			b.setTotalArea(next.getGroundArea() * b.getFloors());
 			b.setImportance(next.getImportance());
 			// Area properties
-			b.setEdges(createEdges(next, conversion));
-			b.setX((int) centroid.getX());
-			b.setY((int) centroid.getY());
+			b.setEdges(new ArrayList<Edge>(next.getEdges()));
+			b.setX(next.getX());
+			b.setY(next.getY());
 			result.addEntity(b);
-			// Logger.debug(b.getFullDescription());
 		}
-		for (GMLRoad next : map.getRoads()) {
+		for (CompiledMap.AreaData next : map.getRoads()) {
 			// Create a new Road entity
-			EntityID id = new EntityID(next.getID());
-			Road r = new Road(id);
-			List<Point2D> vertices = convertShapeToPoints(next, conversion);
-			Point2D centroid = GeometryTools2D.computeCentroid(vertices);
-
-			// Logger.debug("Road vertices: " + vertices);
-			// Logger.debug("Centroid: " + centroid);
-
+			Road r = new Road(next.getID());
 			// Road properties: None
 			// Area properties
-			r.setX((int) centroid.getX());
-			r.setY((int) centroid.getY());
-			r.setEdges(createEdges(next, conversion));
+			r.setX(next.getX());
+			r.setY(next.getY());
+			r.setEdges(new ArrayList<Edge>(next.getEdges()));
 			result.addEntity(r);
-			// Logger.debug(b.getFullDescription());
 		}
 	}
 
@@ -231,41 +207,6 @@ public class GMLWorldModelCreator implements WorldModelCreator {
 		}
 	}
 
-	private List<Edge> createEdges(GMLShape s, CoordinateConversion conversion) {
-		// Logger.debug("Computing edges for " + s);
-		List<Edge> result = new ArrayList<Edge>();
-		for (GMLDirectedEdge edge : s.getEdges()) {
-			GMLCoordinates start = edge.getStartCoordinates();
-			GMLCoordinates end = edge.getEndCoordinates();
-			Integer neighbourID = s.getNeighbour(edge);
-			EntityID id = neighbourID == null ? null
-					: new EntityID(neighbourID);
-			// Logger.debug("Edge: " + start + " -> " + end);
-			double sx = conversion.convertX(start.getX());
-			double sy = conversion.convertY(start.getY());
-			double ex = conversion.convertX(end.getX());
-			double ey = conversion.convertY(end.getY());
-			// Logger.debug(edge.getEdge() + " : " + sx + "," + sy + " -> " + ex
-			// + "," + ey);
-			result.add(new Edge((int) sx, (int) sy, (int) ex, (int) ey, id));
-		}
-		return result;
-	}
-
-	private List<Point2D> convertShapeToPoints(GMLShape shape,
-			CoordinateConversion conversion) {
-		List<Point2D> points = new ArrayList<Point2D>();
-		for (GMLCoordinates next : shape.getCoordinates()) {
-			points.add(new Point2D(conversion.convertX(next.getX()), conversion
-					.convertY(next.getY())));
-		}
-		return points;
-	}
-
-	private CoordinateConversion getCoordinateConversion(GMLMap map) {
-		return new ScaleConversion(map.getMinX(), map.getMinY(), 1000, 1000);
-	}
-
 	public GisScenario getScenario(Config config) throws DocumentException{
 
 		if (scenario == null) {
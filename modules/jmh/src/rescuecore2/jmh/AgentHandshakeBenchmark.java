@@ -0,0 +1,97 @@
+package rescuecore2.jmh;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kernel.KernelException;
+
+import rescuecore2.config.Config;
+import rescuecore2.config.ConfigException;
+import rescuecore2.messages.components.EncodedEntityList;
+import rescuecore2.messages.control.KAConnectOK;
+import rescuecore2.worldmodel.Entity;
+
+import rescuecore2.standard.entities.Human;
+import rescuecore2.standard.entities.StandardWorldModel;
+
+/**
+   Building and writing the KAConnectOK messages sent to every agent at startup, with the initial world encoded for each agent and with it encoded once and shared.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class AgentHandshakeBenchmark {
+    @Param({"test", "sakae"})
+    private String map;
+
+    private Collection<Entity> initial;
+    private List<Human> agents;
+    private Config config;
+
+    /**
+       Read the map.
+       @throws KernelException If the map cannot be read.
+       @throws ConfigException If the map's config cannot be read.
+    */
+    @Setup
+    public void setup() throws KernelException, ConfigException {
+        StandardWorldModel world = MapFixture.load(map);
+        initial = new ArrayList<Entity>(world.getAllEntities());
+        agents = MapFixture.humans(world);
+        config = new Config();
+        config.setValue("kernel.agents.think-time", "1000");
+    }
+
+    /**
+       Encode the whole initial world separately for each agent.
+       @return The number of bytes written.
+       @throws IOException If encoding fails.
+    */
+    @Benchmark
+    public long perAgent() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        for (Human next : agents) {
+            Set<Entity> entities = new HashSet<Entity>(initial);
+            entities.remove(next);
+            entities.add(next);
+            new KAConnectOK(1, next.getID(), entities, config).write(out);
+        }
+        return out.getCount();
+    }
+
+    /**
+       Encode the initial world once and share it between all agents.
+       @return The number of bytes written.
+       @throws IOException If encoding fails.
+    */
+    @Benchmark
+    public long shared() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        EncodedEntityList entities = new EncodedEntityList(initial);
+        for (Human next : agents) {
+            new KAConnectOK(1, next.getID(), entities, Collections.singleton(next), config).write(out);
+        }
+        return out.getCount();
+    }
+}
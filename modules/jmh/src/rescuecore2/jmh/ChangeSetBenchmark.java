@@ -0,0 +1,100 @@
+package rescuecore2.jmh;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kernel.KernelException;
+
+import rescuecore2.config.ConfigException;
+import rescuecore2.misc.DecodingInputStream;
+import rescuecore2.registry.DecodingContext;
+import rescuecore2.registry.Registry;
+import rescuecore2.worldmodel.ChangeSet;
+
+import rescuecore2.standard.entities.StandardPropertyFactory;
+import rescuecore2.standard.entities.StandardWorldModel;
+
+/**
+   Merging, writing and reading a ChangeSet that contains every property in a map.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ChangeSetBenchmark {
+    @Param({"test", "sakae"})
+    private String map;
+
+    private ChangeSet everything;
+    private byte[] encoded;
+    private ByteArrayOutputStream out;
+    private DecodingContext context;
+
+    /**
+       Read the map and encode its ChangeSet.
+       @throws KernelException If the map cannot be read.
+       @throws ConfigException If the map's config cannot be read.
+       @throws IOException If encoding fails.
+    */
+    @Setup
+    public void setup() throws KernelException, ConfigException, IOException {
+        StandardWorldModel world = MapFixture.load(map);
+        everything = MapFixture.everything(world);
+        out = new ByteArrayOutputStream();
+        everything.write(out);
+        encoded = out.toByteArray();
+        Registry registry = new Registry("Benchmark");
+        registry.registerPropertyFactory(StandardPropertyFactory.INSTANCE);
+        context = registry.getDecodingContext();
+    }
+
+    /**
+       Merge the ChangeSet into an empty one.
+       @return The merged ChangeSet.
+    */
+    @Benchmark
+    public ChangeSet merge() {
+        ChangeSet result = new ChangeSet();
+        result.merge(everything);
+        return result;
+    }
+
+    /**
+       Write the ChangeSet.
+       @return The number of bytes written.
+       @throws IOException If encoding fails.
+    */
+    @Benchmark
+    public int write() throws IOException {
+        out.reset();
+        everything.write(out);
+        return out.size();
+    }
+
+    /**
+       Read the ChangeSet.
+       @return The ChangeSet that was read.
+       @throws IOException If decoding fails.
+    */
+    @Benchmark
+    public ChangeSet read() throws IOException {
+        ChangeSet result = new ChangeSet();
+        result.read(new DecodingInputStream(encoded, context));
+        return result;
+    }
+}
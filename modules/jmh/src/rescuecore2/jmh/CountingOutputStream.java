@@ -0,0 +1,28 @@
+package rescuecore2.jmh;
+
+import java.io.OutputStream;
+
+/**
+   An OutputStream that discards its output and counts the bytes written, so benchmarks that write large messages do not measure copying into a buffer.
+ */
+final class CountingOutputStream extends OutputStream {
+    private long count;
+
+    @Override
+    public void write(int b) {
+        ++count;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        count += len;
+    }
+
+    /**
+       Get the number of bytes written so far.
+       @return The number of bytes written.
+    */
+    long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,125 @@
+package rescuecore2.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kernel.KernelException;
+
+import rescuecore2.config.ConfigException;
+import rescuecore2.messages.Command;
+import rescuecore2.messages.Message;
+import rescuecore2.messages.control.KASense;
+import rescuecore2.misc.DecodingInputStream;
+import rescuecore2.misc.EncodingTools;
+import rescuecore2.registry.DecodingContext;
+import rescuecore2.registry.Registry;
+import rescuecore2.worldmodel.Property;
+
+import rescuecore2.standard.entities.Area;
+import rescuecore2.standard.entities.Human;
+import rescuecore2.standard.entities.StandardEntityFactory;
+import rescuecore2.standard.entities.StandardPropertyFactory;
+import rescuecore2.standard.entities.StandardWorldModel;
+
+/**
+   Round trips through EncodingTools: an int, a string, an area's edges and a KASense message containing the whole world.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EncodingToolsBenchmark {
+    @Param({"test", "sakae"})
+    private String map;
+
+    private ByteArrayOutputStream out;
+    private DecodingContext context;
+    private String urn;
+    private Property edges;
+    private KASense sense;
+
+    /**
+       Read the map and build the values to encode.
+       @throws KernelException If the map cannot be read.
+       @throws ConfigException If the map's config cannot be read.
+    */
+    @Setup
+    public void setup() throws KernelException, ConfigException {
+        StandardWorldModel world = MapFixture.load(map);
+        Registry registry = new Registry("Benchmark");
+        registry.registerEntityFactory(StandardEntityFactory.INSTANCE);
+        registry.registerPropertyFactory(StandardPropertyFactory.INSTANCE);
+        context = registry.getDecodingContext();
+        out = new ByteArrayOutputStream();
+        Area area = MapFixture.areas(world).get(0);
+        urn = area.getURN();
+        edges = area.getEdgesProperty();
+        Human agent = MapFixture.humans(world).get(0);
+        sense = new KASense(agent.getID(), 1, MapFixture.everything(world), Collections.<Command>emptyList());
+    }
+
+    /**
+       Write and read an int.
+       @return The int that was read.
+       @throws IOException If encoding fails.
+    */
+    @Benchmark
+    public int intRoundTrip() throws IOException {
+        out.reset();
+        EncodingTools.writeInt32(out.size() + 1, out);
+        return EncodingTools.readInt32(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    /**
+       Write and read an entity URN.
+       @return The string that was read.
+       @throws IOException If encoding fails.
+    */
+    @Benchmark
+    public String stringRoundTrip() throws IOException {
+        out.reset();
+        EncodingTools.writeString(urn, out);
+        return EncodingTools.readString(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    /**
+       Write and read an edge list property.
+       @return The property that was read.
+       @throws IOException If encoding fails.
+    */
+    @Benchmark
+    public Property propertyRoundTrip() throws IOException {
+        out.reset();
+        EncodingTools.writeProperty(edges, out);
+        return EncodingTools.readProperty(new DecodingInputStream(out.toByteArray(), context));
+    }
+
+    /**
+       Write and read a KASense message that contains every entity.
+       @return The message that was read.
+       @throws IOException If encoding fails.
+    */
+    @Benchmark
+    public Message messageRoundTrip() throws IOException {
+        out.reset();
+        EncodingTools.writeMessage(sense, out);
+        return EncodingTools.readMessage(new DecodingInputStream(out.toByteArray(), context));
+    }
+}
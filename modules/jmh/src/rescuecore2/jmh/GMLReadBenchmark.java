@@ -0,0 +1,157 @@
+package rescuecore2.jmh;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.dom4j.DocumentException;
+import org.dom4j.io.SAXReader;
+
+import maps.MapException;
+import maps.gml.GMLMap;
+import maps.gml.formats.RobocupFormat;
+
+/**
+   Reading a GML map by building a DOM first and with the single-pass streaming reader. The peak benchmarks read the map once per iteration and report the peak heap used by the read as the peakHeapMB counter. Run with -prof gc to compare allocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class GMLReadBenchmark {
+    private static final double BYTES_PER_MB = 1024 * 1024;
+
+    @Param({"test", "sakae"})
+    private String map;
+
+    private File file;
+
+    /**
+       Find the map file.
+    */
+    @Setup
+    public void setup() {
+        file = new File(new File(MapFixture.directory(map), "map"), "map.gml");
+    }
+
+    /**
+       Parse the map into a Document and build the map from that.
+       @return The map that was read.
+       @throws IOException If the file cannot be read.
+       @throws DocumentException If the XML cannot be parsed.
+       @throws MapException If the map cannot be built.
+    */
+    @Benchmark
+    public GMLMap readDocument() throws IOException, DocumentException, MapException {
+        Reader r = new FileReader(file);
+        try {
+            return RobocupFormat.INSTANCE.read(new SAXReader().read(r));
+        }
+        finally {
+            r.close();
+        }
+    }
+
+    /**
+       Read the map with the streaming reader.
+       @return The map that was read.
+       @throws MapException If the map cannot be read.
+    */
+    @Benchmark
+    public GMLMap readStream() throws MapException {
+        return RobocupFormat.INSTANCE.read(file);
+    }
+
+    /**
+       Read the map through a Document once and record the peak heap use.
+       @param heap The peak heap counter.
+       @return The map that was read.
+       @throws IOException If the file cannot be read.
+       @throws DocumentException If the XML cannot be parsed.
+       @throws MapException If the map cannot be built.
+    */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 10)
+    public GMLMap peakDocument(PeakHeap heap) throws IOException, DocumentException, MapException {
+        return readDocument();
+    }
+
+    /**
+       Read the map with the streaming reader once and record the peak heap use.
+       @param heap The peak heap counter.
+       @return The map that was read.
+       @throws MapException If the map cannot be read.
+    */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 10)
+    public GMLMap peakStream(PeakHeap heap) throws MapException {
+        return readStream();
+    }
+
+    /**
+       The peak heap use of a single read. The heap is collected and the peak usage of each heap memory pool is reset before the read. The pools may peak at different times so the sum of their peaks is an upper bound.
+    */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PeakHeap {
+        /** The peak heap use above the heap in use before the read, in MB. */
+        public double peakHeapMB;
+
+        private long before;
+
+        /**
+           Collect garbage and reset the peak usage of the heap.
+        */
+        @Setup(Level.Invocation)
+        public void reset() {
+            System.gc();
+            before = 0;
+            for (MemoryPoolMXBean next : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (next.getType() == MemoryType.HEAP) {
+                    next.resetPeakUsage();
+                    before += next.getUsage().getUsed();
+                }
+            }
+        }
+
+        /**
+           Record the peak heap use since the last reset.
+        */
+        @TearDown(Level.Invocation)
+        public void record() {
+            long peak = 0;
+            for (MemoryPoolMXBean next : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (next.getType() == MemoryType.HEAP) {
+                    peak += next.getPeakUsage().getUsed();
+                }
+            }
+            peakHeapMB = (peak - before) / BYTES_PER_MB;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package rescuecore2.jmh;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kernel.KernelException;
+
+import rescuecore2.config.ConfigException;
+import rescuecore2.misc.geometry.GeometryTools2D;
+import rescuecore2.misc.geometry.Line2D;
+import rescuecore2.misc.geometry.Point2D;
+
+import rescuecore2.standard.entities.StandardWorldModel;
+
+/**
+   Line and segment intersection tests between the edges of a map's areas. Random pairs mostly miss; neighbouring edges of the same area touch at their ends.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class GeometryTools2DBenchmark {
+    private static final int PAIRS = 1024;
+
+    @Param({"test", "sakae"})
+    private String map;
+
+    private Line2D[] randomFirst;
+    private Line2D[] randomSecond;
+    private Line2D[] neighbourFirst;
+    private Line2D[] neighbourSecond;
+    private int next;
+
+    /**
+       Read the map and pick pairs of edges.
+       @throws KernelException If the map cannot be read.
+       @throws ConfigException If the map's config cannot be read.
+    */
+    @Setup
+    public void setup() throws KernelException, ConfigException {
+        StandardWorldModel world = MapFixture.load(map);
+        List<Line2D> edges = MapFixture.edges(world);
+        Random random = MapFixture.random();
+        randomFirst = new Line2D[PAIRS];
+        randomSecond = new Line2D[PAIRS];
+        neighbourFirst = new Line2D[PAIRS];
+        neighbourSecond = new Line2D[PAIRS];
+        for (int i = 0; i < PAIRS; ++i) {
+            randomFirst[i] = edges.get(random.nextInt(edges.size()));
+            randomSecond[i] = edges.get(random.nextInt(edges.size()));
+            int index = random.nextInt(edges.size() - 1);
+            neighbourFirst[i] = edges.get(index);
+            neighbourSecond[i] = edges.get(index + 1);
+        }
+    }
+
+    /**
+       Intersect the next pair of random edges as segments.
+       @return The intersection point, or null.
+    */
+    @Benchmark
+    public Point2D segmentIntersectionRandom() {
+        int i = next++ % PAIRS;
+        return GeometryTools2D.getSegmentIntersectionPoint(randomFirst[i], randomSecond[i]);
+    }
+
+    /**
+       Intersect the next pair of neighbouring edges as segments.
+       @return The intersection point, or null.
+    */
+    @Benchmark
+    public Point2D segmentIntersectionNeighbours() {
+        int i = next++ % PAIRS;
+        return GeometryTools2D.getSegmentIntersectionPoint(neighbourFirst[i], neighbourSecond[i]);
+    }
+
+    /**
+       Intersect the next pair of random edges as infinite lines.
+       @return The intersection point, or null.
+    */
+    @Benchmark
+    public Point2D lineIntersection() {
+        int i = next++ % PAIRS;
+        return GeometryTools2D.getIntersectionPoint(randomFirst[i], randomSecond[i]);
+    }
+}
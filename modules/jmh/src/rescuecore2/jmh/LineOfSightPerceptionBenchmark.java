@@ -0,0 +1,75 @@
+package rescuecore2.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kernel.AgentProxy;
+import kernel.KernelException;
+
+import rescuecore2.config.Config;
+import rescuecore2.config.ConfigException;
+import rescuecore2.connection.StreamConnection;
+import rescuecore2.worldmodel.ChangeSet;
+
+import rescuecore2.standard.entities.Human;
+import rescuecore2.standard.entities.StandardWorldModel;
+import rescuecore2.standard.kernel.LineOfSightPerception;
+
+/**
+   Line of sight perception for each human in a map in turn.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LineOfSightPerceptionBenchmark {
+    @Param({"test", "sakae"})
+    private String map;
+
+    private LineOfSightPerception perception;
+    private AgentProxy[] agents;
+    private int next;
+
+    /**
+       Read the map and create an agent for every human.
+       @throws KernelException If the map cannot be read.
+       @throws ConfigException If the map's config cannot be read.
+    */
+    @Setup
+    public void setup() throws KernelException, ConfigException {
+        StandardWorldModel world = MapFixture.load(map);
+        perception = new LineOfSightPerception();
+        perception.initialise(new Config(), world);
+        List<Human> humans = MapFixture.humans(world);
+        agents = new AgentProxy[humans.size()];
+        for (int i = 0; i < agents.length; ++i) {
+            StreamConnection connection = new StreamConnection(new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream());
+            agents[i] = new AgentProxy("Benchmark agent " + i, humans.get(i), connection);
+        }
+    }
+
+    /**
+       Find the entities visible to the next agent.
+       @return The visible entities.
+    */
+    @Benchmark
+    public ChangeSet getVisibleEntities() {
+        return perception.getVisibleEntities(agents[next++ % agents.length]);
+    }
+}
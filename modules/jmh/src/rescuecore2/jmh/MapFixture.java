@@ -0,0 +1,165 @@
+package rescuecore2.jmh;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import gis2.GMLWorldModelCreator;
+
+import kernel.KernelException;
+
+import rescuecore2.config.Config;
+import rescuecore2.config.ConfigException;
+import rescuecore2.misc.geometry.Line2D;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.Property;
+
+import rescuecore2.standard.entities.Area;
+import rescuecore2.standard.entities.Building;
+import rescuecore2.standard.entities.Edge;
+import rescuecore2.standard.entities.Human;
+import rescuecore2.standard.entities.StandardEntity;
+import rescuecore2.standard.entities.StandardWorldModel;
+
+/**
+   Builds the worlds and derived data used by the benchmarks from the GML maps in maps/gml. Each map is read with the config in its own directory. Maps are found relative to the working directory unless the rescuecore2.jmh.maps system property names another directory.
+ */
+final class MapFixture {
+    /** The maps that benchmarks are run against. */
+    static final String[] MAPS = {"test", "sakae"};
+
+    private static final String MAP_ROOT_PROPERTY = "rescuecore2.jmh.maps";
+    private static final String DEFAULT_MAP_ROOT = "maps/gml";
+    private static final long SEED = 1;
+
+    private MapFixture() {}
+
+    /**
+       Read a map and its scenario.
+       @param name The name of a directory in maps/gml.
+       @return A new, indexed world model.
+       @throws KernelException If the map cannot be read.
+       @throws ConfigException If the map's config cannot be read.
+    */
+    static StandardWorldModel load(String name) throws KernelException, ConfigException {
+        File base = directory(name);
+        Config config = new Config(new File(base, "config"));
+        config.setValue("gis.map.dir", new File(base, "map").getPath());
+        // Don't write compiled maps into the source tree
+        config.setBooleanValue("gis.map.compiled-cache", false);
+        config.setValue("random.seed", String.valueOf(SEED));
+        StandardWorldModel world = StandardWorldModel.createStandardWorldModel(new GMLWorldModelCreator().buildWorldModel(config));
+        world.index();
+        return world;
+    }
+
+    /**
+       Get the directory that holds a map and its config.
+       @param name The name of a directory in maps/gml.
+       @return The map directory.
+    */
+    static File directory(String name) {
+        return new File(System.getProperty(MAP_ROOT_PROPERTY, DEFAULT_MAP_ROOT), name);
+    }
+
+    /**
+       Get a random number generator that gives the same fixtures every run.
+       @return A new Random.
+    */
+    static Random random() {
+        return new Random(SEED);
+    }
+
+    /**
+       Get all areas in a world.
+       @param world The world.
+       @return The areas.
+    */
+    static List<Area> areas(StandardWorldModel world) {
+        List<Area> result = new ArrayList<Area>();
+        for (StandardEntity next : world) {
+            if (next instanceof Area) {
+                result.add((Area)next);
+            }
+        }
+        return result;
+    }
+
+    /**
+       Get all humans in a world.
+       @param world The world.
+       @return The humans.
+    */
+    static List<Human> humans(StandardWorldModel world) {
+        List<Human> result = new ArrayList<Human>();
+        for (StandardEntity next : world) {
+            if (next instanceof Human) {
+                result.add((Human)next);
+            }
+        }
+        return result;
+    }
+
+    /**
+       Get the lines of all area edges in a world.
+       @param world The world.
+       @return The edge lines.
+    */
+    static List<Line2D> edges(StandardWorldModel world) {
+        List<Line2D> result = new ArrayList<Line2D>();
+        for (Area next : areas(world)) {
+            for (Edge edge : next.getEdges()) {
+                result.add(edge.getLine());
+            }
+        }
+        return result;
+    }
+
+    /**
+       Get a ChangeSet containing every defined property in a world, as sent in the initial world model.
+       @param world The world.
+       @return A new ChangeSet.
+    */
+    static ChangeSet everything(StandardWorldModel world) {
+        ChangeSet result = new ChangeSet();
+        for (Entity next : world) {
+            for (Property p : next.getProperties()) {
+                if (p.isDefined()) {
+                    result.addChange(next, p);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+       Get a ChangeSet like one timestep of a simulation: some buildings get hotter and every human loses some health.
+       @param world The world.
+       @param random The random number generator to use.
+       @return A new ChangeSet.
+    */
+    static ChangeSet timestep(StandardWorldModel world, Random random) {
+        ChangeSet result = new ChangeSet();
+        // CHECKSTYLE:OFF:MagicNumber
+        for (StandardEntity next : world) {
+            if (next instanceof Building && random.nextInt(10) == 0) {
+                Building b = (Building)next.copy();
+                b.setTemperature(random.nextInt(1000));
+                b.setFieryness(random.nextInt(4));
+                result.addChange(b, b.getTemperatureProperty());
+                result.addChange(b, b.getFierynessProperty());
+            }
+            if (next instanceof Human) {
+                Human h = (Human)next.copy();
+                h.setHP(random.nextInt(10000));
+                h.setDamage(random.nextInt(100));
+                result.addChange(h, h.getHPProperty());
+                result.addChange(h, h.getDamageProperty());
+            }
+        }
+        // CHECKSTYLE:ON:MagicNumber
+        return result;
+    }
+}
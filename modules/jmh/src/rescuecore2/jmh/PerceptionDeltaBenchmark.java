@@ -0,0 +1,191 @@
+package rescuecore2.jmh;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kernel.AgentProxy;
+import kernel.KernelException;
+import kernel.PerceptionDeltaFilter;
+
+import rescuecore2.config.Config;
+import rescuecore2.config.ConfigException;
+import rescuecore2.connection.StreamConnection;
+import rescuecore2.messages.Command;
+import rescuecore2.messages.control.KASense;
+import rescuecore2.misc.EncodingTools;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.EncodedPropertyCache;
+import rescuecore2.worldmodel.EntityID;
+
+import rescuecore2.standard.entities.Area;
+import rescuecore2.standard.entities.Building;
+import rescuecore2.standard.entities.Civilian;
+import rescuecore2.standard.entities.Human;
+import rescuecore2.standard.entities.StandardEntity;
+import rescuecore2.standard.entities.StandardWorldModel;
+import rescuecore2.standard.kernel.StandardPerception;
+
+/**
+   Writing the KASense messages for several timesteps of agent perception: with every visible property, with every visible property through an EncodedPropertyCache shared by all agents, and with only the properties that changed. Perception is calculated with StandardPerception while a few buildings heat up, civilians lose health and agents move.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PerceptionDeltaBenchmark {
+    private static final int TIMESTEPS = 10;
+    private static final int VIEW_DISTANCE = 10000;
+
+    @Param({"test", "sakae"})
+    private String map;
+
+    private List<EntityID> agents;
+    private List<List<ChangeSet>> visible;
+    private List<Command> heard;
+
+    /**
+       Read the map, run the timesteps and calculate what each agent sees.
+       @throws KernelException If the map cannot be read.
+       @throws ConfigException If the map's config cannot be read.
+    */
+    @Setup
+    public void setup() throws KernelException, ConfigException {
+        StandardWorldModel world = MapFixture.load(map);
+        Random random = MapFixture.random();
+        List<Area> areas = MapFixture.areas(world);
+        List<Building> buildings = new ArrayList<Building>();
+        for (StandardEntity next : world) {
+            if (next instanceof Building) {
+                buildings.add((Building)next);
+            }
+        }
+        List<Human> humans = MapFixture.humans(world);
+        List<AgentProxy> proxies = new ArrayList<AgentProxy>();
+        agents = new ArrayList<EntityID>();
+        for (Human next : humans) {
+            if (!(next instanceof Civilian)) {
+                proxies.add(new AgentProxy("Benchmark", next, new StreamConnection(new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream())));
+                agents.add(next.getID());
+            }
+        }
+        Config config = new Config();
+        config.setIntValue("perception.standard.view-distance", VIEW_DISTANCE);
+        config.setIntValue("perception.standard.far-fire-distance", VIEW_DISTANCE * 2);
+        StandardPerception perception = new StandardPerception();
+        perception.initialise(config, world);
+        visible = new ArrayList<List<ChangeSet>>();
+        for (int time = 1; time <= TIMESTEPS; ++time) {
+            change(random, areas, buildings, humans);
+            perception.setTime(time);
+            List<ChangeSet> seen = new ArrayList<ChangeSet>();
+            for (AgentProxy next : proxies) {
+                seen.add(perception.getVisibleEntities(next));
+            }
+            visible.add(seen);
+        }
+        heard = Collections.emptyList();
+    }
+
+    /**
+       Send every visible property.
+       @return The number of bytes written.
+       @throws IOException If encoding fails.
+    */
+    @Benchmark
+    public long full() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        for (int time = 1; time <= TIMESTEPS; ++time) {
+            List<ChangeSet> seen = visible.get(time - 1);
+            for (int i = 0; i < agents.size(); ++i) {
+                EncodingTools.writeMessage(new KASense(agents.get(i), time, seen.get(i), heard), out);
+            }
+        }
+        return out.getCount();
+    }
+
+    /**
+       Send every visible property, encoding each property once per timestep for all agents.
+       @return The number of bytes written.
+       @throws IOException If encoding fails.
+    */
+    @Benchmark
+    public long cached() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        for (int time = 1; time <= TIMESTEPS; ++time) {
+            List<ChangeSet> seen = visible.get(time - 1);
+            EncodedPropertyCache cache = new EncodedPropertyCache();
+            for (int i = 0; i < agents.size(); ++i) {
+                EncodingTools.writeMessage(new KASense(agents.get(i), time, seen.get(i), heard, cache), out);
+            }
+        }
+        return out.getCount();
+    }
+
+    /**
+       Send only the visible properties that each agent has not already been sent.
+       @return The number of bytes written.
+       @throws IOException If encoding fails.
+    */
+    @Benchmark
+    public long delta() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        List<PerceptionDeltaFilter> filters = new ArrayList<PerceptionDeltaFilter>();
+        for (int i = 0; i < agents.size(); ++i) {
+            filters.add(new PerceptionDeltaFilter());
+        }
+        for (int time = 1; time <= TIMESTEPS; ++time) {
+            List<ChangeSet> seen = visible.get(time - 1);
+            for (int i = 0; i < agents.size(); ++i) {
+                EncodingTools.writeMessage(new KASense(agents.get(i), time, filters.get(i).filter(seen.get(i)), heard), out);
+            }
+        }
+        return out.getCount();
+    }
+
+    private static void change(Random random, List<Area> areas, List<Building> buildings, List<Human> humans) {
+        // CHECKSTYLE:OFF:MagicNumber
+        for (int i = 0; i < Math.max(1, buildings.size() / 100); ++i) {
+            Building b = buildings.get(random.nextInt(buildings.size()));
+            int temperature = (b.isTemperatureDefined() ? b.getTemperature() : 0) + random.nextInt(50);
+            b.setTemperature(temperature);
+            if (temperature > 100) {
+                b.setFieryness(1);
+            }
+        }
+        for (Human next : humans) {
+            if (next instanceof Civilian) {
+                if (next.isHPDefined() && random.nextInt(5) == 0) {
+                    next.setHP(Math.max(0, next.getHP() - random.nextInt(500)));
+                }
+            }
+            else if (random.nextInt(2) == 0) {
+                Area a = areas.get(random.nextInt(areas.size()));
+                next.setPositionHistory(new int[] {next.getX(), next.getY(), a.getX(), a.getY()});
+                next.setPosition(a.getID());
+                next.setX(a.getX());
+                next.setY(a.getY());
+            }
+        }
+        // CHECKSTYLE:ON:MagicNumber
+    }
+}
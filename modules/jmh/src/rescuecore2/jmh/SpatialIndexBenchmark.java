@@ -0,0 +1,156 @@
+package rescuecore2.jmh;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.infomatiq.jsi.IntProcedure;
+import com.infomatiq.jsi.Rectangle;
+import com.infomatiq.jsi.rtree.RTree;
+
+import kernel.KernelException;
+
+import rescuecore2.config.ConfigException;
+import rescuecore2.misc.geometry.spatialindex.BBTree;
+import rescuecore2.misc.geometry.spatialindex.Indexable;
+import rescuecore2.misc.geometry.spatialindex.RectangleRegion;
+import rescuecore2.misc.geometry.spatialindex.Region;
+
+import rescuecore2.standard.entities.Area;
+import rescuecore2.standard.entities.StandardWorldModel;
+
+/**
+   Building and querying BBTree and the JSI RTree over the bounding boxes of a map's areas.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SpatialIndexBenchmark {
+    private static final int QUERIES = 64;
+    private static final int QUERY_SIZE = 30000;
+
+    @Param({"test", "sakae"})
+    private String map;
+
+    private List<Box> boxes;
+    private Rectangle[] queries;
+    private BBTree bbTree;
+    private RTree rTree;
+    private int next;
+
+    /**
+       Read the map, index its areas and pick query regions.
+       @throws KernelException If the map cannot be read.
+       @throws ConfigException If the map's config cannot be read.
+    */
+    @Setup
+    public void setup() throws KernelException, ConfigException {
+        StandardWorldModel world = MapFixture.load(map);
+        boxes = new ArrayList<Box>();
+        int id = 0;
+        for (Area next : MapFixture.areas(world)) {
+            boxes.add(new Box(id++, next.getShape().getBounds2D()));
+        }
+        bbTree = buildBBTree();
+        rTree = buildRTree();
+        Random random = MapFixture.random();
+        queries = new Rectangle[QUERIES];
+        for (int i = 0; i < QUERIES; ++i) {
+            Box centre = boxes.get(random.nextInt(boxes.size()));
+            float x = (centre.rectangle.min[0] + centre.rectangle.max[0]) / 2;
+            float y = (centre.rectangle.min[1] + centre.rectangle.max[1]) / 2;
+            queries[i] = new Rectangle(x - QUERY_SIZE, y - QUERY_SIZE, x + QUERY_SIZE, y + QUERY_SIZE);
+        }
+    }
+
+    /**
+       Build a BBTree containing every area.
+       @return The BBTree.
+    */
+    @Benchmark
+    public BBTree buildBBTree() {
+        BBTree result = new BBTree();
+        for (Box next : boxes) {
+            result.insert(next);
+        }
+        return result;
+    }
+
+    /**
+       Build an RTree containing every area.
+       @return The RTree.
+    */
+    @Benchmark
+    public RTree buildRTree() {
+        RTree result = new RTree();
+        result.init(new Properties());
+        for (Box next : boxes) {
+            result.add(next.rectangle, next.id);
+        }
+        return result;
+    }
+
+    /**
+       Query the BBTree with the next query region.
+       @return The number of areas found.
+    */
+    @Benchmark
+    public int queryBBTree() {
+        Rectangle r = queries[next++ % QUERIES];
+        Collection<Indexable> found = bbTree.getItemsInRegion(r.min[0], r.min[1], r.max[0], r.max[1]);
+        return found.size();
+    }
+
+    /**
+       Query the RTree with the next query region.
+       @return The number of areas found.
+    */
+    @Benchmark
+    public int queryRTree() {
+        final int[] count = new int[1];
+        rTree.intersects(queries[next++ % QUERIES], new IntProcedure() {
+                @Override
+                public boolean execute(int id) {
+                    ++count[0];
+                    return true;
+                }
+            });
+        return count[0];
+    }
+
+    private static final class Box implements Indexable {
+        private final int id;
+        private final Region region;
+        private final Rectangle rectangle;
+
+        Box(int id, Rectangle2D bounds) {
+            this.id = id;
+            region = new RectangleRegion(bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+            rectangle = new Rectangle((float)bounds.getMinX(), (float)bounds.getMinY(), (float)bounds.getMaxX(), (float)bounds.getMaxY());
+        }
+
+        @Override
+        public Region getBoundingRegion() {
+            return region;
+        }
+    }
+}
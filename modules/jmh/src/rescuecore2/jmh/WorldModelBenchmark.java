@@ -0,0 +1,94 @@
+package rescuecore2.jmh;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import kernel.KernelException;
+
+import rescuecore2.config.ConfigException;
+import rescuecore2.worldmodel.ChangeSet;
+
+import rescuecore2.standard.entities.Area;
+import rescuecore2.standard.entities.StandardEntity;
+import rescuecore2.standard.entities.StandardWorldModel;
+
+/**
+   Merging timestep ChangeSets into a world model and range queries against its spatial index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class WorldModelBenchmark {
+    private static final int TIMESTEPS = 16;
+    private static final int QUERIES = 64;
+    private static final int RANGE = 30000;
+
+    @Param({"test", "sakae"})
+    private String map;
+
+    private StandardWorldModel world;
+    private ChangeSet[] timesteps;
+    private int[] queryX;
+    private int[] queryY;
+    private int next;
+
+    /**
+       Read the map and build the timesteps and query points.
+       @throws KernelException If the map cannot be read.
+       @throws ConfigException If the map's config cannot be read.
+    */
+    @Setup
+    public void setup() throws KernelException, ConfigException {
+        world = MapFixture.load(map);
+        Random random = MapFixture.random();
+        timesteps = new ChangeSet[TIMESTEPS];
+        for (int i = 0; i < TIMESTEPS; ++i) {
+            timesteps[i] = MapFixture.timestep(world, random);
+        }
+        List<Area> areas = MapFixture.areas(world);
+        queryX = new int[QUERIES];
+        queryY = new int[QUERIES];
+        for (int i = 0; i < QUERIES; ++i) {
+            Area area = areas.get(random.nextInt(areas.size()));
+            queryX[i] = area.getX();
+            queryY[i] = area.getY();
+        }
+    }
+
+    /**
+       Merge the next timestep into the world.
+       @return The world.
+    */
+    @Benchmark
+    public StandardWorldModel merge() {
+        world.merge(timesteps[next++ % TIMESTEPS]);
+        return world;
+    }
+
+    /**
+       Find the objects in range of the next query point.
+       @return The objects in range.
+    */
+    @Benchmark
+    public Collection<StandardEntity> getObjectsInRange() {
+        int i = next++ % QUERIES;
+        return world.getObjectsInRange(queryX[i], queryY[i], RANGE);
+    }
+}
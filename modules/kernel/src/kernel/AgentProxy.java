@@ -12,6 +12,7 @@ import rescuecore2.messages.control.KASense;
 import rescuecore2.worldmodel.Entity;
 import rescuecore2.worldmodel.EntityID;
 import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.EncodedPropertyCache;
 import rescuecore2.log.Logger;
 import rescuecore2.misc.collections.LazyMap;
 
@@ -21,6 +22,7 @@ import rescuecore2.misc.collections.LazyMap;
 public class AgentProxy extends AbstractKernelComponent {
     private Entity entity;
     private Map<Integer, Collection<Command>> commands;
+    private PerceptionDeltaFilter deltas;
 
     /**
        Construct an agent.
@@ -74,10 +76,37 @@ public class AgentProxy extends AbstractKernelComponent {
        @param heard The set of communication messages that the agent heard.
      */
     public void sendPerceptionUpdate(int time, ChangeSet visible, Collection<? extends Command> heard) {
-        KASense sense = new KASense(getControlledEntity().getID(), time, visible, heard);
+        sendPerceptionUpdate(time, visible, heard, null);
+    }
+
+    /**
+       Notify the of a perception update, taking property encodings from a cache shared with other agents.
+       @param time The current timestep.
+       @param visible The set of visible changes.
+       @param heard The set of communication messages that the agent heard.
+       @param cache The cache of encoded properties. This may be null.
+     */
+    public void sendPerceptionUpdate(int time, ChangeSet visible, Collection<? extends Command> heard, EncodedPropertyCache cache) {
+        ChangeSet changes = deltas == null ? visible : deltas.filter(visible);
+        KASense sense = new KASense(getControlledEntity().getID(), time, changes, heard, cache);
         send(sense);
     }
 
+    /**
+       Only send properties whose values have changed since this agent last received them. This should only be enabled for agents that asked for it when they connected.
+     */
+    public void enablePerceptionDeltas() {
+        deltas = new PerceptionDeltaFilter();
+    }
+
+    /**
+       Get the filter that removes unchanged properties from this agent's perception.
+       @return The filter, or null if this agent receives full perception updates.
+     */
+    public PerceptionDeltaFilter getPerceptionDeltaFilter() {
+        return deltas;
+    }
+
     /**
        Register an agent command received.
        @param c The command that was received.
@@ -10,6 +10,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 
 import rescuecore2.config.Config;
 import rescuecore2.connection.Connection;
@@ -17,6 +18,7 @@ import rescuecore2.connection.ConnectionException;
 import rescuecore2.connection.ConnectionListener;
 import rescuecore2.connection.ConnectionManagerListener;
 import rescuecore2.messages.Message;
+import rescuecore2.messages.components.EncodedEntityList;
 import rescuecore2.messages.control.KSAfterShocksInfo;
 import rescuecore2.messages.control.VKConnect;
 import rescuecore2.messages.control.VKAcknowledge;
@@ -56,8 +58,8 @@ public class ComponentManager implements ConnectionManagerListener,
 	// Entities that have no controller yet. Map from type to list of entities.
 	private Map<String, Queue<ControlledEntityInfo>> uncontrolledEntities;
 
-	// Connected agents
-	private Set<AgentAck> agentsToAcknowledge;
+	// Connected agents that have not acknowledged yet. Map from controlled entity ID to acknowledgement info.
+	private Map<EntityID, AgentAck> agentsToAcknowledge;
 
 	// Connected simulators
 	private Set<SimulatorAck> simsToAcknowledge;
@@ -96,7 +98,7 @@ public class ComponentManager implements ConnectionManagerListener,
 		this.config = config;
 		this.scenario = scenario;
 		uncontrolledEntities = new HashMap<String, Queue<ControlledEntityInfo>>();
-		agentsToAcknowledge = new HashSet<AgentAck>();
+		agentsToAcknowledge = new LinkedHashMap<EntityID, AgentAck>();
 		simsToAcknowledge = new HashSet<SimulatorAck>();
 		viewersToAcknowledge = new HashSet<ViewerAck>();
 		nextID = STARTING_ID;
@@ -134,6 +136,40 @@ public class ComponentManager implements ConnectionManagerListener,
 		updateGUIUncontrolledAgents();
 	}
 
+	/**
+	 * Register an agent-controlled entity whose startup view is mostly made up
+	 * of entities shared with other agents. The shared entities are encoded
+	 * once and the encoded bytes are reused for every agent.
+	 * 
+	 * @param entity
+	 *            The entity that is agent-controlled.
+	 * @param sharedOnStartup
+	 *            Pre-encoded entities that the agent should be sent on
+	 *            startup. This may be shared between agents.
+	 * @param agentOnStartup
+	 *            Additional entities that only this agent should be sent on
+	 *            startup. These replace any shared entities with the same ID.
+	 * @param agentConfig
+	 *            A view of the system configuration that should be shared with
+	 *            the agent.
+	 */
+	public void registerAgentControlledEntity(Entity entity,
+			EncodedEntityList sharedOnStartup,
+			Collection<? extends Entity> agentOnStartup, Config agentConfig) {
+		Logger.info("Agent controlled entity registered: " + entity);
+		synchronized (agentLock) {
+			Queue<ControlledEntityInfo> q = uncontrolledEntities.get(entity
+					.getURN());
+			if (q == null) {
+				q = new LinkedList<ControlledEntityInfo>();
+				uncontrolledEntities.put(entity.getURN(), q);
+			}
+			q.add(new ControlledEntityInfo(entity, sharedOnStartup,
+					agentOnStartup, agentConfig));
+		}
+		updateGUIUncontrolledAgents();
+	}
+
 	/**
 	 * Wait for all agents to connect. This method will block until all agent
 	 * entities have controllers.
@@ -216,14 +252,13 @@ public class ComponentManager implements ConnectionManagerListener,
 	private boolean agentAcknowledge(int requestID, EntityID agentID,
 			Connection c) {
 		synchronized (agentLock) {
-			for (AgentAck next : agentsToAcknowledge) {
-				if (next.requestID == requestID && next.agentID.equals(agentID)
-						&& next.connection == c) {
-					agentsToAcknowledge.remove(next);
-					kernel.addAgent(next.agent);
-					agentLock.notifyAll();
-					return true;
-				}
+			AgentAck next = agentsToAcknowledge.get(agentID);
+			if (next != null && next.requestID == requestID
+					&& next.connection == c) {
+				agentsToAcknowledge.remove(agentID);
+				kernel.addAgent(next.agent);
+				agentLock.notifyAll();
+				return true;
 			}
 			return false;
 		}
@@ -302,7 +337,7 @@ public class ComponentManager implements ConnectionManagerListener,
 	private void updateGUIAgentAck() {
 		List<String> data = new ArrayList<String>();
 		synchronized (agentLock) {
-			for (AgentAck ack : agentsToAcknowledge) {
+			for (AgentAck ack : agentsToAcknowledge.values()) {
 				data.add(ack.toString());
 			}
 		}
@@ -374,14 +409,28 @@ public class ComponentManager implements ConnectionManagerListener,
 					Entity entity = result.entity;
 					AgentProxy agent = new AgentProxy(connect.getAgentName(),
 							entity, connection);
-					agentsToAcknowledge.add(new AgentAck(agent, entity.getID(),
-							requestID, connection));
+					if (connect.acceptsPerceptionDeltas()
+							&& config.getBooleanValue(
+									KernelConstants.PERCEPTION_DELTAS_KEY,
+									false)) {
+						agent.enablePerceptionDeltas();
+						Logger.info("Sending perception deltas to agent "
+								+ entity.getID());
+					}
+					agentsToAcknowledge.put(entity.getID(), new AgentAck(agent,
+							entity.getID(), requestID, connection));
 					Logger.info("Agent '" + connect.getAgentName() + "' id "
 							+ entity.getID() + " (" + connection
 							+ " request ID " + requestID + ") connected");
 					// Send an OK
-					reply = new KAConnectOK(requestID, entity.getID(),
-							result.visibleSet, result.config);
+					if (result.sharedSet == null) {
+						reply = new KAConnectOK(requestID, entity.getID(),
+								result.visibleSet, result.config);
+					} else {
+						reply = new KAConnectOK(requestID, entity.getID(),
+								result.sharedSet, result.visibleSet,
+								result.config);
+					}
 				}
 			}
 			if (reply != null) {
@@ -555,12 +604,20 @@ public class ComponentManager implements ConnectionManagerListener,
 
 	private static class ControlledEntityInfo {
 		Entity entity;
+		EncodedEntityList sharedSet;
 		Collection<? extends Entity> visibleSet;
 		Config config;
 
 		public ControlledEntityInfo(Entity entity,
 				Collection<? extends Entity> visibleSet, Config config) {
+			this(entity, null, visibleSet, config);
+		}
+
+		public ControlledEntityInfo(Entity entity,
+				EncodedEntityList sharedSet,
+				Collection<? extends Entity> visibleSet, Config config) {
 			this.entity = entity;
+			this.sharedSet = sharedSet;
 			this.visibleSet = visibleSet;
 			this.config = config;
 		}
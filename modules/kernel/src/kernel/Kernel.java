@@ -4,6 +4,8 @@ package kernel;
 import java.util.Collections;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.List;
 import java.util.ArrayList;
@@ -13,20 +15,30 @@ import java.io.File;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import rescuecore2.config.Config;
 import rescuecore2.worldmodel.Entity;
 import rescuecore2.worldmodel.EntityID;
 import rescuecore2.worldmodel.WorldModel;
+import rescuecore2.worldmodel.DefaultWorldModel;
 import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.EncodedPropertyCache;
 import rescuecore2.messages.Command;
 import rescuecore2.Constants;
 import rescuecore2.Timestep;
 import rescuecore2.score.ScoreFunction;
+import rescuecore2.score.IncrementalScoreFunction;
 //import rescuecore2.misc.gui.ChangeSetComponent;
 
 import rescuecore2.log.LogWriter;
+import rescuecore2.log.LogRecord;
 import rescuecore2.log.FileLogWriter;
+import rescuecore2.log.AsyncLogWriter;
+import rescuecore2.log.BlockLogWriter;
 import rescuecore2.log.InitialConditionsRecord;
 import rescuecore2.log.StartLogRecord;
 import rescuecore2.log.EndLogRecord;
@@ -44,6 +56,23 @@ public class Kernel {
     /** The log context for kernel log messages. */
     public static final String KERNEL_LOG_CONTEXT = "kernel";
 
+    /** Config key for enabling the asynchronous log writer. */
+    public static final String LOG_ASYNC_KEY = "kernel.log.async";
+    /** Config key for the maximum number of log records waiting to be written. */
+    public static final String LOG_QUEUE_SIZE_KEY = "kernel.log.async.queue-size";
+    /** Config key for the size of the log write buffer in bytes. */
+    public static final String LOG_BUFFER_SIZE_KEY = "kernel.log.async.buffer-size";
+    /** Config key for the log sync policy: none, close or flush. */
+    public static final String LOG_SYNC_KEY = "kernel.log.async.sync";
+    /** Config key for writing the log in the compressed, block-indexed format. */
+    public static final String LOG_COMPRESSED_KEY = "kernel.log.compressed";
+    /** Config key for scoring each timestep from its changes when the score function supports it. */
+    public static final String SCORE_INCREMENTAL_KEY = "kernel.score.incremental";
+    /** Config key for finishing each timestep on a background thread while the next one starts. */
+    public static final String PIPELINE_KEY = "kernel.pipeline";
+    /** Config key for encoding each perceived property once per timestep and sharing the bytes between agents. */
+    public static final String PERCEPTION_CACHE_KEY = "kernel.perception.encoding-cache";
+
     private Config config;
     private Perception perception;
     private CommunicationModel communicationModel;
@@ -63,10 +92,23 @@ public class Kernel {
 
     private TerminationCondition termination;
     private ScoreFunction score;
+    private boolean incrementalScore;
+    private boolean perceptionCache;
     private CommandCollector commandCollector;
 
     private boolean isShutdown;
 
+    private KernelProfiler profiler;
+    private volatile TimestepProfile lastProfile;
+    // The total bytes sent to each component at the end of its last completed timestep. Components are added and removed with the kernel lock held but the totals are updated by the pipeline thread.
+    private ConcurrentMap<KernelComponent, Long> bytesSent;
+
+    // Runs viewer updates, scoring, listeners and log writes in order when pipelined; null otherwise
+    private ExecutorService pipeline;
+    // The last timestep whose background stage has finished. Guarded by this.
+    private int pipelineTime;
+    private volatile Throwable pipelineError;
+
     //    private ChangeSetComponent simulatorChanges;
 
     /**
@@ -99,6 +141,8 @@ public class Kernel {
             this.worldModel = worldModel;
             this.commandFilter = commandFilter;
             this.score = score;
+            this.incrementalScore = score instanceof IncrementalScoreFunction && config.getBooleanValue(SCORE_INCREMENTAL_KEY, true);
+            this.perceptionCache = config.getBooleanValue(PERCEPTION_CACHE_KEY, true);
             this.termination = termination;
             this.commandCollector = collector;
             this.idGenerator = idGenerator;
@@ -106,6 +150,7 @@ public class Kernel {
             agents = new HashSet<AgentProxy>();
             sims = new HashSet<SimulatorProxy>();
             viewers = new HashSet<ViewerProxy>();
+            bytesSent = new ConcurrentHashMap<KernelComponent, Long>();
             time = 0;
             try {
                 String logName = config.getValue("kernel.logname");
@@ -117,10 +162,16 @@ public class Kernel {
                 if (logFile.createNewFile()) {
                     Logger.info("Created log file: " + logFile.getAbsolutePath());
                 }
-                log = new FileLogWriter(logFile);
+                log = createLogWriter(logFile);
+                if (config.getBooleanValue(PIPELINE_KEY, false)) {
+                    Logger.info("Pipelining timesteps");
+                    pipeline = createPipeline();
+                }
                 log.writeRecord(new StartLogRecord());
-                log.writeRecord(new InitialConditionsRecord(worldModel));
-                log.writeRecord(new ConfigRecord(config));
+                // An asynchronous writer encodes records later, by which time the kernel may have changed its entities
+                log.writeRecord(new InitialConditionsRecord(log instanceof AsyncLogWriter ? copyWorldModel(worldModel) : worldModel));
+                // Copy the config so later changes are not seen by an asynchronous writer
+                log.writeRecord(new ConfigRecord(new Config(config)));
             }
             catch (IOException e) {
                 throw new KernelException("Couldn't open log file for writing", e);
@@ -143,6 +194,9 @@ public class Kernel {
 
             isShutdown = false;
 
+            profiler = new KernelProfiler(config);
+            addKernelListener(profiler);
+
             Logger.info("Kernel initialised");
             Logger.info("Perception module: " + perception);
             Logger.info("Communication module: " + communicationModel);
@@ -156,6 +210,45 @@ public class Kernel {
         }
     }
 
+    private LogWriter createLogWriter(File logFile) throws IOException, LogException {
+        if (config.getBooleanValue(LOG_COMPRESSED_KEY, false)) {
+            Logger.info("Using compressed block log writer");
+            if (config.getBooleanValue(LOG_ASYNC_KEY, false)) {
+                Logger.warn(LOG_COMPRESSED_KEY + " and " + LOG_ASYNC_KEY + " cannot be used together: " + LOG_ASYNC_KEY + " is ignored and blocks are compressed on the thread that writes the log. Set " + PIPELINE_KEY + " to move log writes off the timestep thread.");
+            }
+            return new BlockLogWriter(logFile);
+        }
+        if (!config.getBooleanValue(LOG_ASYNC_KEY, false)) {
+            return new FileLogWriter(logFile);
+        }
+        int queueSize = config.getIntValue(LOG_QUEUE_SIZE_KEY, AsyncLogWriter.DEFAULT_QUEUE_SIZE);
+        int bufferSize = config.getIntValue(LOG_BUFFER_SIZE_KEY, AsyncLogWriter.DEFAULT_BUFFER_SIZE);
+        AsyncLogWriter.SyncPolicy sync = AsyncLogWriter.SyncPolicy.valueOf(config.getValue(LOG_SYNC_KEY, "none").toUpperCase());
+        Logger.info("Using asynchronous log writer: queue size " + queueSize + ", buffer size " + bufferSize + ", sync " + sync);
+        return new AsyncLogWriter(logFile, queueSize, bufferSize, sync);
+    }
+
+    private static WorldModel<Entity> copyWorldModel(WorldModel<? extends Entity> model) {
+        WorldModel<Entity> result = DefaultWorldModel.create();
+        for (Entity next : model) {
+            result.addEntity(next.copy());
+        }
+        return result;
+    }
+
+    private static ExecutorService createPipeline() {
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+                private final AtomicInteger next = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Kernel pipeline " + next.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+    }
+
     /**
        Get the kernel's configuration.
        @return The configuration.
@@ -172,6 +265,22 @@ public class Kernel {
         return new KernelState(getTime(), getWorldModel());
     }
 
+    /**
+       Get the profiler that collects timing information for each timestep.
+       @return The kernel profiler.
+    */
+    public KernelProfiler getProfiler() {
+        return profiler;
+    }
+
+    /**
+       Get the timing information for the most recently completed timestep.
+       @return The last timestep profile, or null if no timestep has completed.
+    */
+    public TimestepProfile getLastTimestepProfile() {
+        return lastProfile;
+    }
+
     /**
        Add an agent to the system.
        @param agent The agent to add.
@@ -179,6 +288,7 @@ public class Kernel {
     public void addAgent(AgentProxy agent) {
         synchronized (this) {
             agents.add(agent);
+            bytesSent.put(agent, 0L);
         }
         fireAgentAdded(agent);
     }
@@ -190,6 +300,7 @@ public class Kernel {
     public void removeAgent(AgentProxy agent) {
         synchronized (this) {
             agents.remove(agent);
+            bytesSent.remove(agent);
         }
         fireAgentRemoved(agent);
     }
@@ -209,9 +320,11 @@ public class Kernel {
        @param sim The simulator to add.
     */
     public void addSimulator(SimulatorProxy sim) {
+        // This answers any ID requests the simulator has already sent, so do it without holding the kernel lock
+        sim.setEntityIDGenerator(idGenerator);
         synchronized (this) {
             sims.add(sim);
-            sim.setEntityIDGenerator(idGenerator);
+            bytesSent.put(sim, 0L);
         }
         fireSimulatorAdded(sim);
     }
@@ -223,6 +336,7 @@ public class Kernel {
     public void removeSimulator(SimulatorProxy sim) {
         synchronized (this) {
             sims.remove(sim);
+            bytesSent.remove(sim);
         }
         fireSimulatorRemoved(sim);
     }
@@ -244,6 +358,7 @@ public class Kernel {
     public void addViewer(ViewerProxy viewer) {
         synchronized (this) {
             viewers.add(viewer);
+            bytesSent.put(viewer, 0L);
         }
         fireViewerAdded(viewer);
     }
@@ -255,6 +370,7 @@ public class Kernel {
     public void removeViewer(ViewerProxy viewer) {
         synchronized (this) {
             viewers.remove(viewer);
+            bytesSent.remove(viewer);
         }
         fireViewerRemoved(viewer);
     }
@@ -340,43 +456,57 @@ public class Kernel {
                 // Collate updates and broadcast to simulators
                 // Send perception, commands and updates to viewers
                 Timestep nextTimestep = new Timestep(time);
+                TimestepProfile profile = new TimestepProfile(time);
                 Logger.info("Timestep " + time);
                 Logger.debug("Sending agent updates");
-                long start = System.currentTimeMillis();
-                sendAgentUpdates(nextTimestep, previousTimestep == null ? new HashSet<Command>() : previousTimestep.getCommands());
-                long perceptionTime = System.currentTimeMillis();
+                long start = System.nanoTime();
+                sendAgentUpdates(nextTimestep, previousTimestep == null ? new HashSet<Command>() : previousTimestep.getCommands(), profile);
+                long perceptionTime = System.nanoTime();
                 Logger.debug("Waiting for commands");
                 Collection<Command> commands = waitForCommands(time);
                 nextTimestep.setCommands(commands);
-                log.writeRecord(new CommandsRecord(time, commands));
-                long commandsTime = System.currentTimeMillis();
+                writeRecord(new CommandsRecord(time, commands));
+                long commandsTime = System.nanoTime();
                 Logger.debug("Broadcasting commands");
-                ChangeSet changes = sendCommandsToSimulators(time, commands);
+                ChangeSet changes = sendCommandsToSimulators(time, commands, profile);
                 //                simulatorUpdates.show(changes);
                 nextTimestep.setChangeSet(changes);
-                log.writeRecord(new UpdatesRecord(time, changes));
-                long updatesTime = System.currentTimeMillis();
+                writeRecord(new UpdatesRecord(time, changes));
+                long updatesTime = System.nanoTime();
+                if (pipeline != null) {
+                    // The previous timestep may still be scoring the world model
+                    waitForPipeline(time - 1);
+                    if (isShutdown) {
+                        // Shut down while waiting
+                        return;
+                    }
+                }
                 // Merge updates into world model
                 worldModel.merge(changes);
-                long mergeTime = System.currentTimeMillis();
+                long mergeTime = System.nanoTime();
                 Logger.debug("Broadcasting updates");
                 sendUpdatesToSimulators(time, changes);
-                sendToViewers(nextTimestep);
-                long broadcastTime = System.currentTimeMillis();
-                Logger.debug("Computing score");
-                double s = score.score(worldModel, nextTimestep);
-                long scoreTime = System.currentTimeMillis();
-                nextTimestep.setScore(s);
-                Logger.info("Timestep " + time + " complete");
-                Logger.debug("Score: " + s);
-                Logger.debug("Perception took        : " + (perceptionTime - start) + "ms");
-                Logger.debug("Agent commands took    : " + (commandsTime - perceptionTime) + "ms");
-                Logger.debug("Simulator updates took : " + (updatesTime - commandsTime) + "ms");
-                Logger.debug("World model merge took : " + (mergeTime - updatesTime) + "ms");
-                Logger.debug("Update broadcast took  : " + (broadcastTime - mergeTime) + "ms");
-                Logger.debug("Score calculation took : " + (scoreTime - broadcastTime) + "ms");
-                Logger.debug("Total time             : " + (scoreTime - start) + "ms");
-                fireTimestepCompleted(nextTimestep);
+                long simulatorBroadcastTime = System.nanoTime();
+                profile.setPhaseTime(TimestepProfile.Phase.PERCEPTION, perceptionTime - start);
+                profile.setPhaseTime(TimestepProfile.Phase.COMMANDS, commandsTime - perceptionTime);
+                profile.setPhaseTime(TimestepProfile.Phase.SIMULATORS, updatesTime - commandsTime);
+                profile.setPhaseTime(TimestepProfile.Phase.MERGE, mergeTime - updatesTime);
+                Logger.debug("Perception took        : " + toMillis(perceptionTime - start) + "ms");
+                Logger.debug("Agent commands took    : " + toMillis(commandsTime - perceptionTime) + "ms");
+                Logger.debug("Simulator updates took : " + toMillis(updatesTime - commandsTime) + "ms");
+                Logger.debug("World model merge took : " + toMillis(mergeTime - updatesTime) + "ms");
+                // Everything after this point can overlap with the next timestep
+                Collection<ViewerProxy> currentViewers = new ArrayList<ViewerProxy>(viewers);
+                // Agents and simulators are only sent to on this thread, so count their bytes before the next timestep sends any more
+                Map<KernelComponent, Long> sent = new LinkedHashMap<KernelComponent, Long>();
+                getBytesSent(agents, sent);
+                getBytesSent(sims, sent);
+                if (pipeline == null) {
+                    completeTimestep(nextTimestep, changes, profile, start, simulatorBroadcastTime - mergeTime, currentViewers, sent);
+                }
+                else {
+                    submitStage(nextTimestep, changes, profile, start, simulatorBroadcastTime - mergeTime, currentViewers, sent);
+                }
                 previousTimestep = nextTimestep;
                 Logger.debug("Commands: " + commands);
                 Logger.debug("Timestep commands: " + previousTimestep.getCommands());
@@ -396,6 +526,22 @@ public class Kernel {
                 return;
             }
             Logger.info("Kernel is shutting down");
+            if (pipeline != null) {
+                try {
+                    // Wait for everything queued so far, including log records from a timestep that did not finish
+                    submitMarker(time);
+                    waitForPipeline(time);
+                }
+                catch (InterruptedException e) {
+                    Logger.warn("Interrupted while finishing the last timestep");
+                }
+                catch (KernelException e) {
+                    Logger.error("Error finishing the last timestep", e);
+                }
+                catch (LogException e) {
+                    Logger.error("Error finishing the last timestep", e);
+                }
+            }
             ExecutorService service = Executors.newFixedThreadPool(agents.size() + sims.size() + viewers.size());
             List<Callable<Object>> callables = new ArrayList<Callable<Object>>();
             for (AgentProxy next : agents) {
@@ -438,25 +584,32 @@ public class Kernel {
             catch (LogException e) {
                 Logger.error("Error closing log", e);
             }
+            if (pipeline != null) {
+                pipeline.shutdown();
+            }
             Logger.info("Kernel has shut down");
             isShutdown = true;
             fireShutdown();
         }
     }
 
-    private void sendAgentUpdates(Timestep timestep, Collection<Command> commandsLastTimestep) throws InterruptedException, KernelException, LogException {
+    private void sendAgentUpdates(Timestep timestep, Collection<Command> commandsLastTimestep, TimestepProfile profile) throws InterruptedException, KernelException, LogException {
         perception.setTime(time);
         communicationModel.process(time, commandsLastTimestep);
+        // A new cache each timestep so that old values are not kept
+        EncodedPropertyCache cache = perceptionCache ? new EncodedPropertyCache() : null;
         for (AgentProxy next : agents) {
             if (Thread.interrupted()) {
                 throw new InterruptedException();
             }
+            long perceptionStart = System.nanoTime();
             ChangeSet visible = perception.getVisibleEntities(next);
             Collection<Command> heard = communicationModel.getHearing(next.getControlledEntity());
+            profile.addPerceptionTime(next.toString(), System.nanoTime() - perceptionStart);
             EntityID id = next.getControlledEntity().getID();
             timestep.registerPerception(id, visible, heard);
-            log.writeRecord(new PerceptionRecord(time, id, visible, heard));
-            next.sendPerceptionUpdate(time, visible, heard);
+            writeRecord(new PerceptionRecord(time, id, visible, heard, cache));
+            next.sendPerceptionUpdate(time, visible, heard, cache);
         }
     }
 
@@ -471,7 +624,7 @@ public class Kernel {
     /**
        Send commands to all simulators and return which entities have been updated by the simulators.
     */
-    private ChangeSet sendCommandsToSimulators(int timestep, Collection<Command> commands) throws InterruptedException {
+    private ChangeSet sendCommandsToSimulators(int timestep, Collection<Command> commands, TimestepProfile profile) throws InterruptedException {
         for (SimulatorProxy next : sims) {
             next.sendAgentCommands(timestep, commands);
         }
@@ -480,18 +633,158 @@ public class Kernel {
         for (SimulatorProxy next : sims) {
             Logger.debug("Fetching updates from " + next);
             result.merge(next.getUpdates(timestep));
+            profile.addSimulatorTime(next.toString(), next.getLastRoundTripTime());
         }
         return result;
     }
 
+    /**
+       Send the timestep to viewers, compute the score, record the profile and notify listeners. This runs on the pipeline thread when pipelining.
+    */
+    private void completeTimestep(Timestep timestep, ChangeSet changes, TimestepProfile profile, long start, long simulatorBroadcastTime, Collection<ViewerProxy> currentViewers, Map<KernelComponent, Long> sent) {
+        long broadcastStart = System.nanoTime();
+        sendToViewers(timestep, currentViewers);
+        getBytesSent(currentViewers, sent);
+        long broadcastTime = System.nanoTime();
+        Logger.debug("Computing score");
+        double s = incrementalScore ? ((IncrementalScoreFunction)score).updateScore(worldModel, timestep, changes) : score.score(worldModel, timestep);
+        long scoreTime = System.nanoTime();
+        timestep.setScore(s);
+        long broadcast = simulatorBroadcastTime + broadcastTime - broadcastStart;
+        profile.setPhaseTime(TimestepProfile.Phase.BROADCAST, broadcast);
+        profile.setPhaseTime(TimestepProfile.Phase.SCORE, scoreTime - broadcastTime);
+        profile.setPhaseTime(TimestepProfile.Phase.TOTAL, scoreTime - start);
+        recordBytesSent(profile, sent);
+        lastProfile = profile;
+        Logger.info("Timestep " + timestep.getTime() + " complete");
+        Logger.debug("Score: " + s);
+        Logger.debug("Update broadcast took  : " + toMillis(broadcast) + "ms");
+        Logger.debug("Score calculation took : " + toMillis(scoreTime - broadcastTime) + "ms");
+        Logger.debug("Total time             : " + toMillis(scoreTime - start) + "ms");
+        fireTimestepCompleted(timestep);
+    }
+
+    /**
+       Queue the end of a timestep on the pipeline thread. The world model is not merged again until {@link #waitForPipeline(int)} says this stage has finished, so the score sees the world as it was at the end of the timestep.
+    */
+    private void submitStage(final Timestep timestep, final ChangeSet changes, final TimestepProfile profile, final long start, final long simulatorBroadcastTime, final Collection<ViewerProxy> currentViewers, final Map<KernelComponent, Long> sent) {
+        pipeline.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Logger.pushLogContext(KERNEL_LOG_CONTEXT);
+                    try {
+                        if (pipelineError == null) {
+                            completeTimestep(timestep, changes, profile, start, simulatorBroadcastTime, currentViewers, sent);
+                        }
+                    }
+                    // CHECKSTYLE:OFF:IllegalCatch
+                    catch (Throwable e) {
+                        pipelineError = e;
+                    }
+                    // CHECKSTYLE:ON:IllegalCatch
+                    finally {
+                        Logger.popLogContext();
+                        stageFinished(timestep.getTime());
+                    }
+                }
+            });
+    }
+
+    private void submitMarker(final int timestep) {
+        pipeline.execute(new Runnable() {
+                @Override
+                public void run() {
+                    stageFinished(timestep);
+                }
+            });
+    }
+
+    private void stageFinished(int timestep) {
+        synchronized (this) {
+            pipelineTime = Math.max(pipelineTime, timestep);
+            notifyAll();
+        }
+    }
+
+    /**
+       Wait until the pipeline has finished a timestep and rethrow anything that went wrong on the pipeline thread. This must be called with the kernel lock held. The lock is released while waiting so listeners on the pipeline thread can call back into the kernel.
+    */
+    private void waitForPipeline(int timestep) throws InterruptedException, KernelException, LogException {
+        while (pipelineTime < timestep && pipelineError == null) {
+            wait();
+        }
+        Throwable e = pipelineError;
+        if (e == null) {
+            return;
+        }
+        if (e instanceof LogException) {
+            throw (LogException)e;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException)e;
+        }
+        if (e instanceof Error) {
+            throw (Error)e;
+        }
+        throw new KernelException("Error completing timestep", e);
+    }
+
+    /**
+       Write a log record. When pipelining the record is written on the pipeline thread after anything already queued, so records reach the log in the order they were written.
+    */
+    private void writeRecord(final LogRecord record) throws LogException {
+        if (pipeline == null) {
+            log.writeRecord(record);
+            return;
+        }
+        pipeline.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (pipelineError != null) {
+                        return;
+                    }
+                    try {
+                        log.writeRecord(record);
+                    }
+                    // CHECKSTYLE:OFF:IllegalCatch
+                    catch (Throwable e) {
+                        pipelineError = e;
+                    }
+                    // CHECKSTYLE:ON:IllegalCatch
+                }
+            });
+    }
+
+    private static void getBytesSent(Collection<? extends KernelComponent> components, Map<KernelComponent, Long> result) {
+        for (KernelComponent next : components) {
+            result.put(next, next.getConnection().getBytesSent());
+        }
+    }
+
+    private void recordBytesSent(TimestepProfile profile, Map<KernelComponent, Long> sent) {
+        for (Map.Entry<KernelComponent, Long> next : sent.entrySet()) {
+            // Components removed since the totals were taken have no entry and are not added back
+            Long last = bytesSent.replace(next.getKey(), next.getValue());
+            if (last != null) {
+                profile.addBytesSent(next.getKey().toString(), next.getValue() - last);
+            }
+        }
+    }
+
+    private static long toMillis(long nanos) {
+        // CHECKSTYLE:OFF:MagicNumber
+        return nanos / 1000000;
+        // CHECKSTYLE:ON:MagicNumber
+    }
+
     private void sendUpdatesToSimulators(int timestep, ChangeSet updates) throws InterruptedException {
         for (SimulatorProxy next : sims) {
             next.sendUpdate(timestep, updates);
         }
     }
 
-    private void sendToViewers(Timestep timestep) {
-        for (ViewerProxy next : viewers) {
+    private void sendToViewers(Timestep timestep, Collection<ViewerProxy> currentViewers) {
+        for (ViewerProxy next : currentViewers) {
             next.sendTimestep(timestep);
         }
     }
@@ -31,5 +31,8 @@ public final class KernelConstants {
     /** The config key for ignoring agent commands at the start of the simulation. */
     public static final String IGNORE_AGENT_COMMANDS_KEY = "kernel.agents.ignoreuntil";
 
+    /** The config key for sending perception deltas to agents that ask for them. */
+    public static final String PERCEPTION_DELTAS_KEY = "kernel.perception.deltas";
+
     private KernelConstants() {}
 }
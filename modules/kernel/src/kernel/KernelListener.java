@@ -19,7 +19,7 @@ public interface KernelListener {
     void simulationEnded(Kernel kernel);
 
     /**
-       Notification that a timestep has been completed.
+       Notification that a timestep has been completed. When the kernel is pipelining timesteps this is called on the pipeline thread, possibly after the next timestep has started, so use the time of the Timestep rather than {@link Kernel#getTime()}.
        @param kernel The kernel.
        @param time The timestep that has just been completed.
     */
@@ -0,0 +1,247 @@
+package kernel;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import rescuecore2.Timestep;
+import rescuecore2.config.Config;
+import rescuecore2.log.Logger;
+
+/**
+   A KernelListener that collects the per-timestep profiles produced by the kernel into histograms. If the kernel.profile.output key is set then the raw per-timestep data is written to a CSV file and a percentile summary is written to a JSON file when the simulation ends.
+ */
+public class KernelProfiler extends KernelListenerAdapter {
+    /** Config key for the base name of the profile output files. */
+    public static final String OUTPUT_KEY = "kernel.profile.output";
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    // CHECKSTYLE:OFF:MagicNumber
+    private static final double[] PERCENTILES = {50, 90, 99, 100};
+    // CHECKSTYLE:ON:MagicNumber
+
+    private final Map<TimestepProfile.Phase, TimingHistogram> phases;
+    private final TimingHistogram perception;
+    private final Map<String, TimingHistogram> simulators;
+    private final Map<String, Long> bytesSent;
+    private final List<TimestepProfile> profiles;
+    private String output;
+
+    /**
+       Construct a KernelProfiler.
+       @param config The kernel configuration.
+    */
+    public KernelProfiler(Config config) {
+        phases = new EnumMap<TimestepProfile.Phase, TimingHistogram>(TimestepProfile.Phase.class);
+        for (TimestepProfile.Phase next : TimestepProfile.Phase.values()) {
+            phases.put(next, new TimingHistogram());
+        }
+        perception = new TimingHistogram();
+        simulators = new LinkedHashMap<String, TimingHistogram>();
+        bytesSent = new LinkedHashMap<String, Long>();
+        profiles = new ArrayList<TimestepProfile>();
+        output = config.getValue(OUTPUT_KEY, null);
+    }
+
+    @Override
+    public void timestepCompleted(Kernel kernel, Timestep time) {
+        TimestepProfile profile = kernel.getLastTimestepProfile();
+        if (profile != null && profile.getTime() == time.getTime()) {
+            record(profile);
+        }
+    }
+
+    @Override
+    public void simulationEnded(Kernel kernel) {
+        if (output != null) {
+            export(new File(output + ".csv"), new File(output + ".json"));
+        }
+    }
+
+    /**
+       Add a timestep profile to the collected statistics.
+       @param profile The profile to add.
+    */
+    public synchronized void record(TimestepProfile profile) {
+        profiles.add(profile);
+        for (TimestepProfile.Phase next : TimestepProfile.Phase.values()) {
+            phases.get(next).recordValue(profile.getPhaseTime(next));
+        }
+        for (Long next : profile.getPerceptionTimes().values()) {
+            perception.recordValue(next);
+        }
+        for (Map.Entry<String, Long> next : profile.getSimulatorTimes().entrySet()) {
+            TimingHistogram h = simulators.get(next.getKey());
+            if (h == null) {
+                h = new TimingHistogram();
+                simulators.put(next.getKey(), h);
+            }
+            h.recordValue(next.getValue());
+        }
+        for (Map.Entry<String, Long> next : profile.getBytesSent().entrySet()) {
+            Long total = bytesSent.get(next.getKey());
+            bytesSent.put(next.getKey(), (total == null ? 0 : total) + next.getValue());
+        }
+    }
+
+    /**
+       Get the histogram for a phase of the timestep.
+       @param phase The phase.
+       @return The histogram of times for that phase in nanoseconds.
+    */
+    public TimingHistogram getPhaseHistogram(TimestepProfile.Phase phase) {
+        return phases.get(phase);
+    }
+
+    /**
+       Get the histogram of per-agent perception times.
+       @return The histogram of perception times in nanoseconds.
+    */
+    public TimingHistogram getPerceptionHistogram() {
+        return perception;
+    }
+
+    /**
+       Get the round trip histograms for each simulator.
+       @return A map from simulator name to round trip histogram.
+    */
+    public synchronized Map<String, TimingHistogram> getSimulatorHistograms() {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, TimingHistogram>(simulators));
+    }
+
+    /**
+       Get the total number of bytes sent to each component.
+       @return A map from component name to total bytes sent.
+    */
+    public synchronized Map<String, Long> getBytesSent() {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, Long>(bytesSent));
+    }
+
+    /**
+       Get all recorded timestep profiles.
+       @return A list of timestep profiles in the order they were recorded.
+    */
+    public synchronized List<TimestepProfile> getProfiles() {
+        return Collections.unmodifiableList(new ArrayList<TimestepProfile>(profiles));
+    }
+
+    /**
+       Write the collected data to files.
+       @param csv The file to write per-timestep data to.
+       @param json The file to write the summary to.
+    */
+    public synchronized void export(File csv, File json) {
+        try {
+            writeCSV(csv);
+            writeJSON(json);
+            Logger.info("Wrote kernel profile to " + csv + " and " + json);
+        }
+        catch (IOException e) {
+            Logger.error("Error writing kernel profile", e);
+        }
+    }
+
+    private void writeCSV(File file) throws IOException {
+        PrintWriter out = new PrintWriter(new FileWriter(file));
+        try {
+            StringBuilder header = new StringBuilder("time");
+            for (TimestepProfile.Phase next : TimestepProfile.Phase.values()) {
+                header.append(",").append(next.name().toLowerCase()).append("_ms");
+            }
+            header.append(",max_agent_perception_ms,bytes_sent");
+            out.println(header);
+            for (TimestepProfile profile : profiles) {
+                StringBuilder line = new StringBuilder(String.valueOf(profile.getTime()));
+                for (TimestepProfile.Phase next : TimestepProfile.Phase.values()) {
+                    line.append(",").append(millis(profile.getPhaseTime(next)));
+                }
+                long maxPerception = 0;
+                for (Long next : profile.getPerceptionTimes().values()) {
+                    maxPerception = Math.max(maxPerception, next);
+                }
+                line.append(",").append(millis(maxPerception));
+                line.append(",").append(profile.getTotalBytesSent());
+                out.println(line);
+            }
+        }
+        finally {
+            out.close();
+        }
+        if (out.checkError()) {
+            throw new IOException("Error writing " + file);
+        }
+    }
+
+    private void writeJSON(File file) throws IOException {
+        PrintWriter out = new PrintWriter(new FileWriter(file));
+        try {
+            out.println("{");
+            out.println("  \"timesteps\": " + profiles.size() + ",");
+            out.println("  \"phases\": {");
+            int i = 0;
+            for (TimestepProfile.Phase next : TimestepProfile.Phase.values()) {
+                out.print("    \"" + next.name().toLowerCase() + "\": " + summary(phases.get(next)));
+                out.println(++i < phases.size() ? "," : "");
+            }
+            out.println("  },");
+            out.println("  \"agent_perception\": " + summary(perception) + ",");
+            out.println("  \"simulators\": {");
+            i = 0;
+            for (Map.Entry<String, TimingHistogram> next : simulators.entrySet()) {
+                out.print("    " + quote(next.getKey()) + ": " + summary(next.getValue()));
+                out.println(++i < simulators.size() ? "," : "");
+            }
+            out.println("  },");
+            out.println("  \"bytes_sent\": {");
+            i = 0;
+            for (Map.Entry<String, Long> next : bytesSent.entrySet()) {
+                out.print("    " + quote(next.getKey()) + ": " + next.getValue());
+                out.println(++i < bytesSent.size() ? "," : "");
+            }
+            out.println("  }");
+            out.println("}");
+        }
+        finally {
+            out.close();
+        }
+        if (out.checkError()) {
+            throw new IOException("Error writing " + file);
+        }
+    }
+
+    private static String summary(TimingHistogram h) {
+        StringBuilder result = new StringBuilder();
+        result.append("{\"count\": ").append(h.getCount());
+        result.append(", \"min_ms\": ").append(millis(h.getMin()));
+        result.append(", \"mean_ms\": ").append(h.getMean() / NANOS_PER_MILLI);
+        for (double p : PERCENTILES) {
+            result.append(", \"p").append((int)p).append("_ms\": ").append(millis(h.getValueAtPercentile(p)));
+        }
+        result.append("}");
+        return result.toString();
+    }
+
+    private static String quote(String s) {
+        StringBuilder result = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                result.append('\\');
+            }
+            if (c >= ' ') {
+                result.append(c);
+            }
+        }
+        return result.append("\"").toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+}
@@ -0,0 +1,128 @@
+package kernel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.EntityID;
+import rescuecore2.worldmodel.Property;
+
+/**
+   Removes properties from an agent's perception that have the same value as when the agent last received them. One filter is kept for each agent that accepts perception deltas.
+   <p>
+   The last value sent for each property is remembered. Simple values and lists of entity IDs are kept as they are. Anything else is kept in encoded form, so values are only treated as equal if they would be sent as the same bytes.
+   </p>
+ */
+public class PerceptionDeltaFilter {
+    // Stands in for an undefined property
+    private static final Object UNDEFINED = new Object();
+
+    private Map<EntityID, Map<String, Object>> lastSent;
+    private long propertiesSeen;
+    private long propertiesSent;
+
+    /**
+       Construct an empty PerceptionDeltaFilter. The first perception will be sent in full.
+    */
+    public PerceptionDeltaFilter() {
+        lastSent = new HashMap<EntityID, Map<String, Object>>();
+    }
+
+    /**
+       Filter a perception update.
+       @param visible The full perception update.
+       @return A ChangeSet containing only the properties that have changed since the agent last received them. Deleted entities are always included.
+    */
+    public ChangeSet filter(ChangeSet visible) {
+        ChangeSet result = new ChangeSet();
+        for (EntityID id : visible.getChangedEntities()) {
+            Map<String, Object> last = lastSent.get(id);
+            if (last == null) {
+                last = new HashMap<String, Object>();
+                lastSent.put(id, last);
+            }
+            String urn = visible.getEntityURN(id);
+            for (Property next : visible.getChangedProperties(id)) {
+                ++propertiesSeen;
+                Object value = valueOf(next);
+                Object old = last.get(next.getURN());
+                if (old == null || !equal(old, value)) {
+                    last.put(next.getURN(), value);
+                    result.addChange(id, urn, next);
+                    ++propertiesSent;
+                }
+            }
+        }
+        for (EntityID id : visible.getDeletedEntities()) {
+            lastSent.remove(id);
+            result.entityDeleted(id);
+        }
+        return result;
+    }
+
+    /**
+       Get the number of properties passed to {@link #filter(ChangeSet)} so far.
+       @return The number of properties seen.
+    */
+    public long getPropertiesSeen() {
+        return propertiesSeen;
+    }
+
+    /**
+       Get the number of properties sent to the agent so far.
+       @return The number of properties that were not suppressed.
+    */
+    public long getPropertiesSent() {
+        return propertiesSent;
+    }
+
+    private static Object valueOf(Property p) {
+        if (!p.isDefined()) {
+            return UNDEFINED;
+        }
+        Object value = p.getValue();
+        if (value instanceof Number
+            || value instanceof Boolean
+            || value instanceof String
+            || value instanceof EntityID
+            || value instanceof int[]) {
+            return value;
+        }
+        if (value instanceof List && isIDList((List<?>)value)) {
+            return new ArrayList<Object>((List<?>)value);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            p.write(out);
+        }
+        catch (IOException e) {
+            // Can't happen with a ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean isIDList(List<?> list) {
+        for (Object next : list) {
+            if (!(next instanceof EntityID)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equal(Object a, Object b) {
+        if (a instanceof int[] && b instanceof int[]) {
+            return Arrays.equals((int[])a, (int[])b);
+        }
+        if (a instanceof byte[] && b instanceof byte[]) {
+            return Arrays.equals((byte[])a, (byte[])b);
+        }
+        return a.equals(b);
+    }
+}
@@ -26,6 +26,10 @@ public class SimulatorProxy extends AbstractKernelComponent {
     private Map<Integer, ChangeSet> updates;
     private int id;
     private EntityIDGenerator idGenerator;
+    // ID requests received before the generator was set. Guarded by this.
+    private List<EntityIDRequest> pendingIDRequests;
+    private long commandsSentTime;
+    private long roundTripTime;
 
     /**
        Construct a new simulator.
@@ -37,6 +41,7 @@ public class SimulatorProxy extends AbstractKernelComponent {
         super(name, c);
         this.id = id;
         updates = new HashMap<Integer, ChangeSet>();
+        pendingIDRequests = new ArrayList<EntityIDRequest>();
         c.addConnectionListener(new SimulatorConnectionListener());
     }
 
@@ -74,9 +79,23 @@ public class SimulatorProxy extends AbstractKernelComponent {
        @param commands The agent commands to send.
     */
     public void sendAgentCommands(int time, Collection<? extends Command> commands) {
+        synchronized (updates) {
+            commandsSentTime = System.nanoTime();
+            roundTripTime = 0;
+        }
         send(new KSCommands(id, time, commands));
     }
 
+    /**
+       Get the time between the last set of agent commands being sent and the corresponding updates being received.
+       @return The round trip time in nanoseconds, or zero if no updates have been received since commands were last sent.
+    */
+    public long getLastRoundTripTime() {
+        synchronized (updates) {
+            return roundTripTime;
+        }
+    }
+
     @Override
     public String toString() {
         return getName() + " (" + id + "): " + getConnection().toString();
@@ -87,7 +106,40 @@ public class SimulatorProxy extends AbstractKernelComponent {
        @param generator The new EntityIDGenerator.
     */
     public void setEntityIDGenerator(EntityIDGenerator generator) {
-        idGenerator = generator;
+        List<EntityIDRequest> pending;
+        synchronized (this) {
+            idGenerator = generator;
+            pending = pendingIDRequests;
+            pendingIDRequests = new ArrayList<EntityIDRequest>();
+        }
+        for (EntityIDRequest next : pending) {
+            handleIDRequest(next);
+        }
+    }
+
+    /**
+       Answer a request for new entity IDs. Simulators may ask for IDs as soon as they connect, so requests that arrive before the EntityIDGenerator is set are answered when it is.
+       @param req The request.
+    */
+    private void handleIDRequest(EntityIDRequest req) {
+        EntityIDGenerator generator;
+        synchronized (this) {
+            generator = idGenerator;
+            if (generator == null) {
+                pendingIDRequests.add(req);
+                return;
+            }
+        }
+        int count = req.getCount();
+        List<EntityID> result = new ArrayList<EntityID>(count);
+        // Several simulators may ask for IDs at once
+        synchronized (generator) {
+            for (int i = 0; i < count; ++i) {
+                result.add(generator.generateID());
+            }
+        }
+        Logger.debug("Simulator proxy " + id + " sending new IDs: " + result);
+        send(new EntityIDResponse(id, req.getRequestID(), result));
     }
 
     /**
@@ -103,6 +155,7 @@ public class SimulatorProxy extends AbstractKernelComponent {
                 updates.put(time, c);
             }
             c.merge(changes);
+            roundTripTime = System.nanoTime() - commandsSentTime;
             updates.notifyAll();
         }
     }
@@ -122,14 +175,7 @@ public class SimulatorProxy extends AbstractKernelComponent {
                     EntityIDRequest req = (EntityIDRequest)msg;
                     Logger.debug("Simulator proxy " + id + " received entity ID request: " + msg);
                     if (req.getSimulatorID() == id) {
-                        int requestID = req.getRequestID();
-                        int count = req.getCount();
-                        List<EntityID> result = new ArrayList<EntityID>(count);
-                        for (int i = 0; i < count; ++i) {
-                            result.add(idGenerator.generateID());
-                        }
-                        Logger.debug("Simulator proxy " + id + " sending new IDs: " + result);
-                        send(new EntityIDResponse(id, requestID, result));
+                        handleIDRequest(req);
                     }
                 }
             }
@@ -0,0 +1,150 @@
+package kernel;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+   Timing and traffic information about a single kernel timestep. All times are in nanoseconds.
+ */
+public class TimestepProfile {
+    /**
+       The phases of a kernel timestep.
+    */
+    public enum Phase {
+        /** Computing and sending perception to agents. */
+        PERCEPTION("Perception"),
+        /** Waiting for agent commands. */
+        COMMANDS("Agent commands"),
+        /** Sending commands to simulators and waiting for their updates. */
+        SIMULATORS("Simulator updates"),
+        /** Merging simulator updates into the world model. */
+        MERGE("World model merge"),
+        /** Sending updates to simulators and viewers. */
+        BROADCAST("Update broadcast"),
+        /** Computing the score. */
+        SCORE("Score calculation"),
+        /** The whole timestep. */
+        TOTAL("Total");
+
+        private String description;
+
+        private Phase(String description) {
+            this.description = description;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    private int time;
+    private Map<Phase, Long> phaseTimes;
+    private Map<String, Long> perceptionTimes;
+    private Map<String, Long> simulatorTimes;
+    private Map<String, Long> bytesSent;
+
+    /**
+       Construct an empty TimestepProfile.
+       @param time The timestep this profile describes.
+    */
+    public TimestepProfile(int time) {
+        this.time = time;
+        phaseTimes = new EnumMap<Phase, Long>(Phase.class);
+        perceptionTimes = new LinkedHashMap<String, Long>();
+        simulatorTimes = new LinkedHashMap<String, Long>();
+        bytesSent = new LinkedHashMap<String, Long>();
+    }
+
+    /**
+       Get the timestep this profile describes.
+       @return The timestep.
+    */
+    public int getTime() {
+        return time;
+    }
+
+    /**
+       Set the time taken by a phase.
+       @param phase The phase.
+       @param nanos The time taken in nanoseconds.
+    */
+    public void setPhaseTime(Phase phase, long nanos) {
+        phaseTimes.put(phase, nanos);
+    }
+
+    /**
+       Get the time taken by a phase.
+       @param phase The phase.
+       @return The time taken in nanoseconds, or zero if the phase was not recorded.
+    */
+    public long getPhaseTime(Phase phase) {
+        Long result = phaseTimes.get(phase);
+        return result == null ? 0 : result;
+    }
+
+    /**
+       Record the time taken to compute perception for an agent.
+       @param agent The name of the agent.
+       @param nanos The time taken in nanoseconds.
+    */
+    public void addPerceptionTime(String agent, long nanos) {
+        perceptionTimes.put(agent, nanos);
+    }
+
+    /**
+       Get the time taken to compute perception for each agent.
+       @return An unmodifiable map from agent name to nanoseconds.
+    */
+    public Map<String, Long> getPerceptionTimes() {
+        return Collections.unmodifiableMap(perceptionTimes);
+    }
+
+    /**
+       Record the round trip time for a simulator.
+       @param simulator The name of the simulator.
+       @param nanos The time between sending commands and receiving updates in nanoseconds.
+    */
+    public void addSimulatorTime(String simulator, long nanos) {
+        simulatorTimes.put(simulator, nanos);
+    }
+
+    /**
+       Get the round trip time for each simulator.
+       @return An unmodifiable map from simulator name to nanoseconds.
+    */
+    public Map<String, Long> getSimulatorTimes() {
+        return Collections.unmodifiableMap(simulatorTimes);
+    }
+
+    /**
+       Record the number of bytes sent to a component during this timestep.
+       @param component The name of the component.
+       @param bytes The number of bytes sent.
+    */
+    public void addBytesSent(String component, long bytes) {
+        bytesSent.put(component, bytes);
+    }
+
+    /**
+       Get the number of bytes sent to each component during this timestep.
+       @return An unmodifiable map from component name to bytes sent.
+    */
+    public Map<String, Long> getBytesSent() {
+        return Collections.unmodifiableMap(bytesSent);
+    }
+
+    /**
+       Get the total number of bytes sent to all components during this timestep.
+       @return The total number of bytes sent.
+    */
+    public long getTotalBytesSent() {
+        long result = 0;
+        for (Long next : bytesSent.values()) {
+            result += next;
+        }
+        return result;
+    }
+}
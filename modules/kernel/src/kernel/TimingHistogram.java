@@ -0,0 +1,132 @@
+package kernel;
+
+/**
+   A histogram of non-negative long values (typically nanosecond timings) with logarithmic buckets. Values below 64 are recorded exactly; larger values are recorded with 32 sub-buckets per power of two, so percentiles are accurate to about 3%. Memory use is fixed regardless of the number of values recorded.
+ */
+public class TimingHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT * 2;
+    // CHECKSTYLE:OFF:MagicNumber
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+    // CHECKSTYLE:ON:MagicNumber
+    private static final double PERCENT = 100.0;
+
+    private final long[] counts;
+    private long count;
+    private long sum;
+    private long min;
+    private long max;
+
+    /**
+       Construct an empty histogram.
+    */
+    public TimingHistogram() {
+        counts = new long[BUCKET_COUNT];
+        reset();
+    }
+
+    /**
+       Record a value. Negative values are recorded as zero.
+       @param value The value to record.
+    */
+    public synchronized void recordValue(long value) {
+        long v = Math.max(0, value);
+        ++counts[bucketIndex(v)];
+        ++count;
+        sum += v;
+        min = Math.min(min, v);
+        max = Math.max(max, v);
+    }
+
+    /**
+       Remove all recorded values.
+    */
+    public final synchronized void reset() {
+        java.util.Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    /**
+       Get the number of values recorded.
+       @return The number of values.
+    */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+       Get the smallest value recorded.
+       @return The smallest value, or zero if nothing has been recorded.
+    */
+    public synchronized long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+       Get the largest value recorded.
+       @return The largest value.
+    */
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+       Get the sum of all values recorded.
+       @return The total.
+    */
+    public synchronized long getTotal() {
+        return sum;
+    }
+
+    /**
+       Get the mean of all values recorded.
+       @return The mean, or zero if nothing has been recorded.
+    */
+    public synchronized double getMean() {
+        return count == 0 ? 0 : ((double)sum) / count;
+    }
+
+    /**
+       Get the value at a given percentile. The result is the largest value that falls into the same bucket as the requested percentile, capped at the maximum recorded value.
+       @param percentile The percentile in the range [0, 100].
+       @return The value at that percentile, or zero if nothing has been recorded.
+    */
+    public synchronized long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        double p = Math.min(PERCENT, Math.max(0, percentile));
+        long target = Math.max(1, (long)Math.ceil((p / PERCENT) * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(max, highestValueInBucket(i));
+            }
+        }
+        return max;
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int)value;
+        }
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        int mantissa = (int)(value >>> shift);
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKET_COUNT + (mantissa - SUB_BUCKET_COUNT);
+    }
+
+    private static long highestValueInBucket(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int offset = index - LINEAR_LIMIT;
+        int shift = (offset / SUB_BUCKET_COUNT) + 1;
+        long mantissa = (offset % SUB_BUCKET_COUNT) + SUB_BUCKET_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -10,6 +10,7 @@ import javax.swing.JPanel;
 import javax.swing.JButton;
 import javax.swing.SwingUtilities;
 import javax.swing.JOptionPane;
+import javax.swing.JFrame;
 
 import java.util.Collection;
 import java.util.List;
@@ -71,6 +72,7 @@ public class KernelControlPanel extends JPanel {
         JButton removeSim = new JButton("Remove simulator");
         JButton addViewer = new JButton("Add viewer");
         JButton removeViewer = new JButton("Remove viewer");
+        JButton profile = new JButton("Profile");
         stepButton = new JButton("Step");
         runButton = new JButton("Run");
         add(addAgent);
@@ -79,6 +81,7 @@ public class KernelControlPanel extends JPanel {
         add(removeSim);
         add(addViewer);
         add(removeViewer);
+        add(profile);
         add(stepButton);
         add(runButton);
         controlButtons.add(addAgent);
@@ -117,6 +120,11 @@ public class KernelControlPanel extends JPanel {
                     removeViewer();
                 }
             });
+        profile.addActionListener(new ActionListener() {
+                public void actionPerformed(ActionEvent e) {
+                    showProfile();
+                }
+            });
         stepButton.addActionListener(new ActionListener() {
                 public void actionPerformed(ActionEvent e) {
                     stepButtonPressed();
@@ -164,6 +172,14 @@ public class KernelControlPanel extends JPanel {
     private void removeViewer() {
     }
 
+    private void showProfile() {
+        JFrame frame = new JFrame("Kernel profile");
+        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        frame.getContentPane().add(new KernelProfilePanel(kernel.getProfiler()));
+        frame.pack();
+        frame.setVisible(true);
+    }
+
     private void addComponent(Component[] options, String type) {
         if (options.length == 0) {
             return;
@@ -0,0 +1,144 @@
+package kernel.ui;
+
+import java.awt.BorderLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+import kernel.KernelProfiler;
+import kernel.TimestepProfile;
+import kernel.TimingHistogram;
+
+/**
+   A panel that shows percentile summaries of kernel timestep timings.
+ */
+public class KernelProfilePanel extends JPanel {
+    private static final int REFRESH_INTERVAL = 1000;
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    private static final String[] COLUMNS = {"Phase", "Count", "Mean (ms)", "50% (ms)", "90% (ms)", "99% (ms)", "Max (ms)"};
+    // CHECKSTYLE:OFF:MagicNumber
+    private static final double[] PERCENTILES = {50, 90, 99};
+    private static final int FIRST_PERCENTILE_COLUMN = 3;
+    // CHECKSTYLE:ON:MagicNumber
+
+    private KernelProfiler profiler;
+    private ProfileTableModel model;
+    private JLabel bytesLabel;
+    private Timer timer;
+
+    /**
+       Construct a KernelProfilePanel.
+       @param profiler The profiler to display.
+    */
+    public KernelProfilePanel(KernelProfiler profiler) {
+        super(new BorderLayout());
+        this.profiler = profiler;
+        model = new ProfileTableModel();
+        add(new JScrollPane(new JTable(model)), BorderLayout.CENTER);
+        bytesLabel = new JLabel("Bytes sent: 0");
+        add(bytesLabel, BorderLayout.SOUTH);
+        timer = new Timer(REFRESH_INTERVAL, new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    refresh();
+                }
+            });
+        refresh();
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        timer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        timer.stop();
+        super.removeNotify();
+    }
+
+    private void refresh() {
+        List<String> names = new ArrayList<String>();
+        List<TimingHistogram> histograms = new ArrayList<TimingHistogram>();
+        for (TimestepProfile.Phase next : TimestepProfile.Phase.values()) {
+            names.add(next.toString());
+            histograms.add(profiler.getPhaseHistogram(next));
+        }
+        names.add("Perception per agent");
+        histograms.add(profiler.getPerceptionHistogram());
+        for (Map.Entry<String, TimingHistogram> next : profiler.getSimulatorHistograms().entrySet()) {
+            names.add("Round trip: " + next.getKey());
+            histograms.add(next.getValue());
+        }
+        long bytes = 0;
+        for (Long next : profiler.getBytesSent().values()) {
+            bytes += next;
+        }
+        bytesLabel.setText("Bytes sent: " + bytes);
+        model.update(names, histograms);
+    }
+
+    private static class ProfileTableModel extends AbstractTableModel {
+        private List<String> names = new ArrayList<String>();
+        private List<TimingHistogram> histograms = new ArrayList<TimingHistogram>();
+
+        void update(List<String> newNames, List<TimingHistogram> newHistograms) {
+            boolean structureChanged = newNames.size() != names.size();
+            names = newNames;
+            histograms = newHistograms;
+            if (structureChanged) {
+                fireTableDataChanged();
+            }
+            else {
+                fireTableRowsUpdated(0, names.size() - 1);
+            }
+        }
+
+        @Override
+        public String getColumnName(int col) {
+            return COLUMNS[col];
+        }
+
+        @Override
+        public int getRowCount() {
+            return names.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public Object getValueAt(int row, int col) {
+            TimingHistogram h = histograms.get(row);
+            if (col == 0) {
+                return names.get(row);
+            }
+            if (col == 1) {
+                return h.getCount();
+            }
+            if (col == 2) {
+                return format(h.getMean());
+            }
+            if (col == COLUMNS.length - 1) {
+                return format(h.getMax());
+            }
+            return format(h.getValueAtPercentile(PERCENTILES[col - FIRST_PERCENTILE_COLUMN]));
+        }
+
+        private String format(double nanos) {
+            return String.format("%.2f", nanos / NANOS_PER_MILLI);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package kernel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.After;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import rescuecore2.components.AbstractSimulator;
+import rescuecore2.config.Config;
+import rescuecore2.connection.Connection;
+import rescuecore2.connection.ConnectionListener;
+import rescuecore2.connection.StreamConnection;
+import rescuecore2.messages.Message;
+import rescuecore2.messages.control.EntityIDRequest;
+import rescuecore2.messages.control.EntityIDResponse;
+import rescuecore2.registry.Registry;
+import rescuecore2.worldmodel.DefaultWorldModel;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+import rescuecore2.worldmodel.WorldModel;
+
+public class EntityIDLeaseTest {
+    private static final int SIMULATOR_ID = 1;
+    private static final long TIMEOUT = 10000;
+
+    private Connection kernelConnection;
+    private Connection simulatorConnection;
+    private SimulatorProxy proxy;
+    private LeasingSimulator simulator;
+    private MessageCounter requests;
+    private MessageCounter responses;
+
+    @After
+    public void cleanup() {
+        if (simulator != null) {
+            simulator.shutdown();
+        }
+        kernelConnection.shutdown();
+        simulatorConnection.shutdown();
+    }
+
+    @Test
+    public void testLeaseRequestedBeforeGenerator() throws Exception {
+        connect(10);
+        // The simulator asks for its lease as soon as it connects
+        requests.waitFor(1);
+        Thread.sleep(100);
+        assertEquals(0, responses.getCount());
+        proxy.setEntityIDGenerator(new CountingIDGenerator());
+        responses.waitFor(1);
+        assertEquals(ids(1, 3), simulator.getIDs(3));
+        assertEquals(Arrays.asList(10), requests.getCounts());
+    }
+
+    @Test
+    public void testRefillBelowHalf() throws Exception {
+        connect(10);
+        proxy.setEntityIDGenerator(new CountingIDGenerator());
+        responses.waitFor(1);
+        assertEquals(ids(1, 4), simulator.getIDs(4));
+        // Six left: no refill yet
+        Thread.sleep(100);
+        assertEquals(Arrays.asList(10), requests.getCounts());
+        assertEquals(ids(5, 6), simulator.getIDs(2));
+        // Four left: another block is leased in the background
+        responses.waitFor(2);
+        assertEquals(Arrays.asList(10, 10), requests.getCounts());
+        // The rest of the first block and all of the second without asking the kernel
+        assertEquals(ids(7, 20), simulator.getIDs(14));
+        responses.waitFor(3);
+        assertEquals(Arrays.asList(10, 10, 10), requests.getCounts());
+    }
+
+    @Test
+    public void testExhaustedLeaseFallsBack() throws Exception {
+        connect(4);
+        proxy.setEntityIDGenerator(new CountingIDGenerator());
+        responses.waitFor(1);
+        // Four from the lease, then a refill is leased and the other six are requested directly
+        List<EntityID> expected = ids(1, 4);
+        expected.addAll(ids(9, 14));
+        assertEquals(expected, simulator.getIDs(10));
+        responses.waitFor(3);
+        assertEquals(Arrays.asList(4, 4, 6), requests.getCounts());
+        // The refill is still available
+        assertEquals(ids(5, 8), simulator.getIDs(4));
+    }
+
+    @Test
+    public void testNoLease() throws Exception {
+        connect(0);
+        proxy.setEntityIDGenerator(new CountingIDGenerator());
+        assertEquals(ids(1, 3), simulator.getIDs(3));
+        assertEquals(ids(4, 5), simulator.getIDs(2));
+        assertEquals(Arrays.asList(3, 2), requests.getCounts());
+    }
+
+    private void connect(int leaseSize) throws IOException {
+        PipedInputStream kernelIn = new PipedInputStream();
+        PipedInputStream simulatorIn = new PipedInputStream();
+        kernelConnection = new StreamConnection(kernelIn, new PipedOutputStream(simulatorIn));
+        simulatorConnection = new StreamConnection(simulatorIn, new PipedOutputStream(kernelIn));
+        kernelConnection.setRegistry(Registry.SYSTEM_REGISTRY);
+        simulatorConnection.setRegistry(Registry.SYSTEM_REGISTRY);
+        requests = new MessageCounter();
+        responses = new MessageCounter();
+        kernelConnection.addConnectionListener(requests);
+        proxy = new SimulatorProxy("Simulator", SIMULATOR_ID, kernelConnection);
+        kernelConnection.startup();
+        simulatorConnection.startup();
+        simulator = new LeasingSimulator(leaseSize);
+        simulator.postConnect(simulatorConnection, SIMULATOR_ID, Collections.<Entity>emptyList(), new Config());
+        // Added after the simulator's listener so responses are counted once the simulator has handled them
+        simulatorConnection.addConnectionListener(responses);
+    }
+
+    private static List<EntityID> ids(int first, int last) {
+        List<EntityID> result = new ArrayList<EntityID>();
+        for (int i = first; i <= last; ++i) {
+            result.add(new EntityID(i));
+        }
+        return result;
+    }
+
+    private static class LeasingSimulator extends AbstractSimulator<WorldModel<Entity>> {
+        private int leaseSize;
+
+        LeasingSimulator(int leaseSize) {
+            this.leaseSize = leaseSize;
+            config = new Config();
+        }
+
+        List<EntityID> getIDs(int count) throws InterruptedException {
+            return requestNewEntityIDs(count);
+        }
+
+        @Override
+        protected int getEntityIDLeaseSize() {
+            return leaseSize;
+        }
+
+        @Override
+        protected WorldModel<Entity> createWorldModel() {
+            return DefaultWorldModel.create();
+        }
+    }
+
+    private static class CountingIDGenerator implements EntityIDGenerator {
+        private int next = 1;
+
+        @Override
+        public EntityID generateID() {
+            return new EntityID(next++);
+        }
+    }
+
+    /**
+       Counts EntityIDRequest and EntityIDResponse messages and records the number of IDs in each.
+    */
+    private static class MessageCounter implements ConnectionListener {
+        private List<Integer> counts = new ArrayList<Integer>();
+
+        @Override
+        public synchronized void messageReceived(Connection c, Message msg) {
+            if (msg instanceof EntityIDRequest) {
+                counts.add(((EntityIDRequest)msg).getCount());
+                notifyAll();
+            }
+            if (msg instanceof EntityIDResponse) {
+                counts.add(((EntityIDResponse)msg).getEntityIDs().size());
+                notifyAll();
+            }
+        }
+
+        synchronized int getCount() {
+            return counts.size();
+        }
+
+        synchronized List<Integer> getCounts() {
+            return new ArrayList<Integer>(counts);
+        }
+
+        synchronized void waitFor(int count) throws InterruptedException {
+            long end = System.currentTimeMillis() + TIMEOUT;
+            while (counts.size() < count && System.currentTimeMillis() < end) {
+                wait(end - System.currentTimeMillis());
+            }
+            assertTrue("Expected " + count + " messages but got " + counts, counts.size() >= count);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package kernel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import rescuecore2.Timestep;
+import rescuecore2.config.Config;
+import rescuecore2.connection.AbstractConnection;
+import rescuecore2.log.FileLogReader;
+import rescuecore2.log.LogReader;
+import rescuecore2.log.PerceptionRecord;
+import rescuecore2.messages.Command;
+import rescuecore2.registry.Registry;
+import rescuecore2.score.ConstantScoreFunction;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.DefaultWorldModel;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+import rescuecore2.worldmodel.WorldModel;
+
+import rescuecore2.standard.entities.Building;
+import rescuecore2.standard.entities.FireBrigade;
+import rescuecore2.standard.entities.StandardEntityFactory;
+import rescuecore2.standard.entities.StandardPropertyFactory;
+
+public class KernelPipelineTest {
+    private static final int TIMESTEPS = 5;
+    private static final int AGENT_ID = 100;
+    private static final long TIMEOUT = 10000;
+
+    private File logFile;
+    private Kernel kernel;
+    private RecordingConnection agentConnection;
+    private RecordingConnection viewerConnection;
+    private List<Integer> completed;
+    private List<TimestepProfile> profiles;
+    private List<String> threads;
+    private boolean overlapped;
+
+    @Before
+    public void setup() throws IOException, KernelException {
+        logFile = File.createTempFile("pipeline", ".log");
+        completed = new ArrayList<Integer>();
+        profiles = new ArrayList<TimestepProfile>();
+        threads = new ArrayList<String>();
+        overlapped = true;
+        WorldModel<Entity> world = DefaultWorldModel.create();
+        for (int i = 1; i <= TIMESTEPS; ++i) {
+            Building b = new Building(new EntityID(i));
+            b.setTemperature(0);
+            world.addEntity(b);
+        }
+        FireBrigade agent = new FireBrigade(new EntityID(AGENT_ID));
+        world.addEntity(agent);
+        Config config = new Config();
+        config.setValue("kernel.logname", logFile.getPath());
+        config.setBooleanValue(Kernel.PIPELINE_KEY, true);
+        kernel = new Kernel(config, new GrowingPerception(), new SilentCommunicationModel(), world, new CountingIDGenerator(), new ChainedCommandFilter(), new NeverTerminate(), new ConstantScoreFunction("Test", 1), new WaitingCommandCollector());
+        kernel.addKernelListener(new KernelListenerAdapter() {
+                @Override
+                public void timestepCompleted(Kernel k, Timestep time) {
+                    synchronized (KernelPipelineTest.this) {
+                        completed.add(time.getTime());
+                        profiles.add(k.getLastTimestepProfile());
+                        threads.add(Thread.currentThread().getName());
+                        KernelPipelineTest.this.notifyAll();
+                    }
+                }
+            });
+        agentConnection = new RecordingConnection();
+        viewerConnection = new RecordingConnection();
+        kernel.addAgent(new AgentProxy("Agent", agent, agentConnection));
+        kernel.addViewer(new ViewerProxy("Viewer", 1, viewerConnection));
+    }
+
+    @After
+    public void cleanup() {
+        logFile.delete();
+    }
+
+    @Test
+    public void testPipelinedTimesteps() throws Exception {
+        String agentName = kernel.getAllAgents().iterator().next().toString();
+        String viewerName = kernel.getAllViewers().iterator().next().toString();
+        for (int i = 0; i < TIMESTEPS; ++i) {
+            kernel.timestep();
+        }
+        kernel.shutdown();
+        assertTrue("The pipeline did not overlap with the next timestep", overlapped);
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 1; i <= TIMESTEPS; ++i) {
+            expected.add(i);
+        }
+        assertEquals(expected, completed);
+        for (int i = 0; i < TIMESTEPS; ++i) {
+            assertTrue(threads.get(i), threads.get(i).startsWith("Kernel pipeline"));
+            TimestepProfile profile = profiles.get(i);
+            assertEquals(i + 1, profile.getTime());
+            assertEquals(agentConnection.getSent().get(i), profile.getBytesSent().get(agentName));
+            assertEquals(viewerConnection.getSent().get(i), profile.getBytesSent().get(viewerName));
+        }
+        Registry registry = new Registry("Test");
+        registry.registerEntityFactory(StandardEntityFactory.INSTANCE);
+        registry.registerPropertyFactory(StandardPropertyFactory.INSTANCE);
+        LogReader reader = new FileLogReader(logFile, registry);
+        assertEquals(TIMESTEPS, reader.getMaxTimestep());
+        for (int time = 1; time <= TIMESTEPS; ++time) {
+            PerceptionRecord perception = reader.getPerception(time, new EntityID(AGENT_ID));
+            assertNotNull(perception);
+            assertEquals(time, perception.getChangeSet().getChangedEntities().size());
+            assertEquals(time, reader.getCommands(time).getTime());
+            assertEquals(time, reader.getUpdates(time).getTime());
+        }
+        assertNull(reader.getUpdates(TIMESTEPS + 1));
+    }
+
+    /**
+       Sees the first n buildings at timestep n, so each perception update is a different size.
+    */
+    private class GrowingPerception implements Perception {
+        private WorldModel<? extends Entity> world;
+        private int time;
+
+        @Override
+        public void initialise(Config config, WorldModel<? extends Entity> newWorld) {
+            world = newWorld;
+        }
+
+        @Override
+        public ChangeSet getVisibleEntities(AgentProxy agent) {
+            ChangeSet result = new ChangeSet();
+            for (int i = 1; i <= time; ++i) {
+                Building b = (Building)world.getEntity(new EntityID(i));
+                result.addChange(b, b.getTemperatureProperty());
+            }
+            return result;
+        }
+
+        @Override
+        public void setTime(int timestep) {
+            time = timestep;
+        }
+    }
+
+    /**
+       Waits for the previous timestep to be completed on the pipeline thread, which can only happen if the pipeline does not need the kernel lock.
+    */
+    private class WaitingCommandCollector implements CommandCollector {
+        @Override
+        public Collection<Command> getAgentCommands(Collection<AgentProxy> agents, int timestep) throws InterruptedException {
+            synchronized (KernelPipelineTest.this) {
+                long end = System.currentTimeMillis() + TIMEOUT;
+                while (completed.size() < timestep - 1 && System.currentTimeMillis() < end) {
+                    KernelPipelineTest.this.wait(end - System.currentTimeMillis());
+                }
+                if (completed.size() < timestep - 1) {
+                    overlapped = false;
+                }
+            }
+            return new ArrayList<Command>();
+        }
+
+        @Override
+        public void initialise(Config config) {
+        }
+    }
+
+    private static class SilentCommunicationModel implements CommunicationModel {
+        @Override
+        public void initialise(Config config, WorldModel<? extends Entity> world) {
+        }
+
+        @Override
+        public void process(int time, Collection<? extends Command> agentCommands) {
+        }
+
+        @Override
+        public Collection<Command> getHearing(Entity agent) {
+            return Collections.<Command>emptyList();
+        }
+    }
+
+    private static class CountingIDGenerator implements EntityIDGenerator {
+        private int next = AGENT_ID + 1;
+
+        @Override
+        public EntityID generateID() {
+            return new EntityID(next++);
+        }
+    }
+
+    private static class NeverTerminate implements TerminationCondition {
+        @Override
+        public void initialise(Config config) {
+        }
+
+        @Override
+        public boolean shouldStop(KernelState state) {
+            return false;
+        }
+    }
+
+    /**
+       A connection that records the size of each batch of messages sent.
+    */
+    private static class RecordingConnection extends AbstractConnection {
+        private List<Long> sent;
+
+        RecordingConnection() {
+            sent = Collections.synchronizedList(new ArrayList<Long>());
+            startup();
+        }
+
+        List<Long> getSent() {
+            return sent;
+        }
+
+        @Override
+        protected void sendBytes(byte[] b) {
+            sent.add((long)b.length);
+        }
+
+        @Override
+        protected void startupImpl() {
+        }
+
+        @Override
+        protected void shutdownImpl() {
+        }
+    }
+}
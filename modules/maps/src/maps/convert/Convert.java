@@ -10,8 +10,8 @@ import maps.gml.view.GMLMapViewer;
 import maps.convert.osm2gml.Convertor;
 import maps.gml.formats.RobocupFormat;
 
-import org.dom4j.DocumentException;
 
+import java.awt.GraphicsEnvironment;
 import java.awt.GridLayout;
 import java.awt.Dimension;
 import java.awt.event.WindowAdapter;
@@ -21,6 +21,8 @@ import javax.swing.JPanel;
 import javax.swing.BorderFactory;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
    This class converts maps from one format to another.
@@ -36,6 +38,8 @@ public final class Convert {
     private static final int STATUS_HEIGHT = 10;
     private static final int MARGIN = 4;
 
+    private static final String HEADLESS_FLAG = "--headless";
+
     //    private ShapeDebugFrame debug;
     //    private List<ShapeDebugFrame.ShapeInfo> allOSMNodes;
     //    private List<ShapeDebugFrame.ShapeInfo> allGMLNodes;
@@ -45,19 +49,32 @@ public final class Convert {
 
     /**
        Run the map convertor.
-       @param args Command line arguments: osm-mapname gml-mapname.
+       @param args Command line arguments: [--headless] osm-mapname gml-mapname.
     */
     public static void main(String[] args) {
-        if (args.length < 2) {
-            System.out.println("Usage: Convert <osm-mapname> <gml-mapname>");
+        boolean headless = GraphicsEnvironment.isHeadless();
+        List<String> files = new ArrayList<String>();
+        for (String next : args) {
+            if (HEADLESS_FLAG.equals(next)) {
+                headless = true;
+            }
+            else {
+                files.add(next);
+            }
+        }
+        if (files.size() < 2) {
+            System.out.println("Usage: Convert [" + HEADLESS_FLAG + "] <osm-mapname> <gml-mapname>");
             return;
         }
         try {
-            OSMMap osmMap = readOSMMap(args[0]);
-            OSMMapViewer osmViewer = new OSMMapViewer(osmMap);
-            Convertor convert = new Convertor();
+            OSMMap osmMap = readOSMMap(files.get(0));
+            Convertor convert = new Convertor(!headless);
             GMLMap gmlMap = convert.convert(osmMap);
-            MapWriter.writeMap(gmlMap, args[1], RobocupFormat.INSTANCE);
+            MapWriter.writeMap(gmlMap, files.get(1), RobocupFormat.INSTANCE);
+            if (headless) {
+                return;
+            }
+            OSMMapViewer osmViewer = new OSMMapViewer(osmMap);
             GMLMapViewer gmlViewer = new GMLMapViewer(gmlMap);
             JFrame frame = new JFrame("Convertor");
             JPanel main = new JPanel(new GridLayout(1, 2));
@@ -83,7 +100,7 @@ public final class Convert {
         // CHECKSTYLE:ON:IllegalCatch
     }
 
-    private static OSMMap readOSMMap(String file) throws OSMException, IOException, DocumentException {
+    private static OSMMap readOSMMap(String file) throws OSMException, IOException {
         File f = new File(file);
         return new OSMMap(f);
     }
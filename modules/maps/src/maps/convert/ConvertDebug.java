@@ -0,0 +1,93 @@
+package maps.convert;
+
+import java.util.Collection;
+
+import rescuecore2.misc.gui.ShapeDebugFrame;
+
+/**
+   Shape debugging for conversion steps. This delegates to a {@link ShapeDebugFrame} if there is one and does nothing otherwise, so conversion steps can run without a display.
+*/
+public class ConvertDebug {
+    private ShapeDebugFrame frame;
+
+    /**
+       Construct a ConvertDebug.
+       @param frame The frame to show shapes in. This may be null to ignore all debugging output.
+    */
+    public ConvertDebug(ShapeDebugFrame frame) {
+        this.frame = frame;
+    }
+
+    /**
+       Set the "background" shapes.
+       @param back The new background shapes.
+       @see ShapeDebugFrame#setBackground(Collection)
+    */
+    public void setBackground(Collection<? extends ShapeDebugFrame.ShapeInfo> back) {
+        if (frame != null) {
+            frame.setBackground(back);
+        }
+    }
+
+    /**
+       Clear the "background" shapes.
+    */
+    public void clearBackground() {
+        if (frame != null) {
+            frame.clearBackground();
+        }
+    }
+
+    /**
+       Set whether autozoom is enabled.
+       @param b True if autozoom should be enabled, false otherwise.
+    */
+    public void setAutozoomEnabled(boolean b) {
+        if (frame != null) {
+            frame.setAutozoomEnabled(b);
+        }
+    }
+
+    /**
+       Show a set of ShapeInfo objects.
+       @param description A description.
+       @param shapes A list of collections of ShapeInfo objects.
+       @see ShapeDebugFrame#show(String, Collection...)
+    */
+    @SafeVarargs
+    public final void show(String description, Collection<? extends ShapeDebugFrame.ShapeInfo>... shapes) {
+        if (frame != null) {
+            frame.show(description, shapes);
+        }
+    }
+
+    /**
+       Show a set of ShapeInfo objects.
+       @param description A description.
+       @param shapes An array of ShapeInfo objects.
+       @see ShapeDebugFrame#show(String, ShapeDebugFrame.ShapeInfo...)
+    */
+    public void show(String description, ShapeDebugFrame.ShapeInfo... shapes) {
+        if (frame != null) {
+            frame.show(description, shapes);
+        }
+    }
+
+    /**
+       Activate the frame. Future calls to show will block until the user clicks a button.
+    */
+    public void activate() {
+        if (frame != null) {
+            frame.activate();
+        }
+    }
+
+    /**
+       Deactivate and hide the frame. Future calls to show will return immediately.
+    */
+    public void deactivate() {
+        if (frame != null) {
+            frame.deactivate();
+        }
+    }
+}
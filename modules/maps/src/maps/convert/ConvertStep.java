@@ -12,8 +12,8 @@ import rescuecore2.log.Logger;
    A step in the map conversion process.
 */
 public abstract class ConvertStep {
-    /** A ShapeDebugFrame for use by subclasses. */
-    protected ShapeDebugFrame debug;
+    /** Shape debugging for use by subclasses. This does nothing unless {@link #setDebugEnabled(boolean)} has been called. */
+    protected ConvertDebug debug;
 
     private JProgressBar progress;
     private JLabel status;
@@ -26,7 +26,15 @@ public abstract class ConvertStep {
         this.status = new JLabel();
         progress.setString("");
         progress.setStringPainted(true);
-        debug = new ShapeDebugFrame();
+        debug = new ConvertDebug(null);
+    }
+
+    /**
+       Set whether this step can show its working in a shape debugging window. This should not be enabled when running headless.
+       @param enabled True to create a debugging window, false to ignore all debugging output.
+    */
+    public void setDebugEnabled(boolean enabled) {
+        debug = new ConvertDebug(enabled ? new ShapeDebugFrame() : null);
     }
 
     /**
@@ -93,6 +101,7 @@ public abstract class ConvertStep {
        @param s The new status label.
     */
     protected void setStatus(final String s) {
+        Logger.info(getDescription() + ": " + s);
         SwingUtilities.invokeLater(new Runnable() {
                 public void run() {
                     status.setText(s);
@@ -11,6 +11,7 @@ import javax.swing.JComponent;
 import javax.swing.JProgressBar;
 import javax.swing.Box;
 import java.awt.BorderLayout;
+import java.awt.GraphicsEnvironment;
 import java.awt.GridBagLayout;
 import java.awt.GridBagConstraints;
 import java.awt.Dimension;
@@ -19,6 +20,8 @@ import java.awt.Insets;
 import java.util.List;
 import java.util.ArrayList;
 
+import rescuecore2.log.Logger;
+
 /**
    This class converts OSMMaps to GMLMaps.
 */
@@ -28,6 +31,24 @@ public class Convertor {
     private static final int STATUS_WIDTH = 500;
     private static final int STATUS_HEIGHT = 10;
     private static final int MARGIN = 4;
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private boolean showProgress;
+
+    /**
+       Construct a Convertor that shows a progress window if a display is available.
+    */
+    public Convertor() {
+        this(!GraphicsEnvironment.isHeadless());
+    }
+
+    /**
+       Construct a Convertor.
+       @param showProgress Whether to show a progress window and let conversion steps show debugging windows. If false then progress is only logged.
+    */
+    public Convertor(boolean showProgress) {
+        this.showProgress = showProgress;
+    }
 
     /**
        Convert an OSMMap to a GMLMap.
@@ -36,8 +57,8 @@ public class Convertor {
     */
     public GMLMap convert(OSMMap map) {
         GMLMap gmlMap = new GMLMap();
+        Logger.info("Converting OSM map with " + map.getRoads().size() + " roads and " + map.getBuildings().size() + " buildings");
 
-        JFrame frame = new JFrame("OSM to GML converter");
         JPanel main = new JPanel(new BorderLayout());
         JComponent top = Box.createVerticalBox();
         top.add(new JLabel("Converting OSM map with " + map.getRoads().size() + " roads and " + map.getBuildings().size() + " buildings"));
@@ -75,21 +96,26 @@ public class Convertor {
         */
         addStep(new MakeObjectsStep(temp, gmlMap), steps, progress, layout, c);
 
-        main.add(top);
-        main.add(progress);
-
-        frame.setContentPane(main);
-        frame.pack();
-        frame.setVisible(true);
+        if (showProgress) {
+            JFrame frame = new JFrame("OSM to GML converter");
+            main.add(top);
+            main.add(progress);
+            frame.setContentPane(main);
+            frame.pack();
+            frame.setVisible(true);
+        }
 
         for (ConvertStep next : steps) {
+            long start = System.nanoTime();
             next.doStep();
+            Logger.info(next.getDescription() + " took " + ((System.nanoTime() - start) / NANOS_PER_MILLI) + "ms");
         }
 
         return gmlMap;
     }
 
     private void addStep(ConvertStep step, List<ConvertStep> steps, JComponent panel, GridBagLayout layout, GridBagConstraints c) {
+        step.setDebugEnabled(showProgress);
         JLabel title = new JLabel(step.getDescription());
         JProgressBar progress = step.getProgressBar();
         JComponent status = step.getStatusComponent();
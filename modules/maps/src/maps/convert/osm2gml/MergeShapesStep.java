@@ -58,14 +58,14 @@ public class MergeShapesStep extends ConvertStep {
     }
 
     private boolean tryToMerge(TemporaryBuilding b) {
-        if (!map.getBuildings().contains(b)) {
+        if (!map.containsObject(b)) {
             return false;
         }
-        Collection<TemporaryBuilding> others = map.getBuildings();
-        for (TemporaryBuilding other : others) {
-            if (b == other) {
+        for (TemporaryObject candidate : getNeighbours(b)) {
+            if (!(candidate instanceof TemporaryBuilding)) {
                 continue;
             }
+            TemporaryBuilding other = (TemporaryBuilding)candidate;
             if (other.getBuildingID() == b.getBuildingID()) {
                 List<DirectedEdge> boundary = mergeShapes(b, other);
                 if (boundary == null) {
@@ -85,14 +85,14 @@ public class MergeShapesStep extends ConvertStep {
     }
 
     private boolean tryToMerge(TemporaryRoad r) {
-        if (!map.getRoads().contains(r)) {
+        if (!map.containsObject(r)) {
             return false;
         }
-        Collection<TemporaryRoad> others = map.getRoads();
-        for (TemporaryRoad other : others) {
-            if (r == other) {
+        for (TemporaryObject candidate : getNeighbours(r)) {
+            if (!(candidate instanceof TemporaryRoad)) {
                 continue;
             }
+            TemporaryRoad other = (TemporaryRoad)candidate;
             List<DirectedEdge> boundary = mergeShapes(r, other);
             if (boundary == null) {
                 continue;
@@ -112,6 +112,18 @@ public class MergeShapesStep extends ConvertStep {
         return false;
     }
 
+    /**
+       Get the objects that share an edge with an object. Only these can be merged with it.
+    */
+    private Set<TemporaryObject> getNeighbours(TemporaryObject object) {
+        Set<TemporaryObject> result = new HashSet<TemporaryObject>();
+        for (DirectedEdge next : object.getEdges()) {
+            result.addAll(map.getAttachedObjects(next.getEdge()));
+        }
+        result.remove(object);
+        return result;
+    }
+
     private List<DirectedEdge> mergeShapes(TemporaryObject first, TemporaryObject second) {
         Map<Edge, DirectedEdge> edges1 = new HashMap<Edge, DirectedEdge>();
         Map<Edge, DirectedEdge> edges2 = new HashMap<Edge, DirectedEdge>();
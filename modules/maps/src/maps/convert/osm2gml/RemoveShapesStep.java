@@ -2,16 +2,21 @@ package maps.convert.osm2gml;
 
 import java.awt.Color;
 
+import java.util.ArrayList;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Collection;
 
 import maps.convert.ConvertStep;
 
 import rescuecore2.log.Logger;
+import rescuecore2.misc.ChunkExecutor;
 
 /**
-   This step removes shapes that are duplicates or contained entirely inside another shape.
+   This step removes shapes that are duplicates or contained entirely inside another shape. Shapes are only compared with shapes they could match: duplicates must share an edge, and the candidate containers of a shape are looked up in the TemporaryMap's grid of object bounds. The containment tests are run on several threads.
 */
 public class RemoveShapesStep extends ConvertStep {
     private TemporaryMap map;
@@ -48,9 +53,10 @@ public class RemoveShapesStep extends ConvertStep {
         duplicateCount += removeDuplicates(map.getRoads(), removed, allObjects);
         Logger.debug("Removing interior faces");
         setStatus("Removing interior faces");
-        interiorCount += removeInterior(map.getRoads(), removed, allObjects);
-        interiorCount += removeInterior(map.getIntersections(), removed, allObjects);
-        interiorCount += removeInterior(map.getBuildings(), removed, allObjects);
+        Map<TemporaryObject, List<TemporaryObject>> containers = findContainers();
+        interiorCount += removeInterior(map.getRoads(), removed, containers);
+        interiorCount += removeInterior(map.getIntersections(), removed, containers);
+        interiorCount += removeInterior(map.getBuildings(), removed, containers);
         setStatus("Removed " + removed.size() + " faces: " + duplicateCount + " duplicates and " + interiorCount + " interior");
         debug.clearBackground();
         debug.activate();
@@ -73,11 +79,13 @@ public class RemoveShapesStep extends ConvertStep {
                 continue;
             }
             Logger.debug("Next test object: " + first);
-            for (TemporaryObject second : toCheck) {
+            // A duplicate must contain the first edge of the test object
+            Edge firstEdge = first.getEdges().get(0).getEdge();
+            for (TemporaryObject second : map.getAttachedObjects(firstEdge)) {
                 if (removed.contains(second)) {
                     continue;
                 }
-                if (first == second) {
+                if (first == second || !toCheck.contains(second)) {
                     continue;
                 }
                 Logger.debug("Next check object: " + second);
@@ -99,30 +107,63 @@ public class RemoveShapesStep extends ConvertStep {
        Remove any shapes that are entirely inside another shapes.
        @param toCheck The set of objects to check.
        @param removed The set of removed objects.
-       @param allObjects All objects.
+       @param containers The objects that each object is entirely inside.
        @return The number of removed objects.
     */
-    private int removeInterior(Collection<? extends TemporaryObject> toCheck, Set<TemporaryObject> removed, Collection<TemporaryObject> allObjects) {
+    private int removeInterior(Collection<? extends TemporaryObject> toCheck, Set<TemporaryObject> removed, Map<TemporaryObject, List<TemporaryObject>> containers) {
         int count = 0;
         for (TemporaryObject first : toCheck) {
             bumpProgress();
-            if (removed.contains(first)) {
+            if (removed.contains(first) || !containers.containsKey(first)) {
                 continue;
             }
-            for (TemporaryObject second : allObjects) {
+            for (TemporaryObject second : containers.get(first)) {
                 if (removed.contains(second)) {
                     continue;
                 }
-                if (first == second) {
-                    continue;
-                }
-                if (first.isEntirelyInside(second)) {
-                    map.removeTemporaryObject(first);
-                    removed.add(first);
-                    ++count;
-                }
+                map.removeTemporaryObject(first);
+                removed.add(first);
+                ++count;
             }
         }
         return count;
     }
+
+    /**
+       Find all pairs of objects in the map where one is entirely inside the other.
+       @return A map from object to the objects it is entirely inside. Objects that are not inside anything are not included.
+    */
+    private Map<TemporaryObject, List<TemporaryObject>> findContainers() {
+        final List<TemporaryObject> all = new ArrayList<TemporaryObject>(map.getAllObjects());
+        // Build the cached shapes and look up candidates now: shapes are lazily created and neither they nor the map's index are thread safe
+        final List<List<TemporaryObject>> candidates = new ArrayList<List<TemporaryObject>>(all.size());
+        for (TemporaryObject next : all) {
+            next.getShape();
+            candidates.add(new ArrayList<TemporaryObject>(map.getObjectsInBounds(next.getBounds())));
+        }
+        Map<TemporaryObject, List<TemporaryObject>> result = new HashMap<TemporaryObject, List<TemporaryObject>>();
+        for (Map<TemporaryObject, List<TemporaryObject>> next : ChunkExecutor.run("Remove shapes", all.size(), new ChunkExecutor.Chunk<Map<TemporaryObject, List<TemporaryObject>>>() {
+                @Override
+                public Map<TemporaryObject, List<TemporaryObject>> process(int first, int last) {
+                    Map<TemporaryObject, List<TemporaryObject>> found = new HashMap<TemporaryObject, List<TemporaryObject>>();
+                    for (int i = first; i < last; ++i) {
+                        TemporaryObject inner = all.get(i);
+                        for (TemporaryObject outer : candidates.get(i)) {
+                            if (inner != outer && inner.isEntirelyInside(outer)) {
+                                List<TemporaryObject> list = found.get(inner);
+                                if (list == null) {
+                                    list = new ArrayList<TemporaryObject>();
+                                    found.put(inner, list);
+                                }
+                                list.add(outer);
+                            }
+                        }
+                    }
+                    return found;
+                }
+            })) {
+            result.putAll(next);
+        }
+        return result;
+    }
 }
@@ -55,7 +55,7 @@ public class SplitIntersectingEdgesStep extends ConvertStep {
     }
 
     private void check(Edge e) {
-        if (!map.getAllEdges().contains(e)) {
+        if (!map.containsEdge(e)) {
             //            Logger.debug("Skipped edge " + e);
             //            debug.show("Skipped edge", new EdgeShapeInfo(e, "Skipped edge", Color.BLUE, true, false));
             return;
@@ -65,11 +65,8 @@ public class SplitIntersectingEdgesStep extends ConvertStep {
         }
         seen.add(e);
         Line2D l1 = e.getLine();
-        Set<Edge> edges = new HashSet<Edge>(map.getAllEdges());
-        for (Edge test : edges) {
-            if (test.equals(e)) {
-                continue;
-            }
+        // Only edges whose bounds come within the nearby threshold of e can intersect it
+        for (Edge test : map.getNearbyEdges(e)) {
             Line2D l2 = test.getLine();
             if (GeometryTools2D.parallel(l1, l2)) {
                 if (processParallelLines(e, test)) {
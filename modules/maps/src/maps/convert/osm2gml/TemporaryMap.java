@@ -2,12 +2,16 @@ package maps.convert.osm2gml;
 
 import java.util.Set;
 import java.util.Map;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.ArrayList;
 
+import java.awt.geom.Rectangle2D;
+
 import maps.osm.OSMMap;
 
 import rescuecore2.misc.geometry.Point2D;
@@ -22,6 +26,17 @@ public class TemporaryMap {
        The threshold for determining if nodes are co-located in metres.
     */
     private static final double NEARBY_THRESHOLD_M = 1;
+    /**
+       The size of the cells used to index edges, in multiples of the nearby threshold.
+    */
+    private static final int EDGE_CELL_SIZE = 32;
+
+    private static final Comparator<ManagedObject> ID_ORDER = new Comparator<ManagedObject>() {
+        @Override
+        public int compare(ManagedObject o1, ManagedObject o2) {
+            return Long.compare(o1.getID(), o2.getID());
+        }
+    };
 
     private double threshold;
 
@@ -34,6 +49,15 @@ public class TemporaryMap {
     private Set<TemporaryBuilding> tempBuildings;
     private Set<TemporaryObject> allObjects;
 
+    // Uniform grids of nodes and edges, keyed by cell
+    private Map<Long, List<Node>> nodeCells;
+    private Map<Long, List<Edge>> edgeCells;
+    private double nodeCellSize;
+    private double edgeCellSize;
+    // Uniform grid of object bounds, built on demand and discarded whenever objects change
+    private Map<Long, List<TemporaryObject>> objectCells;
+    private double objectCellSize;
+
     private OSMMap osmMap;
     private Collection<OSMIntersectionInfo> osmIntersections;
     private Collection<OSMRoadInfo> osmRoads;
@@ -55,6 +79,9 @@ public class TemporaryMap {
         tempIntersections = new HashSet<TemporaryIntersection>();
         tempBuildings = new HashSet<TemporaryBuilding>();
         allObjects = new HashSet<TemporaryObject>();
+        nodeCells = new HashMap<Long, List<Node>>();
+        edgeCells = new HashMap<Long, List<Edge>>();
+        setCellSizes();
         edgesAtNode = new LazyMap<Node, Set<Edge>>() {
             @Override
             public Set<Edge> createValue() {
@@ -231,6 +258,15 @@ public class TemporaryMap {
         return new HashSet<TemporaryObject>(allObjects);
     }
 
+    /**
+       Find out if an object is in the map.
+       @param object The object to look up.
+       @return True if the object is in the map.
+    */
+    public boolean containsObject(TemporaryObject object) {
+        return allObjects.contains(object);
+    }
+
     /**
        Get all nodes in the map.
        @return All nodes.
@@ -247,6 +283,75 @@ public class TemporaryMap {
         return new HashSet<Edge>(edges);
     }
 
+    /**
+       Find out if an edge is in the map.
+       @param e The edge to look up.
+       @return True if the edge is in the map.
+    */
+    public boolean containsEdge(Edge e) {
+        return edges.contains(e);
+    }
+
+    /**
+       Get all edges that might be within the nearby threshold of an edge. This returns every edge whose bounding box, expanded by the nearby threshold, intersects the bounding box of the given edge. The given edge is not included.
+       @param e The edge to look up.
+       @return The nearby edges, ordered by ID.
+    */
+    public List<Edge> getNearbyEdges(Edge e) {
+        double xMin = Math.min(e.getStart().getX(), e.getEnd().getX()) - threshold;
+        double yMin = Math.min(e.getStart().getY(), e.getEnd().getY()) - threshold;
+        double xMax = Math.max(e.getStart().getX(), e.getEnd().getX()) + threshold;
+        double yMax = Math.max(e.getStart().getY(), e.getEnd().getY()) + threshold;
+        Set<Edge> found = new HashSet<Edge>();
+        for (int row = cell(yMin, edgeCellSize); row <= cell(yMax, edgeCellSize); ++row) {
+            for (int column = cell(xMin, edgeCellSize); column <= cell(xMax, edgeCellSize); ++column) {
+                List<Edge> cell = edgeCells.get(key(column, row));
+                if (cell == null) {
+                    continue;
+                }
+                for (Edge next : cell) {
+                    if (next.equals(e)
+                        || Math.max(next.getStart().getX(), next.getEnd().getX()) < xMin
+                        || Math.min(next.getStart().getX(), next.getEnd().getX()) > xMax
+                        || Math.max(next.getStart().getY(), next.getEnd().getY()) < yMin
+                        || Math.min(next.getStart().getY(), next.getEnd().getY()) > yMax) {
+                        continue;
+                    }
+                    found.add(next);
+                }
+            }
+        }
+        List<Edge> result = new ArrayList<Edge>(found);
+        Collections.sort(result, ID_ORDER);
+        return result;
+    }
+
+    /**
+       Get all objects whose bounding box intersects a rectangle. The objects are indexed in a grid that is built on the first call after objects are added, removed or have their edges replaced, so repeated lookups between changes are cheap. This method is not thread safe.
+       @param bounds The rectangle to look in.
+       @return The objects whose bounds intersect the rectangle.
+    */
+    public Set<TemporaryObject> getObjectsInBounds(Rectangle2D bounds) {
+        if (objectCells == null) {
+            indexObjects();
+        }
+        Set<TemporaryObject> result = new HashSet<TemporaryObject>();
+        for (int row = cell(bounds.getMinY(), objectCellSize); row <= cell(bounds.getMaxY(), objectCellSize); ++row) {
+            for (int column = cell(bounds.getMinX(), objectCellSize); column <= cell(bounds.getMaxX(), objectCellSize); ++column) {
+                List<TemporaryObject> cell = objectCells.get(key(column, row));
+                if (cell == null) {
+                    continue;
+                }
+                for (TemporaryObject next : cell) {
+                    if (next.getBounds().intersects(bounds)) {
+                        result.add(next);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
     /**
        Get all objects attached to an Edge.
        @param e The Edge.
@@ -271,6 +376,8 @@ public class TemporaryMap {
     */
     public void setNearbyThreshold(double t) {
         threshold = t;
+        setCellSizes();
+        reindex();
     }
 
     /**
@@ -324,11 +431,26 @@ public class TemporaryMap {
        @return A Node.
     */
     public Node getNode(double x, double y) {
-        for (Node next : nodes) {
-            if (isNear(x, y, next.getX(), next.getY())) {
-                return next;
+        // Nodes within the threshold are in this cell or one of its neighbours
+        int column = cell(x, nodeCellSize);
+        int row = cell(y, nodeCellSize);
+        Node best = null;
+        for (int r = row - 1; r <= row + 1; ++r) {
+            for (int c = column - 1; c <= column + 1; ++c) {
+                List<Node> cell = nodeCells.get(key(c, r));
+                if (cell == null) {
+                    continue;
+                }
+                for (Node next : cell) {
+                    if (isNear(x, y, next.getX(), next.getY()) && (best == null || next.getID() < best.getID())) {
+                        best = next;
+                    }
+                }
             }
         }
+        if (best != null) {
+            return best;
+        }
         return createNode(x, y);
     }
 
@@ -339,7 +461,7 @@ public class TemporaryMap {
        @return An Edge.
     */
     public Edge getEdge(Node from, Node to) {
-        for (Edge next : edges) {
+        for (Edge next : edgesAtNode.get(from)) {
             if (next.getStart().equals(from) && next.getEnd().equals(to)
                 || next.getStart().equals(to) && next.getEnd().equals(from)) {
                 return next;
@@ -371,6 +493,7 @@ public class TemporaryMap {
                 objectsAtEdge.get(nextEdge).add(next);
             }
         }
+        objectCells = null;
         removeEdge(edge);
     }
 
@@ -403,6 +526,7 @@ public class TemporaryMap {
     private Node createNode(double x, double y) {
         Node result = new Node(nextID++, x, y);
         nodes.add(result);
+        indexNode(result);
         return result;
     }
 
@@ -411,12 +535,14 @@ public class TemporaryMap {
         edges.add(result);
         edgesAtNode.get(from).add(result);
         edgesAtNode.get(to).add(result);
+        indexEdge(result, true);
         //        Logger.debug("Created edge " + result);
         return result;
     }
 
     private void addObject(TemporaryObject object) {
         allObjects.add(object);
+        objectCells = null;
         for (DirectedEdge next : object.getEdges()) {
             objectsAtEdge.get(next.getEdge()).add(object);
         }
@@ -425,18 +551,109 @@ public class TemporaryMap {
     private void removeNode(Node n) {
         nodes.remove(n);
         edgesAtNode.remove(n);
+        List<Node> cell = nodeCells.get(key(cell(n.getX(), nodeCellSize), cell(n.getY(), nodeCellSize)));
+        if (cell != null) {
+            cell.remove(n);
+        }
     }
 
     private void removeEdge(Edge e) {
         edges.remove(e);
+        indexEdge(e, false);
         edgesAtNode.get(e.getStart()).remove(e);
         edgesAtNode.get(e.getEnd()).remove(e);
         objectsAtEdge.remove(e);
         //        Logger.debug("Removed edge " + e);
     }
 
+    private void setCellSizes() {
+        nodeCellSize = threshold > 0 ? threshold : 1;
+        edgeCellSize = nodeCellSize * EDGE_CELL_SIZE;
+    }
+
+    private void reindex() {
+        nodeCells.clear();
+        edgeCells.clear();
+        for (Node next : nodes) {
+            indexNode(next);
+        }
+        for (Edge next : edges) {
+            indexEdge(next, true);
+        }
+    }
+
+    private void indexNode(Node n) {
+        long key = key(cell(n.getX(), nodeCellSize), cell(n.getY(), nodeCellSize));
+        List<Node> cell = nodeCells.get(key);
+        if (cell == null) {
+            cell = new ArrayList<Node>();
+            nodeCells.put(key, cell);
+        }
+        cell.add(n);
+    }
+
+    private void indexEdge(Edge e, boolean add) {
+        int firstColumn = cell(Math.min(e.getStart().getX(), e.getEnd().getX()), edgeCellSize);
+        int lastColumn = cell(Math.max(e.getStart().getX(), e.getEnd().getX()), edgeCellSize);
+        int firstRow = cell(Math.min(e.getStart().getY(), e.getEnd().getY()), edgeCellSize);
+        int lastRow = cell(Math.max(e.getStart().getY(), e.getEnd().getY()), edgeCellSize);
+        for (int row = firstRow; row <= lastRow; ++row) {
+            for (int column = firstColumn; column <= lastColumn; ++column) {
+                long key = key(column, row);
+                List<Edge> cell = edgeCells.get(key);
+                if (add) {
+                    if (cell == null) {
+                        cell = new ArrayList<Edge>();
+                        edgeCells.put(key, cell);
+                    }
+                    cell.add(e);
+                }
+                else if (cell != null) {
+                    cell.remove(e);
+                    if (cell.isEmpty()) {
+                        edgeCells.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    private void indexObjects() {
+        objectCells = new HashMap<Long, List<TemporaryObject>>();
+        // Cells about the size of an average object keep most objects in a few cells
+        double total = 0;
+        for (TemporaryObject next : allObjects) {
+            Rectangle2D bounds = next.getBounds();
+            total += Math.max(bounds.getWidth(), bounds.getHeight());
+        }
+        objectCellSize = total > 0 ? total / allObjects.size() : 1;
+        for (TemporaryObject next : allObjects) {
+            Rectangle2D bounds = next.getBounds();
+            for (int row = cell(bounds.getMinY(), objectCellSize); row <= cell(bounds.getMaxY(), objectCellSize); ++row) {
+                for (int column = cell(bounds.getMinX(), objectCellSize); column <= cell(bounds.getMaxX(), objectCellSize); ++column) {
+                    long key = key(column, row);
+                    List<TemporaryObject> cell = objectCells.get(key);
+                    if (cell == null) {
+                        cell = new ArrayList<TemporaryObject>();
+                        objectCells.put(key, cell);
+                    }
+                    cell.add(next);
+                }
+            }
+        }
+    }
+
+    private static int cell(double value, double size) {
+        return (int)Math.floor(value / size);
+    }
+
+    private static long key(int column, int row) {
+        return ((long)column << Integer.SIZE) | (row & 0xFFFFFFFFL);
+    }
+
     private void removeObject(TemporaryObject object) {
         allObjects.remove(object);
+        objectCells = null;
         for (DirectedEdge next : object.getEdges()) {
             objectsAtEdge.get(next.getEdge()).remove(object);
         }
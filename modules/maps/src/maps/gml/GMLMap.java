@@ -17,8 +17,6 @@ import rescuecore2.misc.geometry.Point2D;
 import rescuecore2.misc.geometry.Line2D;
 import rescuecore2.misc.geometry.GeometryTools2D;
 
-import rescuecore2.misc.collections.LazyMap;
-
 /**
    A GML map. All coordinates are specified in m.
 */
@@ -37,8 +35,10 @@ public class GMLMap implements maps.Map {
     private Set<GMLShape> allShapes;
     private Set<GMLObject> allObjects;
 
-    private Map<GMLNode, Collection<GMLEdge>> attachedEdges;
-    private Map<GMLEdge, Collection<GMLShape>> attachedShapes;
+    // Edges attached to each node and shapes attached to each edge, keyed by node or edge ID
+    private Map<Integer, Set<GMLEdge>> attachedEdges;
+    private Map<Integer, Set<GMLShape>> attachedShapes;
+    private GMLNodeIndex nodeIndex;
 
     private int nextID;
 
@@ -53,18 +53,8 @@ public class GMLMap implements maps.Map {
         spaces = new HashMap<Integer, GMLSpace>();
         allShapes = new HashSet<GMLShape>();
         allObjects = new HashSet<GMLObject>();
-        attachedEdges = new LazyMap<GMLNode, Collection<GMLEdge>>() {
-            @Override
-            public Collection<GMLEdge> createValue() {
-                return new HashSet<GMLEdge>();
-            }
-        };
-        attachedShapes = new LazyMap<GMLEdge, Collection<GMLShape>>() {
-            @Override
-            public Collection<GMLShape> createValue() {
-                return new HashSet<GMLShape>();
-            }
-        };
+        attachedEdges = new HashMap<Integer, Set<GMLEdge>>();
+        attachedShapes = new HashMap<Integer, Set<GMLShape>>();
         boundsKnown = false;
         nextID = 0;
     }
@@ -207,6 +197,10 @@ public class GMLMap implements maps.Map {
         }
         addObject(n);
         nodes.put(n.getID(), n);
+        n.setMap(this);
+        if (nodeIndex != null) {
+            nodeIndex.add(n);
+        }
         boundsKnown = false;
     }
 
@@ -222,8 +216,8 @@ public class GMLMap implements maps.Map {
         edges.put(e.getID(), e);
         addNode(e.getStart());
         addNode(e.getEnd());
-        attachedEdges.get(e.getStart()).add(e);
-        attachedEdges.get(e.getEnd()).add(e);
+        attachEdge(e.getStart(), e);
+        attachEdge(e.getEnd(), e);
     }
 
     /**
@@ -317,11 +311,18 @@ public class GMLMap implements maps.Map {
         if (nodes.containsKey(n.getID())) {
             removeObject(n);
             nodes.remove(n.getID());
-            Collection<GMLEdge> attached = new HashSet<GMLEdge>(getAttachedEdges(n));
+            if (n.getMap() == this) {
+                n.setMap(null);
+            }
+            if (nodeIndex != null) {
+                nodeIndex.remove(n);
+            }
+            Collection<GMLEdge> attached = new ArrayList<GMLEdge>(getAttachedEdges(n));
             for (GMLEdge next : attached) {
                 result.add(next);
                 result.addAll(removeEdge(next));
             }
+            attachedEdges.remove(n.getID());
             boundsKnown = false;
         }
         return result;
@@ -337,13 +338,14 @@ public class GMLMap implements maps.Map {
         if (edges.containsKey(e.getID())) {
             removeObject(e);
             edges.remove(e.getID());
-            Collection<GMLShape> attached = new HashSet<GMLShape>(getAttachedShapes(e));
+            Collection<GMLShape> attached = new ArrayList<GMLShape>(getAttachedShapes(e));
             for (GMLShape next : attached) {
                 result.add(next);
                 remove(next);
             }
-            attachedEdges.get(e.getStart()).remove(e);
-            attachedEdges.get(e.getEnd()).remove(e);
+            attachedShapes.remove(e.getID());
+            detachEdge(e.getStart(), e);
+            detachEdge(e.getEnd(), e);
         }
         return result;
     }
@@ -430,6 +432,11 @@ public class GMLMap implements maps.Map {
        Remove all nodes, edges and shapes.
     */
     public void removeAllNodes() {
+        for (GMLNode next : nodes.values()) {
+            if (next.getMap() == this) {
+                next.setMap(null);
+            }
+        }
         nodes.clear();
         edges.clear();
         roads.clear();
@@ -439,6 +446,7 @@ public class GMLMap implements maps.Map {
         allObjects.clear();
         attachedEdges.clear();
         attachedShapes.clear();
+        nodeIndex = null;
         boundsKnown = false;
     }
 
@@ -451,7 +459,8 @@ public class GMLMap implements maps.Map {
         buildings.clear();
         spaces.clear();
         allShapes.clear();
-        allObjects.retainAll(nodes.values());
+        allObjects.clear();
+        allObjects.addAll(nodes.values());
         attachedEdges.clear();
         attachedShapes.clear();
     }
@@ -460,36 +469,21 @@ public class GMLMap implements maps.Map {
        Remove all buildings.
     */
     public void removeAllBuildings() {
-        for (Map.Entry<GMLEdge, Collection<GMLShape>> entry : attachedShapes.entrySet()) {
-            entry.getValue().removeAll(buildings.values());
-        }
-        allShapes.removeAll(buildings.values());
-        allObjects.removeAll(buildings.values());
-        buildings.clear();
+        removeAllShapes(buildings);
     }
 
     /**
        Remove all roads.
     */
     public void removeAllRoads() {
-        for (Map.Entry<GMLEdge, Collection<GMLShape>> entry : attachedShapes.entrySet()) {
-            entry.getValue().removeAll(buildings.values());
-        }
-        allShapes.removeAll(roads.values());
-        allObjects.removeAll(roads.values());
-        roads.clear();
+        removeAllShapes(roads);
     }
 
     /**
        Remove all spaces.
     */
     public void removeAllSpaces() {
-        for (Map.Entry<GMLEdge, Collection<GMLShape>> entry : attachedShapes.entrySet()) {
-            entry.getValue().removeAll(buildings.values());
-        }
-        allShapes.removeAll(spaces.values());
-        allObjects.removeAll(spaces.values());
-        spaces.clear();
+        removeAllShapes(spaces);
     }
 
     /**
@@ -692,6 +686,8 @@ public class GMLMap implements maps.Map {
        @param conversion The coordinate conversion to apply.
     */
     public void convertCoordinates(CoordinateConversion conversion) {
+        // The grid size depends on the extent of the map so rebuild it afterwards
+        nodeIndex = null;
         for (GMLNode next : nodes.values()) {
             next.convert(conversion);
         }
@@ -705,7 +701,8 @@ public class GMLMap implements maps.Map {
        @return A new GMLEdge with a unique ID or an existing edge. The returned edge may be reversed with respect to first and second.
     */
     public GMLEdge ensureEdge(GMLNode first, GMLNode second) {
-        for (GMLEdge next : edges.values()) {
+        // Any existing edge must be attached to the first node
+        for (GMLEdge next : getAttachedEdges(first)) {
             if ((next.getStart().equals(first) && next.getEnd().equals(second))
                 || (next.getStart().equals(second) && next.getEnd().equals(first))
                 ) {
@@ -754,15 +751,7 @@ public class GMLMap implements maps.Map {
        @return All GMLNodes inside the region.
     */
     public Collection<GMLNode> getNodesInRegion(double xMin, double yMin, double xMax, double yMax) {
-        Collection<GMLNode> result = new ArrayList<GMLNode>();
-        for (GMLNode next : nodes.values()) {
-            double x = next.getX();
-            double y = next.getY();
-            if (x >= xMin && x <= xMax && y >= yMin && y <= yMax) {
-                result.add(next);
-            }
-        }
-        return result;
+        return getNodeIndex().getNodesInRegion(xMin, yMin, xMax, yMax);
     }
 
     /**
@@ -772,18 +761,7 @@ public class GMLMap implements maps.Map {
        @return The nearest GMLNode.
     */
     public GMLNode findNearestNode(double x, double y) {
-        GMLNode best = null;
-        double bestDistance = Double.NaN;
-        for (GMLNode next : nodes.values()) {
-            double dx = x - next.getX();
-            double dy = y - next.getY();
-            double d = (dx * dx) + (dy * dy);
-            if (best == null || d < bestDistance) {
-                best = next;
-                bestDistance = d;
-            }
-        }
-        return best;
+        return getNodeIndex().findNearestNode(x, y);
     }
 
     /**
@@ -840,7 +818,11 @@ public class GMLMap implements maps.Map {
        @return All attached GMLEdges.
     */
     public Collection<GMLEdge> getAttachedEdges(GMLNode node) {
-        return Collections.unmodifiableCollection(attachedEdges.get(node));
+        Set<GMLEdge> result = attachedEdges.get(node.getID());
+        if (result == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableCollection(result);
     }
 
     /**
@@ -849,7 +831,11 @@ public class GMLMap implements maps.Map {
        @return All attached GMLShapes.
     */
     public Collection<GMLShape> getAttachedShapes(GMLEdge edge) {
-        return Collections.unmodifiableCollection(attachedShapes.get(edge));
+        Set<GMLShape> result = attachedShapes.get(edge.getID());
+        if (result == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableCollection(result);
     }
 
     /**
@@ -881,13 +867,13 @@ public class GMLMap implements maps.Map {
         for (GMLEdge next : attached) {
             if (next.getStart().equals(oldNode)) {
                 next.setStart(newNode);
-                attachedEdges.get(oldNode).remove(next);
-                attachedEdges.get(newNode).add(next);
+                detachEdge(oldNode, next);
+                attachEdge(newNode, next);
             }
             if (next.getEnd().equals(oldNode)) {
                 next.setEnd(newNode);
-                attachedEdges.get(oldNode).remove(next);
-                attachedEdges.get(newNode).add(next);
+                detachEdge(oldNode, next);
+                attachEdge(newNode, next);
             }
         }
     }
@@ -902,7 +888,7 @@ public class GMLMap implements maps.Map {
             || (oldEdge.getEnd() != newEdge.getStart() && oldEdge.getEnd() != newEdge.getEnd())) {
             throw new IllegalArgumentException("oldEdge and newEdge do not share start and end nodes");
         }
-        Collection<GMLShape> attached = new HashSet<GMLShape>(getAttachedShapes(oldEdge));
+        Collection<GMLShape> attached = new ArrayList<GMLShape>(getAttachedShapes(oldEdge));
         for (GMLShape next : attached) {
             for (GMLDirectedEdge dEdge : next.getEdges()) {
                 if (dEdge.getEdge() == oldEdge) {
@@ -915,8 +901,8 @@ public class GMLMap implements maps.Map {
                     }
                     GMLDirectedEdge replacement = new GMLDirectedEdge(newEdge, forward);
                     next.replaceEdge(dEdge, replacement);
-                    attachedShapes.get(oldEdge).remove(next);
-                    attachedShapes.get(newEdge).add(next);
+                    detachShape(oldEdge, next);
+                    attachShape(newEdge, next);
                 }
             }
         }
@@ -935,7 +921,7 @@ public class GMLMap implements maps.Map {
         result.add(first);
         result.add(second);
         // Update any attached edges
-        Collection<GMLShape> attached = new HashSet<GMLShape>(getAttachedShapes(edge));
+        Collection<GMLShape> attached = new ArrayList<GMLShape>(getAttachedShapes(edge));
         for (GMLShape shape : attached) {
             for (GMLDirectedEdge dEdge : shape.getEdges()) {
                 if (dEdge.getEdge() == edge) {
@@ -951,9 +937,9 @@ public class GMLMap implements maps.Map {
                         d2 = new GMLDirectedEdge(first, false);
                     }
                     shape.replaceEdge(dEdge, d1, d2);
-                    attachedShapes.get(edge).remove(shape);
-                    attachedShapes.get(first).add(shape);
-                    attachedShapes.get(second).add(shape);
+                    detachShape(edge, shape);
+                    attachShape(first, shape);
+                    attachShape(second, shape);
                 }
             }
         }
@@ -965,7 +951,7 @@ public class GMLMap implements maps.Map {
         allShapes.add(shape);
         for (GMLDirectedEdge edge : shape.getEdges()) {
             addEdge(edge.getEdge());
-            attachedShapes.get(edge.getEdge()).add(shape);
+            attachShape(edge.getEdge(), shape);
         }
     }
 
@@ -978,8 +964,68 @@ public class GMLMap implements maps.Map {
         removeObject(shape);
         allShapes.remove(shape);
         for (GMLDirectedEdge edge : shape.getEdges()) {
-            attachedShapes.get(edge.getEdge()).remove(shape);
+            detachShape(edge.getEdge(), shape);
+        }
+    }
+
+    private void removeAllShapes(Map<Integer, ? extends GMLShape> shapes) {
+        for (GMLShape next : shapes.values()) {
+            removeShape(next);
+        }
+        shapes.clear();
+    }
+
+    private void attachEdge(GMLNode node, GMLEdge edge) {
+        Set<GMLEdge> attached = attachedEdges.get(node.getID());
+        if (attached == null) {
+            attached = new HashSet<GMLEdge>();
+            attachedEdges.put(node.getID(), attached);
+        }
+        attached.add(edge);
+    }
+
+    private void detachEdge(GMLNode node, GMLEdge edge) {
+        Set<GMLEdge> attached = attachedEdges.get(node.getID());
+        if (attached != null && attached.remove(edge) && attached.isEmpty()) {
+            attachedEdges.remove(node.getID());
+        }
+    }
+
+    private void attachShape(GMLEdge edge, GMLShape shape) {
+        Set<GMLShape> attached = attachedShapes.get(edge.getID());
+        if (attached == null) {
+            attached = new HashSet<GMLShape>();
+            attachedShapes.put(edge.getID(), attached);
+        }
+        attached.add(shape);
+    }
+
+    private void detachShape(GMLEdge edge, GMLShape shape) {
+        Set<GMLShape> attached = attachedShapes.get(edge.getID());
+        if (attached != null && attached.remove(shape) && attached.isEmpty()) {
+            attachedShapes.remove(edge.getID());
+        }
+    }
+
+    /**
+       Notification that a node in this map has moved.
+       @param n The node that moved.
+       @param oldX The old X coordinate of the node.
+       @param oldY The old Y coordinate of the node.
+    */
+    void nodeMoved(GMLNode n, double oldX, double oldY) {
+        if (nodeIndex != null && !nodeIndex.move(n, oldX, oldY)) {
+            // The old position was wrong, e.g. the coordinates were changed in place before being set again
+            nodeIndex = null;
+        }
+        boundsKnown = false;
+    }
+
+    private GMLNodeIndex getNodeIndex() {
+        if (nodeIndex == null) {
+            nodeIndex = new GMLNodeIndex(nodes.values());
         }
+        return nodeIndex;
     }
 
     private void removeObject(GMLObject object) {
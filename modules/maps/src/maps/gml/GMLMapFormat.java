@@ -132,7 +132,7 @@ public abstract class GMLMapFormat implements MapFormat {
     }
 
     /**
-       Read a GMLMap from a Reader.
+       Read a GMLMap from a Reader. The default implementation builds a Document and passes it to {@link #read(Document)}; formats that can read a map in a single pass may override this instead.
        @param reader The Reader to read.
        @return A new GMLMap.
        @throws DocumentException If there is a problem parsing the XML.
@@ -7,6 +7,8 @@ import maps.CoordinateConversion;
  */
 public class GMLNode extends GMLObject {
     private GMLCoordinates coordinates;
+    // The map containing this node, which is told when the node moves so it can keep its node index up to date
+    private GMLMap map;
 
     /**
        Construct a new GML node.
@@ -29,7 +31,7 @@ public class GMLNode extends GMLObject {
     }
 
     /**
-       Get the coordinates of this node.
+       Get the coordinates of this node. Do not change the returned object: use {@link #setCoordinates(GMLCoordinates)} with new coordinates instead so that the map containing this node sees the move.
        @return The node coordinates.
      */
     public GMLCoordinates getCoordinates() {
@@ -44,7 +46,9 @@ public class GMLNode extends GMLObject {
         if (c == null) {
             throw new IllegalArgumentException("Coordinates cannot be null");
         }
+        GMLCoordinates old = coordinates;
         this.coordinates = c;
+        moved(old);
     }
 
     /**
@@ -72,7 +76,31 @@ public class GMLNode extends GMLObject {
         double oldY = coordinates.getY();
         double newX = c.convertX(oldX);
         double newY = c.convertY(oldY);
+        GMLCoordinates old = coordinates;
         coordinates = new GMLCoordinates(newX, newY);
+        moved(old);
+    }
+
+    /**
+       Get the map that contains this node.
+       @return The containing map, or null if this node has not been added to a map.
+    */
+    GMLMap getMap() {
+        return map;
+    }
+
+    /**
+       Set the map that contains this node.
+       @param m The containing map, or null if this node has been removed.
+    */
+    void setMap(GMLMap m) {
+        map = m;
+    }
+
+    private void moved(GMLCoordinates old) {
+        if (map != null) {
+            map.nodeMoved(this, old.getX(), old.getY());
+        }
     }
 
     @Override
@@ -0,0 +1,235 @@
+package maps.gml;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+   A uniform grid of GMLNodes for region and nearest node queries. The index is kept up to date as nodes are added, removed and moved.
+*/
+final class GMLNodeIndex {
+    private static final int NODES_PER_CELL = 2;
+
+    private final double cellSize;
+    private final Map<Long, List<GMLNode>> cells;
+    private int size;
+    private int minColumn;
+    private int maxColumn;
+    private int minRow;
+    private int maxRow;
+
+    /**
+       Build an index of a set of nodes.
+       @param nodes The nodes to index.
+    */
+    GMLNodeIndex(Collection<GMLNode> nodes) {
+        double xMin = Double.POSITIVE_INFINITY;
+        double yMin = Double.POSITIVE_INFINITY;
+        double xMax = Double.NEGATIVE_INFINITY;
+        double yMax = Double.NEGATIVE_INFINITY;
+        for (GMLNode next : nodes) {
+            xMin = Math.min(xMin, next.getX());
+            yMin = Math.min(yMin, next.getY());
+            xMax = Math.max(xMax, next.getX());
+            yMax = Math.max(yMax, next.getY());
+        }
+        double area = (xMax - xMin) * (yMax - yMin);
+        // Aim for a few nodes per cell
+        double s = Math.sqrt(area * NODES_PER_CELL / Math.max(1, nodes.size()));
+        cellSize = s > 0 && !Double.isInfinite(s) && !Double.isNaN(s) ? s : 1;
+        cells = new HashMap<Long, List<GMLNode>>();
+        minColumn = Integer.MAX_VALUE;
+        maxColumn = Integer.MIN_VALUE;
+        minRow = Integer.MAX_VALUE;
+        maxRow = Integer.MIN_VALUE;
+        for (GMLNode next : nodes) {
+            add(next);
+        }
+    }
+
+    /**
+       Add a node.
+       @param node The node to add.
+    */
+    void add(GMLNode node) {
+        int column = column(node.getX());
+        int row = row(node.getY());
+        long key = key(column, row);
+        List<GMLNode> cell = cells.get(key);
+        if (cell == null) {
+            cell = new ArrayList<GMLNode>(NODES_PER_CELL);
+            cells.put(key, cell);
+        }
+        cell.add(node);
+        ++size;
+        minColumn = Math.min(minColumn, column);
+        maxColumn = Math.max(maxColumn, column);
+        minRow = Math.min(minRow, row);
+        maxRow = Math.max(maxRow, row);
+    }
+
+    /**
+       Remove a node.
+       @param node The node to remove.
+    */
+    void remove(GMLNode node) {
+        remove(node, node.getX(), node.getY());
+    }
+
+    /**
+       Update the index after a node has moved.
+       @param node The node that moved.
+       @param oldX The X coordinate the node was indexed at.
+       @param oldY The Y coordinate the node was indexed at.
+       @return False if the node was not found at its old position, in which case the index no longer contains it.
+    */
+    boolean move(GMLNode node, double oldX, double oldY) {
+        if (!remove(node, oldX, oldY)) {
+            return false;
+        }
+        add(node);
+        return true;
+    }
+
+    /**
+       Get all nodes inside a region.
+       @param xMin The lower X bound of the region.
+       @param yMin The lower Y bound of the region.
+       @param xMax The upper X bound of the region.
+       @param yMax The upper Y bound of the region.
+       @return All nodes inside the region.
+    */
+    Collection<GMLNode> getNodesInRegion(double xMin, double yMin, double xMax, double yMax) {
+        Collection<GMLNode> result = new ArrayList<GMLNode>();
+        int firstColumn = Math.max(minColumn, column(xMin));
+        int lastColumn = Math.min(maxColumn, column(xMax));
+        int firstRow = Math.max(minRow, row(yMin));
+        int lastRow = Math.min(maxRow, row(yMax));
+        if (firstColumn > lastColumn || firstRow > lastRow) {
+            return result;
+        }
+        if ((long)(lastColumn - firstColumn + 1) * (lastRow - firstRow + 1) > cells.size()) {
+            // Large regions are cheaper to check cell by cell
+            for (List<GMLNode> cell : cells.values()) {
+                addInRegion(cell, xMin, yMin, xMax, yMax, result);
+            }
+            return result;
+        }
+        for (int row = firstRow; row <= lastRow; ++row) {
+            for (int column = firstColumn; column <= lastColumn; ++column) {
+                List<GMLNode> cell = cells.get(key(column, row));
+                if (cell != null) {
+                    addInRegion(cell, xMin, yMin, xMax, yMax, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+       Find the node nearest a point.
+       @param x The X coordinate.
+       @param y The Y coordinate.
+       @return The nearest node, or null if the index is empty.
+    */
+    GMLNode findNearestNode(double x, double y) {
+        if (size == 0) {
+            return null;
+        }
+        int column = column(x);
+        int row = row(y);
+        int maxRing = Math.max(Math.max(Math.abs(column - minColumn), Math.abs(column - maxColumn)),
+                               Math.max(Math.abs(row - minRow), Math.abs(row - maxRow)));
+        GMLNode best = null;
+        double bestDistance = Double.NaN;
+        long visited = 0;
+        for (int ring = 0; ring <= maxRing; ++ring) {
+            visited += Math.max(1, 8L * ring);
+            if (visited > cells.size()) {
+                // Mostly empty space around the point: checking every cell is cheaper
+                return findNearestNode(x, y, cells.values());
+            }
+            for (int r = row - ring; r <= row + ring; ++r) {
+                boolean edgeRow = r == row - ring || r == row + ring;
+                int step = edgeRow ? 1 : 2 * ring;
+                for (int c = column - ring; c <= column + ring; c += Math.max(1, step)) {
+                    List<GMLNode> cell = cells.get(key(c, r));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (GMLNode next : cell) {
+                        double d = distanceSquared(x, y, next);
+                        if (best == null || d < bestDistance) {
+                            best = next;
+                            bestDistance = d;
+                        }
+                    }
+                }
+            }
+            // Nodes in the next ring are at least this far away
+            double limit = ring * cellSize;
+            if (best != null && bestDistance <= limit * limit) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    private static GMLNode findNearestNode(double x, double y, Collection<List<GMLNode>> candidates) {
+        GMLNode best = null;
+        double bestDistance = Double.NaN;
+        for (List<GMLNode> cell : candidates) {
+            for (GMLNode next : cell) {
+                double d = distanceSquared(x, y, next);
+                if (best == null || d < bestDistance) {
+                    best = next;
+                    bestDistance = d;
+                }
+            }
+        }
+        return best;
+    }
+
+    private static double distanceSquared(double x, double y, GMLNode node) {
+        double dx = x - node.getX();
+        double dy = y - node.getY();
+        return (dx * dx) + (dy * dy);
+    }
+
+    private static void addInRegion(List<GMLNode> cell, double xMin, double yMin, double xMax, double yMax, Collection<GMLNode> result) {
+        for (GMLNode next : cell) {
+            double x = next.getX();
+            double y = next.getY();
+            if (x >= xMin && x <= xMax && y >= yMin && y <= yMax) {
+                result.add(next);
+            }
+        }
+    }
+
+    private boolean remove(GMLNode node, double x, double y) {
+        long key = key(column(x), row(y));
+        List<GMLNode> cell = cells.get(key);
+        if (cell == null || !cell.remove(node)) {
+            return false;
+        }
+        --size;
+        if (cell.isEmpty()) {
+            cells.remove(key);
+        }
+        return true;
+    }
+
+    private int column(double x) {
+        return (int)Math.floor(x / cellSize);
+    }
+
+    private int row(double y) {
+        return (int)Math.floor(y / cellSize);
+    }
+
+    private static long key(int column, int row) {
+        return ((long)column << Integer.SIZE) | (row & 0xFFFFFFFFL);
+    }
+}
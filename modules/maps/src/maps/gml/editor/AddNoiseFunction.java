@@ -42,8 +42,7 @@ public class AddNoiseFunction extends ProgressFunction {
         setProgressLimit(editor.getMap().getNodes().size());
         for (GMLNode next : editor.getMap().getNodes()) {
             GMLCoordinates c = next.getCoordinates();
-            c.setX(c.getX() + (generator.nextValue() * FACTOR));
-            c.setY(c.getY() + (generator.nextValue() * FACTOR));
+            next.setCoordinates(new GMLCoordinates(c.getX() + (generator.nextValue() * FACTOR), c.getY() + (generator.nextValue() * FACTOR)));
             bumpProgress();
         }
         editor.setChanged();
@@ -89,9 +89,7 @@ public class SplitEdgeTool extends AbstractTool {
         Line2D line = GMLTools.toLine(edge);
         Point2D point = new Point2D(c.getX(), c.getY());
         Point2D closest = GeometryTools2D.getClosestPointOnSegment(line, point);
-        c.setX(closest.getX());
-        c.setY(closest.getY());
-        node.setCoordinates(c);
+        node.setCoordinates(new GMLCoordinates(closest.getX(), closest.getY()));
         editor.getViewer().repaint();
     }
 
@@ -5,7 +5,6 @@ import javax.swing.JOptionPane;
 import java.util.Queue;
 import java.util.LinkedList;
 import java.util.Collection;
-import java.util.HashSet;
 
 import maps.gml.GMLNode;
 import maps.gml.GMLEdge;
@@ -56,10 +55,8 @@ public class SplitEdgesFunction extends ProgressFunction {
     protected void executeImpl() {
         // Go through all edges and split any that cover nearby nodes
         final Queue<GMLEdge> remaining = new LinkedList<GMLEdge>();
-        final Collection<GMLNode> nodes = new HashSet<GMLNode>();
         synchronized (editor.getMap()) {
             remaining.addAll(editor.getMap().getEdges());
-            nodes.addAll(editor.getMap().getNodes());
         }
         setProgressLimit(remaining.size());
         int count = 0;
@@ -67,6 +64,13 @@ public class SplitEdgesFunction extends ProgressFunction {
             GMLEdge next = remaining.remove();
             Line2D line = GMLTools.toLine(next);
             // Look for nodes that are close to the line
+            Collection<GMLNode> nodes;
+            synchronized (editor.getMap()) {
+                nodes = editor.getMap().getNodesInRegion(Math.min(next.getStart().getX(), next.getEnd().getX()) - threshold,
+                                                         Math.min(next.getStart().getY(), next.getEnd().getY()) - threshold,
+                                                         Math.max(next.getStart().getX(), next.getEnd().getX()) + threshold,
+                                                         Math.max(next.getStart().getY(), next.getEnd().getY()) + threshold);
+            }
             for (GMLNode node : nodes) {
                 if (node == next.getStart() || node == next.getEnd()) {
                     continue;
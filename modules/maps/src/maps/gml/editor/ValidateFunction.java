@@ -3,6 +3,8 @@ package maps.gml.editor;
 import java.awt.Color;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.SwingUtilities;
 
 import maps.gml.GMLBuilding;
 import maps.gml.GMLEdge;
@@ -20,6 +22,7 @@ import maps.gml.view.SquareNodeDecorator;
 import maps.validate.GMLMapValidator;
 import maps.validate.MapValidator;
 import maps.validate.ValidationError;
+import maps.validate.ValidationProgress;
 
 import rescuecore2.log.Logger;
 
@@ -27,7 +30,7 @@ import rescuecore2.log.Logger;
  * Check the map for errors and highlight them on the map.
  *
  */
-public class ValidateFunction extends AbstractFunction {
+public class ValidateFunction extends ProgressFunction {
     private static final Color HIGHLIGHT_COLOUR = Color.RED;
     private static final int NODE_SIZE = 5;
 
@@ -50,28 +53,43 @@ public class ValidateFunction extends AbstractFunction {
     }
 
     @Override
-    public void execute() {
-        overlay.clearAllDecorators();
+    protected void executeImpl() {
+        final AtomicInteger done = new AtomicInteger();
+        ValidationProgress progress = new ValidationProgress() {
+            @Override
+            public void addWork(int amount) {
+                bumpMaxProgress(amount);
+            }
+
+            @Override
+            public void workDone(int amount) {
+                setProgress(done.addAndGet(amount));
+            }
+        };
+        setProgressLimit(0);
 
-        Collection<ValidationError> allErrors = new ArrayList<ValidationError>();
+        final Collection<ValidationError> allErrors = new ArrayList<ValidationError>();
         for (MapValidator<GMLMap> validator : GMLMapValidator
                 .getDefaultValidators()) {
             Logger.info("Validating " + validator);
-            Collection<ValidationError> errors = validator.validate(editor
-                    .getMap());
-            allErrors.addAll(errors);
-
-            for (ValidationError e : errors) {
-                System.out.println(e);
-                addDecorator(e.getId());
-            }
+            allErrors.addAll(validator.validate(editor.getMap(), progress));
         }
-        editor.getInspector().setErrors(allErrors);
-
-        editor.getViewer().removeOverlay(overlay);
-        editor.getViewer().addOverlay(overlay);
-        editor.getViewer().repaint();
 
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                overlay.clearAllDecorators();
+                for (ValidationError e : allErrors) {
+                    System.out.println(e);
+                    addDecorator(e.getId());
+                }
+                editor.getInspector().setErrors(allErrors);
+
+                editor.getViewer().removeOverlay(overlay);
+                editor.getViewer().addOverlay(overlay);
+                editor.getViewer().repaint();
+            }
+        });
     }
 
     /**
@@ -106,4 +124,9 @@ public class ValidateFunction extends AbstractFunction {
         return "Validate map";
     }
 
+    @Override
+    protected String getTitle() {
+        return "Validating map";
+    }
+
 }
@@ -19,6 +19,13 @@ import org.dom4j.QName;
 import org.dom4j.Namespace;
 import org.dom4j.DocumentHelper;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.Reader;
+
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
@@ -108,6 +115,92 @@ public final class RobocupFormat extends GMLMapFormat {
         return result;
     }
 
+    /**
+       Read a map in a single pass without building a Document. Nodes, edges and shapes are added to the map as they are read. Edges and shapes that refer to objects that appear later in the file are added once the whole file has been read.
+       @param reader The Reader to read.
+       @return A new GMLMap.
+       @throws MapException If there is a problem parsing the XML or reading the map.
+    */
+    @Override
+    public GMLMap read(Reader reader) throws MapException {
+        try {
+            XMLStreamReader xml = XMLInputFactory.newInstance().createXMLStreamReader(reader);
+            try {
+                return read(xml);
+            }
+            finally {
+                xml.close();
+            }
+        }
+        catch (XMLStreamException e) {
+            throw new MapException(e);
+        }
+    }
+
+    private GMLMap read(XMLStreamReader reader) throws XMLStreamException, MapException {
+        while (reader.hasNext() && reader.next() != XMLStreamConstants.START_ELEMENT) {
+            // Skip to the root element
+        }
+        if (!reader.isStartElement() || !isCorrectRootElement(reader.getNamespaceURI(), reader.getLocalName())) {
+            throw new MapException("Not a Robocup rescue map");
+        }
+        GMLMap result = new GMLMap();
+        List<int[]> pendingEdges = new ArrayList<int[]>();
+        List<PendingShape> pendingShapes = new ArrayList<PendingShape>();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (isElement(reader, RCR_NODE_LIST_QNAME)) {
+                Logger.debug("Reading nodes");
+                while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                    if (isElement(reader, Common.GML_NODE_QNAME)) {
+                        int id = readID(reader);
+                        result.addNode(new GMLNode(id, new GMLCoordinates(readNodeCoordinates(reader))));
+                    }
+                    else {
+                        skipElement(reader);
+                    }
+                }
+            }
+            else if (isElement(reader, RCR_EDGE_LIST_QNAME)) {
+                Logger.debug("Reading edges");
+                while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                    if (isElement(reader, Common.GML_EDGE_QNAME)) {
+                        int[] edge = readEdge(reader);
+                        if (!addEdge(edge, result)) {
+                            pendingEdges.add(edge);
+                        }
+                    }
+                    else {
+                        skipElement(reader);
+                    }
+                }
+            }
+            else if (isElement(reader, RCR_BUILDING_LIST_QNAME)) {
+                readShapes(reader, RCR_BUILDING_QNAME, result, pendingShapes);
+            }
+            else if (isElement(reader, RCR_ROAD_LIST_QNAME)) {
+                readShapes(reader, RCR_ROAD_QNAME, result, pendingShapes);
+            }
+            else if (isElement(reader, RCR_SPACE_LIST_QNAME)) {
+                readShapes(reader, RCR_SPACE_QNAME, result, pendingShapes);
+            }
+            else {
+                skipElement(reader);
+            }
+        }
+        for (int[] next : pendingEdges) {
+            if (!addEdge(next, result)) {
+                throw new MapException("Edge " + next[0] + " refers to an unknown node");
+            }
+        }
+        for (PendingShape next : pendingShapes) {
+            if (!next.add(result)) {
+                throw new MapException("Shape " + next.id + " refers to an unknown edge");
+            }
+        }
+        Logger.debug("Read " + result.getNodes().size() + " nodes, " + result.getEdges().size() + " edges, " + result.getBuildings().size() + " buildings, " + result.getRoads().size() + " roads and " + result.getSpaces().size() + " spaces");
+        return result;
+    }
+
     @Override
     public Document write(GMLMap map) {
         Element root = DocumentHelper.createElement(RCR_ROOT_QNAME);
@@ -306,6 +399,159 @@ public final class RobocupFormat extends GMLMapFormat {
         return new Pair<List<GMLDirectedEdge>, List<Integer>>(edges, neighbours);
     }
 
+    private void readShapes(XMLStreamReader reader, QName type, GMLMap map, List<PendingShape> pending) throws XMLStreamException, MapException {
+        Logger.debug("Reading " + type.getName() + "s");
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (!isElement(reader, type)) {
+                skipElement(reader);
+                continue;
+            }
+            PendingShape shape = new PendingShape(type, readID(reader));
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                if (isElement(reader, Common.GML_FACE_QNAME) && !shape.hasFace) {
+                    shape.hasFace = true;
+                    shape.floors = readInt(reader, RCR_FLOORS_QNAME, 1);
+                    shape.code = readInt(reader, RCR_BUILDING_CODE_QNAME, 0);
+                    shape.importance = readInt(reader, RCR_IMPORTANCE_QNAME, 1);
+                    while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                        if (isElement(reader, Common.GML_DIRECTED_EDGE_QNAME)) {
+                            shape.addEdge(reader);
+                        }
+                        skipElement(reader);
+                    }
+                }
+                else {
+                    skipElement(reader);
+                }
+            }
+            if (!shape.hasFace) {
+                throw new MapException("Shape does not contain a gml:Face: " + shape.id);
+            }
+            if (shape.edgeIDs.isEmpty()) {
+                throw new MapException("Shape contains no edges: " + shape.id);
+            }
+            if (!shape.add(map)) {
+                pending.add(shape);
+            }
+        }
+    }
+
+    // Returns an array of edge ID, start node ID and end node ID
+    private int[] readEdge(XMLStreamReader reader) throws XMLStreamException, MapException {
+        int id = readID(reader);
+        int startID = -1;
+        int endID = -1;
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (isElement(reader, Common.GML_DIRECTED_NODE_QNAME)) {
+                String orientation = reader.getAttributeValue(null, Common.GML_ORIENTATION_QNAME.getName());
+                if ("-".equals(orientation)) {
+                    if (startID != -1) {
+                        throw new MapException("Edge has multiple start nodes: " + id);
+                    }
+                    startID = readHref(reader, "start node");
+                }
+                if ("+".equals(orientation)) {
+                    if (endID != -1) {
+                        throw new MapException("Edge has multiple end nodes: " + id);
+                    }
+                    endID = readHref(reader, "end node");
+                }
+            }
+            skipElement(reader);
+        }
+        return new int[] {id, startID, endID};
+    }
+
+    private boolean addEdge(int[] edge, GMLMap map) {
+        GMLNode start = map.getNode(edge[1]);
+        GMLNode end = map.getNode(edge[2]);
+        if (start == null || end == null) {
+            return false;
+        }
+        map.addEdge(new GMLEdge(edge[0], start, end, false));
+        return true;
+    }
+
+    private String readNodeCoordinates(XMLStreamReader reader) throws XMLStreamException, MapException {
+        String result = null;
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                if (result == null && isElement(reader, Common.GML_COORDINATES_QNAME)) {
+                    // getElementText leaves the reader on the end tag
+                    result = reader.getElementText();
+                }
+                else {
+                    ++depth;
+                }
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT) {
+                --depth;
+            }
+        }
+        if (result == null) {
+            throw new MapException("Couldn't find gml:coordinates child of node");
+        }
+        return result;
+    }
+
+    private boolean isElement(XMLStreamReader reader, QName qname) {
+        return qname.getName().equals(reader.getLocalName()) && qname.getNamespaceURI().equals(reader.getNamespaceURI());
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                ++depth;
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT) {
+                --depth;
+            }
+        }
+    }
+
+    private int readID(XMLStreamReader reader) throws MapException {
+        String s = reader.getAttributeValue(Common.GML_ID_QNAME.getNamespaceURI(), Common.GML_ID_QNAME.getName());
+        if (s == null) {
+            throw new MapException("No ID attribute found: " + reader.getName());
+        }
+        try {
+            return Integer.parseInt(s);
+        }
+        catch (NumberFormatException ex) {
+            throw new MapException("Couldn't parse ID attribute", ex);
+        }
+    }
+
+    private static int readHref(XMLStreamReader reader, String type) throws MapException {
+        String href = reader.getAttributeValue(Common.XLINK_HREF_QNAME.getNamespaceURI(), Common.XLINK_HREF_QNAME.getName());
+        if (href == null || href.length() == 0) {
+            throw new MapException("Edge has no " + type + " ID");
+        }
+        try {
+            return Integer.parseInt(href.substring(1));
+        }
+        catch (NumberFormatException ex) {
+            throw new MapException("Edge has invalid " + type + " ID");
+        }
+    }
+
+    private int readInt(XMLStreamReader reader, QName attributeName, int defaultValue) throws MapException {
+        String s = reader.getAttributeValue(attributeName.getNamespaceURI(), attributeName.getName());
+        if (s == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(s);
+        }
+        catch (NumberFormatException ex) {
+            throw new MapException("Attribute " + attributeName + " is not an integer: " + reader.getName());
+        }
+    }
+
     private int readID(Element e) throws MapException {
         String s = e.attributeValue(Common.GML_ID_QNAME);
         if (s == null) {
@@ -360,4 +606,86 @@ public final class RobocupFormat extends GMLMapFormat {
             throw new MapException("Attribute " + attributeName + " is not an integer: " + e);
         }
     }
+
+    /**
+       A shape that has been read but may not have been added to the map yet.
+    */
+    private static final class PendingShape {
+        private final QName type;
+        private final int id;
+        private final List<Integer> edgeIDs;
+        private final List<Boolean> forward;
+        private final List<Integer> neighbours;
+        private boolean hasFace;
+        private int floors;
+        private int code;
+        private int importance;
+
+        PendingShape(QName type, int id) {
+            this.type = type;
+            this.id = id;
+            edgeIDs = new ArrayList<Integer>();
+            forward = new ArrayList<Boolean>();
+            neighbours = new ArrayList<Integer>();
+        }
+
+        void addEdge(XMLStreamReader reader) throws MapException {
+            edgeIDs.add(readHref(reader, "underlying edge"));
+            String orientation = reader.getAttributeValue(null, Common.GML_ORIENTATION_QNAME.getName());
+            if (orientation == null) {
+                throw new MapException("Directed edge has no orientation attribute: " + id);
+            }
+            if ("+".equals(orientation)) {
+                forward.add(true);
+            }
+            else if ("-".equals(orientation)) {
+                forward.add(false);
+            }
+            else {
+                throw new MapException("Directed edge has invalid orientation attribute: " + id);
+            }
+            String neighbourString = reader.getAttributeValue(RCR_NEIGHBOUR_QNAME.getNamespaceURI(), RCR_NEIGHBOUR_QNAME.getName());
+            Integer neighbourID = null;
+            if (neighbourString != null) {
+                try {
+                    neighbourID = Integer.valueOf(neighbourString);
+                }
+                catch (NumberFormatException ex) {
+                    throw new MapException("Directed edge has invalid neighbour: " + id, ex);
+                }
+            }
+            neighbours.add(neighbourID);
+        }
+
+        // Returns false if any of the edges have not been read yet
+        boolean add(GMLMap map) {
+            List<GMLDirectedEdge> edges = new ArrayList<GMLDirectedEdge>(edgeIDs.size());
+            for (int i = 0; i < edgeIDs.size(); ++i) {
+                GMLEdge edge = map.getEdge(edgeIDs.get(i));
+                if (edge == null) {
+                    return false;
+                }
+                edges.add(new GMLDirectedEdge(edge, forward.get(i)));
+            }
+            for (int i = 0; i < edges.size(); ++i) {
+                if (neighbours.get(i) != null) {
+                    edges.get(i).getEdge().setPassable(true);
+                }
+            }
+            if (type == RCR_BUILDING_QNAME) {
+                GMLBuilding b = new GMLBuilding(id, edges, neighbours);
+                b.setFloors(floors);
+                b.setCode(code);
+                b.setImportance(importance);
+                map.addBuilding(b);
+            }
+            else if (type == RCR_ROAD_QNAME) {
+                map.addRoad(new GMLRoad(id, edges, neighbours));
+            }
+            else {
+                map.addSpace(new GMLSpace(id, edges, neighbours));
+            }
+            return true;
+        }
+    }
 }
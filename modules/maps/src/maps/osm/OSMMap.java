@@ -2,9 +2,7 @@ package maps.osm;
 
 import org.dom4j.Document;
 import org.dom4j.DocumentHelper;
-import org.dom4j.DocumentException;
 import org.dom4j.Element;
-import org.dom4j.io.SAXReader;
 
 import java.util.HashSet;
 import java.util.Map;
@@ -73,14 +71,56 @@ public class OSMMap {
     }
 
     /**
-       Construct a map from an XML file.
+       Construct a map from an XML file. The file is streamed rather than read into a document; only roads, buildings and the nodes they use are kept.
        @param file The file to read.
     */
-    public OSMMap(File file) throws OSMException, DocumentException, IOException {
-        this();
-        SAXReader reader = new SAXReader();
-        Document doc = reader.read(file);
-        read(doc);
+    public OSMMap(File file) throws OSMException, IOException {
+        this(OSMStreamReader.read(file));
+    }
+
+    /**
+       Construct a map from the part of an XML file inside a bounded area. This gives the same roads and buildings as reading the whole file and then using {@link #OSMMap(OSMMap, double, double, double, double)}, but nodes outside the area are dropped while the file is read.
+       @param file The file to read.
+       @param minLat The minimum latitude of the new map.
+       @param minLon The minimum longitude of the new map.
+       @param maxLat The maximum latitude of the new map.
+       @param maxLon The maximum longitude of the new map.
+    */
+    public OSMMap(File file, double minLat, double minLon, double maxLat, double maxLon) throws OSMException, IOException {
+        this(OSMStreamReader.read(file, minLat, minLon, maxLat, maxLon));
+    }
+
+    /**
+       Construct a map from parsed objects with bounds calculated from the nodes.
+    */
+    OSMMap(Map<Long, OSMNode> nodes, Map<Long, OSMRoad> roads, Map<Long, OSMBuilding> buildings) {
+        boundsCalculated = false;
+        this.nodes = nodes;
+        this.roads = roads;
+        this.buildings = buildings;
+    }
+
+    /**
+       Construct a map from parsed objects with known bounds.
+    */
+    OSMMap(Map<Long, OSMNode> nodes, Map<Long, OSMRoad> roads, Map<Long, OSMBuilding> buildings, double minLat, double minLon, double maxLat, double maxLon) {
+        this(nodes, roads, buildings);
+        this.minLat = minLat;
+        this.minLon = minLon;
+        this.maxLat = maxLat;
+        this.maxLon = maxLon;
+        boundsCalculated = true;
+    }
+
+    private OSMMap(OSMMap read) {
+        this.nodes = read.nodes;
+        this.roads = read.roads;
+        this.buildings = read.buildings;
+        this.boundsCalculated = read.boundsCalculated;
+        this.minLat = read.minLat;
+        this.minLon = read.minLon;
+        this.maxLat = read.maxLat;
+        this.maxLon = read.maxLon;
     }
 
     /**
@@ -381,8 +421,8 @@ public class OSMMap {
         boolean building = false;
         for (Object next : e.elements("tag")) {
             Element tag = (Element)next;
-            building = building || tagSignifiesBuilding(tag);
-            road = road || tagSignifiesRoad(tag);
+            building = building || tagSignifiesBuilding(tag.attributeValue("k"), tag.attributeValue("v"));
+            road = road || tagSignifiesRoad(tag.attributeValue("k"), tag.attributeValue("v"));
         }
         if (building) {
             buildings.put(id, new OSMBuilding(id, ids));
@@ -392,18 +432,14 @@ public class OSMMap {
         }
     }
 
-    private boolean tagSignifiesRoad(Element tag) {
-        String key = tag.attributeValue("k");
-        String value = tag.attributeValue("v");
+    static boolean tagSignifiesRoad(String key, String value) {
         if (!"highway".equals(key)) {
             return false;
         }
         return ROAD_MARKERS.contains(value);
     }
 
-    private boolean tagSignifiesBuilding(Element tag) {
-        String key = tag.attributeValue("k");
-        String value = tag.attributeValue("v");
+    static boolean tagSignifiesBuilding(String key, String value) {
         if ("building".equals(key)) {
             return "yes".equals(value);
         }
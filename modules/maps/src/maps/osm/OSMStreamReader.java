@@ -0,0 +1,268 @@
+package maps.osm;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.BufferedInputStream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+   Reads OpenStreetMap XML with a StAX parser instead of building a document first. Node coordinates are held in primitive arrays while the file is read and only ways that are roads or buildings are kept. OSMNode objects are created at the end for the nodes those ways use.
+   <p>
+   If a bounding box is given then nodes outside it are dropped as they are read. Roads keep the nodes that are inside the box and buildings are kept only if all of their nodes are inside, as with {@link OSMMap#OSMMap(OSMMap, double, double, double, double)}.
+   </p>
+*/
+final class OSMStreamReader {
+    private static final int INITIAL_NODES = 1 << 16;
+    private static final int INITIAL_WAY_NODES = 16;
+
+    private final boolean bounded;
+    private final double minLat;
+    private final double minLon;
+    private final double maxLat;
+    private final double maxLon;
+
+    // Nodes read so far, in file order
+    private long[] nodeIDs;
+    private double[] lats;
+    private double[] lons;
+    private int nodeCount;
+    private boolean sorted;
+    // Only used if node IDs are not in increasing order
+    private Map<Long, Integer> nodeIndex;
+
+    // Bounds of all nodes read, used when there is no bounding box
+    private double seenMinLat;
+    private double seenMinLon;
+    private double seenMaxLat;
+    private double seenMaxLon;
+
+    private List<Way> ways;
+
+    private OSMStreamReader(boolean bounded, double minLat, double minLon, double maxLat, double maxLon) {
+        this.bounded = bounded;
+        this.minLat = minLat;
+        this.minLon = minLon;
+        this.maxLat = maxLat;
+        this.maxLon = maxLon;
+        nodeIDs = new long[INITIAL_NODES];
+        lats = new double[INITIAL_NODES];
+        lons = new double[INITIAL_NODES];
+        sorted = true;
+        seenMinLat = Double.POSITIVE_INFINITY;
+        seenMinLon = Double.POSITIVE_INFINITY;
+        seenMaxLat = Double.NEGATIVE_INFINITY;
+        seenMaxLon = Double.NEGATIVE_INFINITY;
+        ways = new ArrayList<Way>();
+    }
+
+    /**
+       Read a whole OSM file.
+       @param file The file to read.
+       @return A new OSMMap.
+       @throws OSMException If the file is not valid OSM XML.
+       @throws IOException If there is a problem reading the file.
+    */
+    static OSMMap read(File file) throws OSMException, IOException {
+        return new OSMStreamReader(false, 0, 0, 0, 0).readFile(file);
+    }
+
+    /**
+       Read the part of an OSM file that lies inside a bounding box.
+       @param file The file to read.
+       @param minLat The minimum latitude.
+       @param minLon The minimum longitude.
+       @param maxLat The maximum latitude.
+       @param maxLon The maximum longitude.
+       @return A new OSMMap.
+       @throws OSMException If the file is not valid OSM XML.
+       @throws IOException If there is a problem reading the file.
+    */
+    static OSMMap read(File file, double minLat, double minLon, double maxLat, double maxLon) throws OSMException, IOException {
+        return new OSMStreamReader(true, minLat, minLon, maxLat, maxLon).readFile(file);
+    }
+
+    private OSMMap readFile(File file) throws OSMException, IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            try {
+                parse(reader);
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (XMLStreamException e) {
+            throw new OSMException("Error reading " + file, e);
+        }
+        catch (NumberFormatException e) {
+            throw new OSMException("Error reading " + file, e);
+        }
+        finally {
+            in.close();
+        }
+        return buildMap();
+    }
+
+    private void parse(XMLStreamReader reader) throws XMLStreamException, OSMException {
+        while (reader.hasNext() && reader.next() != XMLStreamConstants.START_ELEMENT) {
+            // Skip to the root element
+        }
+        if (!reader.isStartElement() || !"osm".equals(reader.getLocalName())) {
+            throw new OSMException("Invalid map file: root element must be 'osm', not " + (reader.isStartElement() ? reader.getLocalName() : "missing"));
+        }
+        Way way = null;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if ("node".equals(name)) {
+                    readNode(reader);
+                }
+                else if ("way".equals(name)) {
+                    way = new Way(Long.parseLong(reader.getAttributeValue(null, "id")));
+                }
+                else if (way != null && "nd".equals(name)) {
+                    way.add(Long.parseLong(reader.getAttributeValue(null, "ref")));
+                }
+                else if (way != null && "tag".equals(name)) {
+                    String key = reader.getAttributeValue(null, "k");
+                    String value = reader.getAttributeValue(null, "v");
+                    way.building = way.building || OSMMap.tagSignifiesBuilding(key, value);
+                    way.road = way.road || OSMMap.tagSignifiesRoad(key, value);
+                }
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT && way != null && "way".equals(reader.getLocalName())) {
+                if (way.building || way.road) {
+                    ways.add(way.trim());
+                }
+                way = null;
+            }
+        }
+    }
+
+    private void readNode(XMLStreamReader reader) {
+        long id = Long.parseLong(reader.getAttributeValue(null, "id"));
+        double lat = Double.parseDouble(reader.getAttributeValue(null, "lat"));
+        double lon = Double.parseDouble(reader.getAttributeValue(null, "lon"));
+        seenMinLat = Math.min(seenMinLat, lat);
+        seenMinLon = Math.min(seenMinLon, lon);
+        seenMaxLat = Math.max(seenMaxLat, lat);
+        seenMaxLon = Math.max(seenMaxLon, lon);
+        if (bounded && (lat < minLat || lat > maxLat || lon < minLon || lon > maxLon)) {
+            return;
+        }
+        if (nodeCount == nodeIDs.length) {
+            int size = nodeCount * 2;
+            nodeIDs = Arrays.copyOf(nodeIDs, size);
+            lats = Arrays.copyOf(lats, size);
+            lons = Arrays.copyOf(lons, size);
+        }
+        if (sorted && nodeCount > 0 && id <= nodeIDs[nodeCount - 1]) {
+            sorted = false;
+        }
+        nodeIDs[nodeCount] = id;
+        lats[nodeCount] = lat;
+        lons[nodeCount] = lon;
+        ++nodeCount;
+    }
+
+    private OSMMap buildMap() {
+        if (!sorted) {
+            // Later nodes with the same ID replace earlier ones, as they did with the DOM reader
+            nodeIndex = new HashMap<Long, Integer>();
+            for (int i = 0; i < nodeCount; ++i) {
+                nodeIndex.put(nodeIDs[i], i);
+            }
+        }
+        Map<Long, OSMNode> nodes = new HashMap<Long, OSMNode>();
+        Map<Long, OSMRoad> roads = new HashMap<Long, OSMRoad>();
+        Map<Long, OSMBuilding> buildings = new HashMap<Long, OSMBuilding>();
+        for (Way next : ways) {
+            List<Long> ids = new ArrayList<Long>(next.count);
+            boolean allFound = true;
+            for (int i = 0; i < next.count; ++i) {
+                long id = next.refs[i];
+                if (find(id) < 0) {
+                    allFound = false;
+                    if (bounded) {
+                        continue;
+                    }
+                }
+                ids.add(id);
+            }
+            if (next.building) {
+                if (allFound || !bounded) {
+                    buildings.put(next.id, new OSMBuilding(next.id, ids));
+                    addNodes(ids, nodes);
+                }
+            }
+            else if (!ids.isEmpty() || !bounded) {
+                roads.put(next.id, new OSMRoad(next.id, ids));
+                addNodes(ids, nodes);
+            }
+        }
+        if (bounded) {
+            return new OSMMap(nodes, roads, buildings, minLat, minLon, maxLat, maxLon);
+        }
+        if (nodeCount == 0) {
+            return new OSMMap(nodes, roads, buildings);
+        }
+        return new OSMMap(nodes, roads, buildings, seenMinLat, seenMinLon, seenMaxLat, seenMaxLon);
+    }
+
+    private void addNodes(List<Long> ids, Map<Long, OSMNode> nodes) {
+        for (Long id : ids) {
+            int index = find(id);
+            if (index >= 0 && !nodes.containsKey(id)) {
+                nodes.put(id, new OSMNode(id, lats[index], lons[index]));
+            }
+        }
+    }
+
+    private int find(long id) {
+        if (nodeIndex != null) {
+            Integer index = nodeIndex.get(id);
+            return index == null ? -1 : index;
+        }
+        int index = Arrays.binarySearch(nodeIDs, 0, nodeCount, id);
+        return index < 0 ? -1 : index;
+    }
+
+    private static final class Way {
+        private final long id;
+        private long[] refs;
+        private int count;
+        private boolean road;
+        private boolean building;
+
+        Way(long id) {
+            this.id = id;
+            refs = new long[INITIAL_WAY_NODES];
+        }
+
+        void add(long ref) {
+            if (count == refs.length) {
+                refs = Arrays.copyOf(refs, count * 2);
+            }
+            refs[count++] = ref;
+        }
+
+        Way trim() {
+            refs = Arrays.copyOf(refs, count);
+            return this;
+        }
+    }
+}
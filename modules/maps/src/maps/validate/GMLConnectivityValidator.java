@@ -2,9 +2,11 @@ package maps.validate;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 
@@ -20,35 +22,55 @@ import maps.gml.GMLShape;
  *  connections).
  */
 public class GMLConnectivityValidator implements MapValidator<GMLMap> {
-    private GMLMap map = null;
 
     @Override
-    public Collection<ValidationError> validate(GMLMap mmap) {
-        this.map = mmap;
-        List<ValidationError> errors = new LinkedList<ValidationError>();
+    public Collection<ValidationError> validate(GMLMap map) {
+        return validate(map, ValidationProgress.NONE);
+    }
+
+    @Override
+    public Collection<ValidationError> validate(GMLMap map, ValidationProgress progress) {
+        final List<GMLShape> shapes = new ArrayList<GMLShape>(map.getAllShapes());
+        final Map<Integer, GMLShape> byID = new HashMap<Integer, GMLShape>();
+        for (GMLShape shape : shapes) {
+            byID.put(shape.getID(), shape);
+        }
+        progress.addWork(shapes.size() * 2);
 
         // Check if all shapes are connected correctly (no dangling connections,
         // etc...)
+        List<ValidationError> errors = ParallelCheck.run(shapes.size(), new ParallelCheck.Check() {
+                @Override
+                public void check(int index, List<ValidationError> result) {
+                    result.addAll(validateShape(shapes.get(index), byID));
+                }
+            }, progress);
+
         Set<GMLShape> toBeChecked = new HashSet<GMLShape>();
-        for (GMLShape shape : map.getAllShapes()) {
-            errors.addAll(validateShape(shape));
+        for (GMLShape shape : shapes) {
             if (shape instanceof GMLBuilding || shape instanceof GMLRoad) {
                 toBeChecked.add(shape);
             }
         }
+        if (toBeChecked.isEmpty()) {
+            progress.workDone(shapes.size());
+            return errors;
+        }
 
         Queue<GMLShape> open = new LinkedList<GMLShape>();
         GMLShape first = toBeChecked.iterator().next();
         open.add(first);
+        toBeChecked.remove(first);
 
         // check for connectivity (only simple connectivity needs to be checked,
         // as
         // we made sure that there are no one-way connections
+        // Shapes are removed from toBeChecked when they are queued so that
+        // each shape is only expanded once
         while (!open.isEmpty()) {
             GMLShape next = open.remove();
-            toBeChecked.remove(next);
-            for (GMLShape n : getNeigbours(next)) {
-                if (toBeChecked.contains(n)) {
+            for (GMLShape n : getNeigbours(next, byID)) {
+                if (toBeChecked.remove(n)) {
                     open.add(n);
                 }
                 if (!(n instanceof GMLBuilding || n instanceof GMLRoad)) {
@@ -67,6 +89,7 @@ public class GMLConnectivityValidator implements MapValidator<GMLMap> {
                 errors.add(new ValidationError(unreachable.getID(), message));
             }
         }
+        progress.workDone(shapes.size());
 
         return errors;
     }
@@ -75,15 +98,16 @@ public class GMLConnectivityValidator implements MapValidator<GMLMap> {
      * Check if all connections to neighbours are reflexive.
      *
      * @param shape
+     * @param byID All shapes indexed by ID.
      * @return
      */
-    private Collection<ValidationError> validateShape(GMLShape shape) {
+    private static Collection<ValidationError> validateShape(GMLShape shape, Map<Integer, GMLShape> byID) {
         List<ValidationError> errors = new LinkedList<ValidationError>();
 
         for (GMLDirectedEdge e : shape.getEdges()) {
             if (shape.hasNeighbour(e)) {
                 int nId = shape.getNeighbour(e);
-                GMLShape neighbour = map.getShape(nId);
+                GMLShape neighbour = byID.get(nId);
 
                 if (neighbour == null) {
                     String message = "Connection to nonexisting id " + nId
@@ -99,7 +123,7 @@ public class GMLConnectivityValidator implements MapValidator<GMLMap> {
                     GMLShape backRef = null;
                     try {
                         if (neighbour.hasNeighbour(e.getEdge())) {
-                            backRef = map.getShape(neighbour.getNeighbour(e
+                            backRef = byID.get(neighbour.getNeighbour(e
                                     .getEdge()));
                         }
                         if (backRef != shape) {
@@ -124,13 +148,14 @@ public class GMLConnectivityValidator implements MapValidator<GMLMap> {
     /**
      * Get all shapes that a shape is connected to.
      * @param shape
+     * @param byID All shapes indexed by ID.
      * @return
      */
-    private Collection<GMLShape> getNeigbours(GMLShape shape) {
+    private static Collection<GMLShape> getNeigbours(GMLShape shape, Map<Integer, GMLShape> byID) {
         Collection<GMLShape> result = new ArrayList<GMLShape>();
         for (GMLDirectedEdge edge : shape.getEdges()) {
             if (shape.hasNeighbour(edge)) {
-                GMLShape n = map.getShape(shape.getNeighbour(edge));
+                GMLShape n = byID.get(shape.getNeighbour(edge));
                 if (n != null) {
                     result.add(n);
                 }
@@ -2,51 +2,80 @@ package maps.validate;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import maps.gml.GMLMap;
 import maps.gml.GMLShape;
 
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.index.strtree.STRtree;
 
 /**
-   Validate the correctness of basic shape properties.
+   Validate the correctness of basic shape properties. Shapes are checked on several threads and only shapes with overlapping bounding boxes are tested for overlap.
    @author goebelbe
  */
 public class GMLShapeValidator implements MapValidator<GMLMap> {
 
     @Override
     public Collection<ValidationError> validate(GMLMap map) {
-        List<ValidationError> errors = new ArrayList<ValidationError>();
-        List<Geometry> polygons = new ArrayList<Geometry>();
-        List<GMLShape> shapes = new ArrayList<GMLShape>(map.getAllShapes());
+        return validate(map, ValidationProgress.NONE);
+    }
 
-        for (GMLShape shape : shapes) {
-            try {
-                Geometry polygon = checkShape(shape);
-                polygons.add(polygon);
-            }
-            catch (ValidationException e) {
-                errors.add(e.getError());
-                polygons.add(null);
-            }
-        }
+    @Override
+    public Collection<ValidationError> validate(GMLMap map, ValidationProgress progress) {
+        final List<GMLShape> shapes = new ArrayList<GMLShape>(map.getAllShapes());
+        final Geometry[] polygons = new Geometry[shapes.size()];
+        progress.addWork(shapes.size() * 2);
 
-        for (int i = 0; i < polygons.size(); i++) {
-            Geometry s1 = polygons.get(i);
-            if (s1 == null) {
-                continue;
-            }
-            for (int j = i + 1; j < polygons.size(); j++) {
-                Geometry s2 = polygons.get(j);
-                if (s2 != null && s1.intersects(s2) && !s1.touches(s2)) {
-                    int s1Id = shapes.get(i).getID();
-                    int s2Id = shapes.get(j).getID();
-                    String message = " Shape overlaps with shape " + s2Id;
-                    errors.add(new ValidationError(s1Id, message));
+        List<ValidationError> errors = ParallelCheck.run(shapes.size(), new ParallelCheck.Check() {
+                @Override
+                public void check(int index, List<ValidationError> result) {
+                    try {
+                        polygons[index] = checkShape(shapes.get(index));
+                    }
+                    catch (ValidationException e) {
+                        result.add(e.getError());
+                    }
                 }
+            }, progress);
+
+        final STRtree tree = new STRtree();
+        for (int i = 0; i < polygons.length; i++) {
+            if (polygons[i] != null) {
+                tree.insert(polygons[i].getEnvelopeInternal(), i);
             }
         }
+        // Build the tree now so that queries from several threads do not modify it
+        tree.build();
+
+        errors.addAll(ParallelCheck.run(polygons.length, new ParallelCheck.Check() {
+                @Override
+                public void check(int i, List<ValidationError> result) {
+                    Geometry s1 = polygons[i];
+                    if (s1 == null) {
+                        return;
+                    }
+                    List<Integer> candidates = new ArrayList<Integer>();
+                    for (Object next : tree.query(s1.getEnvelopeInternal())) {
+                        int j = (Integer)next;
+                        if (j > i) {
+                            candidates.add(j);
+                        }
+                    }
+                    // Report overlaps in the same order as a pairwise scan
+                    Collections.sort(candidates);
+                    for (int j : candidates) {
+                        Geometry s2 = polygons[j];
+                        if (s1.intersects(s2) && !s1.touches(s2)) {
+                            int s1Id = shapes.get(i).getID();
+                            int s2Id = shapes.get(j).getID();
+                            String message = " Shape overlaps with shape " + s2Id;
+                            result.add(new ValidationError(s1Id, message));
+                        }
+                    }
+                }
+            }, progress));
         return errors;
     }
 
@@ -29,20 +29,23 @@ public class GMLTraversabilityValidator implements MapValidator<GMLMap> {
 
     @Override
     public Collection<ValidationError> validate(GMLMap map) {
-        Collection<ValidationError> errors = new ArrayList<ValidationError>();
-        for (GMLShape shape : map.getRoads()) {
-            ValidationError error = checkTraversability(shape, MIN_ROAD_WIDTH);
-            if (error != null) {
-                errors.add(error);
-            }
-        }
-        for (GMLShape shape : map.getBuildings()) {
-            ValidationError error = checkTraversability(shape, MIN_ROAD_WIDTH);
-            if (error != null) {
-                errors.add(error);
-            }
-        }
-        return errors;
+        return validate(map, ValidationProgress.NONE);
+    }
+
+    @Override
+    public Collection<ValidationError> validate(GMLMap map, ValidationProgress progress) {
+        final List<GMLShape> shapes = new ArrayList<GMLShape>(map.getRoads());
+        shapes.addAll(map.getBuildings());
+        progress.addWork(shapes.size());
+        return ParallelCheck.run(shapes.size(), new ParallelCheck.Check() {
+                @Override
+                public void check(int index, List<ValidationError> errors) {
+                    ValidationError error = checkTraversability(shapes.get(index), MIN_ROAD_WIDTH);
+                    if (error != null) {
+                        errors.add(error);
+                    }
+                }
+            }, progress);
     }
 
     /**
@@ -17,4 +17,12 @@ public interface MapValidator<T extends Map> {
      * @return Collection of errors.
      */
     Collection<ValidationError> validate(T map);
+
+    /**
+     * Check if the given map is valid and report progress while doing so.
+     * @param map Map that should be checked.
+     * @param progress The listener to report progress to.
+     * @return Collection of errors.
+     */
+    Collection<ValidationError> validate(T map, ValidationProgress progress);
 }
@@ -0,0 +1,56 @@
+package maps.validate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import rescuecore2.misc.ChunkExecutor;
+
+/**
+ * Runs an independent check for each of a number of items on several threads.
+ * Errors are returned in item order, so the results do not depend on the
+ * number of threads.
+ */
+final class ParallelCheck {
+    private ParallelCheck() {
+    }
+
+    /**
+     * A check of a single item.
+     */
+    interface Check {
+        /**
+         * Check an item. This may be called from several threads at once.
+         * @param index The index of the item.
+         * @param errors The list to add errors to.
+         */
+        void check(int index, List<ValidationError> errors);
+    }
+
+    /**
+     * Run a check on items 0 to count - 1.
+     * @param count The number of items.
+     * @param check The check to run.
+     * @param progress The progress listener. One unit of work is reported for
+     *            each item.
+     * @return All errors found.
+     */
+    static List<ValidationError> run(int count, final Check check,
+            final ValidationProgress progress) {
+        List<ValidationError> result = new ArrayList<ValidationError>();
+        for (List<ValidationError> next : ChunkExecutor.run("Map validator",
+                count, new ChunkExecutor.Chunk<List<ValidationError>>() {
+                    @Override
+                    public List<ValidationError> process(int first, int last) {
+                        List<ValidationError> errors = new ArrayList<ValidationError>();
+                        for (int i = first; i < last; ++i) {
+                            check.check(i, errors);
+                        }
+                        progress.workDone(last - first);
+                        return errors;
+                    }
+                })) {
+            result.addAll(next);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,30 @@
+package maps.validate;
+
+/**
+ * Receives progress reports from a {@link MapValidator}. Validators may report
+ * progress from several threads at once.
+ */
+public interface ValidationProgress {
+    /** A ValidationProgress that ignores all reports. */
+    ValidationProgress NONE = new ValidationProgress() {
+        @Override
+        public void addWork(int amount) {
+        }
+
+        @Override
+        public void workDone(int amount) {
+        }
+    };
+
+    /**
+     * Notify that more work needs to be done.
+     * @param amount The number of extra units of work.
+     */
+    void addWork(int amount);
+
+    /**
+     * Notify that some work has been completed.
+     * @param amount The number of units of work completed.
+     */
+    void workDone(int amount);
+}
@@ -0,0 +1,158 @@
+package maps.gml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.junit.Before;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import maps.ScaleConversion;
+
+public class GMLNodeIndexTest {
+    private static final long SEED = 42;
+    private static final int NODES = 500;
+    private static final int QUERIES = 200;
+    private static final double SIZE = 1000;
+
+    private Random random;
+    private GMLMap map;
+    private List<GMLNode> nodes;
+
+    @Before
+    public void setup() {
+        random = new Random(SEED);
+        map = new GMLMap();
+        nodes = new ArrayList<GMLNode>();
+        for (int i = 0; i < NODES; ++i) {
+            nodes.add(map.createNode(randomCoordinate(), randomCoordinate()));
+        }
+        // A tight cluster and some duplicates so cells hold very different numbers of nodes
+        for (int i = 0; i < NODES / 10; ++i) {
+            nodes.add(map.createNode(SIZE / 2 + random.nextDouble(), SIZE / 2 + random.nextDouble()));
+        }
+        for (int i = 0; i < NODES / 10; ++i) {
+            GMLNode copy = nodes.get(random.nextInt(nodes.size()));
+            nodes.add(map.createNode(copy.getX(), copy.getY()));
+        }
+    }
+
+    @Test
+    public void testQueries() {
+        checkQueries();
+    }
+
+    @Test
+    public void testSetCoordinates() {
+        checkQueries();
+        for (GMLNode next : nodes) {
+            if (random.nextBoolean()) {
+                next.setCoordinates(new GMLCoordinates(randomCoordinate(), randomCoordinate()));
+            }
+        }
+        checkQueries();
+        // Move some nodes well outside the original extent
+        for (int i = 0; i < NODES / 10; ++i) {
+            GMLNode next = nodes.get(random.nextInt(nodes.size()));
+            next.setCoordinates(new GMLCoordinates(randomCoordinate() * 3 - SIZE, randomCoordinate() * 3 - SIZE));
+        }
+        checkQueries();
+    }
+
+    @Test
+    public void testSetChangedCoordinates() {
+        checkQueries();
+        // Changing the coordinates in place and then setting them again must not leave the index stale
+        for (int i = 0; i < NODES / 10; ++i) {
+            GMLNode next = nodes.get(random.nextInt(nodes.size()));
+            GMLCoordinates c = next.getCoordinates();
+            c.setX(randomCoordinate());
+            c.setY(randomCoordinate());
+            next.setCoordinates(c);
+        }
+        checkQueries();
+    }
+
+    @Test
+    public void testConvert() {
+        checkQueries();
+        map.convertCoordinates(new ScaleConversion(0, 0, 2, 0.5));
+        checkQueries();
+        GMLNode next = nodes.get(0);
+        next.convert(new ScaleConversion(0, 0, -1, -1));
+        checkQueries();
+    }
+
+    @Test
+    public void testAddAndRemove() {
+        checkQueries();
+        for (int i = 0; i < NODES / 2; ++i) {
+            map.removeNode(nodes.remove(random.nextInt(nodes.size())));
+        }
+        for (int i = 0; i < NODES / 4; ++i) {
+            nodes.add(map.createNode(randomCoordinate(), randomCoordinate()));
+        }
+        checkQueries();
+    }
+
+    @Test
+    public void testRemovedNodeMoves() {
+        checkQueries();
+        GMLNode removed = nodes.remove(0);
+        map.removeNode(removed);
+        removed.setCoordinates(new GMLCoordinates(randomCoordinate(), randomCoordinate()));
+        checkQueries();
+        map.removeAllNodes();
+        nodes.clear();
+        removed.setCoordinates(new GMLCoordinates(randomCoordinate(), randomCoordinate()));
+        assertNull(map.findNearestNode(0, 0));
+        assertEquals(0, map.getNodesInRegion(0, 0, SIZE, SIZE).size());
+    }
+
+    private void checkQueries() {
+        for (int i = 0; i < QUERIES; ++i) {
+            double x1 = randomCoordinate();
+            double x2 = randomCoordinate();
+            double y1 = randomCoordinate();
+            double y2 = randomCoordinate();
+            double xMin = Math.min(x1, x2);
+            double xMax = Math.max(x1, x2);
+            double yMin = Math.min(y1, y2);
+            double yMax = Math.max(y1, y2);
+            if (i % 2 == 0) {
+                // Small regions as well as large ones
+                xMax = xMin + (xMax - xMin) / 20;
+                yMax = yMin + (yMax - yMin) / 20;
+            }
+            Set<GMLNode> expected = new HashSet<GMLNode>();
+            for (GMLNode next : nodes) {
+                if (next.getX() >= xMin && next.getX() <= xMax && next.getY() >= yMin && next.getY() <= yMax) {
+                    expected.add(next);
+                }
+            }
+            assertEquals(expected, new HashSet<GMLNode>(map.getNodesInRegion(xMin, yMin, xMax, yMax)));
+            // Also look from points outside the map
+            double x = randomCoordinate() * 2 - SIZE / 2;
+            double y = randomCoordinate() * 2 - SIZE / 2;
+            double best = Double.POSITIVE_INFINITY;
+            for (GMLNode next : nodes) {
+                best = Math.min(best, distance(x, y, next));
+            }
+            GMLNode nearest = map.findNearestNode(x, y);
+            assertEquals(best, distance(x, y, nearest), 0);
+        }
+    }
+
+    private double randomCoordinate() {
+        return random.nextDouble() * SIZE;
+    }
+
+    private static double distance(double x, double y, GMLNode node) {
+        return Math.hypot(x - node.getX(), y - node.getY());
+    }
+}
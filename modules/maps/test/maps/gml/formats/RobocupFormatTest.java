@@ -0,0 +1,102 @@
+package maps.gml.formats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import org.junit.Test;
+import org.junit.Before;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.util.List;
+
+import org.dom4j.io.SAXReader;
+
+import maps.gml.GMLBuilding;
+import maps.gml.GMLDirectedEdge;
+import maps.gml.GMLEdge;
+import maps.gml.GMLMap;
+import maps.gml.GMLNode;
+import maps.gml.GMLShape;
+
+public class RobocupFormatTest {
+    private static final String MAP = "maps/gml/test/map/map.gml";
+
+    private GMLMap dom;
+    private GMLMap stream;
+
+    @Before
+    public void setup() throws Exception {
+        File file = new File(MAP);
+        Reader r = new FileReader(file);
+        try {
+            dom = RobocupFormat.INSTANCE.read(new SAXReader().read(r));
+        }
+        finally {
+            r.close();
+        }
+        stream = RobocupFormat.INSTANCE.read(file);
+    }
+
+    @Test
+    public void testNodes() {
+        assertFalse(dom.getNodes().isEmpty());
+        assertEquals(dom.getNodes().size(), stream.getNodes().size());
+        for (GMLNode next : dom.getNodes()) {
+            GMLNode other = stream.getNode(next.getID());
+            assertNotNull("Missing node " + next.getID(), other);
+            assertEquals(next.getX(), other.getX(), 0);
+            assertEquals(next.getY(), other.getY(), 0);
+        }
+    }
+
+    @Test
+    public void testEdges() {
+        assertFalse(dom.getEdges().isEmpty());
+        assertEquals(dom.getEdges().size(), stream.getEdges().size());
+        for (GMLEdge next : dom.getEdges()) {
+            GMLEdge other = stream.getEdge(next.getID());
+            assertNotNull("Missing edge " + next.getID(), other);
+            assertEquals(next.getStart().getID(), other.getStart().getID());
+            assertEquals(next.getEnd().getID(), other.getEnd().getID());
+            assertEquals(next.isPassable(), other.isPassable());
+        }
+    }
+
+    @Test
+    public void testShapes() {
+        assertFalse(dom.getBuildings().isEmpty());
+        assertFalse(dom.getRoads().isEmpty());
+        assertEquals(dom.getBuildings().size(), stream.getBuildings().size());
+        assertEquals(dom.getRoads().size(), stream.getRoads().size());
+        assertEquals(dom.getSpaces().size(), stream.getSpaces().size());
+        for (GMLShape next : dom.getAllShapes()) {
+            GMLShape other = stream.getShape(next.getID());
+            assertNotNull("Missing shape " + next.getID(), other);
+            assertEquals(next.getClass(), other.getClass());
+            List<GMLDirectedEdge> edges = next.getEdges();
+            List<GMLDirectedEdge> otherEdges = other.getEdges();
+            assertEquals(edges.size(), otherEdges.size());
+            for (int i = 0; i < edges.size(); ++i) {
+                GMLDirectedEdge edge = edges.get(i);
+                GMLDirectedEdge otherEdge = otherEdges.get(i);
+                assertEquals(edge.getEdge().getID(), otherEdge.getEdge().getID());
+                assertEquals(edge.isForward(), otherEdge.isForward());
+                assertEquals(next.getNeighbour(edge), other.getNeighbour(otherEdge));
+            }
+        }
+        for (GMLBuilding next : dom.getBuildings()) {
+            GMLBuilding other = stream.getBuilding(next.getID());
+            assertEquals(next.getFloors(), other.getFloors());
+            assertEquals(next.getCode(), other.getCode());
+            assertEquals(next.getImportance(), other.getImportance());
+        }
+    }
+
+    @Test
+    public void testWriteSameDocument() {
+        assertEquals(RobocupFormat.INSTANCE.write(dom).asXML(), RobocupFormat.INSTANCE.write(stream).asXML());
+    }
+}
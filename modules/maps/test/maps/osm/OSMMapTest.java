@@ -0,0 +1,103 @@
+package maps.osm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.dom4j.io.SAXReader;
+
+public class OSMMapTest {
+    private static final String SMALL = "maps/osm/test.osm";
+    private static final String FRAGMENT = "maps/osm/fragment.osm";
+
+    @Test
+    public void testSmallMap() throws Exception {
+        File file = new File(SMALL);
+        compare(readDocument(file), new OSMMap(file));
+    }
+
+    @Test
+    public void testFragment() throws Exception {
+        File file = new File(FRAGMENT);
+        compare(readDocument(file), new OSMMap(file));
+    }
+
+    @Test
+    public void testBoundedFragment() throws Exception {
+        File file = new File(FRAGMENT);
+        OSMMap whole = readDocument(file);
+        // The middle half of the map
+        double latRange = whole.getMaxLatitude() - whole.getMinLatitude();
+        double lonRange = whole.getMaxLongitude() - whole.getMinLongitude();
+        double minLat = whole.getMinLatitude() + latRange / 4;
+        double maxLat = whole.getMaxLatitude() - latRange / 4;
+        double minLon = whole.getMinLongitude() + lonRange / 4;
+        double maxLon = whole.getMaxLongitude() - lonRange / 4;
+        OSMMap expected = new OSMMap(whole, minLat, minLon, maxLat, maxLon);
+        OSMMap actual = new OSMMap(file, minLat, minLon, maxLat, maxLon);
+        assertFalse(actual.getRoads().isEmpty());
+        compare(expected, actual);
+    }
+
+    private static OSMMap readDocument(File file) throws Exception {
+        Reader r = new FileReader(file);
+        try {
+            return new OSMMap(new SAXReader().read(r));
+        }
+        finally {
+            r.close();
+        }
+    }
+
+    private static void compare(OSMMap expected, OSMMap actual) {
+        assertFalse(expected.getRoads().isEmpty() && expected.getBuildings().isEmpty());
+        assertEquals(getWays(expected.getRoads()), getWays(actual.getRoads()));
+        assertEquals(getWays(expected.getBuildings()), getWays(actual.getBuildings()));
+        // The streaming reader only keeps nodes that roads and buildings use
+        Set<Long> used = new HashSet<Long>();
+        for (OSMWay next : expected.getRoads()) {
+            used.addAll(next.getNodeIDs());
+        }
+        for (OSMWay next : expected.getBuildings()) {
+            used.addAll(next.getNodeIDs());
+        }
+        for (OSMNode next : actual.getNodes()) {
+            assertNotNull("Unexpected node " + next.getID(), expected.getNode(next.getID()));
+            assertTrue("Unused node " + next.getID(), used.contains(next.getID()));
+        }
+        for (Long next : used) {
+            OSMNode node = expected.getNode(next);
+            if (node == null) {
+                continue;
+            }
+            OSMNode other = actual.getNode(next);
+            assertNotNull("Missing node " + next, other);
+            assertEquals(node.getLatitude(), other.getLatitude(), 0);
+            assertEquals(node.getLongitude(), other.getLongitude(), 0);
+        }
+        assertEquals(expected.getMinLatitude(), actual.getMinLatitude(), 0);
+        assertEquals(expected.getMaxLatitude(), actual.getMaxLatitude(), 0);
+        assertEquals(expected.getMinLongitude(), actual.getMinLongitude(), 0);
+        assertEquals(expected.getMaxLongitude(), actual.getMaxLongitude(), 0);
+    }
+
+    private static Map<Long, Object> getWays(Collection<? extends OSMWay> ways) {
+        Map<Long, Object> result = new HashMap<Long, Object>();
+        for (OSMWay next : ways) {
+            result.put(next.getID(), next.getNodeIDs());
+        }
+        return result;
+    }
+}
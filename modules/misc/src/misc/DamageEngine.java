@@ -0,0 +1,358 @@
+package misc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Formatter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import rescuecore2.config.Config;
+import rescuecore2.log.Logger;
+import rescuecore2.misc.ChunkExecutor;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+
+import rescuecore2.standard.entities.Building;
+import rescuecore2.standard.entities.GasStation;
+import rescuecore2.standard.entities.Human;
+import rescuecore2.standard.entities.Refuge;
+import rescuecore2.standard.entities.StandardWorldModel;
+
+/**
+ Applies building collapse, fire and gas station explosions to humans and progresses their damage.
+ <p>
+ The HP, damage, buriedness, position and location of each human are held in parallel arrays, along with an index of the humans at each position. These are kept up to date from the change sets the simulator receives, so a timestep does not need to look anything up in the world model for each human. Each timestep is a single pass over the humans followed by a sequential pass that writes the results back to the entities. Every human has its own random sequence so the first pass can be split across several threads without changing the results.
+ </p>
+ */
+public class DamageEngine {
+    /** The config key for the number of threads used to compute damage. */
+    public static final String THREADS_KEY = "misc.damage.threads";
+
+    private StandardWorldModel model;
+    private MiscParameters parameters;
+    private Map<EntityID, Integer> oldBrokenBuildingsBuriedness;
+
+    private int gasStationExplosionRange;
+    private int gasStationBuriednessBound;
+    private int gasStationBuriednessMin;
+    private int gasStationDamageBound;
+    private int gasStationDamageMin;
+    private Set<EntityID> notExplodedGasStations;
+    private Set<EntityID> refuges;
+
+    private int count;
+    private HumanAttributes[] attributes;
+    private Map<EntityID, Integer> indices;
+    private EntityID[] positions;
+    private boolean[] located;
+    private int[] xs;
+    private int[] ys;
+    private int[] hp;
+    private int[] damage;
+    private int[] buriedness;
+
+    // Per-timestep flags
+    private boolean[] inBrokenBuilding;
+    private boolean[] inBurningBuilding;
+    private boolean[] buriednessChanged;
+    private boolean[] hpChanged;
+
+    private Map<EntityID, List<Integer>> occupants;
+
+    private ChunkExecutor executor;
+
+    /**
+     Construct a DamageEngine.
+     @param model The world model.
+     @param config The system configuration.
+     @param parameters The misc simulator parameters.
+     @param humans The humans to simulate.
+     @param oldBrokenBuildingsBuriedness The buriedness of each building before the latest update. This is read each timestep.
+     */
+    public DamageEngine(StandardWorldModel model, Config config, MiscParameters parameters, Collection<HumanAttributes> humans, Map<EntityID, Integer> oldBrokenBuildingsBuriedness) {
+        this.model = model;
+        this.parameters = parameters;
+        this.oldBrokenBuildingsBuriedness = oldBrokenBuildingsBuriedness;
+        gasStationExplosionRange = config.getIntValue("ignition.gas_station.explosion.range", 0);
+        gasStationBuriednessBound = config.getIntValue("misc.gas_station.Buriedness.bound", 30);
+        gasStationBuriednessMin = config.getIntValue("misc.gas_station.Buriedness.min", 0);
+        gasStationDamageBound = config.getIntValue("misc.gas_station.Damage.bound", 50);
+        gasStationDamageMin = config.getIntValue("misc.gas_station.Damage.min", 15);
+        notExplodedGasStations = new HashSet<EntityID>();
+        refuges = new HashSet<EntityID>();
+        for (Entity next : model.getAllEntities()) {
+            if (next instanceof GasStation) {
+                notExplodedGasStations.add(next.getID());
+            }
+            if (next instanceof Refuge) {
+                refuges.add(next.getID());
+            }
+        }
+        count = humans.size();
+        attributes = humans.toArray(new HumanAttributes[count]);
+        Arrays.sort(attributes, new Comparator<HumanAttributes>() {
+                @Override
+                public int compare(HumanAttributes a, HumanAttributes b) {
+                    return Integer.compare(a.getID().getValue(), b.getID().getValue());
+                }
+            });
+        indices = new HashMap<EntityID, Integer>();
+        positions = new EntityID[count];
+        located = new boolean[count];
+        xs = new int[count];
+        ys = new int[count];
+        hp = new int[count];
+        damage = new int[count];
+        buriedness = new int[count];
+        inBrokenBuilding = new boolean[count];
+        inBurningBuilding = new boolean[count];
+        buriednessChanged = new boolean[count];
+        hpChanged = new boolean[count];
+        occupants = new HashMap<EntityID, List<Integer>>();
+        for (int i = 0; i < count; ++i) {
+            indices.put(attributes[i].getID(), i);
+            load(i);
+        }
+        int threads = config.getIntValue(THREADS_KEY, 1);
+        if (threads > 1) {
+            Logger.info("Computing damage with " + threads + " threads");
+            executor = new ChunkExecutor("Misc damage worker", threads);
+        }
+    }
+
+    /**
+     Refresh the stored state of any humans that appear in a change set. This should be called after the change set has been applied to the world model.
+     @param changes The changes.
+     */
+    public void update(ChangeSet changes) {
+        for (EntityID next : changes.getChangedEntities()) {
+            refresh(next);
+        }
+    }
+
+    /**
+     Refresh the stored state of a human after it has been changed outside this engine.
+     @param id The ID of the human.
+     */
+    public void refresh(EntityID id) {
+        Integer index = indices.get(id);
+        if (index != null) {
+            load(index);
+        }
+    }
+
+    /**
+     Run one timestep.
+     @param newlyBrokenBuildings The buildings that have collapsed further since the last timestep.
+     @param changes The ChangeSet to add changes to.
+     */
+    public void step(Set<EntityID> newlyBrokenBuildings, ChangeSet changes) {
+        Arrays.fill(inBrokenBuilding, false);
+        Arrays.fill(inBurningBuilding, false);
+        Arrays.fill(buriednessChanged, false);
+        Arrays.fill(hpChanged, false);
+        for (EntityID next : newlyBrokenBuildings) {
+            List<Integer> inside = occupants.get(next);
+            if (inside != null) {
+                for (int i : inside) {
+                    inBrokenBuilding[i] = true;
+                }
+            }
+        }
+        for (Map.Entry<EntityID, List<Integer>> next : occupants.entrySet()) {
+            Entity position = model.getEntity(next.getKey());
+            if (position instanceof Building && ((Building)position).isOnFire()) {
+                for (int i : next.getValue()) {
+                    inBurningBuilding[i] = true;
+                }
+            }
+        }
+        final List<GasStation> exploded = findExplodedGasStations();
+        if (executor == null) {
+            process(0, count, exploded);
+        }
+        else {
+            executor.process(count, new ChunkExecutor.Chunk<Object>() {
+                    @Override
+                    public Object process(int first, int last) {
+                        DamageEngine.this.process(first, last, exploded);
+                        return null;
+                    }
+                });
+        }
+        // Write back in a fixed order
+        for (int i = 0; i < count; ++i) {
+            Human h = attributes[i].getHuman();
+            if (buriednessChanged[i]) {
+                h.setBuriedness(buriedness[i]);
+                changes.addChange(h, h.getBuriednessProperty());
+            }
+            h.setDamage(damage[i]);
+            changes.addChange(h, h.getDamageProperty());
+            if (hpChanged[i]) {
+                h.setHP(hp[i]);
+                changes.addChange(h, h.getHPProperty());
+            }
+        }
+    }
+
+    /**
+     Log a table of the humans that are damaged or buried. Nothing is done unless debug logging is enabled.
+     @param time The current timestep.
+     */
+    public void writeDebugOutput(int time) {
+        if (!Logger.isDebugEnabled()) {
+            return;
+        }
+        StringBuilder builder = new StringBuilder();
+        Formatter format = new Formatter(builder);
+        format.format("Agents damaged or buried at timestep %1d%n", time);
+        format.format("    ID    |   HP   | Damage |   Bury   | Collapse |   Fire   | Buriedness%n");
+        for (int i = 0; i < count; ++i) {
+            if ((damage[i] > 0 || buriedness[i] > 0) && hp[i] > 0) {
+                HumanAttributes ha = attributes[i];
+                format.format("%1$9d | %2$6d | %3$6d | %4$8.3f | %5$8.3f | %6$8.3f | %7$6d%n",
+                              ha.getID().getValue(), hp[i], damage[i],
+                              ha.getBuriednessDamage(), ha.getCollapseDamage(),
+                              ha.getFireDamage(), buriedness[i]);
+            }
+        }
+        Logger.debug(builder.toString());
+    }
+
+    /**
+     Stop any worker threads.
+     */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private List<GasStation> findExplodedGasStations() {
+        Logger.info("processExplodedGasStations for " + notExplodedGasStations);
+        List<GasStation> result = new ArrayList<GasStation>();
+        for (Iterator<EntityID> it = notExplodedGasStations.iterator(); it.hasNext();) {
+            GasStation gasStation = (GasStation)model.getEntity(it.next());
+            if (gasStation.isFierynessDefined() && gasStation.getFieryness() == 1) {
+                result.add(gasStation);
+                it.remove();
+            }
+        }
+        return result;
+    }
+
+    /**
+     Compute the new state of humans first (inclusive) to last (exclusive). This only touches the state of those humans so chunks can be processed concurrently.
+     */
+    private void process(int first, int last, List<GasStation> exploded) {
+        for (int i = first; i < last; ++i) {
+            HumanAttributes hA = attributes[i];
+            if (inBrokenBuilding[i]) {
+                processBrokenBuilding(i, hA, (Building)model.getEntity(positions[i]));
+            }
+            if (inBurningBuilding[i]) {
+                int d = parameters.getFireDamage((Building)model.getEntity(positions[i]), hA);
+                if (d != 0) {
+                    hA.addFireDamage(d);
+                }
+            }
+            for (GasStation next : exploded) {
+                processExplosion(i, hA, next);
+            }
+            progressDamage(i, hA);
+        }
+    }
+
+    private void processBrokenBuilding(int i, HumanAttributes hA, Building b) {
+        Logger.trace("Checking if human should be buried in broken building");
+        if (parameters.shouldBuryAgent(b, hA)) {
+            int extra = parameters.getBuriedness(b) - oldBrokenBuildingsBuriedness.get(b.getID());
+            if (extra != 0) {
+                buriedness[i] += extra;
+                buriednessChanged[i] = true;
+                // Check for injury from being buried
+                int d = parameters.getBuryDamage(b, hA);
+                if (d != 0) {
+                    hA.addBuriednessDamage(d);
+                }
+            }
+        }
+        // Now check for injury from the collapse
+        int d = parameters.getCollapseDamage(b, hA);
+        if (d != 0) {
+            hA.addCollapseDamage(d);
+        }
+    }
+
+    private void processExplosion(int i, HumanAttributes hA, GasStation gasStation) {
+        if (!located[i]) {
+            return;
+        }
+        if (Math.hypot(xs[i] - gasStation.getX(), ys[i] - gasStation.getY()) >= gasStationExplosionRange) {
+            return;
+        }
+        Logger.info(hA.getHuman() + " getting damage from explosion...");
+        buriedness[i] += hA.getRandom().nextInt(gasStationBuriednessBound) + gasStationBuriednessMin;
+        buriednessChanged[i] = true;
+        // Check for injury from being exploded
+        int d = hA.getRandom().nextInt(gasStationDamageBound) + gasStationDamageMin;
+        if (d != 0) {
+            hA.addCollapseDamage(d);
+        }
+    }
+
+    private void progressDamage(int i, HumanAttributes hA) {
+        boolean isAlive = hp[i] > 0;
+        if (isAlive) {
+            hA.progressDamage();
+        }
+        int total = hA.getTotalDamage();
+        damage[i] = total;
+        if (isAlive && total > 0) {
+            hp[i] = Math.max(0, hp[i] - total);
+            hpChanged[i] = true;
+        }
+        // Treat damage if in a refuge
+        if (refuges.contains(positions[i])) {
+            hA.clearDamage();
+            damage[i] = 0;
+        }
+    }
+
+    private void load(int i) {
+        Human h = attributes[i].getHuman();
+        EntityID position = h.isPositionDefined() ? h.getPosition() : null;
+        if (position == null ? positions[i] != null : !position.equals(positions[i])) {
+            if (positions[i] != null) {
+                List<Integer> old = occupants.get(positions[i]);
+                old.remove(Integer.valueOf(i));
+                if (old.isEmpty()) {
+                    occupants.remove(positions[i]);
+                }
+            }
+            if (position != null) {
+                List<Integer> inside = occupants.get(position);
+                if (inside == null) {
+                    inside = new ArrayList<Integer>();
+                    occupants.put(position, inside);
+                }
+                inside.add(i);
+            }
+            positions[i] = position;
+        }
+        located[i] = h.isXDefined() && h.isYDefined();
+        xs[i] = h.isXDefined() ? h.getX() : 0;
+        ys[i] = h.isYDefined() ? h.getY() : 0;
+        hp[i] = h.isHPDefined() ? h.getHP() : 0;
+        damage[i] = h.isDamageDefined() ? h.getDamage() : 0;
+        buriedness[i] = h.isBuriednessDefined() ? h.getBuriedness() : 0;
+    }
+}
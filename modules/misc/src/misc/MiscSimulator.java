@@ -1,6 +1,5 @@
 package misc;
 
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.HashMap;
@@ -11,8 +10,6 @@ import javax.swing.JComponent;
 import rescuecore2.messages.Command;
 import rescuecore2.messages.control.KSCommands;
 import rescuecore2.messages.control.KSUpdate;
-import rescuecore2.misc.geometry.GeometryTools2D;
-import rescuecore2.misc.geometry.Point2D;
 import rescuecore2.worldmodel.Entity;
 import rescuecore2.worldmodel.EntityID;
 import rescuecore2.worldmodel.EntityListener;
@@ -21,8 +18,6 @@ import rescuecore2.worldmodel.ChangeSet;
 import rescuecore2.log.Logger;
 
 import rescuecore2.standard.entities.Building;
-import rescuecore2.standard.entities.GasStation;
-import rescuecore2.standard.entities.Refuge;
 import rescuecore2.standard.entities.Human;
 import rescuecore2.standard.entities.AmbulanceTeam;
 import rescuecore2.standard.entities.StandardEntity;
@@ -32,8 +27,6 @@ import rescuecore2.standard.components.StandardSimulator;
 
 import rescuecore2.GUIComponent;
 
-import java.util.Formatter;
-
 /**
  * Implementation of the legacy misc simulator.
  *
@@ -46,13 +39,7 @@ public class MiscSimulator extends StandardSimulator implements GUIComponent {
 	private Map<EntityID, Integer> oldBrokenBuildingsBuriedness = new HashMap<>();
 	private MiscParameters parameters;
 	private MiscSimulatorGUI gui;
-	private int GAS_STATION_EXPLOSION_RANG;
-	private int GAS_STATION_Buriedness_Bound;
-	private int GAS_STATION_Buriedness_MIN;
-	private int GAS_STATION_Damage_Bound;
-	private int GAS_STATION_Damage_MIN;
-
-	private Set<EntityID> notExplosedGasStations;
+	private DamageEngine engine;
 
 	@Override
 	public JComponent getGUIComponent() {
@@ -70,13 +57,7 @@ public class MiscSimulator extends StandardSimulator implements GUIComponent {
 	@Override
 	protected void postConnect() {
 		super.postConnect();
-		notExplosedGasStations=new HashSet<>();
 		parameters = new MiscParameters(config);
-		GAS_STATION_EXPLOSION_RANG = config.getIntValue("ignition.gas_station.explosion.range", 0);
-		GAS_STATION_Buriedness_Bound = config.getIntValue("misc.gas_station.Buriedness.bound", 30);
-		GAS_STATION_Buriedness_MIN = config.getIntValue("misc.gas_station.Buriedness.min", 0);
-		GAS_STATION_Damage_Bound = config.getIntValue("misc.gas_station.Damage.bound", 50);
-		GAS_STATION_Damage_MIN = config.getIntValue("misc.gas_station.Damage.min", 15);
 
 		humans = new HashMap<EntityID, HumanAttributes>();
 		newlyBrokenBuildings = new HashSet<EntityID>();
@@ -85,9 +66,6 @@ public class MiscSimulator extends StandardSimulator implements GUIComponent {
 		BuildingChangeListener buildingListener = new BuildingChangeListener();
 		// HumanChangeListener humanListener = new HumanChangeListener();
 		for (Entity et : model.getAllEntities()) {
-			if (et instanceof GasStation) {
-				notExplosedGasStations.add(et.getID());
-			}
 			if (et instanceof Building) {
 				et.addEntityListener(buildingListener);
 			} else if (et instanceof Human) {
@@ -97,6 +75,15 @@ public class MiscSimulator extends StandardSimulator implements GUIComponent {
 				humans.put(ha.getID(), ha);
 			}
 		}
+		engine = new DamageEngine(model, config, parameters, humans.values(), oldBrokenBuildingsBuriedness);
+	}
+
+	@Override
+	public void shutdown() {
+		super.shutdown();
+		if (engine != null) {
+			engine.shutdown();
+		}
 	}
 
 	@Override
@@ -111,19 +98,17 @@ public class MiscSimulator extends StandardSimulator implements GUIComponent {
 					Human human = (Human) (model.getEntity(((AKRescue) com)
 							.getTarget()));
 					handleRescue(human, changes);
+					engine.refresh(human.getID());
 				}
 			} else {
 				Logger.debug("Ignoring " + com);
 			}
 		}
 
-		processBrokenBuildings(changes);
-		processBurningBuildings(changes);
-		processExplodedGasStations(changes);
-		updateDamage(changes);
+		engine.step(newlyBrokenBuildings, changes);
 		// Clean up
 		newlyBrokenBuildings.clear();
-		writeDebugOutput(c.getTime());
+		engine.writeDebugOutput(c.getTime());
 		if (gui != null) {
 			gui.refresh(humans.values());
 		}
@@ -131,149 +116,6 @@ public class MiscSimulator extends StandardSimulator implements GUIComponent {
 		Logger.info("Timestep " + time + " took " + (end - start) + " ms");
 	}
 
-	private void processExplodedGasStations(ChangeSet changes) {
-		Logger.info("processExplodedGasStations for " + notExplosedGasStations);
-		for (Iterator<EntityID> iterator = notExplosedGasStations.iterator(); iterator.hasNext();) {
-			GasStation gasStation = (GasStation) model.getEntity(iterator.next());
-			if (gasStation.isFierynessDefined() && gasStation.getFieryness() == 1) {
-				for (HumanAttributes hA : humans.values()) {
-					Human human = hA.getHuman();
-					if (!human.isXDefined() || !human.isYDefined())
-						continue;
-					if (GeometryTools2D.getDistance(new Point2D(human.getX(), human.getY()), new Point2D(gasStation.getX(), gasStation.getY())) < GAS_STATION_EXPLOSION_RANG) {
-						Logger.info(human + " getting damage from explosion..." + human);
-						int oldBuriedness = human.isBuriednessDefined() ? human
-								.getBuriedness() : 0;
-						human.setBuriedness(oldBuriedness + hA.getRandom().nextInt(GAS_STATION_Buriedness_Bound) + GAS_STATION_Buriedness_MIN);
-						changes.addChange(human, human.getBuriednessProperty());
-						// Check for injury from being exploded
-						int damage = hA.getRandom().nextInt(GAS_STATION_Damage_Bound) + GAS_STATION_Damage_MIN;
-						if (damage != 0) {
-							hA.addCollapseDamage(damage);
-						}
-					}
-
-				}
-
-				iterator.remove();
-			}
-		}
-
-	}
-
-	private void processBrokenBuildings(ChangeSet changes) {
-		for (HumanAttributes hA : humans.values()) {
-			Human human = hA.getHuman();
-			EntityID positionID = human.getPosition();
-			if (!newlyBrokenBuildings.contains(positionID)) {
-				continue;
-			}
-			// Human is in a newly collapsed building
-			// Check for buriedness
-			Logger.trace("Checking if human should be buried in broken building");
-			Building b = (Building) human.getPosition(model);
-			if (parameters.shouldBuryAgent(b, hA)) {
-				int buriedness = parameters.getBuriedness(b) - oldBrokenBuildingsBuriedness.get(b.getID());
-
-				if (buriedness != 0) {
-					int oldBuriedness = human.isBuriednessDefined() ? human
-							.getBuriedness() : 0;
-					human.setBuriedness(oldBuriedness + buriedness);
-					changes.addChange(human, human.getBuriednessProperty());
-					// Check for injury from being buried
-					int damage = parameters.getBuryDamage(b, hA);
-					if (damage != 0) {
-						hA.addBuriednessDamage(damage);
-					}
-				}
-			}
-			// Now check for injury from the collapse
-			int damage = parameters.getCollapseDamage(b, hA);
-			if (damage != 0) {
-				hA.addCollapseDamage(damage);
-			}
-		}
-	}
-
-	private void processBurningBuildings(ChangeSet changes) {
-		for (HumanAttributes hA : humans.values()) {
-			Human human = hA.getHuman();
-			EntityID positionID = human.getPosition();
-			Entity position = human.getPosition(model);
-			if (position instanceof Building
-					&& ((Building) position).isOnFire()) {
-				// Human is in a burning building
-				int damage = parameters.getFireDamage((Building) position,
-						hA);
-				if (damage != 0) {
-					hA.addFireDamage(damage);
-				}
-			}
-		}
-	}
-
-	private void writeDebugOutput(int time) {
-		StringBuilder builder = new StringBuilder();
-		Formatter format = new Formatter(builder);
-		format.format("Agents damaged or buried at timestep %1d%n", time);
-		format.format("    ID    |   HP   | Damage |   Bury   | Collapse |   Fire   | Buriedness%n");
-		for (HumanAttributes ha : humans.values()) {
-			Human h = ha.getHuman();
-			int hp = h.isHPDefined() ? h.getHP() : 0;
-			int damage = ha.getTotalDamage();
-			int buriedness = h.isBuriednessDefined() ? h.getBuriedness() : 0;
-			boolean isAlive = hp > 0;
-			boolean hasDamage = damage > 0;
-			boolean isBuried = buriedness > 0;
-			if ((hasDamage || isBuried) && isAlive) {
-				format.format(
-						"%1$9d | %2$6d | %3$6d | %4$8.3f | %5$8.3f | %6$8.3f | %7$6d%n",
-						ha.getID().getValue(), hp, damage,
-						ha.getBuriednessDamage(), ha.getCollapseDamage(),
-						ha.getFireDamage(), buriedness);
-			}
-		}
-		Logger.debug(builder.toString());
-	}
-
-	private void updateDamage(ChangeSet changes) {
-		for (HumanAttributes ha : humans.values()) {
-			updateDamage(ha);
-			Human h = ha.getHuman();
-			int hp = h.isHPDefined() ? h.getHP() : 0;
-			int damage = ha.getTotalDamage();
-
-			h.setDamage(damage);
-			changes.addChange(ha.getHuman(), ha.getHuman().getDamageProperty());
-
-			// Update HP
-			boolean isAlive = hp > 0;
-			boolean hasDamage = damage > 0;
-
-			if (isAlive && hasDamage) {
-				int newHP = Math.max(0, hp - damage);
-				h.setHP(newHP);
-				changes.addChange(ha.getHuman(), ha.getHuman().getHPProperty());
-			}
-
-			// Treat damage if in a refuge
-			if (h.getPosition(model) instanceof Refuge) {
-				ha.clearDamage();
-				h.setDamage(0);
-				changes.addChange(ha.getHuman(), ha.getHuman()
-						.getDamageProperty());
-			}
-		}
-	}
-
-	private void updateDamage(HumanAttributes ha) {
-		Human h = ha.getHuman();
-		if (h.getHP() <= 0) {
-			return; // Agent is already dead.
-		}
-		ha.progressDamage();
-	}
-
 	private boolean checkValidity(Command command) {
 		Entity e = model.getEntity(command.getAgentID());
 		if (e == null) {
@@ -374,5 +216,6 @@ public class MiscSimulator extends StandardSimulator implements GUIComponent {
 			}
 		}
 		super.handleUpdate(u);
+		engine.update(u.getChangeSet());
 	}
 }
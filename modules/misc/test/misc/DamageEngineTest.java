@@ -0,0 +1,416 @@
+package misc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import rescuecore2.config.Config;
+import rescuecore2.misc.geometry.GeometryTools2D;
+import rescuecore2.misc.geometry.Point2D;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+import rescuecore2.worldmodel.EntityListener;
+import rescuecore2.worldmodel.Property;
+
+import rescuecore2.standard.entities.AmbulanceTeam;
+import rescuecore2.standard.entities.Building;
+import rescuecore2.standard.entities.Civilian;
+import rescuecore2.standard.entities.FireBrigade;
+import rescuecore2.standard.entities.GasStation;
+import rescuecore2.standard.entities.Human;
+import rescuecore2.standard.entities.PoliceForce;
+import rescuecore2.standard.entities.Refuge;
+import rescuecore2.standard.entities.StandardPropertyURN;
+import rescuecore2.standard.entities.StandardWorldModel;
+
+/**
+   Runs DamageEngine and the per-human loops it replaced side by side on identical worlds and checks that every timestep produces the same changes.
+*/
+public class DamageEngineTest {
+    private static final String CONFIG = "boot/config/misc.cfg";
+    private static final String SEED = "1234";
+    private static final String EXPLOSION_RANGE = "30000";
+
+    private static final int BUILDINGS = 200;
+    private static final int HUMANS = 200;
+    private static final int STEPS = 20;
+    private static final int SIZE = 100000;
+    private static final int INITIAL_HP = 10000;
+
+    @Test
+    public void testSingleThreadMatchesLegacy() throws Exception {
+        compare(1);
+    }
+
+    @Test
+    public void testThreadsMatchLegacy() throws Exception {
+        compare(3);
+    }
+
+    private void compare(int threads) throws Exception {
+        LegacyDamage legacy = new LegacyDamage(createConfig(1));
+        EngineDamage engine = new EngineDamage(createConfig(threads));
+        Random random = new Random(42);
+        try {
+            for (int time = 1; time <= STEPS; ++time) {
+                ChangeSet update = createUpdate(legacy.model, random);
+                legacy.handleUpdate(update);
+                engine.handleUpdate(update);
+                for (Human next : legacy.humans()) {
+                    if (next.getBuriedness() > 0 && random.nextInt(3) == 0) {
+                        legacy.rescue(next.getID());
+                        engine.rescue(next.getID());
+                    }
+                }
+                assertEquals("Timestep " + time, values(legacy.step()), values(engine.step()));
+            }
+        }
+        finally {
+            engine.shutdown();
+        }
+        boolean hurt = false;
+        for (Human next : legacy.humans()) {
+            hurt |= next.getHP() < INITIAL_HP;
+        }
+        assertTrue("Nobody was hurt", hurt);
+    }
+
+    private static Config createConfig(int threads) throws Exception {
+        Config config = new Config(new File(CONFIG));
+        config.setValue("random.seed", SEED);
+        config.setValue("ignition.gas_station.explosion.range", EXPLOSION_RANGE);
+        config.setValue(DamageEngine.THREADS_KEY, String.valueOf(threads));
+        return config;
+    }
+
+    private static StandardWorldModel createWorld() {
+        Random random = new Random(7);
+        StandardWorldModel model = new StandardWorldModel();
+        List<Building> buildings = new ArrayList<Building>();
+        int id = 1;
+        for (int i = 0; i < BUILDINGS; ++i) {
+            Building b;
+            EntityID next = new EntityID(id++);
+            if (i % 50 == 0) {
+                b = new Refuge(next);
+            }
+            else if (i % 37 == 0) {
+                b = new GasStation(next);
+            }
+            else {
+                b = new Building(next);
+            }
+            b.setBuildingCode(random.nextInt(3));
+            b.setBrokenness(0);
+            b.setFieryness(0);
+            b.setX(random.nextInt(SIZE));
+            b.setY(random.nextInt(SIZE));
+            buildings.add(b);
+        }
+        model.addEntities(buildings);
+        for (int i = 0; i < HUMANS; ++i) {
+            Human h;
+            EntityID next = new EntityID(id++);
+            switch (i % 4) {
+            case 0:
+                h = new AmbulanceTeam(next);
+                break;
+            case 1:
+                h = new FireBrigade(next);
+                break;
+            case 2:
+                h = new PoliceForce(next);
+                break;
+            default:
+                h = new Civilian(next);
+                break;
+            }
+            moveTo(h, buildings.get(random.nextInt(BUILDINGS)));
+            h.setHP(INITIAL_HP);
+            h.setDamage(0);
+            h.setBuriedness(0);
+            model.addEntity(h);
+        }
+        return model;
+    }
+
+    private static ChangeSet createUpdate(StandardWorldModel model, Random random) {
+        List<Building> buildings = new ArrayList<Building>();
+        List<Human> humans = new ArrayList<Human>();
+        for (int i = 1; i <= BUILDINGS; ++i) {
+            buildings.add((Building)model.getEntity(new EntityID(i)));
+        }
+        for (int i = BUILDINGS + 1; i <= BUILDINGS + HUMANS; ++i) {
+            humans.add((Human)model.getEntity(new EntityID(i)));
+        }
+        ChangeSet result = new ChangeSet();
+        for (int i = 0; i < BUILDINGS / 20; ++i) {
+            Building b = (Building)buildings.get(random.nextInt(BUILDINGS)).copy();
+            b.setBrokenness(Math.min(100, b.getBrokenness() + random.nextInt(40)));
+            result.addChange(b, b.getBrokennessProperty());
+            if (random.nextInt(4) == 0) {
+                b.setFieryness(1 + random.nextInt(8));
+                result.addChange(b, b.getFierynessProperty());
+            }
+        }
+        for (int i = 0; i < HUMANS / 10; ++i) {
+            Human h = (Human)humans.get(random.nextInt(HUMANS)).copy();
+            moveTo(h, buildings.get(random.nextInt(BUILDINGS)));
+            result.addChange(h, h.getPositionProperty());
+            result.addChange(h, h.getXProperty());
+            result.addChange(h, h.getYProperty());
+        }
+        return result;
+    }
+
+    private static void moveTo(Human h, Building b) {
+        h.setPosition(b.getID());
+        h.setX(b.getX());
+        h.setY(b.getY());
+    }
+
+    private static Map<EntityID, Map<String, Object>> values(ChangeSet changes) {
+        Map<EntityID, Map<String, Object>> result = new HashMap<EntityID, Map<String, Object>>();
+        for (EntityID next : changes.getChangedEntities()) {
+            Map<String, Object> properties = new HashMap<String, Object>();
+            for (Property p : changes.getChangedProperties(next)) {
+                properties.put(p.getURN(), p.getValue());
+            }
+            result.put(next, properties);
+        }
+        return result;
+    }
+
+    /**
+       The simulator state that MiscSimulator keeps around its damage computation.
+    */
+    private abstract static class Simulation {
+        protected StandardWorldModel model;
+        protected Config config;
+        protected MiscParameters parameters;
+        protected List<HumanAttributes> attributes;
+        protected Set<EntityID> newlyBrokenBuildings;
+        protected Map<EntityID, Integer> oldBrokenBuildingsBuriedness;
+
+        Simulation(Config config) {
+            this.config = config;
+            model = createWorld();
+            parameters = new MiscParameters(config);
+            attributes = new ArrayList<HumanAttributes>();
+            newlyBrokenBuildings = new HashSet<EntityID>();
+            oldBrokenBuildingsBuriedness = new HashMap<EntityID, Integer>();
+            EntityListener listener = new EntityListener() {
+                    @Override
+                    public void propertyChanged(Entity e, Property p, Object oldValue, Object newValue) {
+                        if (p.getURN().equals(StandardPropertyURN.BROKENNESS.toString())) {
+                            int old = oldValue == null ? 0 : (Integer)oldValue;
+                            int next = newValue == null ? 0 : (Integer)newValue;
+                            if (next > old) {
+                                newlyBrokenBuildings.add(e.getID());
+                            }
+                        }
+                    }
+                };
+            for (Entity next : model.getAllEntities()) {
+                if (next instanceof Building) {
+                    next.addEntityListener(listener);
+                }
+            }
+            for (Human next : humans()) {
+                attributes.add(new HumanAttributes(next, config));
+            }
+        }
+
+        List<Human> humans() {
+            List<Human> result = new ArrayList<Human>();
+            for (int i = BUILDINGS + 1; i <= BUILDINGS + HUMANS; ++i) {
+                result.add((Human)model.getEntity(new EntityID(i)));
+            }
+            return result;
+        }
+
+        void handleUpdate(ChangeSet changes) {
+            for (Entity next : model.getAllEntities()) {
+                if (next instanceof Building) {
+                    oldBrokenBuildingsBuriedness.put(next.getID(), parameters.getBuriedness((Building)next));
+                }
+            }
+            model.merge(changes);
+        }
+
+        void rescue(EntityID id) {
+            Human h = (Human)model.getEntity(id);
+            h.setBuriedness(Math.max(0, h.getBuriedness() - 1));
+        }
+
+        ChangeSet step() {
+            ChangeSet changes = new ChangeSet();
+            step(changes);
+            newlyBrokenBuildings.clear();
+            return changes;
+        }
+
+        abstract void step(ChangeSet changes);
+    }
+
+    private static class EngineDamage extends Simulation {
+        private DamageEngine engine;
+
+        EngineDamage(Config config) {
+            super(config);
+            engine = new DamageEngine(model, config, parameters, attributes, oldBrokenBuildingsBuriedness);
+        }
+
+        @Override
+        void handleUpdate(ChangeSet changes) {
+            super.handleUpdate(changes);
+            engine.update(changes);
+        }
+
+        @Override
+        void rescue(EntityID id) {
+            super.rescue(id);
+            engine.refresh(id);
+        }
+
+        @Override
+        void step(ChangeSet changes) {
+            engine.step(newlyBrokenBuildings, changes);
+        }
+
+        void shutdown() {
+            engine.shutdown();
+        }
+    }
+
+    /**
+       The per-human loops that MiscSimulator ran before DamageEngine.
+    */
+    private static class LegacyDamage extends Simulation {
+        private int gasStationExplosionRange;
+        private int gasStationBuriednessBound;
+        private int gasStationBuriednessMin;
+        private int gasStationDamageBound;
+        private int gasStationDamageMin;
+        private Set<EntityID> notExplodedGasStations;
+
+        LegacyDamage(Config config) {
+            super(config);
+            gasStationExplosionRange = config.getIntValue("ignition.gas_station.explosion.range", 0);
+            gasStationBuriednessBound = config.getIntValue("misc.gas_station.Buriedness.bound", 30);
+            gasStationBuriednessMin = config.getIntValue("misc.gas_station.Buriedness.min", 0);
+            gasStationDamageBound = config.getIntValue("misc.gas_station.Damage.bound", 50);
+            gasStationDamageMin = config.getIntValue("misc.gas_station.Damage.min", 15);
+            notExplodedGasStations = new HashSet<EntityID>();
+            for (Entity next : model.getAllEntities()) {
+                if (next instanceof GasStation) {
+                    notExplodedGasStations.add(next.getID());
+                }
+            }
+        }
+
+        @Override
+        void step(ChangeSet changes) {
+            processBrokenBuildings(changes);
+            processBurningBuildings();
+            processExplodedGasStations(changes);
+            updateDamage(changes);
+        }
+
+        private void processBrokenBuildings(ChangeSet changes) {
+            for (HumanAttributes hA : attributes) {
+                Human human = hA.getHuman();
+                if (!newlyBrokenBuildings.contains(human.getPosition())) {
+                    continue;
+                }
+                Building b = (Building)human.getPosition(model);
+                if (parameters.shouldBuryAgent(b, hA)) {
+                    int buriedness = parameters.getBuriedness(b) - oldBrokenBuildingsBuriedness.get(b.getID());
+                    if (buriedness != 0) {
+                        int oldBuriedness = human.isBuriednessDefined() ? human.getBuriedness() : 0;
+                        human.setBuriedness(oldBuriedness + buriedness);
+                        changes.addChange(human, human.getBuriednessProperty());
+                        int damage = parameters.getBuryDamage(b, hA);
+                        if (damage != 0) {
+                            hA.addBuriednessDamage(damage);
+                        }
+                    }
+                }
+                int damage = parameters.getCollapseDamage(b, hA);
+                if (damage != 0) {
+                    hA.addCollapseDamage(damage);
+                }
+            }
+        }
+
+        private void processBurningBuildings() {
+            for (HumanAttributes hA : attributes) {
+                Entity position = hA.getHuman().getPosition(model);
+                if (position instanceof Building && ((Building)position).isOnFire()) {
+                    int damage = parameters.getFireDamage((Building)position, hA);
+                    if (damage != 0) {
+                        hA.addFireDamage(damage);
+                    }
+                }
+            }
+        }
+
+        private void processExplodedGasStations(ChangeSet changes) {
+            for (Iterator<EntityID> it = notExplodedGasStations.iterator(); it.hasNext();) {
+                GasStation gasStation = (GasStation)model.getEntity(it.next());
+                if (gasStation.isFierynessDefined() && gasStation.getFieryness() == 1) {
+                    for (HumanAttributes hA : attributes) {
+                        Human human = hA.getHuman();
+                        if (!human.isXDefined() || !human.isYDefined()) {
+                            continue;
+                        }
+                        if (GeometryTools2D.getDistance(new Point2D(human.getX(), human.getY()), new Point2D(gasStation.getX(), gasStation.getY())) < gasStationExplosionRange) {
+                            int oldBuriedness = human.isBuriednessDefined() ? human.getBuriedness() : 0;
+                            human.setBuriedness(oldBuriedness + hA.getRandom().nextInt(gasStationBuriednessBound) + gasStationBuriednessMin);
+                            changes.addChange(human, human.getBuriednessProperty());
+                            int damage = hA.getRandom().nextInt(gasStationDamageBound) + gasStationDamageMin;
+                            if (damage != 0) {
+                                hA.addCollapseDamage(damage);
+                            }
+                        }
+                    }
+                    it.remove();
+                }
+            }
+        }
+
+        private void updateDamage(ChangeSet changes) {
+            for (HumanAttributes ha : attributes) {
+                Human h = ha.getHuman();
+                if (h.getHP() > 0) {
+                    ha.progressDamage();
+                }
+                int hp = h.isHPDefined() ? h.getHP() : 0;
+                int damage = ha.getTotalDamage();
+                h.setDamage(damage);
+                changes.addChange(h, h.getDamageProperty());
+                if (hp > 0 && damage > 0) {
+                    h.setHP(Math.max(0, hp - damage));
+                    changes.addChange(h, h.getHPProperty());
+                }
+                if (h.getPosition(model) instanceof Refuge) {
+                    ha.clearDamage();
+                    h.setDamage(0);
+                    changes.addChange(h, h.getDamageProperty());
+                }
+            }
+        }
+    }
+}
@@ -52,7 +52,8 @@ public abstract class AbstractAgent<T extends WorldModel<? extends Entity>, E ex
     public void connect(Connection connection, RequestIDGenerator generator, Config config) throws ConnectionException, ComponentConnectionException, InterruptedException {
         this.config = config;
         int requestID = generator.generateRequestID();
-        AKConnect connect = new AKConnect(requestID, 1, getName(), getRequestedEntityURNs());
+        int version = acceptsPerceptionDeltas() ? AKConnect.VERSION_PERCEPTION_DELTAS : AKConnect.VERSION_FULL_PERCEPTION;
+        AKConnect connect = new AKConnect(requestID, version, getName(), getRequestedEntityURNs());
         CountDownLatch latch = new CountDownLatch(1);
         AgentConnectionListener l = new AgentConnectionListener(requestID, latch);
         connection.addConnectionListener(l);
@@ -67,6 +68,14 @@ public abstract class AbstractAgent<T extends WorldModel<? extends Entity>, E ex
         super.postConnect();
     }
 
+    /**
+       Find out if this agent accepts perception updates that leave out properties whose values have not changed since it last received them. The kernel only sends such updates if it is configured to. Agents that accept them must not treat the entities in a perception update as the set of visible entities. The default implementation returns false.
+       @return True if this agent accepts perception deltas.
+    */
+    protected boolean acceptsPerceptionDeltas() {
+        return false;
+    }
+
     @Override
     protected String getPreferredNDC() {
         if (me() != null) {
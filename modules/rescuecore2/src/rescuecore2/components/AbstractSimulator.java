@@ -24,7 +24,12 @@ import java.util.Collection;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.List;
+import java.util.ArrayList;
+import java.util.Queue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
    Abstract base class for simulator implementations.
@@ -39,7 +44,14 @@ public abstract class AbstractSimulator<T extends WorldModel<? extends Entity>>
     private int lastUpdateTime;
 
     private Map<Integer, List<EntityID>> idRequests;
-    private int nextIDRequest;
+    private AtomicInteger nextIDRequest;
+
+    // IDs leased from the kernel in advance
+    private int leaseSize;
+    private Queue<EntityID> leasedIDs;
+    private AtomicInteger leasedCount;
+    private AtomicBoolean leaseRequested;
+    private volatile int leaseRequestID;
 
     /**
        Create a new AbstractSimulator.
@@ -59,9 +71,17 @@ public abstract class AbstractSimulator<T extends WorldModel<? extends Entity>>
     public void postConnect(Connection c, int id, Collection<Entity> entities, Config kernelConfig) {
         this.simulatorID = id;
         lastUpdateTime = 0;
-        nextIDRequest = 0;
+        nextIDRequest = new AtomicInteger();
         idRequests = new HashMap<Integer, List<EntityID>>();
+        leasedIDs = new ConcurrentLinkedQueue<EntityID>();
+        leasedCount = new AtomicInteger();
+        leaseRequested = new AtomicBoolean();
+        leaseRequestID = -1;
         super.postConnect(c, entities, kernelConfig);
+        leaseSize = getEntityIDLeaseSize();
+        if (leaseSize > 0) {
+            refillLease();
+        }
     }
 
     @Override
@@ -116,13 +136,52 @@ public abstract class AbstractSimulator<T extends WorldModel<? extends Entity>>
     }
 
     /**
-       Request some new entity IDs from the kernel.
-       @param count The number to request.
+       Get the number of entity IDs to lease from the kernel in advance. If this is positive then IDs are requested in blocks of this size as soon as the simulator connects, and another block is requested in the background whenever fewer than half of them are left. {@link #requestNewEntityIDs(int)} then only waits for the kernel if the lease runs out. The default implementation returns zero, so IDs are requested only when they are needed.
+       @return The number of IDs to lease at a time, or zero to disable leasing.
+    */
+    protected int getEntityIDLeaseSize() {
+        return 0;
+    }
+
+    /**
+       Get some new entity IDs. IDs are taken from the lease if there is one; the kernel is only asked directly for any that the lease cannot supply.
+       @param count The number of IDs required.
        @return A list of new entity IDs.
+       @throws InterruptedException If this thread is interrupted while waiting for the kernel.
     */
     protected List<EntityID> requestNewEntityIDs(int count) throws InterruptedException {
+        if (leaseSize <= 0) {
+            return requestIDsFromKernel(count);
+        }
+        List<EntityID> result = new ArrayList<EntityID>(count);
+        while (result.size() < count) {
+            EntityID next = leasedIDs.poll();
+            if (next == null) {
+                break;
+            }
+            result.add(next);
+        }
+        leasedCount.addAndGet(-result.size());
+        refillLease();
+        if (result.size() < count) {
+            Logger.debug("ID lease exhausted: requesting " + (count - result.size()) + " IDs from the kernel");
+            result.addAll(requestIDsFromKernel(count - result.size()));
+        }
+        return result;
+    }
+
+    private void refillLease() {
+        if (leasedCount.get() < (leaseSize + 1) / 2 && leaseRequested.compareAndSet(false, true)) {
+            int id = nextIDRequest.getAndIncrement();
+            leaseRequestID = id;
+            Logger.debug("Leasing " + leaseSize + " new IDs: request number " + id);
+            send(new EntityIDRequest(simulatorID, id, leaseSize));
+        }
+    }
+
+    private List<EntityID> requestIDsFromKernel(int count) throws InterruptedException {
         synchronized (idRequests) {
-            int id = nextIDRequest++;
+            int id = nextIDRequest.getAndIncrement();
             Logger.debug("Requesting " + count + " new IDs: request number " + id);
             send(new EntityIDRequest(simulatorID, id, count));
             // Wait for a reply
@@ -161,7 +220,14 @@ public abstract class AbstractSimulator<T extends WorldModel<? extends Entity>>
         if (msg instanceof EntityIDResponse) {
             EntityIDResponse resp = (EntityIDResponse)msg;
             Logger.debug("Received " + msg);
-            if (resp.getSimulatorID() == simulatorID) {
+            if (resp.getSimulatorID() == simulatorID && resp.getRequestID() == leaseRequestID) {
+                leasedIDs.addAll(resp.getEntityIDs());
+                leasedCount.addAndGet(resp.getEntityIDs().size());
+                leaseRequested.set(false);
+                // A large request may have used most of the new block already
+                refillLease();
+            }
+            else if (resp.getSimulatorID() == simulatorID) {
                 synchronized (idRequests) {
                     Logger.debug("ID response: " + resp.getRequestID() + ", " + resp.getEntityIDs());
                     idRequests.put(resp.getRequestID(), resp.getEntityIDs());
@@ -0,0 +1,12 @@
+package rescuecore2.components;
+
+/**
+   A factory for components that are about to be connected to the kernel.
+ */
+public interface ComponentFactory {
+    /**
+       Create a new component.
+       @return A new component.
+    */
+    Component createComponent();
+}
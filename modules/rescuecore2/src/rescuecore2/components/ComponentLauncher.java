@@ -1,5 +1,15 @@
 package rescuecore2.components;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import rescuecore2.config.Config;
 import rescuecore2.connection.Connection;
 import rescuecore2.connection.ConnectionException;
@@ -45,6 +55,72 @@ public abstract class ComponentLauncher implements RequestIDGenerator {
         }
     }
 
+    /**
+       Connect a number of components to the kernel. Up to threads connections are opened and negotiated at once, so the round trips to the kernel overlap. No more components are connected once the kernel refuses one with a connect error, so a negative count can be used to connect as many components as the kernel will accept.
+       @param factory The factory that creates the components.
+       @param count The maximum number of components to connect, or a negative number to connect until the kernel refuses a component.
+       @param threads The maximum number of connection attempts in progress at once. If this is one or less then components are connected sequentially on the calling thread.
+       @return The number of components that connected successfully.
+       @throws InterruptedException If the thread is interrupted before all connection attempts complete.
+       @throws ConnectionException If there is a problem communicating with the kernel.
+    */
+    public int connectAll(ComponentFactory factory, int count, int threads) throws InterruptedException, ConnectionException {
+        ConnectTask task = new ConnectTask(factory, count);
+        if (threads <= 1) {
+            task.call();
+            return task.connected.get();
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger next = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Component launcher " + next.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int i = 0; i < threads; ++i) {
+                futures.add(pool.submit(task));
+            }
+            ConnectionException error = null;
+            for (Future<Void> next : futures) {
+                try {
+                    next.get();
+                }
+                catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof ConnectionException) {
+                        if (error == null) {
+                            error = (ConnectionException)cause;
+                        }
+                    }
+                    else if (cause instanceof InterruptedException) {
+                        throw (InterruptedException)cause;
+                    }
+                    else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException)cause;
+                    }
+                    else if (cause instanceof Error) {
+                        throw (Error)cause;
+                    }
+                    else {
+                        throw new ConnectionException(cause);
+                    }
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+            return task.connected.get();
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
     @Override
     public int generateRequestID() {
         synchronized (this) {
@@ -74,4 +150,47 @@ public abstract class ComponentLauncher implements RequestIDGenerator {
        @throws ConnectionException If there is a problem creating the connection.
     */
     protected abstract Connection makeConnection() throws ConnectionException;
+
+    /**
+       Connects components until the count is reached or the kernel refuses one. A single task can be run by several threads at once.
+    */
+    private class ConnectTask implements Callable<Void> {
+        private final ComponentFactory factory;
+        private final int count;
+        private final AtomicInteger started;
+        private final AtomicInteger connected;
+        private volatile boolean finished;
+
+        ConnectTask(ComponentFactory factory, int count) {
+            this.factory = factory;
+            this.count = count;
+            started = new AtomicInteger();
+            connected = new AtomicInteger();
+        }
+
+        @Override
+        public Void call() throws InterruptedException, ConnectionException {
+            while (!finished) {
+                int index = started.getAndIncrement();
+                if (count >= 0 && index >= count) {
+                    break;
+                }
+                Component c = factory.createComponent();
+                try {
+                    connect(c);
+                    connected.incrementAndGet();
+                    Logger.info("Connected " + c.getName() + " (" + (index + 1) + ")");
+                }
+                catch (ComponentConnectionException e) {
+                    Logger.info("Connecting " + c.getName() + " failed: " + e.getMessage());
+                    finished = true;
+                }
+                catch (ConnectionException e) {
+                    finished = true;
+                    throw e;
+                }
+            }
+            return null;
+        }
+    }
 }
@@ -6,6 +6,8 @@ import static rescuecore2.misc.EncodingTools.writeMessage;
 
 import rescuecore2.messages.Message;
 import rescuecore2.misc.WorkerThread;
+import rescuecore2.misc.DecodingInputStream;
+import rescuecore2.registry.DecodingContext;
 import rescuecore2.registry.Registry;
 import rescuecore2.log.Logger;
 
@@ -16,10 +18,11 @@ import java.util.Collection;
 import java.util.Collections;
 
 import java.io.ByteArrayOutputStream;
-import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.IOException;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
    Abstract base class for Connection implementations.
  */
@@ -30,12 +33,15 @@ public abstract class AbstractConnection implements Connection {
     private List<Message> toSend;
     private MessageBroadcastThread broadcast;
     private Registry registry;
+    private volatile DecodingContext decodingContext;
 
     private boolean logBytes;
     private String name;
 
     private volatile State state;
 
+    private final AtomicLong bytesSent = new AtomicLong();
+
     private final Object stateLock = new Object();
 
     /**
@@ -145,19 +151,27 @@ public abstract class AbstractConnection implements Connection {
             // Add a zero to indicate no more messages
             writeInt32(0, out);
             // Send the bytes
+            byte[] bytes = out.toByteArray();
             if (logBytes) {
-                ByteLogger.log(out.toByteArray());
+                ByteLogger.log(bytes);
             }
-            sendBytes(out.toByteArray());
+            sendBytes(bytes);
+            bytesSent.addAndGet(bytes.length);
         }
         catch (IOException e) {
             throw new ConnectionException(e);
         }
     }
 
+    @Override
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
     @Override
     public void setRegistry(Registry r) {
         this.registry = r;
+        this.decodingContext = r.getDecodingContext();
     }
 
     @Override
@@ -205,7 +219,12 @@ public abstract class AbstractConnection implements Connection {
        @param b The received bytes.
     */
     protected void bytesReceived(byte[] b) {
-        InputStream decode = new ByteArrayInputStream(b);
+        DecodingContext context = decodingContext;
+        if (context == null || !context.isCurrent()) {
+            context = registry.getDecodingContext();
+            decodingContext = context;
+        }
+        InputStream decode = new DecodingInputStream(b, context);
         Message m = null;
         try {
             do {
@@ -80,4 +80,10 @@ public interface Connection {
        @return The Registry in use.
     */
     Registry getRegistry();
+
+    /**
+       Get the total number of bytes sent through this connection.
+       @return The number of bytes sent so far.
+    */
+    long getBytesSent();
 }
@@ -0,0 +1,272 @@
+package rescuecore2.log;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+import rescuecore2.worldmodel.Property;
+import rescuecore2.worldmodel.WorldModel;
+import rescuecore2.worldmodel.DefaultWorldModel;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.registry.Registry;
+
+/**
+   Abstract base class for log readers with random access to update records. World models are rebuilt by replaying updates from the nearest earlier frame.
+   <p>
+   Checkpoint frames are kept at evenly spaced timesteps; they are built the first time the log is read past them. Other recently viewed frames are kept in a cache that is bounded by an estimate of their memory use. Frames share entity objects with the frame they were built from: only entities that change are copied. Optionally, the timesteps either side of the last one requested can be built in the background.
+   </p>
+ */
+public abstract class AbstractKeyFrameLogReader extends AbstractLogReader {
+    /** The maximum number of checkpoint frames. */
+    public static final int MAX_CHECKPOINTS = 32;
+
+    // Rough estimates of the memory used by frames
+    private static final long MAP_ENTRY_SIZE = 48;
+    private static final long ENTITY_SIZE = 64;
+    private static final long PROPERTY_SIZE = 48;
+    private static final int DEFAULT_CACHE_FRACTION = 8;
+
+    /** The last timestep in the log. */
+    protected int maxTime;
+
+    private NavigableMap<Integer, Frame> checkpoints;
+    private LinkedHashMap<Integer, Frame> recent;
+    private int checkpointInterval;
+    private long cacheMemory;
+    private long cacheUsed;
+
+    private volatile boolean prefetch;
+    private ExecutorService prefetchExecutor;
+    private volatile int lastRequested;
+
+    /**
+       Create a new AbstractKeyFrameLogReader.
+       @param registry The registry to use for reading log entries.
+    */
+    protected AbstractKeyFrameLogReader(Registry registry) {
+        super(registry);
+        checkpoints = new TreeMap<Integer, Frame>();
+        recent = new LinkedHashMap<Integer, Frame>(16, 0.75f, true);
+        cacheMemory = Runtime.getRuntime().maxMemory() / DEFAULT_CACHE_FRACTION;
+    }
+
+    /**
+       Read the initial conditions from the log. This will be called at most once, the first time a world model is requested.
+       @return The world model at timestep zero.
+       @throws LogException If there is a problem reading the log.
+    */
+    protected abstract WorldModel<? extends Entity> readInitialConditions() throws LogException;
+
+    @Override
+    public int getMaxTimestep() throws LogException {
+        return maxTime;
+    }
+
+    /**
+       Get the world model at a particular timestep. The returned world model shares entities with other timesteps so it must not be modified; copy the entities first if a modifiable world model is needed.
+       @param time The timestep to get the world model for.
+       @return The world model at the given timestep.
+       @throws LogException If there is a problem reading the log.
+    */
+    @Override
+    public WorldModel<? extends Entity> getWorldModel(int time) throws LogException {
+        Logger.debug("Getting world model at time " + time);
+        Frame frame;
+        synchronized (this) {
+            frame = getFrame(time);
+        }
+        lastRequested = time;
+        if (prefetch) {
+            schedulePrefetch(time + 1);
+            schedulePrefetch(time - 1);
+        }
+        WorldModel<Entity> result = new DefaultWorldModel<Entity>(Entity.class);
+        result.addEntities(frame.entities.values());
+        return result;
+    }
+
+    /**
+       Set the amount of memory that recently viewed frames may use. Checkpoint frames are not included.
+       @param bytes The approximate number of bytes to use.
+    */
+    public synchronized void setCacheMemory(long bytes) {
+        cacheMemory = bytes;
+        evict();
+    }
+
+    /**
+       Turn background building of the timesteps either side of the last requested timestep on or off. This is useful when the log is being viewed one timestep at a time.
+       @param b Whether to build neighbouring timesteps in the background.
+    */
+    public synchronized void setPrefetch(boolean b) {
+        prefetch = b;
+        if (b && prefetchExecutor == null) {
+            prefetchExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "Log prefetch");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        }
+    }
+
+    private void schedulePrefetch(final int time) {
+        if (time < 0 || time > maxTime) {
+            return;
+        }
+        final ExecutorService executor;
+        synchronized (this) {
+            if (recent.containsKey(time) || checkpoints.containsKey(time)) {
+                return;
+            }
+            executor = prefetchExecutor;
+        }
+        executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // Skip requests that have been overtaken by the user moving on
+                    if (Math.abs(time - lastRequested) > 1) {
+                        return;
+                    }
+                    try {
+                        synchronized (AbstractKeyFrameLogReader.this) {
+                            getFrame(time);
+                        }
+                    }
+                    catch (LogException e) {
+                        Logger.debug("Error prefetching timestep " + time, e);
+                    }
+                }
+            });
+    }
+
+    private Frame getFrame(int time) throws LogException {
+        if (time < 0) {
+            throw new LogException("Invalid timestep: " + time);
+        }
+        Registry.setCurrentRegistry(registry);
+        if (checkpoints.isEmpty()) {
+            Map<EntityID, Entity> initial = new HashMap<EntityID, Entity>();
+            for (Entity next : readInitialConditions()) {
+                initial.put(next.getID(), next);
+            }
+            checkpoints.put(0, new Frame(0, initial, estimateSize(initial, initial.keySet())));
+            checkpointInterval = Math.max(1, (maxTime + MAX_CHECKPOINTS - 1) / MAX_CHECKPOINTS);
+        }
+        Frame result = checkpoints.get(time);
+        if (result == null) {
+            result = recent.get(time);
+        }
+        if (result != null) {
+            return result;
+        }
+        // Build any missing checkpoints up to this time
+        Frame base = checkpoints.lastEntry().getValue();
+        while (base.time + checkpointInterval <= time) {
+            base = buildFrame(base, base.time + checkpointInterval);
+            checkpoints.put(base.time, base);
+            Logger.trace("Built checkpoint " + base.time);
+        }
+        if (base.time == time) {
+            return base;
+        }
+        // Start from the latest frame before the requested time
+        base = checkpoints.floorEntry(time).getValue();
+        for (Frame next : recent.values()) {
+            if (next.time < time && next.time > base.time) {
+                base = next;
+            }
+        }
+        result = buildFrame(base, time);
+        recent.put(time, result);
+        cacheUsed += result.size;
+        evict();
+        return result;
+    }
+
+    private Frame buildFrame(Frame base, int time) throws LogException {
+        Map<EntityID, Entity> entities = new HashMap<EntityID, Entity>(base.entities);
+        Set<EntityID> copied = new HashSet<EntityID>();
+        for (int i = base.time + 1; i <= time; ++i) {
+            UpdatesRecord record = getUpdates(i);
+            if (record == null) {
+                continue;
+            }
+            ChangeSet updates = record.getChangeSet();
+            Logger.trace("Merging " + updates.getChangedEntities().size() + " updates for timestep " + i);
+            for (EntityID id : updates.getChangedEntities()) {
+                Entity existing = entities.get(id);
+                if (existing == null) {
+                    existing = Registry.getCurrentRegistry().createEntity(updates.getEntityURN(id), id);
+                    if (existing == null) {
+                        continue;
+                    }
+                    entities.put(id, existing);
+                    copied.add(id);
+                }
+                else if (!copied.contains(id)) {
+                    // Copy on first write so that the base frame is not modified
+                    existing = existing.copy();
+                    entities.put(id, existing);
+                    copied.add(id);
+                }
+                for (Property p : updates.getChangedProperties(id)) {
+                    existing.getProperty(p.getURN()).takeValue(p);
+                }
+            }
+            for (EntityID id : updates.getDeletedEntities()) {
+                entities.remove(id);
+                copied.remove(id);
+            }
+        }
+        return new Frame(time, entities, estimateSize(entities, copied));
+    }
+
+    private void evict() {
+        Iterator<Frame> it = recent.values().iterator();
+        while (cacheUsed > cacheMemory && it.hasNext()) {
+            Frame next = it.next();
+            it.remove();
+            cacheUsed -= next.size;
+            Logger.trace("Evicted frame " + next.time);
+        }
+    }
+
+    private long estimateSize(Map<EntityID, Entity> entities, Set<EntityID> owned) {
+        long result = entities.size() * MAP_ENTRY_SIZE;
+        for (EntityID next : owned) {
+            Entity e = entities.get(next);
+            if (e != null) {
+                result += ENTITY_SIZE + e.getProperties().size() * PROPERTY_SIZE;
+            }
+        }
+        return result;
+    }
+
+    /**
+       The entities at one timestep. Frames are never modified once built.
+    */
+    private static final class Frame {
+        private final int time;
+        private final Map<EntityID, Entity> entities;
+        private final long size;
+
+        Frame(int time, Map<EntityID, Entity> entities, long size) {
+            this.time = time;
+            this.entities = entities;
+            this.size = size;
+        }
+    }
+}
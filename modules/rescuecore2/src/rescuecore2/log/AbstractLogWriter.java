@@ -11,21 +11,30 @@ import java.io.IOException;
 public abstract class AbstractLogWriter implements LogWriter {
     @Override
     public final void writeRecord(LogRecord entry) throws LogException {
-        ByteArrayOutputStream gather = new ByteArrayOutputStream();
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
         try {
-            entry.write(gather);
-            byte[] data = gather.toByteArray();
-            writeInt32(entry.getRecordType().getID(), out);
-            writeInt32(data.length, out);
-            out.write(data);
-            write(out.toByteArray());
+            write(encodeRecord(entry));
         }
         catch (IOException e) {
             throw new LogException(e);
         }
     }
 
+    /**
+       Encode a log record as it appears in a log file: the record type, the length of the record data and then the data itself.
+       @param entry The record to encode.
+       @return The encoded record.
+       @throws IOException If the record cannot be encoded.
+    */
+    static byte[] encodeRecord(LogRecord entry) throws IOException {
+        ByteArrayOutputStream gather = new ByteArrayOutputStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entry.write(gather);
+        writeInt32(entry.getRecordType().getID(), out);
+        writeInt32(gather.size(), out);
+        gather.writeTo(out);
+        return out.toByteArray();
+    }
+
     /**
        Write a set of bytes to the log.
        @param bytes The bytes to write.
@@ -0,0 +1,311 @@
+package rescuecore2.log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+   A log writer that encodes and writes records on a background thread. Records are queued in a bounded queue and written in the order they were submitted through a large buffer to a file channel. If the queue is full then {@link #writeRecord(LogRecord)} blocks until the writer catches up; the number of times this happens and the total time spent waiting are recorded. Records must not be modified after they have been passed to this writer.
+ */
+public class AsyncLogWriter implements LogWriter {
+    /** The default maximum number of queued records. */
+    public static final int DEFAULT_QUEUE_SIZE = 1024;
+    /** The default size of the write buffer in bytes. */
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    // How often a caller waiting for space in the queue checks that the writer thread is still running
+    private static final long POLL_MILLIS = 100;
+
+    /**
+       When to force written data to the storage device.
+    */
+    public enum SyncPolicy {
+        /** Never force data to disk; leave it to the operating system. */
+        NONE,
+        /** Force data to disk when the log is closed. */
+        CLOSE,
+        /** Force data to disk every time the write buffer is flushed. */
+        FLUSH;
+    }
+
+    /** Queue marker that tells the writer thread to finish. */
+    private static final LogRecord END_OF_QUEUE = new EndLogRecord();
+
+    private final FileOutputStream stream;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final BlockingQueue<LogRecord> queue;
+    private final SyncPolicy syncPolicy;
+    private final WriterThread thread;
+
+    private volatile Throwable error;
+    private volatile boolean closed;
+
+    private long recordsWritten;
+    private long bytesWritten;
+    private long blockedCount;
+    private long blockedNanos;
+    private int maxQueueSize;
+
+    /**
+       Create an asynchronous log writer with default queue and buffer sizes that never forces data to disk.
+       @param file The file to write to.
+       @throws IOException If the file cannot be opened.
+    */
+    public AsyncLogWriter(File file) throws IOException {
+        this(file, DEFAULT_QUEUE_SIZE, DEFAULT_BUFFER_SIZE, SyncPolicy.NONE);
+    }
+
+    /**
+       Create an asynchronous log writer.
+       @param file The file to write to.
+       @param queueSize The maximum number of records waiting to be written.
+       @param bufferSize The size of the write buffer in bytes.
+       @param syncPolicy When to force data to disk.
+       @throws IOException If the file cannot be opened.
+    */
+    public AsyncLogWriter(File file, int queueSize, int bufferSize, SyncPolicy syncPolicy) throws IOException {
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("Queue size must be positive: " + queueSize);
+        }
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+        }
+        this.stream = new FileOutputStream(file);
+        this.channel = stream.getChannel();
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.queue = new ArrayBlockingQueue<LogRecord>(queueSize);
+        this.syncPolicy = syncPolicy;
+        thread = new WriterThread(file.getName());
+        thread.start();
+    }
+
+    @Override
+    public void writeRecord(LogRecord entry) throws LogException {
+        checkError();
+        if (closed) {
+            throw new LogException("Log has been closed");
+        }
+        try {
+            if (!queue.offer(entry)) {
+                long start = System.nanoTime();
+                while (!queue.offer(entry, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    checkError();
+                    if (!thread.isAlive()) {
+                        throw new LogException("Log writer thread has stopped");
+                    }
+                }
+                synchronized (this) {
+                    ++blockedCount;
+                    blockedNanos += System.nanoTime() - start;
+                }
+            }
+            int size = queue.size();
+            synchronized (this) {
+                maxQueueSize = Math.max(maxQueueSize, size);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LogException("Interrupted while queueing log record", e);
+        }
+    }
+
+    /**
+       Close the log. This blocks until all queued records have been written or the writer thread has failed.
+    */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        boolean interrupted = false;
+        boolean ended = false;
+        // A writer thread that has already stopped will never take the end marker so don't wait for space
+        while (thread.isAlive()) {
+            try {
+                if (ended) {
+                    thread.join();
+                }
+                else {
+                    ended = queue.offer(END_OF_QUEUE, POLL_MILLIS, TimeUnit.MILLISECONDS);
+                }
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        try {
+            if (error == null && syncPolicy != SyncPolicy.NONE) {
+                channel.force(false);
+            }
+        }
+        catch (IOException e) {
+            Logger.error("Error syncing log file", e);
+        }
+        try {
+            stream.close();
+        }
+        catch (IOException e) {
+            Logger.error("Error closing log file", e);
+        }
+        if (error != null) {
+            Logger.error("Asynchronous log writer failed", error);
+        }
+        Logger.info("Asynchronous log writer closed: " + getRecordsWritten() + " records, " + getBytesWritten() + " bytes, blocked " + getBlockedCount() + " times for " + (getBlockedNanos() / NANOS_PER_MILLI) + "ms, maximum queue size " + getMaxQueueSize());
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+       Get the number of records that have been written to the file.
+       @return The number of records written.
+    */
+    public synchronized long getRecordsWritten() {
+        return recordsWritten;
+    }
+
+    /**
+       Get the number of bytes that have been written to the file.
+       @return The number of bytes written.
+    */
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+       Get the number of times a caller had to wait because the queue was full.
+       @return The number of times writeRecord blocked.
+    */
+    public synchronized long getBlockedCount() {
+        return blockedCount;
+    }
+
+    /**
+       Get the total time callers spent waiting because the queue was full.
+       @return The total blocked time in nanoseconds.
+    */
+    public synchronized long getBlockedNanos() {
+        return blockedNanos;
+    }
+
+    /**
+       Get the largest number of records that have been waiting in the queue.
+       @return The maximum queue size.
+    */
+    public synchronized int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    /**
+       Get the number of records currently waiting to be written.
+       @return The current queue size.
+    */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void checkError() throws LogException {
+        Throwable t = error;
+        if (t != null) {
+            throw new LogException("Asynchronous log writer failed", t);
+        }
+    }
+
+    private void append(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.remaining()) {
+            flushBuffer();
+        }
+        if (bytes.length > buffer.capacity()) {
+            ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+            while (wrapped.hasRemaining()) {
+                channel.write(wrapped);
+            }
+            sync();
+        }
+        else {
+            buffer.put(bytes);
+        }
+        synchronized (this) {
+            ++recordsWritten;
+            bytesWritten += bytes.length;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        sync();
+    }
+
+    private void sync() throws IOException {
+        if (syncPolicy == SyncPolicy.FLUSH) {
+            channel.force(false);
+        }
+    }
+
+    private class WriterThread extends Thread {
+        WriterThread(String name) {
+            super("Log writer: " + name);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    LogRecord next = queue.take();
+                    if (next == END_OF_QUEUE) {
+                        break;
+                    }
+                    if (error == null) {
+                        append(AbstractLogWriter.encodeRecord(next));
+                        // Write out whatever has been gathered once the queue drains
+                        if (queue.isEmpty()) {
+                            flushBuffer();
+                        }
+                    }
+                }
+                if (error == null) {
+                    flushBuffer();
+                }
+            }
+            catch (InterruptedException e) {
+                error = e;
+                drain();
+            }
+            // CHECKSTYLE:OFF:IllegalCatch
+            catch (Throwable t) {
+                error = t;
+                // Keep draining so callers blocked on a full queue can finish and close() can complete
+                drain();
+            }
+            // CHECKSTYLE:ON:IllegalCatch
+        }
+
+        private void drain() {
+            try {
+                while (queue.take() != END_OF_QUEUE) {
+                    // Discard
+                }
+            }
+            catch (InterruptedException e) {
+                Logger.warn("Log writer interrupted while discarding records");
+            }
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package rescuecore2.log;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+import rescuecore2.worldmodel.WorldModel;
+import rescuecore2.config.Config;
+import rescuecore2.registry.Registry;
+
+/**
+   A log reader for the compressed, block-indexed format written by {@link BlockLogWriter}. Only the index is read when the log is opened, unless the log was not closed properly, in which case the index is rebuilt by scanning the blocks; blocks are decompressed on demand and a small number of recently used blocks are cached.
+ */
+public class BlockLogReader extends AbstractKeyFrameLogReader {
+    /** The default number of decompressed blocks to cache. */
+    public static final int DEFAULT_CACHE_SIZE = 4;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int INDEX_ENTRY_SIZE = 20;
+    private static final int RECORD_SIZE_OFFSET = 4;
+    private static final int BLOCK_HEADER_SIZE = 8;
+    private static final int TIMESTEP_HEADER_SIZE = 4;
+    private static final int PERCEPTION_HEADER_SIZE = 8;
+    private static final long NO_RECORD = -1;
+
+    private RandomAccessFile file;
+    private long[] blockOffsets;
+    private Map<Integer, byte[]> blockCache;
+    private Inflater inflater;
+    private long initialConditionsLocation;
+    private long configLocation;
+    private Map<Integer, Map<EntityID, Long>> perceptionIndices;
+    private Map<Integer, Long> updatesIndices;
+    private Map<Integer, Long> commandsIndices;
+    private Config config;
+
+    /**
+       Construct a new BlockLogReader.
+       @param name The name of the file to read.
+       @param registry The registry to use for reading log entries.
+       @throws IOException If the file cannot be read.
+       @throws LogException If there is a problem reading the log.
+    */
+    public BlockLogReader(String name, Registry registry) throws IOException, LogException {
+        this(new File(name), registry);
+    }
+
+    /**
+       Construct a new BlockLogReader.
+       @param file The file object to read.
+       @param registry The registry to use for reading log entries.
+       @throws IOException If the file cannot be read.
+       @throws LogException If there is a problem reading the log.
+    */
+    public BlockLogReader(File file, Registry registry) throws IOException, LogException {
+        this(file, registry, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+       Construct a new BlockLogReader.
+       @param file The file object to read.
+       @param registry The registry to use for reading log entries.
+       @param cacheSize The number of decompressed blocks to keep in memory.
+       @throws IOException If the file cannot be read.
+       @throws LogException If there is a problem reading the log.
+    */
+    public BlockLogReader(File file, Registry registry, final int cacheSize) throws IOException, LogException {
+        super(registry);
+        Logger.info("Reading block log: " + file.getAbsolutePath());
+        this.file = new RandomAccessFile(file, "r");
+        inflater = new Inflater();
+        blockCache = new LinkedHashMap<Integer, byte[]>(cacheSize + 1, 1, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+                return size() > Math.max(1, cacheSize);
+            }
+        };
+        index();
+    }
+
+    /**
+       Find out whether a file is a block log.
+       @param file The file to check.
+       @return True if the file starts with the block log magic number.
+       @throws IOException If the file cannot be read.
+    */
+    public static boolean isBlockLog(File file) throws IOException {
+        if (file.length() < HEADER_SIZE) {
+            return false;
+        }
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            return in.readInt() == BlockLogWriter.MAGIC;
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    @Override
+    public synchronized Config getConfig() throws LogException {
+        if (config == null && configLocation != NO_RECORD) {
+            try {
+                config = new ConfigRecord(openRecord(configLocation)).getConfig();
+            }
+            catch (IOException e) {
+                throw new LogException(e);
+            }
+        }
+        return config;
+    }
+
+    @Override
+    protected synchronized WorldModel<? extends Entity> readInitialConditions() throws LogException {
+        if (initialConditionsLocation == NO_RECORD) {
+            throw new LogException("No initial conditions record found");
+        }
+        try {
+            return new InitialConditionsRecord(openRecord(initialConditionsLocation)).getWorldModel();
+        }
+        catch (IOException e) {
+            throw new LogException(e);
+        }
+    }
+
+    @Override
+    public Set<EntityID> getEntitiesWithUpdates(int time) throws LogException {
+        Map<EntityID, Long> timestepMap = perceptionIndices.get(time);
+        if (timestepMap == null) {
+            return new HashSet<EntityID>();
+        }
+        return timestepMap.keySet();
+    }
+
+    @Override
+    public synchronized PerceptionRecord getPerception(int time, EntityID entity) throws LogException {
+        Map<EntityID, Long> timestepMap = perceptionIndices.get(time);
+        if (timestepMap == null) {
+            return null;
+        }
+        Long l = timestepMap.get(entity);
+        if (l == null) {
+            return null;
+        }
+        try {
+            return new PerceptionRecord(openRecord(l));
+        }
+        catch (IOException e) {
+            throw new LogException(e);
+        }
+    }
+
+    @Override
+    public synchronized CommandsRecord getCommands(int time) throws LogException {
+        Long l = commandsIndices.get(time);
+        if (l == null) {
+            return null;
+        }
+        try {
+            return new CommandsRecord(openRecord(l));
+        }
+        catch (IOException e) {
+            throw new LogException(e);
+        }
+    }
+
+    @Override
+    public synchronized UpdatesRecord getUpdates(int time) throws LogException {
+        Long l = updatesIndices.get(time);
+        if (l == null) {
+            return null;
+        }
+        try {
+            return new UpdatesRecord(openRecord(l));
+        }
+        catch (IOException e) {
+            throw new LogException(e);
+        }
+    }
+
+    private InputStream openRecord(long location) throws LogException {
+        int blockNumber = (int)(location >>> Integer.SIZE);
+        int offset = (int)location;
+        byte[] block = getBlock(blockNumber);
+        int size = ByteBuffer.wrap(block).getInt(offset + RECORD_SIZE_OFFSET);
+        Registry.setCurrentRegistry(registry);
+        return new ByteArrayInputStream(block, offset + BlockLogWriter.RECORD_HEADER_SIZE, size);
+    }
+
+    private byte[] getBlock(int blockNumber) throws LogException {
+        byte[] result = blockCache.get(blockNumber);
+        if (result == null) {
+            if (blockNumber < 0 || blockNumber >= blockOffsets.length) {
+                throw new LogException("Invalid block number: " + blockNumber);
+            }
+            try {
+                result = readCompressed(blockOffsets[blockNumber]);
+            }
+            catch (IOException e) {
+                throw new LogException(e);
+            }
+            blockCache.put(blockNumber, result);
+        }
+        return result;
+    }
+
+    private byte[] readCompressed(long position) throws IOException, LogException {
+        file.seek(position);
+        int compressedSize = file.readInt();
+        int size = file.readInt();
+        if (compressedSize < 0 || size < 0) {
+            throw new LogException("Invalid block at " + position);
+        }
+        byte[] compressed = new byte[compressedSize];
+        file.readFully(compressed);
+        byte[] result = new byte[size];
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            int read = 0;
+            while (read < size && !inflater.finished()) {
+                int n = inflater.inflate(result, read, size - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != size) {
+                throw new LogException("Block at " + position + " is truncated: expected " + size + " bytes, got " + read);
+            }
+        }
+        catch (DataFormatException e) {
+            throw new LogException(e);
+        }
+        return result;
+    }
+
+    private void index() throws IOException, LogException {
+        initialConditionsLocation = NO_RECORD;
+        configLocation = NO_RECORD;
+        perceptionIndices = new HashMap<Integer, Map<EntityID, Long>>();
+        updatesIndices = new HashMap<Integer, Long>();
+        commandsIndices = new HashMap<Integer, Long>();
+        long length = file.length();
+        if (length < HEADER_SIZE) {
+            throw new LogException("File is too short to be a block log");
+        }
+        file.seek(0);
+        if (file.readInt() != BlockLogWriter.MAGIC) {
+            throw new LogException("Log does not start with correct magic number");
+        }
+        int version = file.readInt();
+        if (version != BlockLogWriter.VERSION) {
+            throw new LogException("Unsupported block log version: " + version);
+        }
+        if (length >= HEADER_SIZE + BlockLogWriter.TRAILER_SIZE) {
+            file.seek(length - BlockLogWriter.TRAILER_SIZE);
+            long footerOffset = file.readLong();
+            if (file.readInt() == BlockLogWriter.MAGIC && footerOffset >= HEADER_SIZE && footerOffset < length) {
+                readFooter(footerOffset);
+                return;
+            }
+        }
+        Logger.warn("Block log has no index: it may not have been closed properly. Rebuilding the index from the blocks.");
+        recoverIndex(length);
+    }
+
+    private void readFooter(long footerOffset) throws IOException, LogException {
+        DataInputStream footer = new DataInputStream(new ByteArrayInputStream(readCompressed(footerOffset)));
+        int blockCount = footer.readInt();
+        blockOffsets = new long[blockCount];
+        for (int i = 0; i < blockCount; ++i) {
+            blockOffsets[i] = footer.readLong();
+        }
+        int recordCount = footer.readInt();
+        byte[] entries = new byte[recordCount * INDEX_ENTRY_SIZE];
+        footer.readFully(entries);
+        ByteBuffer buffer = ByteBuffer.wrap(entries);
+        for (int i = 0; i < recordCount; ++i) {
+            RecordType type = RecordType.fromID(buffer.getInt());
+            int time = buffer.getInt();
+            int entity = buffer.getInt();
+            int blockNumber = buffer.getInt();
+            int offset = buffer.getInt();
+            indexRecord(type, time, entity, getLocation(blockNumber, offset));
+        }
+        Logger.debug("Indexed " + recordCount + " records in " + blockCount + " blocks");
+    }
+
+    /**
+       Rebuild the index by reading every block from the start of the file. Reading stops at the first block that is truncated or does not contain whole records, which is where the writer stopped.
+       @param length The length of the file.
+    */
+    private void recoverIndex(long length) throws IOException, LogException {
+        List<Long> offsets = new ArrayList<Long>();
+        int recordCount = 0;
+        long position = HEADER_SIZE;
+        while (position + BLOCK_HEADER_SIZE <= length) {
+            file.seek(position);
+            long next = position + BLOCK_HEADER_SIZE + file.readInt();
+            if (next <= position || next > length) {
+                break;
+            }
+            byte[] block;
+            try {
+                block = readCompressed(position);
+            }
+            catch (LogException e) {
+                break;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(block);
+            List<Integer> records = findRecords(buffer);
+            if (records == null) {
+                break;
+            }
+            int blockNumber = offsets.size();
+            offsets.add(position);
+            for (int offset : records) {
+                RecordType type = RecordType.fromID(buffer.getInt(offset));
+                indexRecord(type, BlockLogWriter.getRecordTime(buffer, offset, type), BlockLogWriter.getRecordEntity(buffer, offset, type), getLocation(blockNumber, offset));
+            }
+            recordCount += records.size();
+            position = next;
+        }
+        if (recordCount == 0) {
+            throw new LogException("Block log has no index and no complete blocks");
+        }
+        blockOffsets = new long[offsets.size()];
+        for (int i = 0; i < blockOffsets.length; ++i) {
+            blockOffsets[i] = offsets.get(i);
+        }
+        Logger.info("Recovered " + recordCount + " records in " + blockOffsets.length + " blocks");
+    }
+
+    /**
+       Find the records in a decompressed block.
+       @param block The block.
+       @return The offset of each record, or null if the block is not made up of whole records.
+    */
+    private static List<Integer> findRecords(ByteBuffer block) {
+        List<Integer> result = new ArrayList<Integer>();
+        int limit = block.limit();
+        int offset = 0;
+        while (offset < limit) {
+            if (limit - offset < BlockLogWriter.RECORD_HEADER_SIZE) {
+                return null;
+            }
+            RecordType type;
+            try {
+                type = RecordType.fromID(block.getInt(offset));
+            }
+            catch (IllegalArgumentException e) {
+                return null;
+            }
+            int size = block.getInt(offset + RECORD_SIZE_OFFSET);
+            if (size < getMinimumSize(type) || size > limit - offset - BlockLogWriter.RECORD_HEADER_SIZE) {
+                return null;
+            }
+            result.add(offset);
+            offset += BlockLogWriter.RECORD_HEADER_SIZE + size;
+        }
+        return result;
+    }
+
+    private static int getMinimumSize(RecordType type) {
+        switch (type) {
+        case PERCEPTION:
+            return PERCEPTION_HEADER_SIZE;
+        case COMMANDS:
+        case UPDATES:
+            return TIMESTEP_HEADER_SIZE;
+        default:
+            return 0;
+        }
+    }
+
+    private static long getLocation(int blockNumber, int offset) {
+        return ((long)blockNumber << Integer.SIZE) | (offset & 0xFFFFFFFFL);
+    }
+
+    private void indexRecord(RecordType type, int time, int entity, long location) {
+        switch (type) {
+        case INITIAL_CONDITIONS:
+            initialConditionsLocation = location;
+            break;
+        case CONFIG:
+            configLocation = location;
+            config = null;
+            break;
+        case PERCEPTION:
+            Map<EntityID, Long> timestepMap = perceptionIndices.get(time);
+            if (timestepMap == null) {
+                timestepMap = new HashMap<EntityID, Long>();
+                perceptionIndices.put(time, timestepMap);
+            }
+            timestepMap.put(new EntityID(entity), location);
+            break;
+        case COMMANDS:
+            commandsIndices.put(time, location);
+            maxTime = Math.max(time, maxTime);
+            break;
+        case UPDATES:
+            updatesIndices.put(time, location);
+            maxTime = Math.max(time, maxTime);
+            break;
+        default:
+            break;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package rescuecore2.log;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+   A log writer that writes the compressed, block-indexed log format read by {@link BlockLogReader}.
+   <p>
+   The file starts with a header (magic number and format version). Records are encoded exactly as in a stream log and gathered into blocks, each of which is compressed independently with Deflate and written as (compressed length, uncompressed length, compressed data). Each block is flushed to the file as soon as it is written. When the log is closed a footer is written containing the file offset of every block and, for every record, its type, timestep, agent ID (for perception records) and position within its block. The footer is compressed like a block and the file ends with the offset of the footer and a second copy of the magic number. A reader can therefore find any record by reading only the footer and the block that contains it. If the log was never closed the reader can rebuild the index by scanning the blocks.
+   </p>
+ */
+public class BlockLogWriter implements LogWriter {
+    /** Magic number at the start and end of a block log ("RCLB"). */
+    public static final int MAGIC = 0x52434C42;
+    /** The version of the format written by this class. */
+    public static final int VERSION = 1;
+    /** The default uncompressed size of a block in bytes. */
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    /** Size of the trailer: footer offset and magic number. */
+    static final int TRAILER_SIZE = 12;
+    /** Value used in the index for records without a timestep or agent. */
+    static final int NONE = -1;
+    /** Size of the type and length fields that precede each record. */
+    static final int RECORD_HEADER_SIZE = 8;
+
+    private final DataOutputStream out;
+    private final int blockSize;
+    private final Deflater deflater;
+    private final ByteArrayOutputStream block;
+    private final List<Long> blockOffsets;
+    private final ByteArrayOutputStream index;
+    private final DataOutputStream indexOut;
+    private int recordCount;
+    private long position;
+    private boolean closed;
+
+    /**
+       Create a block log writer with the default block size and compression level.
+       @param file The file to write to.
+       @throws IOException If the file cannot be opened.
+    */
+    public BlockLogWriter(File file) throws IOException {
+        this(file, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+       Create a block log writer.
+       @param file The file to write to.
+       @param blockSize The uncompressed size at which a block is compressed and written. Records larger than this are written in a block of their own.
+       @param level The Deflate compression level.
+       @throws IOException If the file cannot be opened.
+    */
+    public BlockLogWriter(File file, int blockSize, int level) throws IOException {
+        this(new FileOutputStream(file), blockSize, level);
+    }
+
+    /**
+       Create a block log writer.
+       @param stream The stream to write to. This will be closed when the log is closed.
+       @param blockSize The uncompressed size at which a block is compressed and written. Records larger than this are written in a block of their own.
+       @param level The Deflate compression level.
+       @throws IOException If the header cannot be written.
+    */
+    public BlockLogWriter(OutputStream stream, int blockSize, int level) throws IOException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(stream));
+        this.blockSize = blockSize;
+        deflater = new Deflater(level);
+        block = new ByteArrayOutputStream();
+        blockOffsets = new ArrayList<Long>();
+        index = new ByteArrayOutputStream();
+        indexOut = new DataOutputStream(index);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        position = out.size();
+    }
+
+    @Override
+    public void writeRecord(LogRecord entry) throws LogException {
+        try {
+            writeEncodedRecord(AbstractLogWriter.encodeRecord(entry));
+        }
+        catch (IOException e) {
+            throw new LogException(e);
+        }
+    }
+
+    /**
+       Write a record that has already been encoded in the stream log format (record type, data length, data).
+       @param record The encoded record.
+       @throws LogException If there is a problem writing the record.
+    */
+    public void writeEncodedRecord(byte[] record) throws LogException {
+        if (closed) {
+            throw new LogException("Log has been closed");
+        }
+        ByteBuffer header = ByteBuffer.wrap(record);
+        int typeID = header.getInt(0);
+        RecordType type;
+        try {
+            type = RecordType.fromID(typeID);
+        }
+        catch (IllegalArgumentException e) {
+            throw new LogException(e);
+        }
+        int time = getRecordTime(header, 0, type);
+        int entity = getRecordEntity(header, 0, type);
+        try {
+            if (block.size() > 0 && block.size() + record.length > blockSize) {
+                flushBlock();
+            }
+            indexOut.writeInt(typeID);
+            indexOut.writeInt(time);
+            indexOut.writeInt(entity);
+            indexOut.writeInt(blockOffsets.size());
+            indexOut.writeInt(block.size());
+            ++recordCount;
+            block.write(record);
+        }
+        catch (IOException e) {
+            throw new LogException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flushBlock();
+            long footerOffset = position;
+            ByteArrayOutputStream footer = new ByteArrayOutputStream();
+            DataOutputStream footerOut = new DataOutputStream(footer);
+            footerOut.writeInt(blockOffsets.size());
+            for (long next : blockOffsets) {
+                footerOut.writeLong(next);
+            }
+            footerOut.writeInt(recordCount);
+            index.writeTo(footerOut);
+            footerOut.flush();
+            writeCompressed(footer.toByteArray());
+            out.writeLong(footerOffset);
+            out.writeInt(MAGIC);
+            out.flush();
+        }
+        catch (IOException e) {
+            Logger.error("Error writing block log footer", e);
+        }
+        finally {
+            deflater.end();
+            try {
+                out.close();
+            }
+            catch (IOException e) {
+                Logger.error("Error closing block log", e);
+            }
+        }
+    }
+
+    /**
+       Get the timestep of an encoded record.
+       @param buffer The buffer containing the record.
+       @param offset The position of the record in the buffer.
+       @param type The type of the record.
+       @return The timestep, or NONE if the record does not have one.
+    */
+    static int getRecordTime(ByteBuffer buffer, int offset, RecordType type) {
+        switch (type) {
+        case PERCEPTION:
+            // Perception records start with the agent ID then the time
+            return buffer.getInt(offset + RECORD_HEADER_SIZE + 4);
+        case COMMANDS:
+        case UPDATES:
+            return buffer.getInt(offset + RECORD_HEADER_SIZE);
+        default:
+            return NONE;
+        }
+    }
+
+    /**
+       Get the agent ID of an encoded record.
+       @param buffer The buffer containing the record.
+       @param offset The position of the record in the buffer.
+       @param type The type of the record.
+       @return The agent ID, or NONE if the record is not a perception record.
+    */
+    static int getRecordEntity(ByteBuffer buffer, int offset, RecordType type) {
+        if (type == RecordType.PERCEPTION) {
+            return buffer.getInt(offset + RECORD_HEADER_SIZE);
+        }
+        return NONE;
+    }
+
+    private void flushBlock() throws IOException {
+        if (block.size() == 0) {
+            return;
+        }
+        blockOffsets.add(position);
+        writeCompressed(block.toByteArray());
+        block.reset();
+        // Make complete blocks visible in the file so a reader can recover them if the kernel dies before the log is closed
+        out.flush();
+    }
+
+    private void writeCompressed(byte[] data) throws IOException {
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        byte[] buffer = new byte[64 * 1024];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            compressed.write(buffer, 0, n);
+        }
+        out.writeInt(compressed.size());
+        out.writeInt(data.length);
+        compressed.writeTo(out);
+        position += 8 + compressed.size();
+    }
+}
@@ -14,26 +14,19 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.Set;
 import java.util.HashSet;
-import java.util.NavigableMap;
-import java.util.TreeMap;
 
 import rescuecore2.worldmodel.Entity;
 import rescuecore2.worldmodel.EntityID;
 import rescuecore2.worldmodel.WorldModel;
-import rescuecore2.worldmodel.DefaultWorldModel;
-import rescuecore2.worldmodel.ChangeSet;
 import rescuecore2.config.Config;
 import rescuecore2.registry.Registry;
 
 /**
    A log reader that reads from a file.
  */
-public class FileLogReader extends AbstractLogReader {
-    private static final int KEY_FRAME_BUFFER_MAX_SIZE = 10;
-
+public class FileLogReader extends AbstractKeyFrameLogReader {
     private RandomAccessFile file;
-    private int maxTime;
-    private NavigableMap<Integer, WorldModel<? extends Entity>> keyFrames;
+    private long initialConditionsIndex;
     private Map<Integer, Map<EntityID, Long>> perceptionIndices;
     private Map<Integer, Long> updatesIndices;
     private Map<Integer, Long> commandsIndices;
@@ -70,35 +63,19 @@ public class FileLogReader extends AbstractLogReader {
     }
 
     @Override
-    public int getMaxTimestep() throws LogException {
-        return maxTime;
-    }
-
-    @Override
-    public WorldModel<? extends Entity> getWorldModel(int time) throws LogException {
-        Logger.debug("Getting world model at time " + time);
-        WorldModel<? extends Entity> result = new DefaultWorldModel<Entity>(Entity.class);
-        // Look for a key frame
-        Map.Entry<Integer, WorldModel<? extends Entity>> entry = keyFrames.floorEntry(time);
-        int startTime = entry.getKey();
-        Logger.trace("Found key frame " + startTime);
-        // Copy the initial conditions
-        Logger.trace("Cloning initial conditions");
-        for (Entity next : entry.getValue()) {
-            result.addEntity(next.copy());
+    protected synchronized WorldModel<? extends Entity> readInitialConditions() throws LogException {
+        if (initialConditionsIndex < 0) {
+            throw new LogException("No initial conditions record found");
+        }
+        try {
+            file.seek(initialConditionsIndex);
+            int size = readInt32(file);
+            byte[] bytes = readBytes(size, file);
+            return new InitialConditionsRecord(new ByteArrayInputStream(bytes)).getWorldModel();
         }
-        // Go through updates and apply them all
-        for (int i = startTime + 1; i <= time; ++i) {
-            ChangeSet updates = getUpdates(i).getChangeSet();
-            Logger.trace("Merging " + updates.getChangedEntities().size() + " updates for timestep " + i);
-            result.merge(updates);
+        catch (IOException e) {
+            throw new LogException(e);
         }
-        Logger.trace("Done");
-        // Remove stale key frames
-        removeStaleKeyFrames();
-        // Store this as a key frame - it's quite likely that the next timestep will be viewed soon.
-        keyFrames.put(time, result);
-        return result;
     }
 
     @Override
@@ -111,7 +88,7 @@ public class FileLogReader extends AbstractLogReader {
     }
 
     @Override
-    public PerceptionRecord getPerception(int time, EntityID entity) throws LogException {
+    public synchronized PerceptionRecord getPerception(int time, EntityID entity) throws LogException {
         Map<EntityID, Long> timestepMap = perceptionIndices.get(time);
         if (timestepMap == null) {
             return null;
@@ -132,7 +109,7 @@ public class FileLogReader extends AbstractLogReader {
     }
 
     @Override
-    public CommandsRecord getCommands(int time) throws LogException {
+    public synchronized CommandsRecord getCommands(int time) throws LogException {
         Long index = commandsIndices.get(time);
         if (index == null) {
             return null;
@@ -149,7 +126,7 @@ public class FileLogReader extends AbstractLogReader {
     }
 
     @Override
-    public UpdatesRecord getUpdates(int time) throws LogException {
+    public synchronized UpdatesRecord getUpdates(int time) throws LogException {
         Long index = updatesIndices.get(time);
         if (index == null) {
             return null;
@@ -168,7 +145,7 @@ public class FileLogReader extends AbstractLogReader {
     private void index() throws LogException {
         try {
             Registry.setCurrentRegistry(registry);
-            keyFrames = new TreeMap<Integer, WorldModel<? extends Entity>>();
+            initialConditionsIndex = -1;
             perceptionIndices = new HashMap<Integer, Map<EntityID, Long>>();
             updatesIndices = new HashMap<Integer, Long>();
             commandsIndices = new HashMap<Integer, Long>();
@@ -235,13 +212,12 @@ public class FileLogReader extends AbstractLogReader {
     }
 
     private void indexInitialConditions() throws IOException, LogException {
+        initialConditionsIndex = file.getFilePointer();
         int size = readInt32(file);
         if (size < 0) {
             throw new LogException("Invalid initial conditions size: " + size);
         }
-        byte[] bytes = readBytes(size, file);
-        InitialConditionsRecord record = new InitialConditionsRecord(new ByteArrayInputStream(bytes));
-        keyFrames.put(0, record.getWorldModel());
+        reallySkip(file, size);
     }
 
     private void indexPerception() throws IOException, LogException {
@@ -285,27 +261,4 @@ public class FileLogReader extends AbstractLogReader {
         ConfigRecord record = new ConfigRecord(new ByteArrayInputStream(bytes));
         config = record.getConfig();
     }
-
-    private void removeStaleKeyFrames() {
-        Logger.trace("Removing stale key frames");
-        int size = keyFrames.size();
-        if (size < KEY_FRAME_BUFFER_MAX_SIZE) {
-            Logger.trace("Key frame buffer is not full: " + size + (size == 1 ? " entry" : " entries"));
-            return;
-        }
-        // Try to balance the number of key frames.
-        int window = maxTime / KEY_FRAME_BUFFER_MAX_SIZE;
-        for (int i = 0; i < maxTime; i += window) {
-            NavigableMap<Integer, WorldModel<? extends Entity>> next = keyFrames.subMap(i, false, i + window, true);
-            Logger.trace("Window " + i + " -> " + (i + window) + " has " + next.size() + " entries");
-            if (next.size() > 1) {
-                // Remove all but the last entry in this window
-                Map.Entry<Integer, WorldModel<? extends Entity>> last = next.lastEntry();
-                next.clear();
-                next.put(last.getKey(), last.getValue());
-                Logger.trace("Retained entry " + last);
-            }
-        }
-        Logger.trace("New key frame set: " + keyFrames);
-    }
 }
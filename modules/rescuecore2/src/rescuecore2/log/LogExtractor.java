@@ -8,12 +8,24 @@ import java.awt.GraphicsEnvironment;
 import java.awt.Transparency;
 import java.awt.image.BufferedImage;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.imageio.ImageIO;
 
@@ -26,6 +38,7 @@ import rescuecore2.misc.java.LoadableTypeProcessor;
 import rescuecore2.registry.Registry;
 import rescuecore2.score.ScoreFunction;
 import rescuecore2.view.ViewComponent;
+import rescuecore2.worldmodel.DefaultWorldModel;
 import rescuecore2.worldmodel.Entity;
 import rescuecore2.worldmodel.WorldModel;
 
@@ -33,8 +46,19 @@ import rescuecore2.worldmodel.WorldModel;
    A class for viewing log files.
  */
 public class LogExtractor {
+    /** Config key for the number of threads used to render snapshots. */
+    public static final String THREADS_KEY = "log.extract.threads";
+    /** Config key for the number of timesteps between snapshots. */
+    public static final String INTERVAL_KEY = "log.extract.interval";
+
     private static final String VIEWERS_KEY = "log.viewers";
+    private static final int DEFAULT_INTERVAL = 50;
+    private static final int DEFAULT_WIDTH = 1024;
+    private static final int DEFAULT_HEIGHT = 786;
+    // Snapshots waiting to be written, per render thread
+    private static final int QUEUE_FACTOR = 2;
 
+    private Config config;
     private ScoreFunction scoreFunction;
     private LogReader log;
     private List<ViewComponent> viewers;
@@ -42,6 +66,8 @@ public class LogExtractor {
     
     private int current_time;
     WorldModel<? extends Entity> current_model = null; 
+    private int width;
+    private int height;
 
     /**
        Construct a LogViewer.
@@ -51,6 +77,9 @@ public class LogExtractor {
     */
     public LogExtractor(LogReader reader, Config config) throws LogException {
         this.log = reader;
+        this.config = config;
+        width = DEFAULT_WIDTH;
+        height = DEFAULT_HEIGHT;
         registerViewers(config);
         maxTime = log.getMaxTimestep();
         scoreFunction = makeScoreFunction(config);
@@ -98,6 +127,8 @@ public class LogExtractor {
     }
     
     public void setDimension(int width, int height) {
+        this.width = width;
+        this.height = height;
         for (ViewComponent next : viewers) {
             next.setBounds(0, 0, width, height);
         }
@@ -111,20 +142,135 @@ public class LogExtractor {
         if (viewers.isEmpty()) {
             return null;
         }
-        ViewComponent view = viewers.get(0);
-        view.view(current_model, null, null);
+        return paintImage(viewers.get(0), current_model);
+    }
+
+    /**
+       Walk through the log once and write snapshots and scores. Updates are applied to a single world model in timestep order instead of rebuilding the world for each timestep. Snapshots are taken at timestep 1, every <code>interval</code> timesteps and at the last timestep; each is rendered by a separate viewer on a pool of threads and the images are written in timestep order.
+       @param outdir The directory to write snapshots to.
+       @param interval The number of timesteps between snapshots.
+       @param threads The number of threads to render snapshots with.
+       @return The score at each timestep, starting at timestep zero.
+       @throws LogException If there is a problem reading the log or writing snapshots.
+    */
+    public List<Double> extract(String outdir, int interval, int threads) throws LogException {
+        List<Double> scores = new ArrayList<Double>();
+        WorldModel<? extends Entity> model = copy(log.getWorldModel(0));
+        scores.add(scoreFunction.score(model, new Timestep(0)));
+        if (viewers.isEmpty()) {
+            threads = 0;
+        }
+        ExecutorService pool = threads > 0 ? Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger next = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Log extractor " + next.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            }) : null;
+        final ThreadLocal<ViewComponent> threadViewers = new ThreadLocal<ViewComponent>() {
+            @Override
+            protected ViewComponent initialValue() {
+                return createViewer();
+            }
+        };
+        Deque<Snapshot> pending = new ArrayDeque<Snapshot>();
+        try {
+            for (int time = 1; time <= maxTime; ++time) {
+                UpdatesRecord updates = log.getUpdates(time);
+                if (updates != null) {
+                    model.merge(updates.getChangeSet());
+                }
+                scores.add(scoreFunction.score(model, new Timestep(time)));
+                if (pool == null) {
+                    continue;
+                }
+                List<String> names = new ArrayList<String>();
+                if (time == 1) {
+                    names.add("snapshot-init.png");
+                }
+                if (interval > 0 && time % interval == 0) {
+                    names.add("snapshot-" + time + ".png");
+                }
+                if (time == maxTime) {
+                    names.add("snapshot-final.png");
+                }
+                if (names.isEmpty()) {
+                    continue;
+                }
+                final WorldModel<? extends Entity> frame = copy(model);
+                Future<byte[]> image = pool.submit(new Callable<byte[]>() {
+                        @Override
+                        public byte[] call() throws IOException {
+                            return encodeImage(paintImage(threadViewers.get(), frame));
+                        }
+                    });
+                pending.add(new Snapshot(outdir, names, image));
+                while (pending.size() > threads * QUEUE_FACTOR) {
+                    pending.removeFirst().write();
+                }
+            }
+            while (!pending.isEmpty()) {
+                pending.removeFirst().write();
+            }
+        }
+        finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+        current_model = model;
+        current_time = maxTime;
+        return scores;
+    }
+    
+    private ViewComponent createViewer() {
+        for (String next : config.getArrayValue(VIEWERS_KEY, "")) {
+            ViewComponent viewer = instantiate(next, ViewComponent.class);
+            if (viewer != null) {
+                viewer.initialise(config);
+                viewer.setBounds(0, 0, width, height);
+                return viewer;
+            }
+        }
+        return null;
+    }
+
+    private static BufferedImage paintImage(ViewComponent view, WorldModel<? extends Entity> model) {
+        view.view(model, null, null);
         //Create the image
-        GraphicsConfiguration configuration = GraphicsEnvironment.getLocalGraphicsEnvironment()
-        .getDefaultScreenDevice().getDefaultConfiguration();
-        BufferedImage image = configuration.createCompatibleImage(view.getWidth(), view.getHeight(), Transparency.TRANSLUCENT);
-            
+        BufferedImage image;
+        if (GraphicsEnvironment.isHeadless()) {
+            image = new BufferedImage(view.getWidth(), view.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        }
+        else {
+            GraphicsConfiguration configuration = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration();
+            image = configuration.createCompatibleImage(view.getWidth(), view.getHeight(), Transparency.TRANSLUCENT);
+        }
         //Render the component onto the image
         Graphics graphics = image.createGraphics();
         view.paint(graphics);
         graphics.dispose();
         return image;
     }
-    
+
+    private static byte[] encodeImage(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static WorldModel<? extends Entity> copy(WorldModel<? extends Entity> model) {
+        WorldModel<Entity> result = new DefaultWorldModel<Entity>(Entity.class);
+        for (Entity next : model) {
+            result.addEntity(next.copy());
+        }
+        return result;
+    }
+
     public void writeImage(String filename) {
         BufferedImage bi = paintImage();
         File outfile = new File(filename);
@@ -176,24 +322,15 @@ public class LogExtractor {
             String name = args[0];
             String outdir = args[1];
             processJarFiles(config);
-            LogReader reader = new FileLogReader(name, Registry.SYSTEM_REGISTRY);
+            LogReader reader = LogTools.openLog(name, Registry.SYSTEM_REGISTRY);
             LogExtractor log = new LogExtractor(reader, config);
-            log.setDimension(1024, 786);
+            log.setDimension(DEFAULT_WIDTH, DEFAULT_HEIGHT);
             //viewer.setPreferredSize(new Dimension(VIEWER_SIZE, VIEWER_SIZE));
-            List<Double> scores = new ArrayList<Double>();
-            scores.add(log.getScore());
-            writeFile(outdir + "/init-score.txt", ""+ log.getScore());
-            while (log.step()) {
-                if (log.getTime() == 1) {
-                    log.writeImage(outdir + "/snapshot-init.png");
-                }
-                if (log.getTime() % 50 == 0) {
-                    log.writeImage(outdir + "/snapshot-" + log.getTime() + ".png");
-                }
-                scores.add(log.getScore());
-            }
-            log.writeImage(outdir + "/snapshot-final.png");
-            writeFile(outdir + "/final-score.txt", ""+ log.getScore());
+            int interval = config.getIntValue(INTERVAL_KEY, DEFAULT_INTERVAL);
+            int threads = config.getIntValue(THREADS_KEY, Runtime.getRuntime().availableProcessors());
+            List<Double> scores = log.extract(outdir, interval, Math.max(1, threads));
+            writeFile(outdir + "/init-score.txt", "" + scores.get(0));
+            writeFile(outdir + "/final-score.txt", "" + scores.get(scores.size() - 1));
             
             StringBuffer scoreString = new StringBuffer();
             for (Double score : scores) {
@@ -227,6 +364,49 @@ public class LogExtractor {
         
     }
 
+    /**
+       A snapshot that is being rendered and the files it should be written to.
+    */
+    private static class Snapshot {
+        private final String outdir;
+        private final List<String> names;
+        private final Future<byte[]> image;
+
+        Snapshot(String outdir, List<String> names, Future<byte[]> image) {
+            this.outdir = outdir;
+            this.names = names;
+            this.image = image;
+        }
+
+        void write() throws LogException {
+            byte[] bytes;
+            try {
+                bytes = image.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LogException("Interrupted while rendering snapshot", e);
+            }
+            catch (ExecutionException e) {
+                throw new LogException("Error rendering snapshot", e.getCause());
+            }
+            for (String next : names) {
+                try {
+                    OutputStream out = new FileOutputStream(new File(outdir, next));
+                    try {
+                        out.write(bytes);
+                    }
+                    finally {
+                        out.close();
+                    }
+                }
+                catch (IOException e) {
+                    System.out.println("Error writing image: " + e.getMessage());
+                }
+            }
+        }
+    }
+
     private static void printUsage() {
         System.out.println("Usage: LogExtractor <filename> <output directory>");
     }
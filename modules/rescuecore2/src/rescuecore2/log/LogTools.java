@@ -0,0 +1,112 @@
+package rescuecore2.log;
+
+import static rescuecore2.misc.EncodingTools.readBytes;
+import static rescuecore2.misc.EncodingTools.readInt32;
+
+import java.io.BufferedInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import rescuecore2.registry.Registry;
+
+/**
+   Utility methods for working with log files.
+ */
+public final class LogTools {
+    private LogTools() {}
+
+    /**
+       Open a log file for reading. Block logs written by {@link BlockLogWriter} are read with a {@link BlockLogReader}; anything else is read with a {@link FileLogReader}.
+       @param name The name of the log file.
+       @param registry The registry to use for reading log entries.
+       @return A LogReader for the file.
+       @throws IOException If the file cannot be read.
+       @throws LogException If there is a problem reading the log.
+    */
+    public static LogReader openLog(String name, Registry registry) throws IOException, LogException {
+        File file = new File(name);
+        if (BlockLogReader.isBlockLog(file)) {
+            return new BlockLogReader(file, registry);
+        }
+        return new FileLogReader(file, registry);
+    }
+
+    /**
+       Convert a stream log into a block log. Records are copied without being decoded so no registry is needed.
+       @param in The stream log to read.
+       @param out The block log to write to. This will be closed when conversion finishes.
+       @return The number of records copied.
+       @throws IOException If there is a problem reading the input.
+       @throws LogException If there is a problem writing the output or the input is not a valid log.
+    */
+    public static int convert(InputStream in, BlockLogWriter out) throws IOException, LogException {
+        int count = 0;
+        try {
+            RecordType type;
+            do {
+                int id;
+                try {
+                    id = readInt32(in);
+                }
+                catch (EOFException e) {
+                    Logger.debug("EOF found");
+                    break;
+                }
+                type = RecordType.fromID(id);
+                if (count == 0 && !RecordType.START_OF_LOG.equals(type)) {
+                    throw new LogException("Log does not start with correct magic number");
+                }
+                int size = readInt32(in);
+                if (size < 0) {
+                    throw new LogException("Invalid record size: " + size);
+                }
+                byte[] data = readBytes(size, in);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(size + BlockLogWriter.RECORD_HEADER_SIZE);
+                DataOutputStream dout = new DataOutputStream(bytes);
+                dout.writeInt(id);
+                dout.writeInt(size);
+                dout.write(data);
+                out.writeEncodedRecord(bytes.toByteArray());
+                ++count;
+            } while (!RecordType.END_OF_LOG.equals(type));
+        }
+        finally {
+            out.close();
+        }
+        return count;
+    }
+
+    /**
+       Convert a stream log file into a block log file.
+       @param args Command line arguments: the input log file name and the output file name.
+    */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: LogTools <input log> <output log>");
+            return;
+        }
+        try {
+            InputStream in = new BufferedInputStream(new FileInputStream(args[0]));
+            try {
+                int count = convert(in, new BlockLogWriter(new File(args[1])));
+                long before = new File(args[0]).length();
+                long after = new File(args[1]).length();
+                Logger.info("Converted " + count + " records: " + before + " bytes -> " + after + " bytes");
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (IOException e) {
+            Logger.error("Error converting log", e);
+        }
+        catch (LogException e) {
+            Logger.error("Error converting log", e);
+        }
+    }
+}
@@ -80,6 +80,10 @@ public class LogViewer extends JPanel {
     public LogViewer(LogReader reader, Config config) throws LogException {
         super(new BorderLayout());
         this.log = reader;
+        if (reader instanceof AbstractKeyFrameLogReader) {
+            // Build neighbouring timesteps while the user steps through the log
+            ((AbstractKeyFrameLogReader)reader).setPrefetch(true);
+        }
         inspector = new EntityInspector();
         registerViewers(config);
         maxTime = log.getMaxTimestep();
@@ -252,7 +256,7 @@ public class LogViewer extends JPanel {
             }
             String name = args[0];
             processJarFiles(config);
-            LogReader reader = new FileLogReader(name, Registry.SYSTEM_REGISTRY);
+            LogReader reader = LogTools.openLog(name, Registry.SYSTEM_REGISTRY);
             LogViewer viewer = new LogViewer(reader, config);
             viewer.setPreferredSize(new Dimension(VIEWER_SIZE, VIEWER_SIZE));
             JFrame frame = new JFrame("Log viewer: " + name);
@@ -92,6 +92,14 @@ public final class Logger {
         get().trace(msg, t);
     }
 
+    /**
+       Find out if debug level messages will be logged in the current context. Use this to avoid building expensive messages that would be thrown away.
+       @return True if debug messages are enabled.
+    */
+    public static boolean isDebugEnabled() {
+        return get().isDebugEnabled();
+    }
+
     /**
        Log a debug level message.
        @param msg The message to log.
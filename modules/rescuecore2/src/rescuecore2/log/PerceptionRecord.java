@@ -13,6 +13,7 @@ import java.util.Collection;
 import java.util.ArrayList;
 
 import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.EncodedPropertyCache;
 import rescuecore2.worldmodel.EntityID;
 import rescuecore2.messages.Command;
 
@@ -24,6 +25,7 @@ public class PerceptionRecord implements LogRecord {
     private EntityID entityID;
     private ChangeSet visible;
     private Collection<Command> communications;
+    private EncodedPropertyCache cache;
 
     /**
        Construct a new PerceptionRecord.
@@ -39,6 +41,19 @@ public class PerceptionRecord implements LogRecord {
         this.communications = communications;
     }
 
+    /**
+       Construct a new PerceptionRecord that takes property encodings from a cache when it is written.
+       @param time The timestep of this perception record.
+       @param id The ID of the entity.
+       @param visible The set of visible changes to entities.
+       @param communications The set of communication messages.
+       @param cache The cache of encoded properties.
+     */
+    public PerceptionRecord(int time, EntityID id, ChangeSet visible, Collection<Command> communications, EncodedPropertyCache cache) {
+        this(time, id, visible, communications);
+        this.cache = cache;
+    }
+
     /**
        Construct a new PerceptionRecord and read data from an InputStream.
        @param in The InputStream to read from.
@@ -58,7 +73,7 @@ public class PerceptionRecord implements LogRecord {
     public void write(OutputStream out) throws IOException {
         writeInt32(entityID.getValue(), out);
         writeInt32(time, out);
-        visible.write(out);
+        visible.write(out, cache);
         writeInt32(communications.size(), out);
         for (Command next : communications) {
             writeMessage(next, out);
@@ -5,6 +5,7 @@ import java.io.OutputStream;
 import java.io.IOException;
 
 import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.EncodedPropertyCache;
 import rescuecore2.messages.AbstractMessageComponent;
 
 /**
@@ -12,6 +13,7 @@ import rescuecore2.messages.AbstractMessageComponent;
  */
 public class ChangeSetComponent extends AbstractMessageComponent {
     private ChangeSet changes;
+    private EncodedPropertyCache cache;
 
     /**
        Construct a ChangeSetComponent with no content.
@@ -48,9 +50,17 @@ public class ChangeSetComponent extends AbstractMessageComponent {
         this.changes = new ChangeSet(newChanges);
     }
 
+    /**
+       Set a cache to take property encodings from when this component is written.
+       @param newCache The cache to use, or null to encode every property.
+    */
+    public void setEncodingCache(EncodedPropertyCache newCache) {
+        this.cache = newCache;
+    }
+
     @Override
     public void write(OutputStream out) throws IOException {
-        changes.write(out);
+        changes.write(out, cache);
     }
 
     @Override
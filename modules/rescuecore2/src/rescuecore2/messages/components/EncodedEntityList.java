@@ -0,0 +1,113 @@
+package rescuecore2.messages.components;
+
+import static rescuecore2.misc.EncodingTools.writeEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+
+/**
+   An immutable list of entities that have been encoded once so that the same bytes can be written into many messages. This is useful when a large set of entities (for example, the initial world sent to every agent) is shared between messages. Entities must not be modified after they have been added to an EncodedEntityList.
+ */
+public final class EncodedEntityList {
+    private final List<Entity> entities;
+    private final byte[] bytes;
+    private final int[] offsets;
+    private final Map<EntityID, Integer> indices;
+
+    /**
+       Encode a collection of entities.
+       @param entities The entities to encode.
+    */
+    public EncodedEntityList(Collection<? extends Entity> entities) {
+        this.entities = Collections.unmodifiableList(new ArrayList<Entity>(entities));
+        offsets = new int[this.entities.size() + 1];
+        indices = new HashMap<EntityID, Integer>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            int i = 0;
+            for (Entity next : this.entities) {
+                offsets[i] = out.size();
+                indices.put(next.getID(), i);
+                writeEntity(next, out);
+                ++i;
+            }
+            offsets[i] = out.size();
+        }
+        catch (IOException e) {
+            // Writing to a ByteArrayOutputStream cannot fail
+            throw new IllegalStateException(e);
+        }
+        bytes = out.toByteArray();
+    }
+
+    /**
+       Get the entities in this list.
+       @return An unmodifiable list of entities.
+    */
+    public List<Entity> getEntities() {
+        return entities;
+    }
+
+    /**
+       Get the number of entities in this list.
+       @return The number of entities.
+    */
+    public int size() {
+        return entities.size();
+    }
+
+    /**
+       Get the total size of the encoded entities.
+       @return The encoded size in bytes.
+    */
+    public int getEncodedSize() {
+        return bytes.length;
+    }
+
+    /**
+       Find out if an entity with a given ID is in this list.
+       @param id The ID to look up.
+       @return True if there is an entity with that ID in the list.
+    */
+    public boolean contains(EntityID id) {
+        return indices.containsKey(id);
+    }
+
+    /**
+       Write the encoded entities to a stream, leaving out any entities with the given IDs. The entity count is not written.
+       @param out The stream to write to.
+       @param excluded The IDs of entities that should not be written.
+       @return The number of entities written.
+       @throws IOException If there is a problem writing to the stream.
+    */
+    public int writeTo(OutputStream out, Collection<EntityID> excluded) throws IOException {
+        SortedSet<Integer> skip = new TreeSet<Integer>();
+        for (EntityID next : excluded) {
+            Integer index = indices.get(next);
+            if (index != null) {
+                skip.add(index);
+            }
+        }
+        int start = 0;
+        int count = entities.size();
+        for (int index : skip) {
+            out.write(bytes, offsets[start], offsets[index] - offsets[start]);
+            start = index + 1;
+            --count;
+        }
+        out.write(bytes, offsets[start], offsets[entities.size()] - offsets[start]);
+        return count;
+    }
+}
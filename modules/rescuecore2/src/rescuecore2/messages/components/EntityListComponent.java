@@ -10,18 +10,22 @@ import rescuecore2.messages.AbstractMessageComponent;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.IOException;
 
 import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
 
 /**
    An EntityList component to a message.
  */
 public class EntityListComponent extends AbstractMessageComponent {
     private List<Entity> entities;
+    private EncodedEntityList shared;
 
     /**
        Construct an EntityListComponent with no content.
@@ -47,6 +51,19 @@ public class EntityListComponent extends AbstractMessageComponent {
        @return The entities in this component.
     */
     public List<Entity> getEntities() {
+        if (shared != null) {
+            // Expand the shared entities so callers see the complete list
+            List<Entity> all = new ArrayList<Entity>(shared.size() + entities.size());
+            Set<EntityID> own = getIDs(entities);
+            for (Entity next : shared.getEntities()) {
+                if (!own.contains(next.getID())) {
+                    all.add(next);
+                }
+            }
+            all.addAll(entities);
+            entities = all;
+            shared = null;
+        }
         return entities;
     }
 
@@ -56,11 +73,35 @@ public class EntityListComponent extends AbstractMessageComponent {
     */
     public void setEntities(Collection<? extends Entity> entities) {
         this.entities = new ArrayList<Entity>(entities);
+        this.shared = null;
+    }
+
+    /**
+       Set the entities that make up this message component from a pre-encoded list and some additional entities. The pre-encoded bytes are copied directly into the message. If an additional entity has the same ID as an entity in the shared list then only the additional entity is sent.
+       @param sharedEntities The pre-encoded entities.
+       @param extraEntities Additional entities to encode individually.
+    */
+    public void setEntities(EncodedEntityList sharedEntities, Collection<? extends Entity> extraEntities) {
+        this.entities = new ArrayList<Entity>(extraEntities);
+        this.shared = sharedEntities;
     }
 
     @Override
     public void write(OutputStream out) throws IOException {
-        writeInt32(entities.size(), out);
+        if (shared != null) {
+            Set<EntityID> own = getIDs(entities);
+            int sharedCount = shared.size();
+            for (EntityID next : own) {
+                if (shared.contains(next)) {
+                    --sharedCount;
+                }
+            }
+            writeInt32(sharedCount + entities.size(), out);
+            shared.writeTo(out, own);
+        }
+        else {
+            writeInt32(entities.size(), out);
+        }
         for (Entity next : entities) {
             writeEntity(next, out);
         }
@@ -68,6 +109,7 @@ public class EntityListComponent extends AbstractMessageComponent {
 
     @Override
     public void read(InputStream in) throws IOException {
+        shared = null;
         entities.clear();
         int size = readInt32(in);
         for (int i = 0; i < size; ++i) {
@@ -80,6 +122,14 @@ public class EntityListComponent extends AbstractMessageComponent {
 
     @Override
     public String toString() {
-        return getName() + " = " + entities.size() + " entities";
+        return getName() + " = " + (entities.size() + (shared == null ? 0 : shared.size())) + " entities";
+    }
+
+    private static Set<EntityID> getIDs(Collection<? extends Entity> list) {
+        Set<EntityID> result = new HashSet<EntityID>();
+        for (Entity next : list) {
+            result.add(next.getID());
+        }
+        return result;
     }
 }
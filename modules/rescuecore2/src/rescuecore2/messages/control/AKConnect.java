@@ -15,6 +15,11 @@ import java.io.IOException;
    A message for connecting an agent to the kernel.
  */
 public class AKConnect extends AbstractMessage implements Control {
+    /** The version sent by agents that expect every visible property in each perception update. */
+    public static final int VERSION_FULL_PERCEPTION = 1;
+    /** The version sent by agents that accept perception updates containing only properties that have changed since they were last received. */
+    public static final int VERSION_PERCEPTION_DELTAS = 2;
+
     private IntComponent requestID;
     private IntComponent version;
     private StringComponent agentName;
@@ -65,6 +70,14 @@ public class AKConnect extends AbstractMessage implements Control {
         return version.getValue();
     }
 
+    /**
+       Find out if the agent accepts perception updates that only contain changed properties.
+       @return True if the agent accepts perception deltas.
+    */
+    public boolean acceptsPerceptionDeltas() {
+        return getVersion() >= VERSION_PERCEPTION_DELTAS;
+    }
+
     /**
        Get the request ID.
        @return The request ID.
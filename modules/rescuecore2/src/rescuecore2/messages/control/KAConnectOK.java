@@ -8,6 +8,7 @@ import rescuecore2.messages.components.IntComponent;
 import rescuecore2.messages.components.EntityIDComponent;
 import rescuecore2.messages.components.EntityListComponent;
 import rescuecore2.messages.components.ConfigComponent;
+import rescuecore2.messages.components.EncodedEntityList;
 import rescuecore2.worldmodel.Entity;
 import rescuecore2.worldmodel.EntityID;
 import rescuecore2.config.Config;
@@ -49,6 +50,22 @@ public class KAConnectOK extends AbstractMessage implements Control {
         this.config.setConfig(config);
     }
 
+    /**
+       A populated KAConnectOK message that reuses a pre-encoded set of entities.
+       @param requestID The request ID.
+       @param agentID The ID of the Entity that the agent will be controlling.
+       @param sharedEntities Pre-encoded entities that the agent knows about. This may be shared with other messages.
+       @param agentEntities Entities that are specific to this agent, including the controlled object. These replace any shared entities with the same ID.
+       @param config The Config that the agent knows about.
+     */
+    public KAConnectOK(int requestID, EntityID agentID, EncodedEntityList sharedEntities, Collection<? extends Entity> agentEntities, Config config) {
+        this();
+        this.requestID.setValue(requestID);
+        this.agentID.setValue(agentID);
+        this.world.setEntities(sharedEntities, agentEntities);
+        this.config.setConfig(config);
+    }
+
     private KAConnectOK() {
         super(ControlMessageURN.KA_CONNECT_OK);
         requestID = new IntComponent("Request ID");
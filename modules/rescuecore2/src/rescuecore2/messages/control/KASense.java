@@ -9,6 +9,7 @@ import rescuecore2.messages.components.ChangeSetComponent;
 import rescuecore2.messages.components.CommandListComponent;
 import rescuecore2.worldmodel.EntityID;
 import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.EncodedPropertyCache;
 
 import java.io.InputStream;
 import java.io.IOException;
@@ -48,6 +49,19 @@ public class KASense extends AbstractMessage implements Control {
         this.hear.setCommands(hear);
     }
 
+    /**
+       A populated KASense message that takes property encodings from a cache when it is written. Messages sent to different agents in the same timestep can share a cache so that properties seen by several agents are only encoded once.
+       @param agentID The ID of the Entity that is receiving the update.
+       @param time The timestep of the simulation.
+       @param changes All changes that the agent can perceive.
+       @param hear The messages that the agent can hear.
+       @param cache The cache of encoded properties.
+     */
+    public KASense(EntityID agentID, int time, ChangeSet changes, Collection<? extends Command> hear, EncodedPropertyCache cache) {
+        this(agentID, time, changes, hear);
+        this.updates.setEncodingCache(cache);
+    }
+
     private KASense() {
         super(ControlMessageURN.KA_SENSE);
         agentID = new EntityIDComponent("Agent ID");
@@ -0,0 +1,147 @@
+package rescuecore2.misc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+   Splits the indices 0 to count - 1 into contiguous chunks and processes them on a pool of daemon threads. The results of the chunks are returned in index order, so callers that combine them in order get the same answer whatever the number of threads. With one thread, or fewer than two items, everything is processed as a single chunk on the calling thread.
+*/
+public class ChunkExecutor {
+    // More chunks than threads so one slow chunk does not leave the other threads idle
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final int threads;
+    private final ExecutorService executor;
+
+    /**
+       A function that processes a chunk of indices.
+       @param <T> The type of result for each chunk.
+    */
+    public interface Chunk<T> {
+        /**
+           Process a chunk. This may be called from several threads at once.
+           @param first The first index in the chunk.
+           @param last The index after the last index in the chunk.
+           @return The result for this chunk.
+        */
+        T process(int first, int last);
+    }
+
+    /**
+       Create a ChunkExecutor.
+       @param name The prefix for the names of the worker threads.
+       @param threads The number of worker threads.
+    */
+    public ChunkExecutor(final String name, int threads) {
+        this.threads = Math.max(1, threads);
+        if (this.threads > 1) {
+            executor = Executors.newFixedThreadPool(this.threads, new ThreadFactory() {
+                    private final AtomicInteger next = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, name + " " + next.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        }
+        else {
+            executor = null;
+        }
+    }
+
+    /**
+       Process indices 0 to count - 1 once on a temporary pool with one thread per processor.
+       @param name The prefix for the names of the worker threads.
+       @param count The number of indices.
+       @param chunk The function to apply to each chunk.
+       @param <T> The type of result for each chunk.
+       @return The result of each chunk in index order.
+    */
+    public static <T> List<T> run(String name, int count, Chunk<T> chunk) {
+        ChunkExecutor executor = new ChunkExecutor(name, Math.min(Runtime.getRuntime().availableProcessors(), count));
+        try {
+            return executor.process(count, chunk);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+       Get the number of worker threads.
+       @return The number of threads.
+    */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+       Process indices 0 to count - 1 and wait for all chunks to finish. If a chunk throws an unchecked exception or error then it is rethrown on the calling thread.
+       @param count The number of indices.
+       @param chunk The function to apply to each chunk.
+       @param <T> The type of result for each chunk.
+       @return The result of each chunk in index order.
+    */
+    public <T> List<T> process(int count, final Chunk<T> chunk) {
+        if (executor == null || count < 2) {
+            return Collections.singletonList(chunk.process(0, count));
+        }
+        int chunkSize = Math.max(1, count / (threads * CHUNKS_PER_THREAD));
+        List<Future<T>> futures = new ArrayList<Future<T>>();
+        for (int start = 0; start < count; start += chunkSize) {
+            final int first = start;
+            final int last = Math.min(count, start + chunkSize);
+            futures.add(executor.submit(new Callable<T>() {
+                    @Override
+                    public T call() {
+                        return chunk.process(first, last);
+                    }
+                }));
+        }
+        List<T> result = new ArrayList<T>(futures.size());
+        try {
+            for (Future<T> next : futures) {
+                result.add(next.get());
+            }
+        }
+        catch (InterruptedException e) {
+            for (Future<T> next : futures) {
+                next.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for chunks", e);
+        }
+        catch (ExecutionException e) {
+            for (Future<T> next : futures) {
+                next.cancel(true);
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error)e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return result;
+    }
+
+    /**
+       Stop the worker threads. Chunks that are still running are interrupted.
+    */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
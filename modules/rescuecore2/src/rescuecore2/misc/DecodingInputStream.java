@@ -0,0 +1,57 @@
+package rescuecore2.misc;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+
+import rescuecore2.registry.DecodingContext;
+
+/**
+   A ByteArrayInputStream that carries the DecodingContext to use for the entities, properties and messages read from it. {@link EncodingTools} uses the context instead of the current thread's Registry, and reads nested content from slices of the same array instead of copying it.
+*/
+public class DecodingInputStream extends ByteArrayInputStream {
+    private final DecodingContext context;
+
+    /**
+       Construct a DecodingInputStream that reads a whole array.
+       @param buf The bytes to read.
+       @param context The context to decode with.
+    */
+    public DecodingInputStream(byte[] buf, DecodingContext context) {
+        this(buf, 0, buf.length, context);
+    }
+
+    /**
+       Construct a DecodingInputStream that reads part of an array.
+       @param buf The bytes to read.
+       @param offset The index of the first byte to read.
+       @param length The maximum number of bytes to read.
+       @param context The context to decode with.
+    */
+    public DecodingInputStream(byte[] buf, int offset, int length, DecodingContext context) {
+        super(buf, offset, length);
+        this.context = context;
+    }
+
+    /**
+       Get the context to decode with.
+       @return The DecodingContext.
+    */
+    public DecodingContext getContext() {
+        return context;
+    }
+
+    /**
+       Read some bytes as a new stream with the same context. The bytes are not copied.
+       @param size The number of bytes to read.
+       @return A DecodingInputStream that reads the next size bytes of this stream.
+       @throws EOFException If there are fewer than size bytes left.
+    */
+    public synchronized DecodingInputStream slice(int size) throws EOFException {
+        if (size < 0 || size > count - pos) {
+            throw new EOFException("Broken input pipe. Read " + (count - pos) + " bytes of " + size + ".");
+        }
+        DecodingInputStream result = new DecodingInputStream(buf, pos, size, context);
+        pos += size;
+        return result;
+    }
+}
@@ -14,6 +14,7 @@ import rescuecore2.worldmodel.Entity;
 import rescuecore2.worldmodel.EntityID;
 import rescuecore2.worldmodel.Property;
 import rescuecore2.messages.Message;
+import rescuecore2.registry.DecodingContext;
 import rescuecore2.registry.Registry;
 
 /**
@@ -338,6 +339,30 @@ public final class EncodingTools {
 		return buffer;
 	}
 
+	/**
+	 * Read the content of an entity, property or message. Content read from a
+	 * DecodingInputStream is a slice of the same array; anything else is
+	 * copied.
+	 */
+	private static InputStream readContent(int size, InputStream in)
+			throws IOException {
+		if (in instanceof DecodingInputStream) {
+			return ((DecodingInputStream) in).slice(size);
+		}
+		return new ByteArrayInputStream(readBytes(size, in));
+	}
+
+	/**
+	 * Get the DecodingContext of a stream, or null if the current thread's
+	 * Registry should be used.
+	 */
+	private static DecodingContext getContext(InputStream in) {
+		if (in instanceof DecodingInputStream) {
+			return ((DecodingInputStream) in).getContext();
+		}
+		return null;
+	}
+
 	/**
 	 * Read a fixed number of bytes from a DataInput into an array.
 	 * 
@@ -705,11 +730,13 @@ public final class EncodingTools {
 		}
 		int entityID = readInt32(in);
 		int size = readInt32(in);
-		byte[] content = readBytes(size, in);
-		Entity result = Registry.getCurrentRegistry().createEntity(urn,
-				new EntityID(entityID));
+		InputStream content = readContent(size, in);
+		DecodingContext context = getContext(in);
+		Entity result = context == null ? Registry.getCurrentRegistry()
+				.createEntity(urn, new EntityID(entityID)) : context
+				.createEntity(urn, new EntityID(entityID));
 		if (result != null) {
-			result.read(new ByteArrayInputStream(content));
+			result.read(content);
 		}
 		return result;
 	}
@@ -757,11 +784,10 @@ public final class EncodingTools {
 		if (p.isDefined()) {
 			ByteArrayOutputStream gather = new ByteArrayOutputStream();
 			p.write(gather);
-			byte[] bytes = gather.toByteArray();
 			// Size
-			writeInt32(bytes.length, out);
-			// Data
-			out.write(bytes);
+			writeInt32(gather.size(), out);
+			// Data, without copying the gathered bytes
+			gather.writeTo(out);
 		}
 	}
 
@@ -806,12 +832,14 @@ public final class EncodingTools {
 			return null;
 		}
 		boolean defined = readBoolean(in);
-		Property result = Registry.getCurrentRegistry().createProperty(urn);
+		DecodingContext context = getContext(in);
+		Property result = context == null ? Registry.getCurrentRegistry()
+				.createProperty(urn) : context.createProperty(urn);
 		if (defined) {
 			int size = readInt32(in);
-			byte[] content = readBytes(size, in);
+			InputStream content = readContent(size, in);
 			if (result != null) {
-				result.read(new ByteArrayInputStream(content));
+				result.read(content);
 			}
 		}
 		return result;
@@ -859,14 +887,13 @@ public final class EncodingTools {
 		// Gather the content first
 		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
 		m.write(bytes);
-		byte[] content = bytes.toByteArray();
 
 		// Type URN
 		writeString(m.getURN(), out);
 		// Size
-		writeInt32(content.length, out);
-		// Content
-		out.write(content);
+		writeInt32(bytes.size(), out);
+		// Content, without copying the gathered bytes
+		bytes.writeTo(out);
 	}
 
 	/**
@@ -910,9 +937,11 @@ public final class EncodingTools {
 			return null;
 		}
 		int size = readInt32(in);
-		byte[] content = readBytes(size, in);
-		Message result = Registry.getCurrentRegistry().createMessage(urn,
-				new ByteArrayInputStream(content));
+		InputStream content = readContent(size, in);
+		DecodingContext context = getContext(in);
+		Message result = context == null ? Registry.getCurrentRegistry()
+				.createMessage(urn, content) : context.createMessage(urn,
+				content);
 		return result;
 	}
 
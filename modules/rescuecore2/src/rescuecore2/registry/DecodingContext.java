@@ -0,0 +1,93 @@
+package rescuecore2.registry;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.io.InputStream;
+import java.io.IOException;
+
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+import rescuecore2.worldmodel.Property;
+import rescuecore2.messages.Message;
+import rescuecore2.log.Logger;
+
+/**
+   A read-only view of a Registry for decoding. The factories of the registry and all of its parents are copied into single tables when the context is built, so lookups do not lock or walk the parent chain. A context becomes out of date when a factory is registered with any registry; use {@link Registry#getDecodingContext()} to get a current one.
+ */
+public final class DecodingContext {
+    private final Registry registry;
+    private final int generation;
+    private final Map<String, EntityFactory> entityFactories;
+    private final Map<String, PropertyFactory> propertyFactories;
+    private final Map<String, MessageFactory> messageFactories;
+
+    DecodingContext(Registry registry, int generation) {
+        this.registry = registry;
+        this.generation = generation;
+        entityFactories = new HashMap<String, EntityFactory>();
+        propertyFactories = new HashMap<String, PropertyFactory>();
+        messageFactories = new HashMap<String, MessageFactory>();
+        registry.copyFactories(entityFactories, propertyFactories, messageFactories);
+    }
+
+    /**
+       Get the registry this context was built from.
+       @return The registry.
+    */
+    public Registry getRegistry() {
+        return registry;
+    }
+
+    /**
+       Find out if this context still matches its registry.
+       @return False if a factory has been registered with any registry since this context was built.
+    */
+    public boolean isCurrent() {
+        return generation == Registry.getGeneration();
+    }
+
+    /**
+       Create an entity from a urn. This behaves like {@link Registry#createEntity(String, EntityID)}.
+       @param urn The urn of the entity type to create.
+       @param id The EntityID of the Entity that will be created.
+       @return A new Entity object, or null if the urn is not recognised.
+    */
+    public Entity createEntity(String urn, EntityID id) {
+        EntityFactory factory = entityFactories.get(urn);
+        if (factory == null) {
+            Logger.warn(registry.getName() + ": Entity " + urn + " not recognised.");
+            return null;
+        }
+        return factory.makeEntity(urn, id);
+    }
+
+    /**
+       Create a property from a urn. This behaves like {@link Registry#createProperty(String)}.
+       @param urn The urn of the property type to create.
+       @return A new Property object, or null if the urn is not recognised.
+    */
+    public Property createProperty(String urn) {
+        PropertyFactory factory = propertyFactories.get(urn);
+        if (factory == null) {
+            Logger.warn(registry.getName() + ": Property " + urn + " not recognised.");
+            return null;
+        }
+        return factory.makeProperty(urn);
+    }
+
+    /**
+       Create a message from a urn. This behaves like {@link Registry#createMessage(String, InputStream)}.
+       @param urn The urn of the message type to create.
+       @param data An InputStream to read message data from.
+       @return A new Message object, or null if the urn is not recognised.
+       @throws IOException If there is a problem decoding the message.
+    */
+    public Message createMessage(String urn, InputStream data) throws IOException {
+        MessageFactory factory = messageFactories.get(urn);
+        if (factory == null) {
+            Logger.warn(registry.getName() + ": Message " + urn + " not recognised.");
+            return null;
+        }
+        return factory.makeMessage(urn, data);
+    }
+}
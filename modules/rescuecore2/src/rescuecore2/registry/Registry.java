@@ -4,6 +4,7 @@ import java.util.Map;
 import java.util.HashMap;
 import java.io.InputStream;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import rescuecore2.worldmodel.Entity;
 import rescuecore2.worldmodel.EntityID;
@@ -28,6 +29,9 @@ public final class Registry {
 		}
 	};
 
+	// Incremented whenever a factory is registered with any registry
+	private static final AtomicInteger GENERATION = new AtomicInteger();
+
 	static {
 		// Register the ControlMessageFactory
 		SYSTEM_REGISTRY
@@ -41,6 +45,8 @@ public final class Registry {
 	private final Registry parent;
 	private final String name;
 
+	private volatile DecodingContext decodingContext;
+
 	/**
 	 * Create a new Registry that uses the system registry as a parent.
 	 */
@@ -104,6 +110,46 @@ public final class Registry {
 		CURRENT_REGISTRY.set(r);
 	}
 
+	/**
+	 * Get a DecodingContext for this registry. The context is built the
+	 * first time it is needed and again after any factory is registered.
+	 * 
+	 * @return A current DecodingContext for this registry.
+	 */
+	public DecodingContext getDecodingContext() {
+		DecodingContext result = decodingContext;
+		if (result == null || !result.isCurrent()) {
+			result = new DecodingContext(this, GENERATION.get());
+			decodingContext = result;
+		}
+		return result;
+	}
+
+	static int getGeneration() {
+		return GENERATION.get();
+	}
+
+	/**
+	 * Copy the factories of this registry and its parents into some maps.
+	 * Factories in this registry replace those of its parents.
+	 */
+	void copyFactories(Map<String, EntityFactory> entities,
+			Map<String, PropertyFactory> properties,
+			Map<String, MessageFactory> messages) {
+		if (parent != null) {
+			parent.copyFactories(entities, properties, messages);
+		}
+		synchronized (entityFactories) {
+			entities.putAll(entityFactories);
+		}
+		synchronized (propertyFactories) {
+			properties.putAll(propertyFactories);
+		}
+		synchronized (messageFactories) {
+			messages.putAll(messageFactories);
+		}
+	}
+
 	@Override
 	public String toString() {
 		return getName();
@@ -154,6 +200,7 @@ public final class Registry {
 			}
 			entityFactories.put(urn, factory);
 		}
+		GENERATION.incrementAndGet();
 	}
 
 	/**
@@ -189,6 +236,7 @@ public final class Registry {
 			}
 			propertyFactories.put(urn, factory);
 		}
+		GENERATION.incrementAndGet();
 	}
 
 	/**
@@ -224,6 +272,7 @@ public final class Registry {
 			}
 			messageFactories.put(urn, factory);
 		}
+		GENERATION.incrementAndGet();
 	}
 
 	/**
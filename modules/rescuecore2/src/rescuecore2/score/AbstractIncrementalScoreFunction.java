@@ -0,0 +1,88 @@
+package rescuecore2.score;
+
+import rescuecore2.config.Config;
+import rescuecore2.worldmodel.WorldModel;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.Timestep;
+
+/**
+   Abstract base class for score functions that keep running totals over the entities in the world. Subclasses record the contribution of each entity; the totals are rebuilt from the whole world when needed and otherwise updated only for entities that change.
+   <p>
+   The score for the last timestep is remembered, so asking for it again for the same world and timestep is cheap. This happens when the score is displayed as well as recorded.
+   </p>
+ */
+public abstract class AbstractIncrementalScoreFunction extends AbstractScoreFunction implements IncrementalScoreFunction {
+    private WorldModel<? extends Entity> lastWorld;
+    private int lastTime;
+    private double lastScore;
+
+    /**
+       Construct an AbstractIncrementalScoreFunction.
+       @param name The name of this function.
+    */
+    protected AbstractIncrementalScoreFunction(String name) {
+        super(name);
+    }
+
+    @Override
+    public void initialise(WorldModel<? extends Entity> world, Config config) {
+        super.initialise(world, config);
+        lastWorld = null;
+    }
+
+    @Override
+    public double score(WorldModel<? extends Entity> world, Timestep timestep) {
+        if (world == lastWorld && timestep.getTime() == lastTime) {
+            return lastScore;
+        }
+        rebuild(world);
+        return remember(world, timestep);
+    }
+
+    @Override
+    public double updateScore(WorldModel<? extends Entity> world, Timestep timestep, ChangeSet changes) {
+        if (world == lastWorld && timestep.getTime() == lastTime) {
+            return lastScore;
+        }
+        if (world != lastWorld || timestep.getTime() != lastTime + 1) {
+            return score(world, timestep);
+        }
+        for (EntityID next : changes.getChangedEntities()) {
+            update(world, next);
+        }
+        for (EntityID next : changes.getDeletedEntities()) {
+            update(world, next);
+        }
+        return remember(world, timestep);
+    }
+
+    /**
+       Discard the running totals and recalculate them from every entity in the world.
+       @param world The world.
+    */
+    protected abstract void rebuild(WorldModel<? extends Entity> world);
+
+    /**
+       Update the running totals for an entity that has changed, been added or been removed.
+       @param world The world. This already contains the changes.
+       @param id The ID of the entity. The entity will not be in the world if it has been removed.
+    */
+    protected abstract void update(WorldModel<? extends Entity> world, EntityID id);
+
+    /**
+       Calculate the score from the running totals.
+       @param world The world.
+       @param timestep The timestep.
+       @return The score.
+    */
+    protected abstract double getScore(WorldModel<? extends Entity> world, Timestep timestep);
+
+    private double remember(WorldModel<? extends Entity> world, Timestep timestep) {
+        lastScore = getScore(world, timestep);
+        lastWorld = world;
+        lastTime = timestep.getTime();
+        return lastScore;
+    }
+}
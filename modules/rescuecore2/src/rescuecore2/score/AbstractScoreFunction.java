@@ -3,6 +3,8 @@ package rescuecore2.score;
 import rescuecore2.config.Config;
 import rescuecore2.worldmodel.WorldModel;
 import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.Timestep;
 
 /**
    Abstract base class for a score function.
@@ -32,6 +34,19 @@ public abstract class AbstractScoreFunction implements ScoreFunction {
     public void initialise(WorldModel<? extends Entity> world, Config config) {
     }
 
+    /**
+       Pass the changes made during a timestep to a child function if it can use them. Children that are not incremental are left alone; they examine the world when their score is requested.
+       @param child The child function.
+       @param world The state of the world at the end of the timestep.
+       @param timestep The timestep.
+       @param changes The changes made during the timestep.
+    */
+    protected static void updateChild(ScoreFunction child, WorldModel<? extends Entity> world, Timestep timestep, ChangeSet changes) {
+        if (child instanceof IncrementalScoreFunction) {
+            ((IncrementalScoreFunction)child).updateScore(world, timestep, changes);
+        }
+    }
+
     /**
        Change the name of this score function.
        @param newName The new name.
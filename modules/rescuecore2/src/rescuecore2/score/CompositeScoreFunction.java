@@ -3,6 +3,8 @@ package rescuecore2.score;
 import rescuecore2.config.Config;
 import rescuecore2.worldmodel.WorldModel;
 import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.Timestep;
 
 import java.util.Set;
 import java.util.HashSet;
@@ -10,9 +12,9 @@ import java.util.Collection;
 import java.util.Collections;
 
 /**
-   A score function that applies some function to the scores of a set of child score functions.
+   A score function that applies some function to the scores of a set of child score functions. Incremental updates are passed on to the children before the scores are combined.
  */
-public abstract class CompositeScoreFunction extends AbstractScoreFunction {
+public abstract class CompositeScoreFunction extends AbstractScoreFunction implements IncrementalScoreFunction {
     /** The child score functions. */
     protected Set<ScoreFunction> children;
 
@@ -108,6 +110,14 @@ public abstract class CompositeScoreFunction extends AbstractScoreFunction {
         }
     }
 
+    @Override
+    public double updateScore(WorldModel<? extends Entity> world, Timestep timestep, ChangeSet changes) {
+        for (ScoreFunction next : children) {
+            updateChild(next, world, timestep, changes);
+        }
+        return score(world, timestep);
+    }
+
     /**
        Get all the child functions.
        @return All child functions.
@@ -3,12 +3,13 @@ package rescuecore2.score;
 import rescuecore2.config.Config;
 import rescuecore2.worldmodel.WorldModel;
 import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.ChangeSet;
 import rescuecore2.Timestep;
 
 /**
-   A score function that applies some function to the score of a child score function.
+   A score function that applies some function to the score of a child score function. Incremental updates are passed on to the child.
  */
-public abstract class DelegatingScoreFunction extends AbstractScoreFunction {
+public abstract class DelegatingScoreFunction extends AbstractScoreFunction implements IncrementalScoreFunction {
     /** The child score function. */
     protected ScoreFunction child;
 
@@ -32,6 +33,12 @@ public abstract class DelegatingScoreFunction extends AbstractScoreFunction {
         return child.score(world, timestep);
     }
 
+    @Override
+    public double updateScore(WorldModel<? extends Entity> world, Timestep timestep, ChangeSet changes) {
+        updateChild(child, world, timestep, changes);
+        return score(world, timestep);
+    }
+
     /**
        Get the child function.
        @return The child function.
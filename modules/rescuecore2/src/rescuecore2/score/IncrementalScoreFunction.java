@@ -0,0 +1,20 @@
+package rescuecore2.score;
+
+import rescuecore2.worldmodel.WorldModel;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.Timestep;
+
+/**
+   A score function that can keep its score up to date from the changes made during each timestep instead of examining the whole world.
+ */
+public interface IncrementalScoreFunction extends ScoreFunction {
+    /**
+       Calculate the score for a timestep from the changes made during it. If this function has not seen the previous timestep for this world then the score is calculated from scratch.
+       @param world The state of the world at the end of the timestep. The changes must already have been merged.
+       @param timestep The record of perception, commands and changes for the timestep.
+       @param changes The changes made to the world during the timestep.
+       @return The score for this timestep. This is the same as {@link #score(WorldModel, Timestep)} would return.
+     */
+    double updateScore(WorldModel<? extends Entity> world, Timestep timestep, ChangeSet changes);
+}
@@ -168,6 +168,16 @@ public class ChangeSet {
        @throws IOException If there is a problem.
     */
     public void write(OutputStream out) throws IOException {
+        write(out, null);
+    }
+
+    /**
+       Write this ChangeSet to a stream, taking property encodings from a cache where possible. The output is the same as {@link #write(OutputStream)}.
+       @param out The stream to write to.
+       @param cache The cache of encoded properties. If this is null then every property is encoded.
+       @throws IOException If there is a problem.
+    */
+    public void write(OutputStream out, EncodedPropertyCache cache) throws IOException {
         // Number of entity IDs
         writeInt32(changes.size(), out);
         for (Map.Entry<EntityID, Map<String, Property>> next : changes.entrySet()) {
@@ -178,7 +188,12 @@ public class ChangeSet {
             writeString(getEntityURN(id), out);
             writeInt32(props.size(), out);
             for (Property prop : props) {
-                writeProperty(prop, out);
+                if (cache == null) {
+                    writeProperty(prop, out);
+                }
+                else {
+                    out.write(cache.getEncoding(id, prop));
+                }
             }
         }
         writeInt32(deleted.size(), out);
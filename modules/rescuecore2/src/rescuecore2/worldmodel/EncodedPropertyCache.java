@@ -0,0 +1,162 @@
+package rescuecore2.worldmodel;
+
+import static rescuecore2.misc.EncodingTools.writeProperty;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rescuecore2.misc.geometry.Point2D;
+
+/**
+   A cache of encoded properties. When many agents can see the same entity in a timestep the kernel sends each of them the same property values; this cache lets each value be encoded once and the bytes copied into every message that needs them.
+   <p>
+   Encodings are looked up by entity ID, property URN and property value, so properties that have been rounded or otherwise changed before being sent are encoded separately. Only values that can be compared cheaply are cached: numbers, booleans, strings, entity IDs, points, int arrays and lists of entity IDs. Anything else is encoded every time. The cache is safe for use by several threads. A new cache should be used for each timestep so that it does not grow without bound.
+   </p>
+ */
+public class EncodedPropertyCache {
+    // Stands in for an undefined property
+    private static final Object UNDEFINED = new Object();
+
+    private ConcurrentMap<EntityID, ConcurrentMap<String, ConcurrentMap<Object, byte[]>>> cache;
+    private AtomicLong hits;
+    private AtomicLong misses;
+
+    /**
+       Construct an empty EncodedPropertyCache.
+    */
+    public EncodedPropertyCache() {
+        cache = new ConcurrentHashMap<EntityID, ConcurrentMap<String, ConcurrentMap<Object, byte[]>>>();
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+    }
+
+    /**
+       Get the encoding of a property, as written by {@link rescuecore2.misc.EncodingTools#writeProperty(Property, java.io.OutputStream)}. The returned array is shared and must not be modified.
+       @param id The ID of the entity that owns the property.
+       @param p The property to encode.
+       @return The encoded property.
+       @throws IOException If the property cannot be encoded.
+    */
+    public byte[] getEncoding(EntityID id, Property p) throws IOException {
+        Object value = valueOf(p);
+        if (value == null) {
+            misses.incrementAndGet();
+            return encode(p);
+        }
+        ConcurrentMap<String, ConcurrentMap<Object, byte[]>> properties = cache.get(id);
+        if (properties == null) {
+            properties = new ConcurrentHashMap<String, ConcurrentMap<Object, byte[]>>();
+            ConcurrentMap<String, ConcurrentMap<Object, byte[]>> existing = cache.putIfAbsent(id, properties);
+            if (existing != null) {
+                properties = existing;
+            }
+        }
+        ConcurrentMap<Object, byte[]> values = properties.get(p.getURN());
+        if (values == null) {
+            values = new ConcurrentHashMap<Object, byte[]>();
+            ConcurrentMap<Object, byte[]> existing = properties.putIfAbsent(p.getURN(), values);
+            if (existing != null) {
+                values = existing;
+            }
+        }
+        byte[] result = values.get(value);
+        if (result == null) {
+            misses.incrementAndGet();
+            result = encode(p);
+            values.put(copyOf(value), result);
+        }
+        else {
+            hits.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+       Get the number of properties whose encoding was found in the cache.
+       @return The number of cache hits.
+    */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+       Get the number of properties that had to be encoded.
+       @return The number of cache misses.
+    */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static byte[] encode(Property p) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeProperty(p, out);
+        return out.toByteArray();
+    }
+
+    private static Object valueOf(Property p) {
+        if (!p.isDefined()) {
+            return UNDEFINED;
+        }
+        Object value = p.getValue();
+        if (value instanceof Number
+            || value instanceof Boolean
+            || value instanceof String
+            || value instanceof EntityID
+            || value instanceof Point2D) {
+            return value;
+        }
+        if (value instanceof int[]) {
+            return new IntArrayKey((int[])value);
+        }
+        if (value instanceof List && isIDList((List<?>)value)) {
+            return value;
+        }
+        return null;
+    }
+
+    // Values come from the property itself, which may change after the property has been sent
+    private static Object copyOf(Object value) {
+        if (value instanceof IntArrayKey) {
+            return new IntArrayKey(((IntArrayKey)value).data.clone());
+        }
+        if (value instanceof List) {
+            return new ArrayList<Object>((List<?>)value);
+        }
+        return value;
+    }
+
+    private static boolean isIDList(List<?> list) {
+        for (Object next : list) {
+            if (!(next instanceof EntityID)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class IntArrayKey {
+        private final int[] data;
+        private final int hash;
+
+        IntArrayKey(int[] data) {
+            this.data = data;
+            this.hash = Arrays.hashCode(data);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IntArrayKey && Arrays.equals(data, ((IntArrayKey)o).data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package rescuecore2.log;
+
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import rescuecore2.config.Config;
+import rescuecore2.messages.Command;
+import rescuecore2.registry.Registry;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.DefaultWorldModel;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+
+public class AsyncLogWriterTest {
+    private static final int TIMESTEPS = 50;
+    private static final int AGENTS = 5;
+    // Small enough that callers wait for the writer and some records are larger than the buffer
+    private static final int QUEUE_SIZE = 2;
+    private static final int BUFFER_SIZE = 64;
+    private static final long TIMEOUT = 10000;
+    private static final int ATTEMPTS = 20;
+
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        file = File.createTempFile("async", ".log");
+    }
+
+    @After
+    public void cleanup() {
+        file.delete();
+    }
+
+    @Test
+    public void testWrittenLogCanBeRead() throws IOException, LogException {
+        AsyncLogWriter writer = new AsyncLogWriter(file, QUEUE_SIZE, BUFFER_SIZE, AsyncLogWriter.SyncPolicy.CLOSE);
+        Config config = new Config();
+        config.setValue("test.key", "test value");
+        writer.writeRecord(new StartLogRecord());
+        writer.writeRecord(new InitialConditionsRecord(new DefaultWorldModel<Entity>(Entity.class)));
+        writer.writeRecord(new ConfigRecord(config));
+        for (int time = 1; time <= TIMESTEPS; ++time) {
+            for (int agent = 1; agent <= AGENTS; ++agent) {
+                writer.writeRecord(new PerceptionRecord(time, new EntityID(agent), new ChangeSet(), new ArrayList<Command>()));
+            }
+            writer.writeRecord(new CommandsRecord(time, new ArrayList<Command>()));
+            writer.writeRecord(new UpdatesRecord(time, new ChangeSet()));
+        }
+        writer.writeRecord(new EndLogRecord());
+        writer.close();
+        // Start, initial conditions, config and end plus the records for each timestep
+        assertEquals(4 + TIMESTEPS * (AGENTS + 2), writer.getRecordsWritten());
+        assertEquals(file.length(), writer.getBytesWritten());
+        LogReader reader = new FileLogReader(file, Registry.SYSTEM_REGISTRY);
+        assertEquals(TIMESTEPS, reader.getMaxTimestep());
+        assertEquals("test value", reader.getConfig().getValue("test.key"));
+        for (int time = 1; time <= TIMESTEPS; ++time) {
+            assertEquals(AGENTS, reader.getEntitiesWithUpdates(time).size());
+            for (int agent = 1; agent <= AGENTS; ++agent) {
+                PerceptionRecord record = reader.getPerception(time, new EntityID(agent));
+                assertNotNull(record);
+                assertEquals(time, record.getTime());
+            }
+            assertEquals(time, reader.getCommands(time).getTime());
+            assertEquals(time, reader.getUpdates(time).getTime());
+        }
+        assertNull(reader.getUpdates(TIMESTEPS + 1));
+    }
+
+    @Test(timeout = TIMEOUT)
+    public void testInterruptedWriterDoesNotBlock() throws Exception {
+        for (int i = 0; i < ATTEMPTS; ++i) {
+            final AsyncLogWriter writer = new AsyncLogWriter(file, 1, BUFFER_SIZE, AsyncLogWriter.SyncPolicy.NONE);
+            Thread writerThread = findWriterThread();
+            // Keep writing until the writer fails so that records are queued while it stops
+            Thread producer = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int time = 1; true; ++time) {
+                                writer.writeRecord(new UpdatesRecord(time, new ChangeSet()));
+                            }
+                        }
+                        catch (LogException e) {
+                            // Expected
+                        }
+                    }
+                };
+            producer.start();
+            writerThread.interrupt();
+            producer.join();
+            writer.close();
+            writerThread.join();
+        }
+    }
+
+    private Thread findWriterThread() {
+        String name = "Log writer: " + file.getName();
+        for (Thread next : Thread.getAllStackTraces().keySet()) {
+            if (name.equals(next.getName())) {
+                return next;
+            }
+        }
+        throw new IllegalStateException("No thread called " + name);
+    }
+}
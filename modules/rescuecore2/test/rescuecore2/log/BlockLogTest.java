@@ -0,0 +1,165 @@
+package rescuecore2.log;
+
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+import rescuecore2.config.Config;
+import rescuecore2.messages.Command;
+import rescuecore2.registry.Registry;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.DefaultWorldModel;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+
+public class BlockLogTest {
+    private static final int TIMESTEPS = 20;
+    private static final int AGENTS = 3;
+    // Small enough to spread the log over many blocks
+    private static final int BLOCK_SIZE = 64;
+
+    private File streamFile;
+    private File blockFile;
+    private File convertedFile;
+
+    @Before
+    public void setup() throws IOException, LogException {
+        streamFile = File.createTempFile("stream", ".log");
+        blockFile = File.createTempFile("block", ".log");
+        convertedFile = File.createTempFile("converted", ".log");
+        writeLog(new FileLogWriter(streamFile));
+        writeLog(new BlockLogWriter(blockFile, BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION));
+        InputStream in = new BufferedInputStream(new FileInputStream(streamFile));
+        try {
+            LogTools.convert(in, new BlockLogWriter(convertedFile, BLOCK_SIZE, Deflater.BEST_SPEED));
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    @After
+    public void cleanup() {
+        streamFile.delete();
+        blockFile.delete();
+        convertedFile.delete();
+    }
+
+    @Test
+    public void testIsBlockLog() throws IOException {
+        assertFalse(BlockLogReader.isBlockLog(streamFile));
+        assertTrue(BlockLogReader.isBlockLog(blockFile));
+        assertTrue(BlockLogReader.isBlockLog(convertedFile));
+    }
+
+    @Test
+    public void testOpenLog() throws IOException, LogException {
+        assertTrue(LogTools.openLog(streamFile.getPath(), Registry.SYSTEM_REGISTRY) instanceof FileLogReader);
+        assertTrue(LogTools.openLog(blockFile.getPath(), Registry.SYSTEM_REGISTRY) instanceof BlockLogReader);
+    }
+
+    @Test
+    public void testWrittenLogMatchesFileLog() throws IOException, LogException {
+        compare(new FileLogReader(streamFile, Registry.SYSTEM_REGISTRY), new BlockLogReader(blockFile, Registry.SYSTEM_REGISTRY));
+    }
+
+    @Test
+    public void testConvertedLogMatchesFileLog() throws IOException, LogException {
+        // A single cached block forces blocks to be reread
+        compare(new FileLogReader(streamFile, Registry.SYSTEM_REGISTRY), new BlockLogReader(convertedFile, Registry.SYSTEM_REGISTRY, 1));
+    }
+
+    @Test(expected = LogException.class)
+    public void testUnclosedLog() throws IOException, LogException {
+        BlockLogWriter writer = new BlockLogWriter(blockFile, BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+        writer.writeRecord(new StartLogRecord());
+        new BlockLogReader(blockFile, Registry.SYSTEM_REGISTRY);
+    }
+
+    @Test
+    public void testRecoverLogWithoutFooter() throws IOException, LogException {
+        RandomAccessFile file = new RandomAccessFile(blockFile, "rw");
+        try {
+            file.seek(file.length() - BlockLogWriter.TRAILER_SIZE);
+            file.setLength(file.readLong());
+        }
+        finally {
+            file.close();
+        }
+        compare(new FileLogReader(streamFile, Registry.SYSTEM_REGISTRY), new BlockLogReader(blockFile, Registry.SYSTEM_REGISTRY));
+    }
+
+    @Test
+    public void testRecoverTruncatedLog() throws IOException, LogException {
+        RandomAccessFile file = new RandomAccessFile(blockFile, "rw");
+        try {
+            file.setLength(file.length() / 2);
+        }
+        finally {
+            file.close();
+        }
+        LogReader reader = new BlockLogReader(blockFile, Registry.SYSTEM_REGISTRY);
+        int max = reader.getMaxTimestep();
+        assertTrue(max > 0);
+        assertTrue(max < TIMESTEPS);
+        assertEquals("test value", reader.getConfig().getValue("test.key"));
+        assertEquals(max, reader.getUpdates(max).getTime());
+        assertNull(reader.getUpdates(max + 1));
+    }
+
+    private void writeLog(LogWriter writer) throws LogException {
+        Config config = new Config();
+        config.setValue("test.key", "test value");
+        writer.writeRecord(new StartLogRecord());
+        writer.writeRecord(new InitialConditionsRecord(new DefaultWorldModel<Entity>(Entity.class)));
+        writer.writeRecord(new ConfigRecord(config));
+        for (int time = 1; time <= TIMESTEPS; ++time) {
+            for (int agent = 1; agent <= AGENTS; ++agent) {
+                writer.writeRecord(new PerceptionRecord(time, new EntityID(agent), new ChangeSet(), new ArrayList<Command>()));
+            }
+            writer.writeRecord(new CommandsRecord(time, new ArrayList<Command>()));
+            writer.writeRecord(new UpdatesRecord(time, new ChangeSet()));
+        }
+        writer.writeRecord(new EndLogRecord());
+        writer.close();
+    }
+
+    private void compare(LogReader expected, LogReader actual) throws LogException {
+        assertEquals(TIMESTEPS, actual.getMaxTimestep());
+        assertEquals(expected.getMaxTimestep(), actual.getMaxTimestep());
+        assertEquals("test value", actual.getConfig().getValue("test.key"));
+        assertEquals(0, actual.getWorldModel(0).getAllEntities().size());
+        for (int time = 1; time <= TIMESTEPS; ++time) {
+            Set<EntityID> agents = new HashSet<EntityID>(actual.getEntitiesWithUpdates(time));
+            assertEquals(expected.getEntitiesWithUpdates(time), agents);
+            assertEquals(AGENTS, agents.size());
+            for (EntityID next : agents) {
+                PerceptionRecord record = actual.getPerception(time, next);
+                assertEquals(time, record.getTime());
+                assertEquals(next, record.getEntityID());
+            }
+            assertEquals(time, actual.getCommands(time).getTime());
+            assertEquals(time, actual.getUpdates(time).getTime());
+            assertNotNull(actual.getWorldModel(time));
+        }
+        assertNull(actual.getCommands(TIMESTEPS + 1));
+        assertNull(actual.getUpdates(TIMESTEPS + 1));
+        assertNull(actual.getPerception(TIMESTEPS + 1, new EntityID(1)));
+    }
+}
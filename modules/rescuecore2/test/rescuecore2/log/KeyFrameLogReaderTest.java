@@ -0,0 +1,180 @@
+package rescuecore2.log;
+
+import org.junit.Test;
+import org.junit.Before;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import rescuecore2.config.Config;
+import rescuecore2.registry.Registry;
+import rescuecore2.worldmodel.AbstractEntity;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.DefaultWorldModel;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+import rescuecore2.worldmodel.Property;
+import rescuecore2.worldmodel.WorldModel;
+import rescuecore2.worldmodel.properties.IntProperty;
+
+public class KeyFrameLogReaderTest {
+    private static final int TIMESTEPS = 100;
+    private static final int ENTITIES = 10;
+    private static final String VALUE_URN = "urn:rescuecore2:test:value";
+
+    private TestLogReader reader;
+
+    @Before
+    public void setup() {
+        reader = new TestLogReader();
+    }
+
+    @Test
+    public void testRandomAccess() throws LogException {
+        int[] times = {TIMESTEPS, 0, 57, 3, 58, 56, 99, 1, 32, 31, 33, TIMESTEPS};
+        for (int time : times) {
+            check(reader.getWorldModel(time), time);
+        }
+    }
+
+    @Test
+    public void testEarlierFramesAreNotModified() throws LogException {
+        WorldModel<? extends Entity> first = reader.getWorldModel(10);
+        reader.getWorldModel(TIMESTEPS);
+        reader.getWorldModel(11);
+        check(first, 10);
+    }
+
+    @Test
+    public void testUnchangedEntitiesAreShared() throws LogException {
+        // Entity 7 changes at timestep 21 but not at 22
+        WorldModel<? extends Entity> a = reader.getWorldModel(21);
+        WorldModel<? extends Entity> b = reader.getWorldModel(22);
+        assertSame(a.getEntity(new EntityID(7)), b.getEntity(new EntityID(7)));
+    }
+
+    @Test
+    public void testBoundedCache() throws LogException {
+        reader.setCacheMemory(0);
+        for (int time = TIMESTEPS; time >= 0; --time) {
+            check(reader.getWorldModel(time), time);
+        }
+    }
+
+    @Test
+    public void testPrefetch() throws LogException {
+        reader.setPrefetch(true);
+        for (int time = 0; time <= TIMESTEPS; ++time) {
+            check(reader.getWorldModel(time), time);
+        }
+        for (int time = TIMESTEPS; time >= 0; --time) {
+            check(reader.getWorldModel(time), time);
+        }
+    }
+
+    private void check(WorldModel<? extends Entity> model, int time) {
+        assertEquals(ENTITIES, model.getAllEntities().size());
+        for (int i = 1; i <= ENTITIES; ++i) {
+            TestEntity e = (TestEntity)model.getEntity(new EntityID(i));
+            assertEquals(expectedValue(i, time), e.value.getValue().intValue());
+        }
+    }
+
+    // The value of entity i is the number of timesteps so far at which entity i changed
+    private static int expectedValue(int id, int time) {
+        int result = 0;
+        for (int t = 1; t <= time; ++t) {
+            if (changes(id, t)) {
+                ++result;
+            }
+        }
+        return result;
+    }
+
+    private static boolean changes(int id, int time) {
+        return time % id == 0 || (time % ENTITIES) + 1 == id;
+    }
+
+    private static class TestLogReader extends AbstractKeyFrameLogReader {
+        private Map<Integer, UpdatesRecord> updates;
+
+        TestLogReader() {
+            super(Registry.SYSTEM_REGISTRY);
+            maxTime = TIMESTEPS;
+            updates = new HashMap<Integer, UpdatesRecord>();
+            for (int time = 1; time <= TIMESTEPS; ++time) {
+                ChangeSet changes = new ChangeSet();
+                for (int i = 1; i <= ENTITIES; ++i) {
+                    if (changes(i, time)) {
+                        changes.addChange(new EntityID(i), TestEntity.URN, new IntProperty(VALUE_URN, expectedValue(i, time)));
+                    }
+                }
+                updates.put(time, new UpdatesRecord(time, changes));
+            }
+        }
+
+        @Override
+        protected WorldModel<? extends Entity> readInitialConditions() {
+            WorldModel<Entity> result = new DefaultWorldModel<Entity>(Entity.class);
+            for (int i = 1; i <= ENTITIES; ++i) {
+                result.addEntity(new TestEntity(new EntityID(i)));
+            }
+            return result;
+        }
+
+        @Override
+        public Config getConfig() {
+            return new Config();
+        }
+
+        @Override
+        public Set<EntityID> getEntitiesWithUpdates(int time) {
+            return null;
+        }
+
+        @Override
+        public PerceptionRecord getPerception(int time, EntityID entity) {
+            return null;
+        }
+
+        @Override
+        public CommandsRecord getCommands(int time) {
+            return null;
+        }
+
+        @Override
+        public UpdatesRecord getUpdates(int time) {
+            return updates.get(time);
+        }
+    }
+
+    private static class TestEntity extends AbstractEntity {
+        static final String URN = "urn:rescuecore2:test:entity";
+
+        private IntProperty value;
+
+        TestEntity(EntityID id) {
+            super(id);
+            value = new IntProperty(VALUE_URN, 0);
+            registerProperties(value);
+        }
+
+        @Override
+        public String getURN() {
+            return URN;
+        }
+
+        @Override
+        public Property getProperty(String urn) {
+            return VALUE_URN.equals(urn) ? value : null;
+        }
+
+        @Override
+        protected Entity copyImpl() {
+            return new TestEntity(getID());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package rescuecore2.messages.components;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import rescuecore2.worldmodel.AbstractEntity;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+
+public class EncodedEntityListTest {
+    private static final int COUNT = 10;
+
+    @Test
+    public void testSharedEntitiesMatchPlainEncoding() throws IOException {
+        List<Entity> shared = makeEntities(1, COUNT);
+        Entity agent = new TestEntity(new EntityID(COUNT + 1));
+        List<Entity> expected = new ArrayList<Entity>(shared);
+        expected.add(agent);
+        assertArrayEquals(encode(expected), encodeShared(shared, Collections.singleton(agent)));
+    }
+
+    @Test
+    public void testAgentEntityReplacesSharedEntity() throws IOException {
+        List<Entity> shared = makeEntities(1, COUNT);
+        // Replace the first, a middle and the last entity
+        List<Entity> agent = Arrays.<Entity>asList(new TestEntity(new EntityID(1)), new TestEntity(new EntityID(COUNT / 2)), new TestEntity(new EntityID(COUNT)));
+        List<Entity> expected = new ArrayList<Entity>();
+        for (Entity next : shared) {
+            int id = next.getID().getValue();
+            if (id != 1 && id != COUNT / 2 && id != COUNT) {
+                expected.add(next);
+            }
+        }
+        expected.addAll(agent);
+        assertArrayEquals(encode(expected), encodeShared(shared, agent));
+        EntityListComponent c = new EntityListComponent("test");
+        c.setEntities(new EncodedEntityList(shared), agent);
+        assertEquals(expected, c.getEntities());
+    }
+
+    @Test
+    public void testSharedListIsReusable() throws IOException {
+        EncodedEntityList list = new EncodedEntityList(makeEntities(1, COUNT));
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        assertEquals(COUNT - 1, list.writeTo(first, Collections.singleton(new EntityID(2))));
+        assertEquals(COUNT, list.writeTo(second, Collections.<EntityID>emptySet()));
+        assertEquals(list.getEncodedSize(), second.size());
+        assertTrue(first.size() < second.size());
+        assertTrue(list.contains(new EntityID(COUNT)));
+    }
+
+    private List<Entity> makeEntities(int first, int last) {
+        List<Entity> result = new ArrayList<Entity>();
+        for (int i = first; i <= last; ++i) {
+            result.add(new TestEntity(new EntityID(i)));
+        }
+        return result;
+    }
+
+    private byte[] encode(List<Entity> entities) throws IOException {
+        EntityListComponent c = new EntityListComponent("test", entities);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        c.write(out);
+        return out.toByteArray();
+    }
+
+    private byte[] encodeShared(List<Entity> shared, Collection<Entity> extra) throws IOException {
+        EntityListComponent c = new EntityListComponent("test");
+        c.setEntities(new EncodedEntityList(shared), extra);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        c.write(out);
+        return out.toByteArray();
+    }
+
+    private static class TestEntity extends AbstractEntity {
+        TestEntity(EntityID id) {
+            super(id);
+        }
+
+        @Override
+        public String getURN() {
+            return "urn:rescuecore2:test:entity";
+        }
+
+        @Override
+        protected Entity copyImpl() {
+            return new TestEntity(getID());
+        }
+    }
+}
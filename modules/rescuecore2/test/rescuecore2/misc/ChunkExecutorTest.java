@@ -0,0 +1,82 @@
+package rescuecore2.misc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ChunkExecutorTest {
+    private static final int COUNT = 1000;
+    private static final int THREADS = 3;
+
+    private ChunkExecutor executor;
+
+    @Before
+    public void setup() {
+        executor = new ChunkExecutor("Test", THREADS);
+    }
+
+    @After
+    public void cleanup() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testChunksInOrder() {
+        List<List<Integer>> chunks = executor.process(COUNT, new Indices());
+        assertTrue(chunks.size() > 1);
+        List<Integer> all = new ArrayList<Integer>();
+        for (List<Integer> next : chunks) {
+            all.addAll(next);
+        }
+        assertEquals(COUNT, all.size());
+        for (int i = 0; i < COUNT; ++i) {
+            assertEquals(i, all.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testSingleThread() {
+        ChunkExecutor single = new ChunkExecutor("Test", 1);
+        List<List<Integer>> chunks = single.process(COUNT, new Indices());
+        assertEquals(1, chunks.size());
+        assertEquals(COUNT, chunks.get(0).size());
+        single.shutdown();
+    }
+
+    @Test
+    public void testEmpty() {
+        List<List<Integer>> chunks = executor.process(0, new Indices());
+        assertEquals(1, chunks.size());
+        assertTrue(chunks.get(0).isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExceptionRethrown() {
+        executor.process(COUNT, new ChunkExecutor.Chunk<Object>() {
+                @Override
+                public Object process(int first, int last) {
+                    if (last == COUNT) {
+                        throw new IllegalArgumentException("Last chunk");
+                    }
+                    return null;
+                }
+            });
+    }
+
+    private static class Indices implements ChunkExecutor.Chunk<List<Integer>> {
+        @Override
+        public List<Integer> process(int first, int last) {
+            List<Integer> result = new ArrayList<Integer>();
+            for (int i = first; i < last; ++i) {
+                result.add(i);
+            }
+            return result;
+        }
+    }
+}
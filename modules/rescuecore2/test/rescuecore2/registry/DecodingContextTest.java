@@ -0,0 +1,80 @@
+package rescuecore2.registry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import rescuecore2.connection.TestMessage;
+import rescuecore2.connection.TestMessageFactory;
+import rescuecore2.messages.Message;
+import rescuecore2.misc.DecodingInputStream;
+import rescuecore2.misc.EncodingTools;
+
+public class DecodingContextTest {
+    private static final String PARENT_ONLY = "parent only";
+    private static final String BOTH = "both";
+    private static final String LATE = "late";
+
+    private Registry parent;
+    private Registry child;
+    private Registry old;
+
+    @Before
+    public void setup() {
+        parent = new Registry("parent");
+        parent.registerMessageFactory(new TestMessageFactory("parent", PARENT_ONLY, BOTH));
+        child = new Registry("child", parent);
+        child.registerMessageFactory(new TestMessageFactory("child", BOTH));
+        old = Registry.getCurrentRegistry();
+        // Decoding should not depend on the thread's registry
+        Registry.setCurrentRegistry(new Registry("empty"));
+    }
+
+    @After
+    public void cleanup() {
+        Registry.setCurrentRegistry(old);
+    }
+
+    @Test
+    public void testParentFactories() throws IOException {
+        DecodingContext context = child.getDecodingContext();
+        assertEquals("child", decode(BOTH, context).getDescription());
+        assertEquals("parent", decode(PARENT_ONLY, context).getDescription());
+        assertEquals("parent", decode(BOTH, parent.getDecodingContext()).getDescription());
+    }
+
+    @Test
+    public void testRegistrationUpdatesContext() throws IOException {
+        DecodingContext context = child.getDecodingContext();
+        assertTrue(context.isCurrent());
+        assertSame(context, child.getDecodingContext());
+        assertNull(decode(LATE, context));
+        parent.registerMessageFactory(new TestMessageFactory("late", LATE));
+        assertFalse(context.isCurrent());
+        DecodingContext updated = child.getDecodingContext();
+        assertTrue(updated.isCurrent());
+        assertEquals("late", decode(LATE, updated).getDescription());
+    }
+
+    private TestMessage decode(String urn, DecodingContext context) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncodingTools.writeMessage(new TestMessage(urn, "", 1, 2, 3), out);
+        EncodingTools.writeMessage(new TestMessage(BOTH, "", 4), out);
+        DecodingInputStream in = new DecodingInputStream(out.toByteArray(), context);
+        Message result = EncodingTools.readMessage(in);
+        // The next message is still read correctly
+        Message next = EncodingTools.readMessage(in);
+        assertEquals(new TestMessage(BOTH, "", 4), next);
+        assertEquals(0, in.available());
+        return (TestMessage)result;
+    }
+}
@@ -0,0 +1,74 @@
+package rescuecore2.worldmodel;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import rescuecore2.worldmodel.properties.BooleanProperty;
+import rescuecore2.worldmodel.properties.EntityRefListProperty;
+import rescuecore2.worldmodel.properties.IntArrayProperty;
+import rescuecore2.worldmodel.properties.IntProperty;
+
+public class EncodedPropertyCacheTest {
+    private static final String ENTITY_URN = "test:entity";
+    private static final String HP_URN = "test:hp";
+    private static final String APEXES_URN = "test:apexes";
+    private static final String BLOCKADES_URN = "test:blockades";
+    private static final String FLAG_URN = "test:flag";
+
+    @Test
+    public void testCachedEncodingIsIdentical() throws IOException {
+        EncodedPropertyCache cache = new EncodedPropertyCache();
+        List<ChangeSet> changes = new ArrayList<ChangeSet>();
+        for (int i = 0; i < 3; ++i) {
+            changes.add(makeChanges(100));
+        }
+        // One agent sees a rounded value
+        changes.add(makeChanges(200));
+        for (ChangeSet next : changes) {
+            assertArrayEquals(encode(next, null), encode(next, cache));
+        }
+        // Every defined property is encoded once per value
+        assertEquals(5, cache.getMisses());
+        assertEquals(11, cache.getHits());
+    }
+
+    @Test
+    public void testChangedValueIsEncodedAgain() throws IOException {
+        EncodedPropertyCache cache = new EncodedPropertyCache();
+        EntityID id = new EntityID(1);
+        int[] apexes = {0, 0, 1, 1};
+        IntArrayProperty p = new IntArrayProperty(APEXES_URN, apexes);
+        byte[] before = cache.getEncoding(id, p);
+        p.setValue(new int[] {0, 0, 2, 2});
+        byte[] after = cache.getEncoding(id, p);
+        assertEquals(2, cache.getMisses());
+        assertEquals(false, Arrays.equals(before, after));
+        // The first value is still cached
+        assertArrayEquals(before, cache.getEncoding(id, new IntArrayProperty(APEXES_URN, apexes)));
+        assertEquals(1, cache.getHits());
+    }
+
+    private ChangeSet makeChanges(int hp) {
+        ChangeSet result = new ChangeSet();
+        EntityID id = new EntityID(1);
+        result.addChange(id, ENTITY_URN, new IntProperty(HP_URN, hp));
+        result.addChange(id, ENTITY_URN, new IntArrayProperty(APEXES_URN, new int[] {0, 0, 1, 1}));
+        result.addChange(id, ENTITY_URN, new EntityRefListProperty(BLOCKADES_URN, Arrays.asList(new EntityID(2), new EntityID(3))));
+        result.addChange(id, ENTITY_URN, new BooleanProperty(FLAG_URN));
+        result.entityDeleted(new EntityID(4));
+        return result;
+    }
+
+    private byte[] encode(ChangeSet changes, EncodedPropertyCache cache) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        changes.write(out, cache);
+        return out.toByteArray();
+    }
+}
@@ -2,9 +2,10 @@ package sample;
 
 import java.io.IOException;
 
+import rescuecore2.components.Component;
+import rescuecore2.components.ComponentFactory;
 import rescuecore2.components.ComponentLauncher;
 import rescuecore2.components.TCPComponentLauncher;
-import rescuecore2.components.ComponentConnectionException;
 import rescuecore2.connection.ConnectionException;
 import rescuecore2.registry.Registry;
 import rescuecore2.misc.CommandLineOptions;
@@ -25,12 +26,13 @@ public final class LaunchSampleAgents {
     private static final String POLICE_FORCE_FLAG = "-pf";
     private static final String AMBULANCE_TEAM_FLAG = "-at";
     private static final String CIVILIAN_FLAG = "-cv";
+    private static final String THREADS_FLAG = "-threads";
 
     private LaunchSampleAgents() {}
 
     /**
        Launch 'em!
-       @param args The following arguments are understood: -p <port>, -h <hostname>, -fb <fire brigades>, -pf <police forces>, -at <ambulance teams>
+       @param args The following arguments are understood: -p <port>, -h <hostname>, -fb <fire brigades>, -pf <police forces>, -at <ambulance teams>, -threads <number of agents to connect at once>
     */
     public static void main(String[] args) {
         Logger.setLogContext("sample");
@@ -45,6 +47,7 @@ public final class LaunchSampleAgents {
             int fb = -1;
             int pf = -1;
             int at = -1;
+            int threads = 1;
             // CHECKSTYLE:OFF:ModifiedControlVariable
             for (int i = 0; i < args.length; ++i) {
                 if (args[i].equals(FIRE_BRIGADE_FLAG)) {
@@ -56,13 +59,16 @@ public final class LaunchSampleAgents {
                 else if (args[i].equals(AMBULANCE_TEAM_FLAG)) {
                     at = Integer.parseInt(args[++i]);
                 }
+                else if (args[i].equals(THREADS_FLAG)) {
+                    threads = Integer.parseInt(args[++i]);
+                }
                 else {
                     Logger.warn("Unrecognised option: " + args[i]);
                 }
             }
             // CHECKSTYLE:ON:ModifiedControlVariable
             ComponentLauncher launcher = new TCPComponentLauncher(host, port, config);
-            connect(launcher, fb, pf, at, config);
+            connect(launcher, fb, pf, at, threads, config);
         }
         catch (IOException e) {
             Logger.error("Error connecting agents", e);
@@ -78,57 +84,46 @@ public final class LaunchSampleAgents {
         }
     }
 
-    private static void connect(ComponentLauncher launcher, int fb, int pf, int at, Config config) throws InterruptedException, ConnectionException {
-        int i = 0;
-        try {
-            while (fb-- != 0) {
-                Logger.info("Connecting fire brigade " + (i++) + "...");
-                launcher.connect(new SampleFireBrigade());
-                Logger.info("success");
-            }
-        }
-        catch (ComponentConnectionException e) {
-            Logger.info("failed: " + e.getMessage());
-        }
-        try {
-            while (pf-- != 0) {
-                Logger.info("Connecting police force " + (i++) + "...");
-                launcher.connect(new SamplePoliceForce());
-                Logger.info("success");
-            }
-        }
-        catch (ComponentConnectionException e) {
-            Logger.info("failed: " + e.getMessage());
-        }
-        try {
-            while (at-- != 0) {
-                Logger.info("Connecting ambulance team " + (i++) + "...");
-                launcher.connect(new SampleAmbulanceTeam());
-                Logger.info("success");
-            }
-        }
-        catch (ComponentConnectionException e) {
-            Logger.info("failed: " + e.getMessage());
-        }
-        try {
-            while (true) {
-                Logger.info("Connecting centre " + (i++) + "...");
-                launcher.connect(new SampleCentre());
-                Logger.info("success");
-            }
-        }
-        catch (ComponentConnectionException e) {
-            Logger.info("failed: " + e.getMessage());
-        }
-        try {
-            while (true) {
-                Logger.info("Connecting dummy agent " + (i++) + "...");
-                launcher.connect(new DummyAgent());
-                Logger.info("success");
-            }
-        }
-        catch (ComponentConnectionException e) {
-            Logger.info("failed: " + e.getMessage());
-        }
+    private static void connect(ComponentLauncher launcher, int fb, int pf, int at, int threads, Config config) throws InterruptedException, ConnectionException {
+        Logger.info("Connecting fire brigades...");
+        int n = launcher.connectAll(new ComponentFactory() {
+                @Override
+                public Component createComponent() {
+                    return new SampleFireBrigade();
+                }
+            }, fb, threads);
+        Logger.info("Connected " + n + " fire brigades");
+        Logger.info("Connecting police forces...");
+        n = launcher.connectAll(new ComponentFactory() {
+                @Override
+                public Component createComponent() {
+                    return new SamplePoliceForce();
+                }
+            }, pf, threads);
+        Logger.info("Connected " + n + " police forces");
+        Logger.info("Connecting ambulance teams...");
+        n = launcher.connectAll(new ComponentFactory() {
+                @Override
+                public Component createComponent() {
+                    return new SampleAmbulanceTeam();
+                }
+            }, at, threads);
+        Logger.info("Connected " + n + " ambulance teams");
+        Logger.info("Connecting centres...");
+        n = launcher.connectAll(new ComponentFactory() {
+                @Override
+                public Component createComponent() {
+                    return new SampleCentre();
+                }
+            }, -1, threads);
+        Logger.info("Connected " + n + " centres");
+        Logger.info("Connecting dummy agents...");
+        n = launcher.connectAll(new ComponentFactory() {
+                @Override
+                public Component createComponent() {
+                    return new DummyAgent();
+                }
+            }, -1, threads);
+        Logger.info("Connected " + n + " dummy agents");
     }
 }
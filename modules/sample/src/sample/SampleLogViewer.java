@@ -35,9 +35,9 @@ import javax.swing.event.ChangeListener;
 import rescuecore2.config.Config;
 import rescuecore2.config.ConfigException;
 import rescuecore2.log.CommandsRecord;
-import rescuecore2.log.FileLogReader;
 import rescuecore2.log.LogException;
 import rescuecore2.log.LogReader;
+import rescuecore2.log.LogTools;
 import rescuecore2.log.Logger;
 import rescuecore2.log.UpdatesRecord;
 import rescuecore2.messages.Command;
@@ -260,7 +260,7 @@ public class SampleLogViewer extends JPanel {
             }
             String name = args[0];
             processJarFiles(config);
-            LogReader reader = new FileLogReader(name, Registry.SYSTEM_REGISTRY);
+            LogReader reader = LogTools.openLog(name, Registry.SYSTEM_REGISTRY);
             SampleLogViewer viewer = new SampleLogViewer(reader, config);
             viewer.setPreferredSize(new Dimension(VIEWER_SIZE, VIEWER_SIZE));
             JFrame frame = new JFrame("Log viewer: " + name);
@@ -10,6 +10,7 @@ import rescuecore2.standard.entities.Refuge;
 import rescuecore2.standard.entities.StandardEntity;
 import rescuecore2.standard.entities.StandardEntityURN;
 import rescuecore2.standard.entities.StandardWorldModel;
+import rescuecore2.standard.entities.StaticMapLayer;
 import rescuecore2.standard.messages.AKClear;
 import rescuecore2.standard.messages.AKClearArea;
 import rescuecore2.standard.messages.AKExtinguish;
@@ -29,6 +30,9 @@ import rescuecore2.worldmodel.EntityID;
    @param <E> The subclass of StandardEntity that this agent wants to control.
 */
 public abstract class StandardAgent<E extends StandardEntity> extends AbstractAgent<StandardWorldModel, E> {
+    /** Config key for sharing static map geometry between all agents in the same JVM. */
+    public static final String SHARE_STATIC_MAP_KEY = "agent.static-map.shared";
+
     @Override
     public final String[] getRequestedEntityURNs() {
         EnumSet<StandardEntityURN> set = getRequestedEntityURNsEnum();
@@ -48,7 +52,11 @@ public abstract class StandardAgent<E extends StandardEntity> extends AbstractAg
 
     @Override
     protected StandardWorldModel createWorldModel() {
-        return new StandardWorldModel();
+        StandardWorldModel result = new StandardWorldModel();
+        if (config.getBooleanValue(SHARE_STATIC_MAP_KEY, false)) {
+            result.setStaticMapLayer(StaticMapLayer.getSharedLayer());
+        }
+        return result;
     }
 
     @Override
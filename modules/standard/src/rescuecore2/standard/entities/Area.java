@@ -312,6 +312,20 @@ public abstract class Area extends StandardEntity {
         return shape;
     }
 
+    /**
+       Use geometry from a static map layer instead of this area's own copy.
+       @param sharedEdges The shared edge list. This must be equal to the current edges.
+       @param sharedApexes The shared apex list.
+       @param sharedNeighbours The shared neighbour list.
+       @param sharedShape The shared shape.
+    */
+    void shareGeometry(List<Edge> sharedEdges, int[] sharedApexes, List<EntityID> sharedNeighbours, Shape sharedShape) {
+        edges.shareEdges(sharedEdges);
+        apexList = sharedApexes;
+        neighbours = sharedNeighbours;
+        shape = sharedShape;
+    }
+
     private class EdgesListener implements EntityListener {
         @Override
         public void propertyChanged(Entity e, Property p, Object oldValue, Object newValue) {
@@ -19,6 +19,8 @@ import rescuecore2.worldmodel.EntityID;
  */
 public class EdgeListProperty extends AbstractProperty {
     private List<Edge> edges;
+    // True if the edge list belongs to a StaticMapLayer and must be copied before it is changed
+    private boolean shared;
 
     /**
        Construct a new EdgeListProperty with no defined value.
@@ -80,6 +82,7 @@ public class EdgeListProperty extends AbstractProperty {
        @param newEdges The new edge list.
     */
     public void setEdges(List<Edge> newEdges) {
+        unshare();
         edges.clear();
         edges.addAll(newEdges);
         setDefined();
@@ -90,6 +93,7 @@ public class EdgeListProperty extends AbstractProperty {
        @param edge The edge to add.
      */
     public void addEdge(Edge edge) {
+        unshare();
         edges.add(edge);
         setDefined();
     }
@@ -98,6 +102,7 @@ public class EdgeListProperty extends AbstractProperty {
        Remove all edges from this list but keep it defined.
      */
     public void clearEdges() {
+        unshare();
         edges.clear();
     }
 
@@ -137,6 +142,7 @@ public class EdgeListProperty extends AbstractProperty {
     @Override
     public void read(InputStream in) throws IOException {
         int count = readInt32(in);
+        unshare();
         edges.clear();
         for (int i = 0; i < count; ++i) {
             int startX = readInt32(in);
@@ -175,6 +181,32 @@ public class EdgeListProperty extends AbstractProperty {
     }
     */
 
+    /**
+       Use a shared, unmodifiable edge list as the value of this property. The list will be copied if this property is changed.
+       @param sharedEdges The shared edge list.
+    */
+    void shareEdges(List<Edge> sharedEdges) {
+        edges = sharedEdges;
+        shared = true;
+        setDefined();
+    }
+
+    /**
+       Find out if this property is using a particular shared edge list.
+       @param sharedEdges The shared edge list.
+       @return True if this property's value is the given shared list.
+    */
+    boolean isSharing(List<Edge> sharedEdges) {
+        return shared && edges == sharedEdges;
+    }
+
+    private void unshare() {
+        if (shared) {
+            edges = new ArrayList<Edge>(edges);
+            shared = false;
+        }
+    }
+
     @Override
     public EdgeListProperty copy() {
         return new EdgeListProperty(this);
@@ -1,6 +1,8 @@
 package rescuecore2.standard.entities;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.ArrayList;
 import java.util.Set;
 import java.util.HashSet;
 import java.util.Map;
@@ -34,6 +36,9 @@ public class StandardWorldModel extends DefaultWorldModel<StandardEntity> {
     private Set<StandardEntity> unindexedEntities;
     private Map<Human, Rectangle> humanRectangles;
 
+    private StaticMapLayer staticLayer;
+    private StaticMapLayer.AreaIndex staticIndex;
+
     private boolean indexed;
     private int minX;
     private int maxX;
@@ -68,6 +73,30 @@ public class StandardWorldModel extends DefaultWorldModel<StandardEntity> {
         }
     }
 
+    /**
+       Share area geometry with other world models through a static map layer. Areas already in this world model and areas added later will use the layer's geometry, and areas that use shared geometry are found through the layer's spatial index instead of this world model's own index.
+       @param layer The layer to share geometry with, or null to stop adding areas to a layer.
+    */
+    public void setStaticMapLayer(StaticMapLayer layer) {
+        staticLayer = layer;
+        if (layer != null) {
+            for (StandardEntity next : this) {
+                if (next instanceof Area) {
+                    layer.share((Area)next);
+                }
+            }
+        }
+        indexed = false;
+    }
+
+    /**
+       Get the static map layer this world model shares area geometry with.
+       @return The static map layer, or null if geometry is not shared.
+    */
+    public StaticMapLayer getStaticMapLayer() {
+        return staticLayer;
+    }
+
     /**
        Tell this index to remember a certain class of entities.
        @param urns The type URNs to remember.
@@ -102,8 +131,28 @@ public class StandardWorldModel extends DefaultWorldModel<StandardEntity> {
         maxX = Integer.MIN_VALUE;
         minY = Integer.MAX_VALUE;
         maxY = Integer.MIN_VALUE;
+        staticIndex = null;
+        if (staticLayer != null) {
+            // Shared areas are found through the layer's index
+            List<Area> shared = new ArrayList<Area>();
+            for (StandardEntity next : this) {
+                if (next instanceof Area && staticLayer.isShared((Area)next)) {
+                    shared.add((Area)next);
+                }
+            }
+            staticIndex = staticLayer.getIndex(shared);
+            if (staticIndex.size() > 0) {
+                minX = staticIndex.getMinX();
+                maxX = staticIndex.getMaxX();
+                minY = staticIndex.getMinY();
+                maxY = staticIndex.getMaxY();
+            }
+        }
         // Add all rectangles
         for (StandardEntity next : this) {
+            if (staticIndex != null && next instanceof Area && staticLayer.isShared((Area)next)) {
+                continue;
+            }
             Rectangle r = makeRectangle(next);
             if (r != null) {
                 index.add(r, next.getID().getValue());
@@ -172,6 +221,17 @@ public class StandardWorldModel extends DefaultWorldModel<StandardEntity> {
             index();
         }
         final Collection<StandardEntity> result = new HashSet<StandardEntity>();
+        if (staticIndex != null) {
+            staticIndex.query(Math.min(x1, x2), Math.min(y1, y2), Math.max(x1, x2), Math.max(y1, y2), new StaticMapLayer.AreaVisitor() {
+                    @Override
+                    public void visit(EntityID id) {
+                        StandardEntity e = getEntity(id);
+                        if (e != null) {
+                            result.add(e);
+                        }
+                    }
+                });
+        }
         Rectangle r = new Rectangle(x1, y1, x2, y2);
         index.intersects(r, new IntProcedure() {
                 @Override
@@ -356,6 +416,9 @@ public class StandardWorldModel extends DefaultWorldModel<StandardEntity> {
     private class AddRemoveListener implements WorldModelListener<StandardEntity> {
         @Override
         public void entityAdded(WorldModel<? extends StandardEntity> model, StandardEntity e) {
+            if (staticLayer != null && e instanceof Area) {
+                staticLayer.share((Area)e);
+            }
             StandardEntityURN type = e.getStandardURN();
             if (storedTypes.containsKey(type)) {
                 Collection<StandardEntity> bucket = storedTypes.get(type);
@@ -0,0 +1,353 @@
+package rescuecore2.standard.entities;
+
+import java.awt.Polygon;
+import java.awt.Shape;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import rescuecore2.worldmodel.EntityID;
+
+/**
+   Immutable area geometry that can be shared by several world models in the same JVM. When many agents run in one process each of them receives its own copy of every road and building; a StaticMapLayer lets their world models share one copy of the edges, apexes, neighbours and shape of each area, along with a spatial index of the areas. Each world model keeps its own Area objects for the remaining, mutable properties.
+   <p>
+   An area only uses the shared geometry while its edges are unchanged: changing the edges of an area gives that area a private copy again. Callers must not modify the arrays, lists or shapes returned by a shared area.
+   </p>
+ */
+public final class StaticMapLayer {
+    private static final StaticMapLayer SHARED = new StaticMapLayer();
+
+    private final ConcurrentMap<EntityID, AreaGeometry> geometry;
+    private volatile AreaIndex index;
+
+    /**
+       Create an empty StaticMapLayer.
+    */
+    public StaticMapLayer() {
+        geometry = new ConcurrentHashMap<EntityID, AreaGeometry>();
+    }
+
+    /**
+       Get the layer shared by all components in this JVM.
+       @return The shared layer.
+    */
+    public static StaticMapLayer getSharedLayer() {
+        return SHARED;
+    }
+
+    /**
+       Make an area use the shared geometry for its ID. If this layer does not yet have geometry for the area then the area's current geometry is added. If the layer has different geometry for the area then the area is left alone.
+       @param area The area to share.
+       @return True if the area now uses shared geometry.
+    */
+    public boolean share(Area area) {
+        if (!area.isEdgesDefined()) {
+            return false;
+        }
+        AreaGeometry g = geometry.get(area.getID());
+        if (g == null) {
+            AreaGeometry created = new AreaGeometry(area.getID(), area.getEdges());
+            g = geometry.putIfAbsent(area.getID(), created);
+            if (g == null) {
+                g = created;
+            }
+        }
+        if (!g.matches(area.getEdges())) {
+            return false;
+        }
+        area.shareGeometry(g.edges, g.apexes, g.neighbours, g.shape);
+        return true;
+    }
+
+    /**
+       Find out if an area is using geometry from this layer.
+       @param area The area to check.
+       @return True if the area's edges are the shared edges for its ID.
+    */
+    public boolean isShared(Area area) {
+        AreaGeometry g = geometry.get(area.getID());
+        return g != null && area.getEdgesProperty().isSharing(g.edges);
+    }
+
+    /**
+       Get a spatial index of a set of shared areas. The index is built once and reused for as long as callers ask for the same areas.
+       @param areas The areas to index. These should all be using shared geometry from this layer.
+       @return A spatial index of the areas.
+    */
+    public AreaIndex getIndex(Collection<? extends Area> areas) {
+        AreaIndex result = index;
+        if (result != null && result.covers(areas)) {
+            return result;
+        }
+        List<AreaGeometry> list = new ArrayList<AreaGeometry>(areas.size());
+        for (Area next : areas) {
+            AreaGeometry g = geometry.get(next.getID());
+            if (g != null && g.apexes.length > 0) {
+                list.add(g);
+            }
+        }
+        result = new AreaIndex(list);
+        index = result;
+        return result;
+    }
+
+    /**
+       Callback for spatial index queries.
+    */
+    public interface AreaVisitor {
+        /**
+           Visit an area found by a query.
+           @param id The ID of the area.
+        */
+        void visit(EntityID id);
+    }
+
+    /**
+       An immutable uniform grid index of area bounding boxes. This is safe to query from several threads at once.
+    */
+    public static final class AreaIndex {
+        private static final int MIN_CELLS = 1;
+
+        private final List<AreaGeometry> areas;
+        private final int minX;
+        private final int minY;
+        private final int maxX;
+        private final int maxY;
+        private final int columns;
+        private final int rows;
+        private final double cellWidth;
+        private final double cellHeight;
+        private final int[][] cells;
+
+        private AreaIndex(List<AreaGeometry> areas) {
+            this.areas = areas;
+            int x1 = Integer.MAX_VALUE;
+            int y1 = Integer.MAX_VALUE;
+            int x2 = Integer.MIN_VALUE;
+            int y2 = Integer.MIN_VALUE;
+            for (AreaGeometry next : areas) {
+                x1 = Math.min(x1, next.minX);
+                y1 = Math.min(y1, next.minY);
+                x2 = Math.max(x2, next.maxX);
+                y2 = Math.max(y2, next.maxY);
+            }
+            if (areas.isEmpty()) {
+                x1 = 0;
+                y1 = 0;
+                x2 = 0;
+                y2 = 0;
+            }
+            minX = x1;
+            minY = y1;
+            maxX = x2;
+            maxY = y2;
+            // Aim for about one area per cell
+            int side = Math.max(MIN_CELLS, (int)Math.sqrt(areas.size()));
+            columns = side;
+            rows = side;
+            cellWidth = Math.max(1.0, (double)(maxX - minX + 1) / columns);
+            cellHeight = Math.max(1.0, (double)(maxY - minY + 1) / rows);
+            int[] counts = new int[columns * rows];
+            for (AreaGeometry next : areas) {
+                for (int row = row(next.minY); row <= row(next.maxY); ++row) {
+                    for (int col = column(next.minX); col <= column(next.maxX); ++col) {
+                        ++counts[row * columns + col];
+                    }
+                }
+            }
+            cells = new int[columns * rows][];
+            for (int i = 0; i < cells.length; ++i) {
+                cells[i] = new int[counts[i]];
+                counts[i] = 0;
+            }
+            for (int i = 0; i < areas.size(); ++i) {
+                AreaGeometry next = areas.get(i);
+                for (int row = row(next.minY); row <= row(next.maxY); ++row) {
+                    for (int col = column(next.minX); col <= column(next.maxX); ++col) {
+                        int cell = row * columns + col;
+                        cells[cell][counts[cell]++] = i;
+                    }
+                }
+            }
+        }
+
+        /**
+           Find all areas whose bounding boxes intersect a rectangle.
+           @param x1 The minimum x coordinate.
+           @param y1 The minimum y coordinate.
+           @param x2 The maximum x coordinate.
+           @param y2 The maximum y coordinate.
+           @param visitor The visitor to call for each area found. Each area is visited once.
+        */
+        public void query(int x1, int y1, int x2, int y2, AreaVisitor visitor) {
+            if (areas.isEmpty() || x2 < minX || x1 > maxX || y2 < minY || y1 > maxY) {
+                return;
+            }
+            int firstColumn = column(Math.max(x1, minX));
+            int lastColumn = column(Math.min(x2, maxX));
+            int firstRow = row(Math.max(y1, minY));
+            int lastRow = row(Math.min(y2, maxY));
+            for (int row = firstRow; row <= lastRow; ++row) {
+                for (int col = firstColumn; col <= lastColumn; ++col) {
+                    for (int i : cells[row * columns + col]) {
+                        AreaGeometry next = areas.get(i);
+                        if (next.maxX < x1 || next.minX > x2 || next.maxY < y1 || next.minY > y2) {
+                            continue;
+                        }
+                        // Only report an area from the first cell of the query that it overlaps
+                        if (Math.max(firstColumn, column(next.minX)) != col || Math.max(firstRow, row(next.minY)) != row) {
+                            continue;
+                        }
+                        visitor.visit(next.id);
+                    }
+                }
+            }
+        }
+
+        /**
+           Get the minimum x coordinate of the indexed areas.
+           @return The minimum x coordinate.
+        */
+        public int getMinX() {
+            return minX;
+        }
+
+        /**
+           Get the minimum y coordinate of the indexed areas.
+           @return The minimum y coordinate.
+        */
+        public int getMinY() {
+            return minY;
+        }
+
+        /**
+           Get the maximum x coordinate of the indexed areas.
+           @return The maximum x coordinate.
+        */
+        public int getMaxX() {
+            return maxX;
+        }
+
+        /**
+           Get the maximum y coordinate of the indexed areas.
+           @return The maximum y coordinate.
+        */
+        public int getMaxY() {
+            return maxY;
+        }
+
+        /**
+           Get the number of indexed areas.
+           @return The number of areas.
+        */
+        public int size() {
+            return areas.size();
+        }
+
+        private boolean covers(Collection<? extends Area> candidates) {
+            int count = 0;
+            for (Area next : candidates) {
+                if (next.getApexList().length > 0) {
+                    ++count;
+                }
+            }
+            if (count != areas.size()) {
+                return false;
+            }
+            Set<EntityID> ids = new HashSet<EntityID>();
+            for (AreaGeometry next : areas) {
+                ids.add(next.id);
+            }
+            for (Area next : candidates) {
+                if (next.getApexList().length > 0 && !ids.contains(next.getID())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int column(int x) {
+            return Math.min(columns - 1, Math.max(0, (int)((x - minX) / cellWidth)));
+        }
+
+        private int row(int y) {
+            return Math.min(rows - 1, Math.max(0, (int)((y - minY) / cellHeight)));
+        }
+    }
+
+    private static final class AreaGeometry {
+        private final EntityID id;
+        private final List<Edge> edges;
+        private final int[] apexes;
+        private final List<EntityID> neighbours;
+        private final Shape shape;
+        private final int minX;
+        private final int minY;
+        private final int maxX;
+        private final int maxY;
+
+        AreaGeometry(EntityID id, List<Edge> original) {
+            this.id = id;
+            edges = Collections.unmodifiableList(new ArrayList<Edge>(original));
+            apexes = new int[edges.size() * 2];
+            List<EntityID> n = new ArrayList<EntityID>();
+            int[] xs = new int[edges.size()];
+            int[] ys = new int[edges.size()];
+            int x1 = Integer.MAX_VALUE;
+            int y1 = Integer.MAX_VALUE;
+            int x2 = Integer.MIN_VALUE;
+            int y2 = Integer.MIN_VALUE;
+            int i = 0;
+            for (Edge next : edges) {
+                apexes[i * 2] = next.getStartX();
+                apexes[i * 2 + 1] = next.getStartY();
+                xs[i] = next.getStartX();
+                ys[i] = next.getStartY();
+                x1 = Math.min(x1, xs[i]);
+                y1 = Math.min(y1, ys[i]);
+                x2 = Math.max(x2, xs[i]);
+                y2 = Math.max(y2, ys[i]);
+                if (next.isPassable()) {
+                    n.add(next.getNeighbour());
+                }
+                ++i;
+            }
+            neighbours = Collections.unmodifiableList(n);
+            shape = new Polygon(xs, ys, xs.length);
+            minX = x1;
+            minY = y1;
+            maxX = x2;
+            maxY = y2;
+        }
+
+        boolean matches(List<Edge> other) {
+            if (other == edges) {
+                return true;
+            }
+            if (other.size() != edges.size()) {
+                return false;
+            }
+            for (int i = 0; i < edges.size(); ++i) {
+                Edge a = edges.get(i);
+                Edge b = other.get(i);
+                if (a.getStartX() != b.getStartX()
+                    || a.getStartY() != b.getStartY()
+                    || a.getEndX() != b.getEndX()
+                    || a.getEndY() != b.getEndY()) {
+                    return false;
+                }
+                EntityID na = a.getNeighbour();
+                EntityID nb = b.getNeighbour();
+                if (na == null ? nb != null : !na.equals(nb)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -2,6 +2,9 @@ package rescuecore2.standard.kernel;
 
 import java.util.Set;
 import java.util.HashSet;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Collections;
 
 import java.util.regex.PatternSyntaxException;
 
@@ -10,6 +13,8 @@ import kernel.ComponentManager;
 import kernel.KernelException;
 
 import rescuecore2.config.Config;
+import rescuecore2.log.Logger;
+import rescuecore2.messages.components.EncodedEntityList;
 import rescuecore2.worldmodel.WorldModel;
 import rescuecore2.worldmodel.Entity;
 import rescuecore2.worldmodel.Property;
@@ -87,40 +92,36 @@ public class StandardAgentRegistrar implements AgentRegistrar {
         agentConfig.setIntValue(StandardConstants.AMBULANCE_CENTRE_COUNT_KEY, model.getEntitiesOfType(StandardEntityURN.AMBULANCE_CENTRE).size());
         agentConfig.setIntValue(StandardConstants.POLICE_FORCE_COUNT_KEY, model.getEntitiesOfType(StandardEntityURN.POLICE_FORCE).size());
         agentConfig.setIntValue(StandardConstants.POLICE_OFFICE_COUNT_KEY, model.getEntitiesOfType(StandardEntityURN.POLICE_OFFICE).size());
-        Set<Entity> initialEntities = new HashSet<Entity>();
+        // Everything except the agent's own entity is the same for every agent so encode it once
+        List<Entity> initialEntities = new ArrayList<Entity>();
         for (Entity e : world) {
             maybeAddInitialEntity(e, initialEntities);
         }
+        EncodedEntityList sharedEntities = new EncodedEntityList(initialEntities);
+        Logger.debug("Encoded " + sharedEntities.size() + " initial entities in " + sharedEntities.getEncodedSize() + " bytes");
+        String configSeed = config.getValue(Constants.RANDOM_SEED_KEY, "");
         for (Entity e : world) {
-        	   if (e instanceof FireBrigade
-                       || e instanceof FireStation
-                       || e instanceof AmbulanceTeam
-                       || e instanceof AmbulanceCentre
-                       || e instanceof PoliceForce
-                       || e instanceof PoliceOffice
-                       ) {
-                   Set<Entity> s = new HashSet<Entity>(initialEntities);
-                   s.remove(e);
-                   s.add(e);
-                   manager.registerAgentControlledEntity(e, s, agentConfig);
-               }
-               if(e instanceof Civilian){
-               	Config civilianConfig = new Config(agentConfig);
-               	Set<Entity> s = new HashSet<Entity>(initialEntities);
-                   s.remove(e);
-                   s.add(e);
-                   String configSeed = config.getValue(Constants.RANDOM_SEED_KEY, "");
-                   if(!configSeed.equals("")){
-                   	int seed = Integer.parseInt(configSeed)+e.getID().getValue();
-                   	civilianConfig.setValue(Constants.RANDOM_SEED_KEY,  seed+"");
-                   }
-                   manager.registerAgentControlledEntity(e, s, civilianConfig);
-               }
-
+            if (e instanceof FireBrigade
+                || e instanceof FireStation
+                || e instanceof AmbulanceTeam
+                || e instanceof AmbulanceCentre
+                || e instanceof PoliceForce
+                || e instanceof PoliceOffice) {
+                manager.registerAgentControlledEntity(e, sharedEntities, Collections.singleton(e), agentConfig);
+            }
+            if (e instanceof Civilian) {
+                Config civilianConfig = agentConfig;
+                if (!configSeed.equals("")) {
+                    civilianConfig = new Config(agentConfig);
+                    int seed = Integer.parseInt(configSeed) + e.getID().getValue();
+                    civilianConfig.setValue(Constants.RANDOM_SEED_KEY, seed + "");
+                }
+                manager.registerAgentControlledEntity(e, sharedEntities, Collections.singleton(e), civilianConfig);
+            }
         }
     }
 
-    private void maybeAddInitialEntity(Entity e, Set<Entity> initialEntities) {
+    private void maybeAddInitialEntity(Entity e, List<Entity> initialEntities) {
         if (e instanceof Road) {
             Road r = (Road)e.copy();
             filterAreaProperties(r);
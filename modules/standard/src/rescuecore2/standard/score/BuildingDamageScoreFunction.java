@@ -1,21 +1,23 @@
 package rescuecore2.standard.score;
 
-import rescuecore2.score.AbstractScoreFunction;
+import rescuecore2.score.AbstractIncrementalScoreFunction;
 import rescuecore2.config.Config;
 import rescuecore2.worldmodel.WorldModel;
 import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
 import rescuecore2.Timestep;
 
 import java.util.Map;
 import java.util.EnumMap;
+import java.util.HashMap;
 
 import rescuecore2.standard.entities.Building;
 import rescuecore2.standard.entities.StandardEntityConstants;
 
 /**
-   Score function that measures the amount of damage done to buildings by fire.
+   Score function that measures the amount of damage done to buildings by fire. The weighted area of buildings is totalled for each fieryness level and only changed buildings are moved between totals.
  */
-public class BuildingDamageScoreFunction extends AbstractScoreFunction {
+public class BuildingDamageScoreFunction extends AbstractIncrementalScoreFunction {
     private static final String HEATING_FACTOR = "score.standard.building-fire.heating";
     private static final String BURNING_FACTOR = "score.standard.building-fire.burning";
     private static final String INFERNO_FACTOR = "score.standard.building-fire.inferno";
@@ -26,9 +28,17 @@ public class BuildingDamageScoreFunction extends AbstractScoreFunction {
     private static final String BURNT_OUT_FACTOR = "score.standard.building-fire.burnt-out";
     private static final String ABSOLUTE_KEY = "score.standard.building-fire.absolute";
 
+    private static final StandardEntityConstants.Fieryness[] FIERYNESS = StandardEntityConstants.Fieryness.values();
+    // Buildings with no fieryness are counted as undamaged
+    private static final int UNDEFINED = FIERYNESS.length;
+
     private Map<StandardEntityConstants.Fieryness, Double> factors;
     private boolean absolute;
 
+    // Weighted area of the buildings at each fieryness level, indexed by ordinal
+    private long[] areas;
+    private Map<EntityID, Contribution> contributions;
+
     /**
        Construct a BuildingDamageScoreFunction.
     */
@@ -38,6 +48,7 @@ public class BuildingDamageScoreFunction extends AbstractScoreFunction {
 
     @Override
     public void initialise(WorldModel<? extends Entity> world, Config config) {
+        super.initialise(world, config);
         factors = new EnumMap<StandardEntityConstants.Fieryness, Double>(StandardEntityConstants.Fieryness.class);
         factors.put(StandardEntityConstants.Fieryness.UNBURNT, 1.0);
         factors.put(StandardEntityConstants.Fieryness.HEATING, config.getFloatValue(HEATING_FACTOR));
@@ -52,28 +63,34 @@ public class BuildingDamageScoreFunction extends AbstractScoreFunction {
     }
 
     @Override
-    public double score(WorldModel<? extends Entity> world, Timestep timestep) {
-        double sum = 0;
-        double max = 0;
+    protected void rebuild(WorldModel<? extends Entity> world) {
+        areas = new long[UNDEFINED + 1];
+        contributions = new HashMap<EntityID, Contribution>();
         for (Entity next : world) {
-            if (next instanceof Building) {
-                Building b = (Building)next;
-                if (!b.isTotalAreaDefined()) {
-                    continue;
-                }
-                int importance = b.isImportanceDefined() ? b.getImportance() : 1;
-                double area = b.getTotalArea() * importance;
-                StandardEntityConstants.Fieryness fire = b.getFierynessEnum();
-                double factor;
-                if (fire == null) {
-                    factor = 1;
-                }
-                else {
-                    factor = factors.get(fire);
-                }
-                sum += area * factor;
-                max += area;
-            }
+            add(next);
+        }
+    }
+
+    @Override
+    protected void update(WorldModel<? extends Entity> world, EntityID id) {
+        Contribution old = contributions.remove(id);
+        if (old != null) {
+            areas[old.level] -= old.area;
+        }
+        Entity e = world.getEntity(id);
+        if (e != null) {
+            add(e);
+        }
+    }
+
+    @Override
+    protected double getScore(WorldModel<? extends Entity> world, Timestep timestep) {
+        double sum = 0;
+        long max = 0;
+        for (int i = 0; i <= UNDEFINED; ++i) {
+            double factor = i == UNDEFINED ? 1 : factors.get(FIERYNESS[i]);
+            sum += areas[i] * factor;
+            max += areas[i];
         }
         if (absolute) {
             return sum;
@@ -82,4 +99,30 @@ public class BuildingDamageScoreFunction extends AbstractScoreFunction {
             return sum / max;
         }
     }
+
+    private void add(Entity e) {
+        if (!(e instanceof Building)) {
+            return;
+        }
+        Building b = (Building)e;
+        if (!b.isTotalAreaDefined()) {
+            return;
+        }
+        int importance = b.isImportanceDefined() ? b.getImportance() : 1;
+        long area = (long)b.getTotalArea() * importance;
+        StandardEntityConstants.Fieryness fire = b.getFierynessEnum();
+        int level = fire == null ? UNDEFINED : fire.ordinal();
+        areas[level] += area;
+        contributions.put(b.getID(), new Contribution(area, level));
+    }
+
+    private static final class Contribution {
+        private final long area;
+        private final int level;
+
+        Contribution(long area, int level) {
+            this.area = area;
+            this.level = level;
+        }
+    }
 }
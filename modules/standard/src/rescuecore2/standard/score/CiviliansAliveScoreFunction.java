@@ -1,17 +1,22 @@
 package rescuecore2.standard.score;
 
-import rescuecore2.score.AbstractScoreFunction;
-import rescuecore2.config.Config;
+import rescuecore2.score.AbstractIncrementalScoreFunction;
 import rescuecore2.worldmodel.WorldModel;
 import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
 import rescuecore2.Timestep;
 
+import java.util.Set;
+import java.util.HashSet;
+
 import rescuecore2.standard.entities.Civilian;
 
 /**
    Score function that measures the number of living civilians. One point per civilian still alive.
  */
-public class CiviliansAliveScoreFunction extends AbstractScoreFunction {
+public class CiviliansAliveScoreFunction extends AbstractIncrementalScoreFunction {
+    private Set<EntityID> alive;
+
     /**
        Construct a CiviliansAliveScoreFunction.
     */
@@ -20,20 +25,35 @@ public class CiviliansAliveScoreFunction extends AbstractScoreFunction {
     }
 
     @Override
-    public void initialise(WorldModel<? extends Entity> world, Config config) {
+    protected void rebuild(WorldModel<? extends Entity> world) {
+        alive = new HashSet<EntityID>();
+        for (Entity next : world) {
+            if (isAlive(next)) {
+                alive.add(next.getID());
+            }
+        }
     }
 
     @Override
-    public double score(WorldModel<? extends Entity> world, Timestep timestep) {
-        double sum = 0;
-        for (Entity next : world) {
-            if (next instanceof Civilian) {
-                Civilian c = (Civilian)next;
-                if (c.isHPDefined() && c.getHP() > 0) {
-                    ++sum;
-                }
-            }
+    protected void update(WorldModel<? extends Entity> world, EntityID id) {
+        if (isAlive(world.getEntity(id))) {
+            alive.add(id);
+        }
+        else {
+            alive.remove(id);
+        }
+    }
+
+    @Override
+    protected double getScore(WorldModel<? extends Entity> world, Timestep timestep) {
+        return alive.size();
+    }
+
+    private static boolean isAlive(Entity e) {
+        if (e instanceof Civilian) {
+            Civilian c = (Civilian)e;
+            return c.isHPDefined() && c.getHP() > 0;
         }
-        return sum;
+        return false;
     }
 }
@@ -1,10 +1,14 @@
 package rescuecore2.standard.score;
 
-import rescuecore2.score.AbstractScoreFunction;
+import rescuecore2.score.AbstractIncrementalScoreFunction;
 import rescuecore2.worldmodel.WorldModel;
 import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
 import rescuecore2.Timestep;
 
+import java.util.Map;
+import java.util.TreeMap;
+
 import rescuecore2.standard.entities.StandardWorldModel;
 import rescuecore2.standard.entities.Human;
 import rescuecore2.standard.entities.FireBrigade;
@@ -13,9 +17,12 @@ import rescuecore2.standard.entities.AmbulanceTeam;
 import rescuecore2.standard.misc.AgentPath;
 
 /**
-   A score function that measures the distance travelled by all agents.
+   A score function that measures the distance travelled by all agents. Paths are only recomputed for agents that have changed.
 */
-public class DistanceTravelledScoreFunction extends AbstractScoreFunction {
+public class DistanceTravelledScoreFunction extends AbstractIncrementalScoreFunction {
+    // Path length of each agent, sorted by ID so the total does not depend on hash order
+    private Map<Integer, Double> lengths;
+
     /**
        Construct a DistanceTravelledScoreFunction.
     */
@@ -24,22 +31,42 @@ public class DistanceTravelledScoreFunction extends AbstractScoreFunction {
     }
 
     @Override
-    public double score(WorldModel<? extends Entity> world, Timestep timestep) {
+    protected void rebuild(WorldModel<? extends Entity> world) {
         StandardWorldModel model = StandardWorldModel.createStandardWorldModel(world);
-        // Find out how far each agent moved
-        double sum = 0;
+        lengths = new TreeMap<Integer, Double>();
         for (Entity next : model) {
-            if (next instanceof FireBrigade
-                || next instanceof PoliceForce
-                || next instanceof AmbulanceTeam) {
-                Human h = (Human)next;
-                AgentPath path = AgentPath.computePath(h, model);
-                if (path != null) {
-                    sum += path.getLength();
-                }
-            }
+            add(next, model);
+        }
+    }
+
+    @Override
+    protected void update(WorldModel<? extends Entity> world, EntityID id) {
+        lengths.remove(id.getValue());
+        Entity e = world.getEntity(id);
+        if (e != null) {
+            add(e, StandardWorldModel.createStandardWorldModel(world));
+        }
+    }
+
+    @Override
+    protected double getScore(WorldModel<? extends Entity> world, Timestep timestep) {
+        double sum = 0;
+        for (double next : lengths.values()) {
+            sum += next;
         }
         System.out.println("Total distance travelled: " + sum);
         return sum;
     }
+
+    private void add(Entity e, StandardWorldModel model) {
+        // Find out how far each agent moved
+        if (e instanceof FireBrigade
+            || e instanceof PoliceForce
+            || e instanceof AmbulanceTeam) {
+            AgentPath path = AgentPath.computePath((Human)e, model);
+            if (path != null) {
+                lengths.put(e.getID().getValue(), path.getLength());
+            }
+        }
+    }
 }
@@ -1,22 +1,30 @@
 package rescuecore2.standard.score;
 
-import rescuecore2.score.AbstractScoreFunction;
+import rescuecore2.score.AbstractIncrementalScoreFunction;
 import rescuecore2.config.Config;
 import rescuecore2.worldmodel.WorldModel;
 import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
 import rescuecore2.Timestep;
 
+import java.util.Map;
+import java.util.HashMap;
+
 import rescuecore2.standard.entities.Civilian;
 
 /**
    Score function that measures the health of living civilians.
  */
-public class HealthScoreFunction extends AbstractScoreFunction {
+public class HealthScoreFunction extends AbstractIncrementalScoreFunction {
     private static final String ABSOLUTE_KEY = "score.standard.health.absolute";
     private static final double MAX = 10000;
 
     private boolean absolute;
 
+    // HP of each civilian; zero if undefined
+    private Map<EntityID, Integer> health;
+    private long sum;
+
     /**
        Construct a HealthScoreFunction.
     */
@@ -26,28 +34,48 @@ public class HealthScoreFunction extends AbstractScoreFunction {
 
     @Override
     public void initialise(WorldModel<? extends Entity> world, Config config) {
+        super.initialise(world, config);
         absolute = config.getBooleanValue(ABSOLUTE_KEY, false);
         setName(absolute ? "Civilian health (absolute)" : "Civilian health (proportion)");
     }
 
     @Override
-    public double score(WorldModel<? extends Entity> world, Timestep timestep) {
-        double sum = 0;
-        double max = 0;
+    protected void rebuild(WorldModel<? extends Entity> world) {
+        health = new HashMap<EntityID, Integer>();
+        sum = 0;
         for (Entity next : world) {
-            if (next instanceof Civilian) {
-                Civilian c = (Civilian)next;
-                if (c.isHPDefined()) {
-                    sum += c.getHP();
-                }
-                max += MAX;
-            }
+            add(next);
+        }
+    }
+
+    @Override
+    protected void update(WorldModel<? extends Entity> world, EntityID id) {
+        Integer old = health.remove(id);
+        if (old != null) {
+            sum -= old;
+        }
+        Entity e = world.getEntity(id);
+        if (e != null) {
+            add(e);
         }
+    }
+
+    @Override
+    protected double getScore(WorldModel<? extends Entity> world, Timestep timestep) {
         if (absolute) {
             return sum;
         }
         else {
-            return sum / max;
+            return sum / (health.size() * MAX);
+        }
+    }
+
+    private void add(Entity e) {
+        if (e instanceof Civilian) {
+            Civilian c = (Civilian)e;
+            int hp = c.isHPDefined() ? c.getHP() : 0;
+            health.put(c.getID(), hp);
+            sum += hp;
         }
     }
 }
@@ -3,52 +3,107 @@ package rescuecore2.standard.view;
 import java.awt.Graphics2D;
 import java.awt.Shape;
 import java.awt.Polygon;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Iterator;
 
+import rescuecore2.config.Config;
 import rescuecore2.misc.gui.ScreenTransform;
+import rescuecore2.view.RenderedObject;
+import rescuecore2.worldmodel.EntityID;
 
 import rescuecore2.standard.entities.Area;
 import rescuecore2.standard.entities.Edge;
+import rescuecore2.standard.entities.StandardEntity;
+
+import static rescuecore2.standard.view.StandardWorldModelViewer.STANDARD_VIEWER_PREFIX;
 
 /**
-   A view layer that renders areas.
+   A view layer that renders areas. Edges, and shapes if {@link #isShapeStatic()} returns true, are drawn once into an image that is reused until the view is zoomed or panned or the geometry of an area changes. Only areas that are on screen are drawn.
    @param <E> The subclass of Area that this layer knows how to draw.
  */
 public abstract class AreaLayer<E extends Area> extends StandardEntityViewLayer<E> {
+    /** Suffix of the config key that turns the static image cache on or off. */
+    public static final String CACHE_SUFFIX = "cache";
+
+    private static final int HASH_MULTIPLIER = 31;
+
+    private boolean cacheEnabled;
+    private long geometryVersion;
+    private BufferedImage staticImage;
+    private Rectangle2D staticBounds;
+    private long staticVersion;
+
     /**
        Construct an area view layer.
        @param clazz The subclass of Area this can render.
      */
     protected AreaLayer(Class<E> clazz) {
         super(clazz);
+        cacheEnabled = true;
+    }
+
+    @Override
+    public void initialise(Config config) {
+        super.initialise(config);
+        String cacheKey = STANDARD_VIEWER_PREFIX + "." + this.getClass().getSimpleName() + "." + CACHE_SUFFIX;
+        cacheEnabled = config.getBooleanValue(cacheKey, true);
+    }
+
+    @Override
+    public Collection<RenderedObject> render(Graphics2D g, ScreenTransform transform, int width, int height) {
+        synchronized (entities) {
+            List<E> visible = getVisibleAreas(getViewport(transform, width));
+            Collection<RenderedObject> result = new ArrayList<RenderedObject>(visible.size());
+            if (!cacheEnabled || width <= 0 || height <= 0) {
+                for (E next : visible) {
+                    result.add(new RenderedObject(next, render(next, g, transform)));
+                }
+                return result;
+            }
+            boolean shapeStatic = isShapeStatic();
+            for (E next : visible) {
+                Polygon shape = getScreenShape(next, transform);
+                if (shape != null && !shapeStatic) {
+                    paintShape(next, shape, g);
+                }
+                result.add(new RenderedObject(next, shape));
+            }
+            g.drawImage(getStaticImage(visible, g, transform, width, height), 0, 0, null);
+            return result;
+        }
     }
 
     @Override
     public Shape render(E area, Graphics2D g, ScreenTransform t) {
-        List<Edge> edges = area.getEdges();
-        if (edges.isEmpty()) {
+        Polygon shape = getScreenShape(area, t);
+        if (shape == null) {
             return null;
         }
-        int count = edges.size();
-        int[] xs = new int[count];
-        int[] ys = new int[count];
-        int i = 0;
-        for (Iterator<Edge> it = edges.iterator(); it.hasNext();) {
-            Edge e = it.next();
-            xs[i] = t.xToScreen(e.getStartX());
-            ys[i] = t.yToScreen(e.getStartY());
-            ++i;
-        }
-        Polygon shape = new Polygon(xs, ys, count);
         paintShape(area, shape, g);
-        for (Edge edge : edges) {
+        for (Edge edge : area.getEdges()) {
             paintEdge(edge, g, t);
         }
         return shape;
     }
 
+    @Override
+    protected boolean isInViewport(E area, Rectangle2D viewport) {
+        return area.getShape().getBounds2D().intersects(viewport);
+    }
+
+    /**
+       Find out whether {@link #paintShape} draws the same thing every timestep. If so the shapes are drawn into the cached image along with the edges. Subclasses that only fill shapes with a fixed colour should override this to return true.
+       @return True if the painted shape depends only on the area's geometry.
+    */
+    protected boolean isShapeStatic() {
+        return false;
+    }
+
     /**
        Paint an individual edge.
        @param e The edge to paint.
@@ -66,4 +121,104 @@ public abstract class AreaLayer<E extends Area> extends StandardEntityViewLayer<
     */
     protected void paintShape(E area, Polygon p, Graphics2D g) {
     }
+
+    /**
+       Record the current geometry of the areas so that the cached image can be redrawn if it changes. Subclasses that override this must call the superclass method.
+    */
+    @Override
+    protected void postView() {
+        long version = entities.size();
+        for (E next : entities) {
+            version = version * HASH_MULTIPLIER + next.getID().getValue();
+            if (!next.isEdgesDefined()) {
+                continue;
+            }
+            for (Edge edge : next.getEdges()) {
+                version = version * HASH_MULTIPLIER + edge.getStartX();
+                version = version * HASH_MULTIPLIER + edge.getStartY();
+                version = version * HASH_MULTIPLIER + edge.getEndX();
+                version = version * HASH_MULTIPLIER + edge.getEndY();
+                EntityID neighbour = edge.getNeighbour();
+                version = version * HASH_MULTIPLIER + (neighbour == null ? 0 : neighbour.getValue());
+            }
+        }
+        geometryVersion = version;
+        if (world != null) {
+            // Bring the spatial index up to date here rather than while painting
+            world.index();
+        }
+    }
+
+    private List<E> getVisibleAreas(Rectangle2D viewport) {
+        if (viewport == null) {
+            return new ArrayList<E>(entities);
+        }
+        Collection<StandardEntity> inView = world.getObjectsInRectangle((int)Math.floor(viewport.getMinX()),
+                                                                        (int)Math.floor(viewport.getMinY()),
+                                                                        (int)Math.ceil(viewport.getMaxX()),
+                                                                        (int)Math.ceil(viewport.getMaxY()));
+        List<E> result = new ArrayList<E>();
+        for (E next : entities) {
+            if (inView.contains(next) && isInViewport(next, viewport)) {
+                result.add(next);
+            }
+        }
+        return result;
+    }
+
+    private BufferedImage getStaticImage(List<E> visible, Graphics2D g, ScreenTransform t, int width, int height) {
+        Rectangle2D bounds = t.getViewBounds();
+        if (staticImage != null
+            && staticImage.getWidth() == width
+            && staticImage.getHeight() == height
+            && staticVersion == geometryVersion
+            && bounds != null
+            && bounds.equals(staticBounds)) {
+            return staticImage;
+        }
+        staticImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        staticBounds = bounds == null ? null : (Rectangle2D)bounds.clone();
+        staticVersion = geometryVersion;
+        Graphics2D imageGraphics = staticImage.createGraphics();
+        try {
+            imageGraphics.setRenderingHints(g.getRenderingHints());
+            if (isShapeStatic()) {
+                for (E next : visible) {
+                    Polygon shape = getScreenShape(next, t);
+                    if (shape != null) {
+                        paintShape(next, shape, imageGraphics);
+                    }
+                }
+            }
+            for (E next : visible) {
+                if (next.isEdgesDefined()) {
+                    for (Edge edge : next.getEdges()) {
+                        paintEdge(edge, imageGraphics, t);
+                    }
+                }
+            }
+        }
+        finally {
+            imageGraphics.dispose();
+        }
+        return staticImage;
+    }
+
+    private Polygon getScreenShape(E area, ScreenTransform t) {
+        List<Edge> edges = area.getEdges();
+        if (edges.isEmpty()) {
+            return null;
+        }
+        int count = edges.size();
+        int[] xs = new int[count];
+        int[] ys = new int[count];
+        int i = 0;
+        for (Iterator<Edge> it = edges.iterator(); it.hasNext();) {
+            Edge e = it.next();
+            xs[i] = t.xToScreen(e.getStartX());
+            ys[i] = t.yToScreen(e.getStartY());
+            ++i;
+        }
+        return new Polygon(xs, ys, count);
+    }
 }
@@ -5,6 +5,7 @@ import java.awt.Shape;
 import java.awt.Color;
 import java.awt.Stroke;
 import java.awt.BasicStroke;
+import java.awt.geom.Rectangle2D;
 
 import rescuecore2.worldmodel.EntityID;
 import rescuecore2.misc.gui.ScreenTransform;
@@ -33,6 +34,12 @@ public class AreaNeighboursLayer extends StandardEntityViewLayer<Area> {
         return "Neighbours";
     }
 
+    @Override
+    protected boolean isInViewport(Area area, Rectangle2D viewport) {
+        // Lines to neighbours leave the area through a shared edge so only the area's bounds matter
+        return area.getShape().getBounds2D().intersects(viewport);
+    }
+
     @Override
     public Shape render(Area area, Graphics2D g, ScreenTransform t) {
         g.setColor(NEIGHBOUR_COLOUR);
@@ -135,6 +135,12 @@ public class HumanLayer extends StandardEntityViewLayer<Human> {
     	
     }
 
+    @Override
+    protected boolean isInViewport(Human h, Rectangle2D viewport) {
+        Pair<Integer, Integer> location = getLocation(h);
+        return location == null || viewport.contains(location.first(), location.second());
+    }
+
     /**
        Get the location of a human.
        @param h The human to look up.
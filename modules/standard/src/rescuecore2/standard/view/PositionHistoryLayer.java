@@ -3,6 +3,7 @@ package rescuecore2.standard.view;
 import java.awt.Graphics2D;
 import java.awt.Color;
 import java.awt.Shape;
+import java.awt.geom.Rectangle2D;
 
 import rescuecore2.misc.gui.ScreenTransform;
 import rescuecore2.config.Config;
@@ -31,6 +32,26 @@ public class PositionHistoryLayer extends StandardEntityViewLayer<Human> {
         return "Position history";
     }
 
+    @Override
+    protected boolean isInViewport(Human h, Rectangle2D viewport) {
+        if (!h.isPositionHistoryDefined()) {
+            return false;
+        }
+        // The path may cross the screen even if every point is outside it
+        int[] history = h.getPositionHistory();
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int i = 0; i + 1 < history.length; i += 2) {
+            minX = Math.min(minX, history[i]);
+            minY = Math.min(minY, history[i + 1]);
+            maxX = Math.max(maxX, history[i]);
+            maxY = Math.max(maxY, history[i + 1]);
+        }
+        return minX <= maxX && viewport.intersects(minX, minY, maxX - minX, maxY - minY);
+    }
+
     @Override
     public Shape render(Human h, Graphics2D g, ScreenTransform t) {
         if (!h.isPositionHistoryDefined()) {
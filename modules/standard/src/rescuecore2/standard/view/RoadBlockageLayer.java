@@ -4,6 +4,7 @@ import java.awt.Graphics2D;
 import java.awt.Color;
 import java.awt.Shape;
 import java.awt.Polygon;
+import java.awt.geom.Rectangle2D;
 
 import rescuecore2.standard.entities.Blockade;
 import rescuecore2.misc.gui.ScreenTransform;
@@ -29,6 +30,14 @@ public class RoadBlockageLayer extends StandardEntityViewLayer<Blockade> {
         return "Road blockages";
     }
 
+    @Override
+    protected boolean isInViewport(Blockade b, Rectangle2D viewport) {
+        if (!b.isApexesDefined()) {
+            return false;
+        }
+        return b.getShape().getBounds2D().intersects(viewport);
+    }
+
     @Override
     public Shape render(Blockade b, Graphics2D g, ScreenTransform t) {
         int[] apexes = b.getApexes();
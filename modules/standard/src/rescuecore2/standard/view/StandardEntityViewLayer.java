@@ -8,6 +8,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.ArrayList;
 
+import rescuecore2.misc.Pair;
 import rescuecore2.misc.gui.ScreenTransform;
 import rescuecore2.view.RenderedObject;
 import rescuecore2.worldmodel.WorldModel;
@@ -20,6 +21,9 @@ import rescuecore2.standard.entities.StandardEntity;
    @param <T> The subclass of StandardEntity that this layer knows how to render.
  */
 public abstract class StandardEntityViewLayer<T extends StandardEntity> extends StandardViewLayer {
+    /** The number of pixels around the screen inside which entities are still rendered. This allows for icons and outlines that extend beyond an entity's location. */
+    protected static final int CULL_MARGIN = 64;
+
     /**
        The entities this layer should render.
     */
@@ -65,13 +69,46 @@ public abstract class StandardEntityViewLayer<T extends StandardEntity> extends
     public Collection<RenderedObject> render(Graphics2D g, ScreenTransform transform, int width, int height) {
         synchronized (entities) {
             Collection<RenderedObject> result = new ArrayList<RenderedObject>();
+            Rectangle2D viewport = getViewport(transform, width);
             for (T next : entities) {
+                if (viewport != null && !isInViewport(next, viewport)) {
+                    continue;
+                }
                 result.add(new RenderedObject(next, render(next, g, transform)));
             }
             return result;
         }
     }
 
+    /**
+       Get the region of the world that is currently visible, plus a margin of {@link #CULL_MARGIN} pixels on each side.
+       @param transform The screen transform.
+       @param width The width of the screen in pixels.
+       @return The visible region in world coordinates, or null if the visible region is not known.
+    */
+    protected Rectangle2D getViewport(ScreenTransform transform, int width) {
+        Rectangle2D bounds = transform.getViewBounds();
+        if (bounds == null || world == null || width <= 0) {
+            return null;
+        }
+        double margin = (bounds.getWidth() / width) * CULL_MARGIN;
+        return new Rectangle2D.Double(bounds.getMinX() - margin, bounds.getMinY() - margin, bounds.getWidth() + (2 * margin), bounds.getHeight() + (2 * margin));
+    }
+
+    /**
+       Find out if an entity might be visible. Entities that are not visible are not rendered. The default implementation checks the location of the entity; subclasses that draw things a long way from an entity's location should override this.
+       @param entity The entity to check.
+       @param viewport The visible region of the world, including a margin.
+       @return True if the entity should be rendered.
+    */
+    protected boolean isInViewport(T entity, Rectangle2D viewport) {
+        Pair<Integer, Integer> location = entity.getLocation(world);
+        if (location == null) {
+            return true;
+        }
+        return viewport.contains(location.first(), location.second());
+    }
+
     /**
        Render an entity and return the shape. This shape is used for resolving mouse-clicks so should represent a hit-box for the entity.
        @param entity The entity to render.
@@ -0,0 +1,101 @@
+package rescuecore2.standard.entities;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import rescuecore2.worldmodel.EntityID;
+
+public class StaticMapLayerTest {
+    private static final int SIZE = 10;
+    private static final int AREA_SIZE = 100;
+
+    @Test
+    public void testGeometryIsShared() {
+        StaticMapLayer layer = new StaticMapLayer();
+        StandardWorldModel first = makeWorld(layer);
+        StandardWorldModel second = makeWorld(layer);
+        Area a = (Area)first.getEntity(new EntityID(1));
+        Area b = (Area)second.getEntity(new EntityID(1));
+        assertTrue(a != b);
+        assertTrue(layer.isShared(a));
+        assertTrue(layer.isShared(b));
+        assertSame(a.getApexList(), b.getApexList());
+        assertSame(a.getShape(), b.getShape());
+        assertEquals(a.getEdges(), b.getEdges());
+    }
+
+    @Test
+    public void testChangingEdgesUnshares() {
+        StaticMapLayer layer = new StaticMapLayer();
+        StandardWorldModel first = makeWorld(layer);
+        StandardWorldModel second = makeWorld(layer);
+        Area a = (Area)first.getEntity(new EntityID(1));
+        Area b = (Area)second.getEntity(new EntityID(1));
+        a.getEdgesProperty().addEdge(new Edge(0, 0, 1, 1));
+        assertFalse(layer.isShared(a));
+        assertTrue(layer.isShared(b));
+        assertEquals(4, b.getEdges().size());
+        assertEquals(5, a.getEdges().size());
+    }
+
+    @Test
+    public void testQueriesMatchUnsharedWorld() {
+        StandardWorldModel plain = makeWorld(null);
+        StandardWorldModel shared = makeWorld(new StaticMapLayer());
+        FireBrigade fb = new FireBrigade(new EntityID(SIZE * SIZE + 1));
+        fb.setX(AREA_SIZE * 3 + AREA_SIZE / 2);
+        fb.setY(AREA_SIZE * 3 + AREA_SIZE / 2);
+        plain.addEntity(fb);
+        shared.addEntity(fb.copy());
+        plain.index();
+        shared.index();
+        assertEquals(plain.getBounds(), shared.getBounds());
+        int[][] queries = {{0, 0, 0}, {350, 350, 10}, {350, 350, 200}, {999, 999, 1}, {-50, -50, 60}, {5000, 5000, 10}};
+        for (int[] q : queries) {
+            assertEquals(ids(plain.getObjectsInRange(q[0], q[1], q[2])), ids(shared.getObjectsInRange(q[0], q[1], q[2])));
+        }
+        assertTrue(ids(shared.getObjectsInRange(fb.getX(), fb.getY(), 1)).contains(fb.getID()));
+    }
+
+    private Set<EntityID> ids(Iterable<StandardEntity> entities) {
+        Set<EntityID> result = new HashSet<EntityID>();
+        for (StandardEntity next : entities) {
+            result.add(next.getID());
+        }
+        return result;
+    }
+
+    private StandardWorldModel makeWorld(StaticMapLayer layer) {
+        StandardWorldModel result = new StandardWorldModel();
+        if (layer != null) {
+            result.setStaticMapLayer(layer);
+        }
+        int id = 1;
+        for (int row = 0; row < SIZE; ++row) {
+            for (int col = 0; col < SIZE; ++col) {
+                Area a = (row + col) % 2 == 0 ? new Road(new EntityID(id)) : new Building(new EntityID(id));
+                int x = col * AREA_SIZE;
+                int y = row * AREA_SIZE;
+                List<Edge> edges = new ArrayList<Edge>();
+                edges.add(new Edge(x, y, x + AREA_SIZE, y));
+                edges.add(new Edge(x + AREA_SIZE, y, x + AREA_SIZE, y + AREA_SIZE));
+                edges.add(new Edge(x + AREA_SIZE, y + AREA_SIZE, x, y + AREA_SIZE));
+                edges.add(new Edge(x, y + AREA_SIZE, x, y));
+                a.setEdges(edges);
+                a.setX(x + AREA_SIZE / 2);
+                a.setY(y + AREA_SIZE / 2);
+                result.addEntity(a);
+                ++id;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,110 @@
+package rescuecore2.standard.kernel;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import kernel.PerceptionDeltaFilter;
+
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+import rescuecore2.worldmodel.Property;
+
+import rescuecore2.standard.entities.Blockade;
+import rescuecore2.standard.entities.Civilian;
+import rescuecore2.standard.entities.Human;
+import rescuecore2.standard.entities.Road;
+import rescuecore2.standard.entities.StandardWorldModel;
+
+public class PerceptionDeltaFilterTest {
+    private static final long SEED = 7;
+    private static final int TIMESTEPS = 50;
+    private static final int ROADS = 20;
+    private static final int CIVILIANS = 20;
+
+    @Test
+    public void testDeltasGiveSameWorld() {
+        Random random = new Random(SEED);
+        StandardWorldModel world = new StandardWorldModel();
+        List<Road> roads = new ArrayList<Road>();
+        List<Civilian> civilians = new ArrayList<Civilian>();
+        int id = 1;
+        for (int i = 0; i < ROADS; ++i) {
+            Road r = new Road(new EntityID(id++));
+            Blockade b = new Blockade(new EntityID(id++));
+            b.setPosition(r.getID());
+            b.setApexes(new int[] {0, 0, 1, 0, 1, 1});
+            b.setRepairCost(1);
+            r.setBlockades(new ArrayList<EntityID>(Arrays.asList(b.getID())));
+            roads.add(r);
+            world.addEntity(r);
+            world.addEntity(b);
+        }
+        for (int i = 0; i < CIVILIANS; ++i) {
+            Civilian c = new Civilian(new EntityID(id++));
+            c.setHP(random.nextInt(2) * 10000);
+            c.setPosition(roads.get(random.nextInt(ROADS)).getID());
+            civilians.add(c);
+            world.addEntity(c);
+        }
+        StandardWorldModel full = new StandardWorldModel();
+        StandardWorldModel delta = new StandardWorldModel();
+        PerceptionDeltaFilter filter = new PerceptionDeltaFilter();
+        for (int time = 1; time <= TIMESTEPS; ++time) {
+            for (Civilian next : civilians) {
+                if (random.nextInt(3) == 0) {
+                    next.setHP(Math.max(0, next.getHP() - random.nextInt(1000)));
+                }
+                if (random.nextInt(10) == 0) {
+                    next.setPosition(roads.get(random.nextInt(ROADS)).getID());
+                }
+            }
+            for (Road next : roads) {
+                Blockade b = (Blockade)world.getEntity(next.getBlockades().get(0));
+                if (random.nextInt(5) == 0) {
+                    b.setApexes(new int[] {0, 0, random.nextInt(10), 0, 1, 1});
+                }
+                if (random.nextInt(10) == 0) {
+                    b.undefineRepairCost();
+                }
+            }
+            // See a random half of the world
+            ChangeSet visible = new ChangeSet();
+            for (Entity next : world) {
+                if (random.nextBoolean()) {
+                    for (Property p : next.getProperties()) {
+                        visible.addChange(next, p);
+                    }
+                }
+            }
+            ChangeSet sent = filter.filter(visible);
+            full.merge(visible);
+            delta.merge(sent);
+            assertSameWorld(full, delta);
+        }
+        assertTrue(filter.getPropertiesSent() < filter.getPropertiesSeen());
+    }
+
+    private void assertSameWorld(StandardWorldModel expected, StandardWorldModel actual) {
+        assertEquals(expected.getAllEntities().size(), actual.getAllEntities().size());
+        for (Entity next : expected) {
+            Entity other = actual.getEntity(next.getID());
+            for (Property p : next.getProperties()) {
+                Property q = other.getProperty(p.getURN());
+                assertEquals(p.isDefined(), q.isDefined());
+                if (p.getValue() instanceof int[]) {
+                    assertTrue(Arrays.equals((int[])p.getValue(), (int[])q.getValue()));
+                }
+                else {
+                    assertEquals(p.getValue(), q.getValue());
+                }
+            }
+        }
+    }
+}
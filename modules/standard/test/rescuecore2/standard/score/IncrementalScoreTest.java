@@ -0,0 +1,220 @@
+package rescuecore2.standard.score;
+
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import rescuecore2.Timestep;
+import rescuecore2.config.Config;
+import rescuecore2.log.EndLogRecord;
+import rescuecore2.log.FileLogReader;
+import rescuecore2.log.FileLogWriter;
+import rescuecore2.log.InitialConditionsRecord;
+import rescuecore2.log.LogException;
+import rescuecore2.log.LogReader;
+import rescuecore2.log.LogWriter;
+import rescuecore2.log.StartLogRecord;
+import rescuecore2.log.UpdatesRecord;
+import rescuecore2.registry.Registry;
+import rescuecore2.score.IncrementalScoreFunction;
+import rescuecore2.score.ScoreFunction;
+import rescuecore2.worldmodel.ChangeSet;
+import rescuecore2.worldmodel.Entity;
+import rescuecore2.worldmodel.EntityID;
+
+import rescuecore2.standard.entities.Building;
+import rescuecore2.standard.entities.Civilian;
+import rescuecore2.standard.entities.FireBrigade;
+import rescuecore2.standard.entities.Human;
+import rescuecore2.standard.entities.PoliceForce;
+import rescuecore2.standard.entities.StandardEntityConstants;
+import rescuecore2.standard.entities.StandardEntityFactory;
+import rescuecore2.standard.entities.StandardPropertyFactory;
+import rescuecore2.standard.entities.StandardWorldModel;
+
+/**
+   Replays a log through each score function twice, once scoring the whole world every timestep and once from the changes, and checks that the scores are identical.
+ */
+public class IncrementalScoreTest {
+    private static final long SEED = 42;
+    private static final int TIMESTEPS = 60;
+    private static final int BUILDINGS = 200;
+    private static final int CIVILIANS = 80;
+    private static final int AGENTS = 20;
+    private static final int MAX_HP = 10000;
+    private static final int POSITION = 1;
+
+    private File logFile;
+    private LogReader reader;
+    private Registry registry;
+
+    @Before
+    public void setup() throws IOException, LogException {
+        registry = new Registry();
+        registry.registerEntityFactory(StandardEntityFactory.INSTANCE);
+        registry.registerPropertyFactory(StandardPropertyFactory.INSTANCE);
+        logFile = File.createTempFile("score", ".log");
+        writeLog(logFile);
+        reader = new FileLogReader(logFile, registry);
+    }
+
+    @After
+    public void cleanup() {
+        logFile.delete();
+    }
+
+    @Test
+    public void testLegacyScore() throws LogException {
+        check(new LegacyScoreFunction(), new LegacyScoreFunction(), config(false));
+        check(new LegacyScoreFunction(), new LegacyScoreFunction(), config(true));
+    }
+
+    @Test
+    public void testDistanceTravelled() throws LogException {
+        check(new DistanceTravelledScoreFunction(), new DistanceTravelledScoreFunction(), config(false));
+    }
+
+    @Test
+    public void testMissedTimestep() throws LogException {
+        StandardWorldModel world = readInitialWorld();
+        IncrementalScoreFunction incremental = new LegacyScoreFunction();
+        incremental.initialise(world, config(false));
+        for (int time = 1; time <= TIMESTEPS; ++time) {
+            ChangeSet changes = reader.getUpdates(time).getChangeSet();
+            world.merge(changes);
+            // Skip every third timestep so that the function has to start again from the whole world
+            if (time % 3 != 0) {
+                ScoreFunction fresh = new LegacyScoreFunction();
+                fresh.initialise(world, config(false));
+                double expected = fresh.score(world, new Timestep(time));
+                assertEquals(expected, incremental.updateScore(world, new Timestep(time), changes), 0);
+            }
+        }
+    }
+
+    private void check(ScoreFunction full, IncrementalScoreFunction incremental, Config config) throws LogException {
+        StandardWorldModel fullWorld = readInitialWorld();
+        StandardWorldModel incrementalWorld = readInitialWorld();
+        full.initialise(fullWorld, config);
+        incremental.initialise(incrementalWorld, config);
+        assertEquals(full.score(fullWorld, new Timestep(0)), incremental.updateScore(incrementalWorld, new Timestep(0), new ChangeSet()), 0);
+        boolean changed = false;
+        double first = full.score(fullWorld, new Timestep(0));
+        for (int time = 1; time <= TIMESTEPS; ++time) {
+            ChangeSet changes = reader.getUpdates(time).getChangeSet();
+            fullWorld.merge(changes);
+            incrementalWorld.merge(changes);
+            Timestep timestep = new Timestep(time);
+            double expected = full.score(fullWorld, timestep);
+            assertEquals("Timestep " + time, expected, incremental.updateScore(incrementalWorld, timestep, changes), 0);
+            // Asking again for the same timestep gives the same answer
+            assertEquals(expected, incremental.score(incrementalWorld, timestep), 0);
+            changed = changed || expected != first;
+        }
+        assertTrue(changed);
+    }
+
+    private StandardWorldModel readInitialWorld() throws LogException {
+        StandardWorldModel result = new StandardWorldModel();
+        for (Entity next : reader.getWorldModel(0)) {
+            result.addEntity(next.copy());
+        }
+        return result;
+    }
+
+    private Config config(boolean absolute) {
+        Config config = new Config();
+        config.setValue("score.standard.building-fire.heating", "0.66");
+        config.setValue("score.standard.building-fire.burning", "0.33");
+        config.setValue("score.standard.building-fire.inferno", "0.0");
+        config.setValue("score.standard.building-fire.water-damage", "0.90");
+        config.setValue("score.standard.building-fire.minor-damage", "0.75");
+        config.setValue("score.standard.building-fire.moderate-damage", "0.5");
+        config.setValue("score.standard.building-fire.severe-damage", "0.25");
+        config.setValue("score.standard.building-fire.burnt-out", "0");
+        config.setBooleanValue("score.standard.building-fire.absolute", absolute);
+        config.setBooleanValue("score.standard.health.absolute", absolute);
+        return config;
+    }
+
+    // Writes a log in which buildings catch fire, civilians lose health and are removed, and agents move
+    private void writeLog(File file) throws IOException, LogException {
+        Random random = new Random(SEED);
+        StandardWorldModel world = new StandardWorldModel();
+        List<Building> buildings = new ArrayList<Building>();
+        List<Civilian> civilians = new ArrayList<Civilian>();
+        List<Human> agents = new ArrayList<Human>();
+        int id = POSITION;
+        Building position = new Building(new EntityID(id++));
+        position.setTotalArea(1);
+        world.addEntity(position);
+        for (int i = 0; i < BUILDINGS; ++i) {
+            Building b = new Building(new EntityID(id++));
+            b.setTotalArea(1 + random.nextInt(5000));
+            if (random.nextBoolean()) {
+                b.setImportance(1 + random.nextInt(3));
+            }
+            if (random.nextBoolean()) {
+                b.setFieryness(0);
+            }
+            buildings.add(b);
+            world.addEntity(b);
+        }
+        for (int i = 0; i < CIVILIANS; ++i) {
+            Civilian c = new Civilian(new EntityID(id++));
+            c.setHP(MAX_HP - random.nextInt(MAX_HP / 2));
+            c.setPosition(position.getID());
+            civilians.add(c);
+            world.addEntity(c);
+        }
+        for (int i = 0; i < AGENTS; ++i) {
+            Human h = i % 2 == 0 ? new FireBrigade(new EntityID(id++)) : new PoliceForce(new EntityID(id++));
+            h.setPosition(position.getID());
+            agents.add(h);
+            world.addEntity(h);
+        }
+        LogWriter log = new FileLogWriter(file);
+        log.writeRecord(new StartLogRecord());
+        log.writeRecord(new InitialConditionsRecord(world));
+        for (int time = 1; time <= TIMESTEPS; ++time) {
+            ChangeSet changes = new ChangeSet();
+            for (Building next : buildings) {
+                if (random.nextInt(10) == 0) {
+                    next.setFieryness(random.nextInt(StandardEntityConstants.Fieryness.values().length));
+                    changes.addChange(next, next.getFierynessProperty());
+                }
+            }
+            for (Civilian next : civilians) {
+                if (next.getHP() > 0 && random.nextInt(4) == 0) {
+                    next.setHP(Math.max(0, next.getHP() - random.nextInt(MAX_HP / 4)));
+                    changes.addChange(next, next.getHPProperty());
+                }
+            }
+            if (time % 10 == 0) {
+                Civilian removed = civilians.remove(random.nextInt(civilians.size()));
+                changes.entityDeleted(removed.getID());
+            }
+            for (Human next : agents) {
+                if (random.nextInt(3) == 0) {
+                    int[] history = new int[2 * (2 + random.nextInt(3))];
+                    for (int i = 0; i < history.length; ++i) {
+                        history[i] = random.nextInt(100000);
+                    }
+                    next.setPositionHistory(history);
+                    changes.addChange(next, next.getPositionHistoryProperty());
+                }
+            }
+            log.writeRecord(new UpdatesRecord(time, changes));
+        }
+        log.writeRecord(new EndLogRecord());
+        log.close();
+    }
+}